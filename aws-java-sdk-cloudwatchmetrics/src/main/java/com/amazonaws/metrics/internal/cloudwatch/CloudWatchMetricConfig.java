@@ -65,9 +65,10 @@ public class CloudWatchMetricConfig {
      */
     static final int MAX_METRICS_DATUM_SIZE = 20;
     /**
-     * Default metrics queue size. If the queue size
-     * exceeds this value, then excessive metrics will be dropped to prevent
-     * resource exhaustion.
+     * Default metrics queue size, which is the maximum number of distinct
+     * metric series aggregated in memory during an upload interval. Metrics of
+     * new series beyond this number will be dropped to prevent resource
+     * exhaustion; metrics of series already tracked are never dropped.
      */
     public static final int DEFAULT_METRICS_QSIZE = 1000;
     /**
@@ -75,13 +76,18 @@ public class CloudWatchMetricConfig {
      * which is the finest granularity of Amazon CloudWatch. 
      */
     public static final int DEFAULT_QUEUE_POLL_TIMEOUT_MILLI = (int)TimeUnit.MINUTES.toMillis(1);
+    /**
+     * Default maximum number of PutMetricData requests sent to Amazon
+     * CloudWatch in parallel at the end of each upload interval.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 4;
 
     /** Credentials for the uploader to communicate with Amazon CloudWatch */
     private AWSCredentialsProvider credentialsProvider;
 
     /**
-     * Number of milliseconds to wait before the polling of the metrics queue
-     * times out.
+     * Number of milliseconds during which metrics are aggregated before they
+     * are uploaded.
      */
     private long queuePollTimeoutMilli = DEFAULT_QUEUE_POLL_TIMEOUT_MILLI;
 
@@ -93,6 +99,9 @@ public class CloudWatchMetricConfig {
     
     private int metricQueueSize = DEFAULT_METRICS_QSIZE;
 
+    /** Maximum number of PutMetricData requests sent in parallel. */
+    private int maxConcurrentUploads = DEFAULT_MAX_CONCURRENT_UPLOADS;
+
     /**
      * Returns the credential provider that holds the credentials to connect to
      * Amazon CloudWatch.
@@ -115,7 +124,8 @@ public class CloudWatchMetricConfig {
     }
 
     /**
-     * Returns the metrics queue polling timeout in millisecond.
+     * Returns the metrics queue polling timeout in millisecond, which is the
+     * interval at which the aggregated metrics are uploaded.
      */
     public long getQueuePollTimeoutMilli() {
         return queuePollTimeoutMilli;
@@ -159,7 +169,8 @@ public class CloudWatchMetricConfig {
 
     /**
      * Configure the metric queue size, overriding the default. Must be at
-     * least 1.
+     * least 1. This is the maximum number of distinct metric series
+     * aggregated in memory during an upload interval.
      * 
      * @see #DEFAULT_METRICS_QSIZE
      */
@@ -174,4 +185,26 @@ public class CloudWatchMetricConfig {
         setMetricQueueSize(metricQueueSize);
         return this;
     }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    /**
+     * Configure the maximum number of PutMetricData requests sent to Amazon
+     * CloudWatch in parallel, overriding the default. Must be at least 1.
+     * 
+     * @see #DEFAULT_MAX_CONCURRENT_UPLOADS
+     */
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        if (maxConcurrentUploads < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public CloudWatchMetricConfig withMaxConcurrentUploads(int maxConcurrentUploads) {
+        setMaxConcurrentUploads(maxConcurrentUploads);
+        return this;
+    }
 }
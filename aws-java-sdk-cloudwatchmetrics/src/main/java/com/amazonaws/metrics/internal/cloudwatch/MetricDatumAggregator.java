@@ -0,0 +1,312 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Pre-aggregates metric data into statistic sets, one per unique combination
+ * of metric name, unit and dimensions, so that the request path only ever
+ * updates a few counters instead of enqueuing a datum per data point.
+ * <p>
+ * Each statistic set is striped across a number of cells selected by the
+ * calling thread, and every cell is updated with compare-and-set only, so
+ * recording never blocks. The uploader periodically calls {@link #drain()} to
+ * collect the statistics of the elapsed interval.
+ */
+@ThreadSafe
+public class MetricDatumAggregator {
+    private final ConcurrentMap<SeriesKey, StatisticAccumulator> series =
+        new ConcurrentHashMap<SeriesKey, StatisticAccumulator>();
+    private final int maxSeries;
+
+    /**
+     * @param maxSeries
+     *            the maximum number of distinct metric series tracked at the
+     *            same time, to prevent resource exhaustion
+     */
+    public MetricDatumAggregator(int maxSeries) {
+        if (maxSeries < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Adds the value of the given datum to the statistics of its series.
+     *
+     * @return true if the value has been recorded; false if the datum has no
+     *         value, or belongs to a new series and the maximum number of
+     *         series has been reached.
+     */
+    public boolean add(MetricDatum datum) {
+        Double value = datum.getValue();
+        if (value == null) {
+            return false;
+        }
+        SeriesKey key = new SeriesKey(datum);
+        for (;;) {
+            StatisticAccumulator acc = series.get(key);
+            if (acc == null) {
+                if (series.size() >= maxSeries) {
+                    return false;
+                }
+                StatisticAccumulator newAcc = new StatisticAccumulator();
+                acc = series.putIfAbsent(key, newAcc);
+                if (acc == null) {
+                    acc = newAcc;
+                }
+            }
+            if (acc.record(value.doubleValue())) {
+                return true;
+            }
+            // The series has just been retired as idle; track it anew
+            series.remove(key, acc);
+        }
+    }
+
+    /**
+     * Returns the statistics accumulated since the last call to this method as
+     * a list of metric data, resetting them in the process. Series that have
+     * not been updated during the interval are no longer tracked.
+     */
+    public List<MetricDatum> drain() {
+        List<MetricDatum> data = new ArrayList<MetricDatum>();
+        for (Map.Entry<SeriesKey, StatisticAccumulator> entry : series.entrySet()) {
+            StatisticAccumulator acc = entry.getValue();
+            StatisticSet stat = acc.drain();
+            if (stat == null) {
+                // Idle series; once retired, no value can be recorded into it
+                // any more, and the values recorded meanwhile are picked up by
+                // draining once more.
+                acc.retire();
+                series.remove(entry.getKey(), acc);
+                stat = acc.drain();
+                if (stat == null) {
+                    continue;
+                }
+            }
+            data.add(entry.getKey().toMetricDatum(stat));
+        }
+        return data;
+    }
+
+    /** Returns the number of metric series currently tracked. */
+    public int size() {
+        return series.size();
+    }
+
+    /**
+     * Identifies a metric series. The dimensions are kept sorted so that
+     * the same dimensions in a different order map to the same series.
+     */
+    private static final class SeriesKey {
+        private final String metricName;
+        private final String unit;
+        private final List<Dimension> dimensions;
+        private final int hashCode;
+
+        SeriesKey(MetricDatum datum) {
+            this.metricName = datum.getMetricName();
+            this.unit = datum.getUnit();
+            List<Dimension> dims = datum.getDimensions();
+            if (dims == null || dims.isEmpty()) {
+                this.dimensions = Collections.emptyList();
+            } else {
+                List<Dimension> sorted = new ArrayList<Dimension>(dims);
+                Collections.sort(sorted, DimensionComparator.INSTANCE);
+                this.dimensions = sorted;
+            }
+            int h = metricName == null ? 0 : metricName.hashCode();
+            h = 31 * h + (unit == null ? 0 : unit.hashCode());
+            this.hashCode = 31 * h + dimensions.hashCode();
+        }
+
+        MetricDatum toMetricDatum(StatisticSet stat) {
+            return new MetricDatum()
+                .withMetricName(metricName)
+                .withUnit(unit)
+                .withDimensions(dimensions)
+                .withStatisticValues(stat);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) obj;
+            return hashCode == other.hashCode
+                && equal(metricName, other.metricName)
+                && equal(unit, other.unit)
+                && dimensions.equals(other.dimensions);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Lock-free sample count, sum, minimum and maximum, striped across cells
+     * to reduce contention between threads recording into the same series.
+     * Doubles are stored as their raw long bits. Each cell also counts the
+     * threads recording into it, so that the accumulator can be retired
+     * without losing a value being recorded.
+     */
+    static final class StatisticAccumulator {
+        private static final int STRIPES = stripes();
+        /** Cells are padded to a cache line (8 longs) to avoid false sharing. */
+        private static final int CELL_SIZE = 8;
+        private static final int COUNT = 0;
+        private static final int SUM = 1;
+        private static final int MIN = 2;
+        private static final int MAX = 3;
+        private static final int WRITERS = 4;
+        private static final long EMPTY_SUM = Double.doubleToRawLongBits(0.0);
+        private static final long EMPTY_MIN = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        private static final long EMPTY_MAX = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * CELL_SIZE);
+        private volatile boolean retired;
+
+        StatisticAccumulator() {
+            for (int i = 0; i < STRIPES; i++) {
+                reset(i * CELL_SIZE);
+            }
+        }
+
+        private static int stripes() {
+            int n = Integer.highestOneBit(Runtime.getRuntime().availableProcessors());
+            return Math.max(1, Math.min(n * 2, 64));
+        }
+
+        private void reset(int base) {
+            cells.set(base + COUNT, 0);
+            cells.set(base + SUM, EMPTY_SUM);
+            cells.set(base + MIN, EMPTY_MIN);
+            cells.set(base + MAX, EMPTY_MAX);
+        }
+
+        /**
+         * Records the given value; returns false if the accumulator has been
+         * retired, in which case the value has not been recorded.
+         */
+        boolean record(double value) {
+            int base = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * CELL_SIZE;
+            cells.incrementAndGet(base + WRITERS);
+            try {
+                if (retired) {
+                    return false;
+                }
+                record(base, value);
+                return true;
+            } finally {
+                cells.decrementAndGet(base + WRITERS);
+            }
+        }
+
+        private void record(int base, double value) {
+            for (;;) {
+                long bits = cells.get(base + SUM);
+                long update = Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value);
+                if (cells.compareAndSet(base + SUM, bits, update)) {
+                    break;
+                }
+            }
+            for (;;) {
+                long bits = cells.get(base + MIN);
+                if (Double.longBitsToDouble(bits) <= value
+                        || cells.compareAndSet(base + MIN, bits, Double.doubleToRawLongBits(value))) {
+                    break;
+                }
+            }
+            for (;;) {
+                long bits = cells.get(base + MAX);
+                if (Double.longBitsToDouble(bits) >= value
+                        || cells.compareAndSet(base + MAX, bits, Double.doubleToRawLongBits(value))) {
+                    break;
+                }
+            }
+            cells.incrementAndGet(base + COUNT);
+        }
+
+        /**
+         * Stops accepting values, and waits for the values being recorded
+         * concurrently, so that they are all returned by the next
+         * {@link #drain()}.
+         */
+        void retire() {
+            retired = true;
+            for (int i = 0; i < STRIPES; i++) {
+                while (cells.get(i * CELL_SIZE + WRITERS) != 0) {
+                    Thread.yield();
+                }
+            }
+        }
+
+        /**
+         * Returns the statistics accumulated so far and resets them; or null
+         * if nothing has been recorded. A value recorded concurrently may be
+         * split across two consecutive intervals.
+         */
+        StatisticSet drain() {
+            long count = 0;
+            double sum = 0.0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < STRIPES; i++) {
+                int base = i * CELL_SIZE;
+                count += cells.getAndSet(base + COUNT, 0);
+                sum += Double.longBitsToDouble(cells.getAndSet(base + SUM, EMPTY_SUM));
+                min = Math.min(min, Double.longBitsToDouble(cells.getAndSet(base + MIN, EMPTY_MIN)));
+                max = Math.max(max, Double.longBitsToDouble(cells.getAndSet(base + MAX, EMPTY_MAX)));
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (min > max) {
+                // Only the counts of the concurrently recorded values made
+                // it into this interval
+                min = max = sum / count;
+            }
+            return new StatisticSet()
+                .withSampleCount((double) count)
+                .withSum(sum)
+                .withMinimum(min)
+                .withMaximum(max);
+        }
+    }
+}
@@ -14,18 +14,27 @@
  */
 package com.amazonaws.metrics.internal.cloudwatch;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.services.cloudwatch.AmazonCloudWatchClient;
-import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
 import com.amazonaws.util.VersionInfoUtils;
 
 /**
  * A internal daemon thread used to upload request metrics to Amazon CloudWatch.
+ * The requests of each upload interval are sent in parallel by a small pool of
+ * daemon threads.
  */
 class MetricUploaderThread extends Thread {
     private static final String USER_AGENT = MetricUploaderThread.class.getName() + "/" + VersionInfoUtils.getVersion();
@@ -34,26 +43,29 @@ class MetricUploaderThread extends Thread {
     private final AmazonCloudWatchClient cloudwatchClient;
     private final Log log = LogFactory.getLog(getClass());
     private final BlockingRequestBuilder qIterator;
+    private final ExecutorService uploadExecutor;
 
     MetricUploaderThread(CloudWatchMetricConfig config,
-            BlockingQueue<MetricDatum> queue) {
+            MetricDatumAggregator aggregator) {
         this(config,
-             queue,
+             aggregator,
              config.getCredentialsProvider() == null
              ? new AmazonCloudWatchClient()
              : new AmazonCloudWatchClient(config.getCredentialsProvider()));
     }
 
     MetricUploaderThread(CloudWatchMetricConfig config,
-        BlockingQueue<MetricDatum> queue,
+        MetricDatumAggregator aggregator,
         AmazonCloudWatchClient client)
     {
         super(THREAD_NAME);
-        if (config == null || queue == null) {
+        if (config == null || aggregator == null) {
             throw new IllegalArgumentException();
         }
         this.cloudwatchClient = client;
-        this.qIterator = new BlockingRequestBuilder(config, queue);
+        this.qIterator = new BlockingRequestBuilder(config, aggregator);
+        this.uploadExecutor = Executors.newFixedThreadPool(
+                config.getMaxConcurrentUploads(), new UploadThreadFactory());
         String endpoint = config.getCloudWatchEndPoint();
         if (endpoint != null)
             cloudwatchClient.setEndpoint(endpoint);
@@ -63,22 +75,47 @@ class MetricUploaderThread extends Thread {
 
     @Override
     public void run() {
-        while (!cancelled) {
-            try {
-                Iterable<PutMetricDataRequest> requests = qIterator.nextUploadUnits();
-                for (PutMetricDataRequest req: requests) {
-                    appendUserAgent(req);
-                    log.debug(req);
-                    cloudwatchClient.putMetricData(req);
+        try {
+            while (!cancelled) {
+                try {
+                    upload(qIterator.nextUploadUnits());
+                } catch(InterruptedException e) {
+                    if (!cancelled) {
+                        log.debug("Unexpected interruption ignored");
+                    }
+                } catch(Throwable t) {
+                    log.warn("Unexpected condition; soldier on", t);
                     Thread.yield();
                 }
-            } catch(InterruptedException e) {
-                if (!cancelled) {
-                    log.debug("Unexpected interruption ignored");
+            }
+        } finally {
+            uploadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends the given requests in parallel, and waits for all of them to
+     * complete so that no more than one interval worth of data is in flight.
+     */
+    private void upload(Iterable<PutMetricDataRequest> requests)
+            throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final PutMetricDataRequest req: requests) {
+            appendUserAgent(req);
+            futures.add(uploadExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    log.debug(req);
+                    cloudwatchClient.putMetricData(req);
+                    return null;
                 }
-            } catch(Throwable t) {
-                log.warn("Unexpected condition; soldier on", t);
-                Thread.yield();
+            }));
+        }
+        for (Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("Failed to upload metrics; soldier on", e.getCause());
             }
         }
     }
@@ -93,4 +130,16 @@ class MetricUploaderThread extends Thread {
         request.getRequestClientOptions().appendUserAgent(USER_AGENT);
     }
 
+    /** Creates the low priority daemon threads sending the requests. */
+    private static class UploadThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, THREAD_NAME + "-" + threadCount.incrementAndGet());
+            thread.setPriority(MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -71,6 +71,9 @@ public class PredefinedMetricTransformer {
                 case HttpClientPoolAvailableCount:
                 case HttpClientPoolLeasedCount:
                 case HttpClientPoolPendingCount:
+                case HttpClientPoolRouteAvailableCount:
+                case HttpClientPoolRouteLeasedCount:
+                case HttpClientPoolRoutePendingCount:
                     return metricOfCount(predefined, request, response);
                 case RequestCount:  // intentionally fall thru to reuse the same routine as RetryCount
                 case RetryCount:
@@ -39,18 +39,33 @@ import com.amazonaws.util.AWSRequestMetrics;
 public class RequestMetricCollectorSupport extends RequestMetricCollector 
 {
     protected final static Log log = LogFactory.getLog(RequestMetricCollectorSupport.class);
+    /** The metrics pending upload, if not aggregated; or null. */
     private final BlockingQueue<MetricDatum> queue;
+    private final MetricDatumAggregator aggregator;
     private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
 
+    /**
+     * @deprecated by
+     *             {@link #RequestMetricCollectorSupport(MetricDatumAggregator)}.
+     *             The metrics are offered to the given queue, which the caller
+     *             is responsible for uploading.
+     */
+    @Deprecated
     protected RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
         this.queue = queue;
+        this.aggregator = null;
+    }
+
+    protected RequestMetricCollectorSupport(MetricDatumAggregator aggregator) {
+        this.queue = null;
+        this.aggregator = aggregator;
     }
 
     /**
      * Collects the metrics at the end of a request/response cycle, transforms
      * the metric data points into a cloud watch metric datum representation,
-     * and then adds it to a memory queue so it will get summarized into the
-     * necessary statistics and uploaded to Amazon CloudWatch.
+     * and then aggregates it in memory into the necessary statistics, which
+     * get uploaded to Amazon CloudWatch periodically.
      */
     @Override
     public void collectMetrics(Request<?> request, Response<?> response) {
@@ -75,14 +90,14 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
                 try {
                     if (!addMetricsToQueue(datum)) {
                         if (log.isDebugEnabled()) {
-                            log.debug("Failed to add to the metrics queue (due to no space available) for "
+                            log.debug("Failed to aggregate the metric (due to too many metric series) for "
                                     + type.name()
                                     + ":"
                                     + request.getServiceName());
                         }
                     }
                 } catch(RuntimeException ex) {
-                    log.warn("Failed to add to the metrics queue for "
+                    log.warn("Failed to aggregate the metric for "
                         + type.name() + ":" + request.getServiceName(),
                         ex);
                 }
@@ -91,11 +106,13 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
     }
 
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Adds the given metric to the statistics pending upload (or to the queue
+     * given at construction), returning true if successful or false if the
+     * maximum number of metric series has been reached (or no space is
+     * available).
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return aggregator == null ? queue.offer(metric) : aggregator.add(metric);
     }
     /** Returns the predefined metrics transformer. */
     protected PredefinedMetricTransformer getTransformer() { return transformer; }
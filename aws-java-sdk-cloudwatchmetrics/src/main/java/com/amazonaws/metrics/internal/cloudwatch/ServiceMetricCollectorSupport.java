@@ -46,10 +46,25 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
 {
     static final double NANO_PER_SEC = TimeUnit.SECONDS.toNanos(1);
     protected final static Log log = LogFactory.getLog(ServiceMetricCollectorSupport.class);
+    /** The metrics pending upload, if not aggregated; or null. */
     private final BlockingQueue<MetricDatum> queue;
+    private final MetricDatumAggregator aggregator;
 
+    /**
+     * @deprecated by
+     *             {@link #ServiceMetricCollectorSupport(MetricDatumAggregator)}.
+     *             The metrics are offered to the given queue, which the caller
+     *             is responsible for uploading.
+     */
+    @Deprecated
     protected ServiceMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
         this.queue = queue;
+        this.aggregator = null;
+    }
+
+    protected ServiceMetricCollectorSupport(MetricDatumAggregator aggregator) {
+        this.queue = null;
+        this.aggregator = aggregator;
     }
 
     @Override
@@ -136,24 +151,42 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
         }
     }
 
+    @Override
+    public void collectCount(ServiceMetricType type, long count) {
+        final Set<MetricType> metrics = AwsSdkMetrics.getPredefinedMetrics();
+        if (metrics.contains(type)) {
+            final Dimension dim = new Dimension()
+                .withName(Dimensions.MetricType.name())
+                .withValue(type.name());
+            final MetricDatum datum = new MetricDatum()
+                .withMetricName(type.getServiceName())
+                .withDimensions(dim)
+                .withUnit(StandardUnit.Count)
+                .withValue((double) count);
+            safeAddMetricsToQueue(datum);
+        }
+    }
+
     private void safeAddMetricsToQueue(MetricDatum metric) {
         try {
             if (!addMetricsToQueue(metric)) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Failed to add to the metrics queue (due to no space available) for "
+                    log.debug("Failed to aggregate the metric (due to too many metric series) for "
                             + metric.getMetricName());
                 }
             }
         } catch (RuntimeException ex) {
-            log.warn("Failed to add to the metrics queue for metric: " + metric,
+            log.warn("Failed to aggregate the metric: " + metric,
                     ex);
         }
     }
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Adds the given metric to the statistics pending upload (or to the queue
+     * given at construction), returning true if successful or false if the
+     * maximum number of metric series has been reached (or no space is
+     * available).
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return aggregator == null ? queue.offer(metric) : aggregator.add(metric);
     }
 }
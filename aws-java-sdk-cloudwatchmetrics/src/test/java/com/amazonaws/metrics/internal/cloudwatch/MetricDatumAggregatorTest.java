@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+public class MetricDatumAggregatorTest {
+
+    @Test
+    public void sameDimensionsInDifferentOrder_AreOneSeries() {
+        MetricDatumAggregator aggregator = new MetricDatumAggregator(10);
+
+        assertTrue(aggregator.add(datum("Latency", 1.0, "A", "B")));
+        assertTrue(aggregator.add(datum("Latency", 3.0, "B", "A")));
+
+        List<MetricDatum> data = aggregator.drain();
+        assertEquals(1, data.size());
+        StatisticSet stat = data.get(0).getStatisticValues();
+        assertEquals(2.0, stat.getSampleCount(), 0.0);
+        assertEquals(4.0, stat.getSum(), 0.0);
+        assertEquals(1.0, stat.getMinimum(), 0.0);
+        assertEquals(3.0, stat.getMaximum(), 0.0);
+    }
+
+    @Test
+    public void differentNamesUnitsOrDimensions_AreSeparateSeries() {
+        MetricDatumAggregator aggregator = new MetricDatumAggregator(10);
+
+        aggregator.add(datum("Latency", 1.0, "A"));
+        aggregator.add(datum("Latency", 1.0, "B"));
+        aggregator.add(datum("Count", 1.0, "A"));
+        aggregator.add(datum("Latency", 1.0, "A").withUnit(StandardUnit.Seconds));
+
+        assertEquals(4, aggregator.size());
+        assertEquals(4, aggregator.drain().size());
+    }
+
+    @Test
+    public void drain_ResetsStatisticsAndForgetsIdleSeries() {
+        MetricDatumAggregator aggregator = new MetricDatumAggregator(10);
+        aggregator.add(datum("Latency", 5.0, "A"));
+        assertEquals(1, aggregator.drain().size());
+
+        // Still tracked, but nothing to report for this interval
+        assertEquals(1, aggregator.size());
+        assertTrue(aggregator.drain().isEmpty());
+        assertEquals(0, aggregator.size());
+
+        aggregator.add(datum("Latency", 7.0, "A"));
+        List<MetricDatum> data = aggregator.drain();
+        assertEquals(1, data.size());
+        assertEquals(1.0, data.get(0).getStatisticValues().getSampleCount(), 0.0);
+        assertEquals(7.0, data.get(0).getStatisticValues().getSum(), 0.0);
+    }
+
+    @Test
+    public void maxSeriesReached_NewSeriesAreRejected() {
+        MetricDatumAggregator aggregator = new MetricDatumAggregator(1);
+
+        assertTrue(aggregator.add(datum("Latency", 1.0, "A")));
+        assertFalse(aggregator.add(datum("Latency", 1.0, "B")));
+        assertTrue(aggregator.add(datum("Latency", 2.0, "A")));
+        assertFalse(aggregator.add(new MetricDatum().withMetricName("NoValue")));
+    }
+
+    @Test
+    public void concurrentAddAndDrain_NoValueIsLost() throws Exception {
+        final MetricDatumAggregator aggregator = new MetricDatumAggregator(100);
+        final int threads = 4;
+        final int valuesPerThread = 200000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int t = 0; t < threads; t++) {
+            final String dimension = "D" + t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < valuesPerThread; i++) {
+                            // Pause now and then, so that series are retired
+                            // as idle while values are being recorded
+                            if (i % 1000 == 0) {
+                                Thread.yield();
+                            }
+                            if (!aggregator.add(datum("Latency", 1.0, dimension))) {
+                                failed.set(true);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.start();
+        }
+
+        List<MetricDatum> data = new ArrayList<MetricDatum>();
+        while (done.getCount() > 0) {
+            data.addAll(aggregator.drain());
+        }
+        data.addAll(aggregator.drain());
+
+        double count = 0;
+        double sum = 0;
+        for (MetricDatum datum : data) {
+            count += datum.getStatisticValues().getSampleCount();
+            sum += datum.getStatisticValues().getSum();
+        }
+        assertFalse(failed.get());
+        assertEquals((double) threads * valuesPerThread, count, 0.0);
+        assertEquals((double) threads * valuesPerThread, sum, 0.0);
+    }
+
+    private static MetricDatum datum(String name, double value, String... dimensionNames) {
+        List<Dimension> dimensions = new ArrayList<Dimension>();
+        for (String dimensionName : dimensionNames) {
+            dimensions.add(new Dimension().withName(dimensionName).withValue("v"));
+        }
+        return new MetricDatum()
+            .withMetricName(name)
+            .withUnit(StandardUnit.Milliseconds)
+            .withValue(value)
+            .withDimensions(dimensions);
+    }
+}
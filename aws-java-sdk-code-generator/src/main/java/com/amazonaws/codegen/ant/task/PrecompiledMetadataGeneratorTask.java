@@ -0,0 +1,445 @@
+
+/*
+ * Copyright (c) 2016. Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.codegen.ant.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.codegen.internal.Utils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compiles the metadata files the core module loads on startup into Java
+ * classes, so that service clients can be created without parsing JSON:
+ * <ul>
+ * <li>endpoints.json into com.amazonaws.partitions.PrecompiledPartitions</li>
+ * <li>awssdk_config_default.json into
+ * com.amazonaws.internal.config.PrecompiledInternalConfig</li>
+ * </ul>
+ * The generated classes are checked in alongside the JSON files, and must be
+ * regenerated whenever either file changes.
+ */
+public class PrecompiledMetadataGeneratorTask {
+
+    private static final String P_ENDPOINTS_FILE = "endpointsFile";
+    private static final String P_INTERNAL_CONFIG_FILE = "internalConfigFile";
+    private static final String P_OUTPUT_DIRECTORY = "outputDirectory";
+
+    private static final String INDENT = "    ";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+
+    private static final String HEADER =
+              "/*\n"
+            + " * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.\n"
+            + " *\n"
+            + " * Licensed under the Apache License, Version 2.0 (the \"License\").\n"
+            + " * You may not use this file except in compliance with the License.\n"
+            + " * A copy of the License is located at\n"
+            + " *\n"
+            + " *  http://aws.amazon.com/apache2.0\n"
+            + " *\n"
+            + " * or in the \"license\" file accompanying this file. This file is distributed\n"
+            + " * on an \"AS IS\" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either\n"
+            + " * express or implied. See the License for the specific language governing\n"
+            + " * permissions and limitations under the License.\n"
+            + " */\n";
+
+    public static void main(String[] args) throws IOException {
+        final String endpointsFile = Utils.getRequiredSystemProperty(P_ENDPOINTS_FILE,
+                "Use -DendpointsFile={path} to specify the endpoints.json file.");
+        final String internalConfigFile = Utils.getRequiredSystemProperty(P_INTERNAL_CONFIG_FILE,
+                "Use -DinternalConfigFile={path} to specify the awssdk_config_default.json file.");
+        final String outputDirectory = Utils.getRequiredSystemProperty(P_OUTPUT_DIRECTORY,
+                "Use -DoutputDirectory={path} to specify the source directory of the core module.");
+
+        write(new File(outputDirectory, "com/amazonaws/partitions"), "PrecompiledPartitions",
+                generatePartitions(MAPPER.readTree(new File(endpointsFile))));
+        write(new File(outputDirectory, "com/amazonaws/internal/config"), "PrecompiledInternalConfig",
+                generateInternalConfig(MAPPER.readTree(new File(internalConfigFile))));
+    }
+
+    private static void write(File dir, String className, String source) throws IOException {
+        File file = Utils.createFile(dir.getPath(), className + ".java");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.write(source);
+        }
+        System.out.println("Generated " + file);
+    }
+
+    static String generatePartitions(JsonNode root) {
+        SourceBuilder src = new SourceBuilder();
+        src.line(HEADER + "package com.amazonaws.partitions;")
+           .line()
+           .line("import java.util.ArrayList;")
+           .line("import java.util.Arrays;")
+           .line("import java.util.HashSet;")
+           .line("import java.util.LinkedHashMap;")
+           .line("import java.util.List;")
+           .line("import java.util.Map;")
+           .line("import java.util.Set;")
+           .line()
+           .line("import com.amazonaws.annotation.SdkInternalApi;")
+           .line("import com.amazonaws.partitions.model.CredentialScope;")
+           .line("import com.amazonaws.partitions.model.Endpoint;")
+           .line("import com.amazonaws.partitions.model.Partition;")
+           .line("import com.amazonaws.partitions.model.Partitions;")
+           .line("import com.amazonaws.partitions.model.Region;")
+           .line("import com.amazonaws.partitions.model.Service;")
+           .line()
+           .line("/**")
+           .line(" * The partition metadata of " + MetadataFiles.ENDPOINTS + ", compiled into")
+           .line(" * code so that it can be loaded without parsing JSON.")
+           .line(" * <p>")
+           .line(" * Generated by PrecompiledMetadataGeneratorTask; do not edit.")
+           .line(" */")
+           .line("@SdkInternalApi")
+           .line("final class PrecompiledPartitions {")
+           .line()
+           .indent().line("private PrecompiledPartitions() {")
+           .line("}")
+           .line();
+
+        List<String> partitionMethods = new ArrayList<String>();
+        for (JsonNode partition : root.get("partitions")) {
+            partitionMethods.add(methodName(partition.get("partition").asText()));
+        }
+
+        src.line("static Partitions build() {")
+           .indent().line("List<Partition> partitions = new ArrayList<Partition>();");
+        for (String method : partitionMethods) {
+            src.line("partitions.add(" + method + "());");
+        }
+        src.line("return new Partitions(" + literal(root.get("version").asText()) + ", partitions);")
+           .outdent().line("}");
+
+        for (JsonNode partition : root.get("partitions")) {
+            generatePartition(src, partition);
+        }
+
+        src.line()
+           .line("private static Endpoint endpoint(String hostName, CredentialScope credentialScope,")
+           .line("        Set<String> protocols, Set<String> signatureVersions, String sslCommonName) {")
+           .indent().line("Endpoint endpoint = new Endpoint();")
+           .line("endpoint.setHostName(hostName);")
+           .line("endpoint.setCredentialScope(credentialScope);")
+           .line("endpoint.setProtocols(protocols);")
+           .line("endpoint.setSignatureVersions(signatureVersions);")
+           .line("endpoint.setSslCommonName(sslCommonName);")
+           .line("return endpoint;")
+           .outdent().line("}")
+           .line()
+           .line("private static CredentialScope credentialScope(String region, String service) {")
+           .indent().line("CredentialScope credentialScope = new CredentialScope();")
+           .line("credentialScope.setRegion(region);")
+           .line("credentialScope.setService(service);")
+           .line("return credentialScope;")
+           .outdent().line("}")
+           .line()
+           .line("private static Set<String> set(String... values) {")
+           .indent().line("return new HashSet<String>(Arrays.asList(values));")
+           .outdent().line("}")
+           .outdent().line("}");
+        return src.toString();
+    }
+
+    private static void generatePartition(SourceBuilder src, JsonNode partition) {
+        String name = partition.get("partition").asText();
+        String method = methodName(name);
+
+        src.line()
+           .line("private static Partition " + method + "() {")
+           .indent().line("Map<String, Region> regions = new LinkedHashMap<String, Region>();");
+        for (Iterator<Map.Entry<String, JsonNode>> it = partition.get("regions").fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> region = it.next();
+            JsonNode description = region.getValue().get("description");
+            src.line("regions.put(" + literal(region.getKey()) + ", new Region("
+                    + literal(description == null ? null : description.asText()) + "));");
+        }
+        src.line()
+           .line("Map<String, Service> services = new LinkedHashMap<String, Service>();");
+        List<Map.Entry<String, JsonNode>> services = new ArrayList<Map.Entry<String, JsonNode>>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = partition.get("services").fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> service = it.next();
+            services.add(service);
+            src.line("services.put(" + literal(service.getKey()) + ", "
+                    + methodName(name + "-" + service.getKey()) + "());");
+        }
+        src.line()
+           .line("Partition partition = new Partition(" + literal(name) + ", regions, services);");
+        setString(src, "partition", "setPartitionName", partition.get("partitionName"));
+        setString(src, "partition", "setDnsSuffix", partition.get("dnsSuffix"));
+        setString(src, "partition", "setRegionRegex", partition.get("regionRegex"));
+        if (partition.has("defaults")) {
+            src.line("partition.setDefaults(" + endpoint(partition.get("defaults")) + ");");
+        }
+        src.line("return partition;")
+           .outdent().line("}");
+
+        for (Map.Entry<String, JsonNode> service : services) {
+            generateService(src, methodName(name + "-" + service.getKey()), service.getValue());
+        }
+    }
+
+    private static void generateService(SourceBuilder src, String method, JsonNode service) {
+        src.line()
+           .line("private static Service " + method + "() {")
+           .indent().line("Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();");
+        for (Iterator<Map.Entry<String, JsonNode>> it = service.get("endpoints").fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> endpoint = it.next();
+            src.line("endpoints.put(" + literal(endpoint.getKey()) + ", " + endpoint(endpoint.getValue()) + ");");
+        }
+        src.line("Service service = new Service(endpoints);");
+        if (service.has("defaults")) {
+            src.line("service.setDefaults(" + endpoint(service.get("defaults")) + ");");
+        }
+        setString(src, "service", "setPartitionEndpoint", service.get("partitionEndpoint"));
+        if (service.has("isRegionalized")) {
+            src.line("service.setRegionalized(" + service.get("isRegionalized").asBoolean() + ");");
+        }
+        src.line("return service;")
+           .outdent().line("}");
+    }
+
+    private static String endpoint(JsonNode endpoint) {
+        if (endpoint.size() == 0) {
+            return "new Endpoint()";
+        }
+        JsonNode scope = endpoint.get("credentialScope");
+        return "endpoint("
+                + literal(text(endpoint.get("hostname"))) + ", "
+                + (scope == null ? "null" : "credentialScope("
+                        + literal(text(scope.get("region"))) + ", "
+                        + literal(text(scope.get("service"))) + ")") + ", "
+                + set(endpoint.get("protocols")) + ", "
+                + set(endpoint.get("signatureVersions")) + ", "
+                + literal(text(endpoint.get("sslCommonName"))) + ")";
+    }
+
+    private static String set(JsonNode values) {
+        if (values == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("set(");
+        for (Iterator<JsonNode> it = values.elements(); it.hasNext();) {
+            sb.append(literal(it.next().asText()));
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    static String generateInternalConfig(JsonNode root) {
+        SourceBuilder src = new SourceBuilder();
+        src.line(HEADER + "package com.amazonaws.internal.config;")
+           .line()
+           .line("import com.amazonaws.annotation.SdkInternalApi;")
+           .line()
+           .line("/**")
+           .line(" * The internal configuration of " + MetadataFiles.INTERNAL_CONFIG + ",")
+           .line(" * compiled into code so that it can be loaded without parsing JSON.")
+           .line(" * <p>")
+           .line(" * Generated by PrecompiledMetadataGeneratorTask; do not edit.")
+           .line(" */")
+           .line("@SdkInternalApi")
+           .line("final class PrecompiledInternalConfig {")
+           .line()
+           .indent().line("private PrecompiledInternalConfig() {")
+           .line("}")
+           .line()
+           .line("@SuppressWarnings(\"unchecked\")")
+           .line("static InternalConfigJsonHelper defaults() {")
+           .indent().line("InternalConfigJsonHelper config = new InternalConfigJsonHelper();");
+        if (root.has("defaultSigner")) {
+            src.line("config.setDefaultSigner(new SignerConfigJsonHelper("
+                    + literal(text(root.get("defaultSigner").get("signerType"))) + "));");
+        }
+        signers(src, "setServiceSigners", root.get("serviceSigners"));
+        signers(src, "setRegionSigners", root.get("regionSigners"));
+        signers(src, "setServiceRegionSigners", root.get("serviceRegionSigners"));
+        if (root.has("httpClients")) {
+            src.line("config.setHttpClients(").indent().indent();
+            for (Iterator<JsonNode> it = root.get("httpClients").elements(); it.hasNext();) {
+                JsonNode index = it.next();
+                JsonNode config = index.get("config");
+                src.line("httpClient(" + literal(text(index.get("key"))) + ", "
+                        + literal(text(config.get("serviceName"))) + ", "
+                        + literal(text(config.get("regionMetadataServiceName"))) + ")"
+                        + (it.hasNext() ? "," : ");"));
+            }
+            src.outdent().outdent();
+        }
+        if (root.has("hostRegexToRegionMappings")) {
+            src.line("config.setHostRegexToRegionMappings(new HostRegexToRegionMappingJsonHelper[] {")
+               .indent().indent();
+            for (Iterator<JsonNode> it = root.get("hostRegexToRegionMappings").elements(); it.hasNext();) {
+                JsonNode mapping = it.next();
+                src.line("hostRegexToRegionMapping(" + literal(text(mapping.get("hostNameRegex"))) + ", "
+                        + literal(text(mapping.get("regionName"))) + ")" + (it.hasNext() ? "," : ""));
+            }
+            src.outdent().outdent().line("});");
+        }
+        setString(src, "config", "setUserAgentTemplate", root.get("userAgentTemplate"));
+        src.line("return config;")
+           .outdent().line("}")
+           .line()
+           .line("private static JsonIndex<SignerConfigJsonHelper, SignerConfig> signer(String key, String signerType) {")
+           .indent().line("return new JsonIndex<SignerConfigJsonHelper, SignerConfig>(key,")
+           .line("        new SignerConfigJsonHelper(signerType));")
+           .outdent().line("}")
+           .line()
+           .line("private static JsonIndex<HttpClientConfigJsonHelper, HttpClientConfig> httpClient(String key,")
+           .line("        String serviceName, String regionMetadataServiceName) {")
+           .indent().line("return new JsonIndex<HttpClientConfigJsonHelper, HttpClientConfig>(key,")
+           .line("        new HttpClientConfigJsonHelper(serviceName, regionMetadataServiceName));")
+           .outdent().line("}")
+           .line()
+           .line("private static HostRegexToRegionMappingJsonHelper hostRegexToRegionMapping(String hostNameRegex,")
+           .line("        String regionName) {")
+           .indent().line("HostRegexToRegionMappingJsonHelper mapping = new HostRegexToRegionMappingJsonHelper();")
+           .line("mapping.setHostNameRegex(hostNameRegex);")
+           .line("mapping.setRegionName(regionName);")
+           .line("return mapping;")
+           .outdent().line("}")
+           .outdent().line("}");
+        return src.toString();
+    }
+
+    private static void signers(SourceBuilder src, String setter, JsonNode signers) {
+        if (signers == null) {
+            return;
+        }
+        if (signers.size() == 0) {
+            src.line("config." + setter + "();");
+            return;
+        }
+        src.line("config." + setter + "(").indent().indent();
+        for (Iterator<JsonNode> it = signers.elements(); it.hasNext();) {
+            JsonNode index = it.next();
+            src.line("signer(" + literal(text(index.get("key"))) + ", "
+                    + literal(text(index.get("config").get("signerType"))) + ")"
+                    + (it.hasNext() ? "," : ");"));
+        }
+        src.outdent().outdent();
+    }
+
+    private static void setString(SourceBuilder src, String target, String setter, JsonNode value) {
+        if (value != null && !value.isNull()) {
+            src.line(target + "." + setter + "(" + literal(value.asText()) + ");");
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    /**
+     * Returns the Java method name for the given partition or service name,
+     * such as "awsCnStreamsDynamodb" for "aws-cn-streams.dynamodb".
+     */
+    static String methodName(String name) {
+        StringBuilder sb = new StringBuilder();
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (!Character.isLetterOrDigit(c)) {
+                upper = sb.length() > 0;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the Java string literal of the given value.
+     */
+    static String literal(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** The locations of the metadata files, as mentioned in the generated comments. */
+    private static final class MetadataFiles {
+        static final String ENDPOINTS = "com/amazonaws/partitions/endpoints.json";
+        static final String INTERNAL_CONFIG = "com/amazonaws/internal/config/awssdk_config_default.json";
+    }
+
+    /** Appends indented lines of Java source. */
+    private static final class SourceBuilder {
+        private final StringBuilder sb = new StringBuilder();
+        private int depth;
+
+        SourceBuilder line() {
+            sb.append('\n');
+            return this;
+        }
+
+        SourceBuilder line(String line) {
+            for (int i = 0; i < depth; i++) {
+                sb.append(INDENT);
+            }
+            sb.append(line).append('\n');
+            return this;
+        }
+
+        SourceBuilder indent() {
+            depth++;
+            return this;
+        }
+
+        SourceBuilder outdent() {
+            depth--;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
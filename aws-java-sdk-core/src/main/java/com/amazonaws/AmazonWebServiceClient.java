@@ -29,6 +29,7 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompactSupport;
 import com.amazonaws.util.AwsHostNameUtils;
 import com.amazonaws.util.Classes;
 import com.amazonaws.util.HttpUtils;
@@ -94,9 +95,15 @@ public abstract class AmazonWebServiceClient {
     /** Optional offset (in seconds) to use when signing requests */
     protected int timeOffset;
 
-    /** AWS signer for authenticating requests. */
+    /** AWS signer for authenticating requests; computed on first use. */
     private volatile Signer signer;
 
+    /**
+     * Computes {@link #signer} the first time it is needed, so that setting
+     * the endpoint or region doesn't pay for the signer lookup up front.
+     */
+    private volatile SignerResolver signerResolver;
+
     /**
      * The cached service abbreviation for this service, used for identifying
      * service endpoints by region, identifying the necessary signer, etc.
@@ -143,7 +150,20 @@ public abstract class AmazonWebServiceClient {
      * Note, however, the signer configured for S3 is incomplete at this stage
      * as the information on the S3 bucket and key is not yet known.
      */
-    protected Signer getSigner() { return signer; }
+    protected Signer getSigner() {
+        Signer result = signer;
+        if (result == null) {
+            synchronized (this) {
+                result = signer;
+                if (result == null && signerResolver != null) {
+                    result = signerResolver.resolve();
+                    signer = result;
+                    signerResolver = null;
+                }
+            }
+        }
+        return result;
+    }
 
     /**
      * Overrides the default endpoint for this client. Callers can use this
@@ -174,13 +194,23 @@ public abstract class AmazonWebServiceClient {
      */
     public void setEndpoint(String endpoint) throws IllegalArgumentException {
         URI uri = toURI(endpoint);
-        Signer signer = computeSignerByURI(uri, signerRegionOverride, false);
         synchronized(this)  {
             this.endpoint = uri;
-            this.signer = signer;
+            resolveSignerLater(new SignerResolver(uri, signerRegionOverride, false));
         }
     }
 
+    /**
+     * Opens {@link ClientConfiguration#getConnectionPoolWarmUpSize()}
+     * connections to this client's endpoint in the background, unless the
+     * connection pool has already been warmed up. Otherwise the pool is warmed
+     * up for the endpoint of the first request. Call it after setting the
+     * endpoint or region, as the pool is only warmed up once.
+     */
+    public void warmUpConnectionPool() {
+        client.warmUpConnectionPool(endpoint);
+    }
+
     /** Returns the endpoint as a URI. */
     private URI toURI(String endpoint) throws IllegalArgumentException {
         return HttpUtils.toUri(endpoint, clientConfiguration);
@@ -228,10 +258,9 @@ public abstract class AmazonWebServiceClient {
     @Deprecated
     public void setEndpoint(String endpoint, String serviceName, String regionId) {
         URI uri = toURI(endpoint);
-        Signer signer = computeSignerByServiceRegion(serviceName, regionId,
-                regionId, true);
         synchronized(this)  {
-            this.signer = signer;
+            resolveSignerLater(new SignerResolver(serviceName, regionId,
+                    regionId, true));
             this.endpoint = uri;
             this.signerRegionOverride = regionId;
         }
@@ -248,6 +277,54 @@ public abstract class AmazonWebServiceClient {
      */
     @Deprecated protected void configSigner(String serviceName, String regionId) {}
 
+    /**
+     * Discards the current signer; the given resolver computes the new one
+     * when {@link #getSigner()} is next called. Must be called while holding
+     * the lock on this client.
+     */
+    private void resolveSignerLater(SignerResolver resolver) {
+        this.signerResolver = resolver;
+        this.signer = null;
+    }
+
+    /**
+     * Captures the arguments of a signer computation so that it can be
+     * deferred until the signer is actually used.
+     */
+    private final class SignerResolver {
+        private final URI uri;
+        private final String serviceName;
+        private final String regionId;
+        private final String signerRegionOverride;
+        private final boolean isRegionIdAsSignerParam;
+
+        SignerResolver(URI uri, String signerRegionOverride,
+                boolean isRegionIdAsSignerParam) {
+            this.uri = uri;
+            this.serviceName = null;
+            this.regionId = null;
+            this.signerRegionOverride = signerRegionOverride;
+            this.isRegionIdAsSignerParam = isRegionIdAsSignerParam;
+        }
+
+        SignerResolver(String serviceName, String regionId,
+                String signerRegionOverride, boolean isRegionIdAsSignerParam) {
+            this.uri = null;
+            this.serviceName = serviceName;
+            this.regionId = regionId;
+            this.signerRegionOverride = signerRegionOverride;
+            this.isRegionIdAsSignerParam = isRegionIdAsSignerParam;
+        }
+
+        Signer resolve() {
+            return uri == null
+                    ? computeSignerByServiceRegion(serviceName, regionId,
+                            signerRegionOverride, isRegionIdAsSignerParam)
+                    : computeSignerByURI(uri, signerRegionOverride,
+                            isRegionIdAsSignerParam);
+        }
+    }
+
     /**
      * Returns the signer based on the given URI and the current AWS client
      * configuration. Currently only the SQS client can have different region on
@@ -361,10 +438,10 @@ public abstract class AmazonWebServiceClient {
         final String serviceNameForSigner = getServiceNameIntern();
         URI uri = new DefaultServiceEndpointBuilder(serviceNameForEndpoint, clientConfiguration.getProtocol()
                 .toString()).withRegion(region).getServiceEndpoint();
-        Signer signer = computeSignerByServiceRegion(serviceNameForSigner, region.getName(), signerRegionOverride, false);
         synchronized (this) {
             this.endpoint = uri;
-            this.signer = signer;
+            resolveSignerLater(new SignerResolver(serviceNameForSigner,
+                    region.getName(), signerRegionOverride, false));
         }
     }
 
@@ -454,6 +531,10 @@ public abstract class AmazonWebServiceClient {
     }
 
     protected ExecutionContext createExecutionContext(AmazonWebServiceRequest req) {
+        if (isCompactMetricsSupported(req)) {
+            return new ExecutionContext(requestHandler2s,
+                    new AWSRequestMetricsCompactSupport(), this);
+        }
         boolean isMetricsEnabled = isRequestMetricsEnabled(req) || isProfilingEnabled();
         return new ExecutionContext(requestHandler2s, isMetricsEnabled, this);
     }
@@ -496,6 +577,18 @@ public abstract class AmazonWebServiceClient {
         return isRMCEnabledAtClientOrSdkLevel();
     }
 
+    /**
+     * Returns true if the request metric collector in effect for the given
+     * request is enabled and can read the metrics in their compact form.
+     */
+    private boolean isCompactMetricsSupported(AmazonWebServiceRequest req) {
+        RequestMetricCollector c = req.getRequestMetricCollector();
+        if (c == null) {
+            c = requestMetricCollector();
+        }
+        return c != null && c.isEnabled() && c.isCompactMetricsSupported();
+    }
+
     /**
      * Returns true if request metric collection is enabled at the service
      * client or AWS SDK level request; false otherwise.
@@ -757,9 +850,8 @@ public abstract class AmazonWebServiceClient {
      * normally called except for AWS internal development purposes.
      */
     public final void setSignerRegionOverride(String signerRegionOverride) {
-        Signer signer = computeSignerByURI(endpoint, signerRegionOverride, true);
         synchronized(this)  {
-            this.signer = signer;
+            resolveSignerLater(new SignerResolver(endpoint, signerRegionOverride, true));
             this.signerRegionOverride = signerRegionOverride;
         }
     }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.SdkTestInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * A dns resolver that caches the addresses returned by another resolver and
+ * spreads new connections across all of them.
+ * <p>
+ * Addresses are served from the cache for {@link #getTimeToLiveMillis()}.
+ * After that, the first lookup of a host triggers a refresh in the background
+ * and keeps returning the cached addresses, so request threads never wait on
+ * DNS except for the first lookup of a host. If the refresh fails, the stale
+ * addresses keep being served for up to {@link #getMaxStaleMillis()} before
+ * the lookup is retried synchronously and its failure reported to the caller.
+ * <p>
+ * Every lookup returns the addresses in a rotated order, so connections are
+ * opened to all addresses of the host rather than piling onto the first one.
+ * Addresses marked as unhealthy, for example because connecting to them timed
+ * out, are moved to the end of the list for {@link #getUnhealthyMillis()} and
+ * are only used if all other addresses fail.
+ * <p>
+ * To use it, set it on the {@link ClientConfiguration} of the client:
+ * <pre>
+ * new ClientConfiguration().withDnsResolver(new CachingDnsResolver());
+ * </pre>
+ */
+@ThreadSafe
+public class CachingDnsResolver implements DnsResolver {
+
+    private static final Log LOG = LogFactory.getLog(CachingDnsResolver.class);
+
+    /** The default time addresses are cached, which matches the JVM's own positive lookup cache. */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 30 * 1000;
+
+    /** The default time stale addresses are served while they cannot be refreshed. */
+    public static final long DEFAULT_MAX_STALE_MILLIS = 5 * 60 * 1000;
+
+    /** The default time an address is avoided after connecting to it failed. */
+    public static final long DEFAULT_UNHEALTHY_MILLIS = 30 * 1000;
+
+    /** The maximum number of hosts kept in the cache. */
+    static final int MAX_CACHED_HOSTS = 1024;
+
+    private final DnsResolver delegate;
+    private final long timeToLiveMillis;
+    private final long maxStaleMillis;
+    private final long unhealthyMillis;
+    private final Executor refresher;
+
+    private final ConcurrentMap<String, Entry> cache =
+            new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<InetAddress, Long> unhealthyUntil =
+            new ConcurrentHashMap<InetAddress, Long>();
+
+    /**
+     * Creates a caching resolver on top of {@link SystemDefaultDnsResolver}
+     * with the default settings.
+     */
+    public CachingDnsResolver() {
+        this(new SystemDefaultDnsResolver());
+    }
+
+    /**
+     * Creates a caching resolver on top of the given resolver with the default
+     * settings.
+     */
+    public CachingDnsResolver(DnsResolver delegate) {
+        this(delegate, DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_MAX_STALE_MILLIS,
+                DEFAULT_UNHEALTHY_MILLIS);
+    }
+
+    /**
+     * @param delegate
+     *            The resolver to look up hosts with.
+     * @param timeToLiveMillis
+     *            How long addresses are served before they are refreshed.
+     * @param maxStaleMillis
+     *            How long past their time to live addresses are served while
+     *            they cannot be refreshed.
+     * @param unhealthyMillis
+     *            How long an address marked as unhealthy is avoided.
+     */
+    public CachingDnsResolver(DnsResolver delegate, long timeToLiveMillis,
+            long maxStaleMillis, long unhealthyMillis) {
+        this(delegate, timeToLiveMillis, maxStaleMillis, unhealthyMillis,
+                newRefresher());
+    }
+
+    @SdkTestInternalApi
+    CachingDnsResolver(DnsResolver delegate, long timeToLiveMillis,
+            long maxStaleMillis, long unhealthyMillis, Executor refresher) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate cannot be null");
+        }
+        if (timeToLiveMillis < 0 || maxStaleMillis < 0 || unhealthyMillis < 0) {
+            throw new IllegalArgumentException("durations must not be negative");
+        }
+        this.delegate = delegate;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.unhealthyMillis = unhealthyMillis;
+        this.refresher = refresher;
+    }
+
+    /**
+     * A single thread, which goes away when there is nothing to refresh.
+     */
+    private static Executor newRefresher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "aws-sdk-dns-refresh-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = currentTimeMillis();
+        Entry entry = cache.get(host);
+        if (entry == null || now - entry.resolvedAt >= timeToLiveMillis + maxStaleMillis) {
+            entry = lookup(host);
+        } else if (now >= entry.refreshAfter) {
+            refresh(host, entry);
+        }
+        return entry.nextOrder(now);
+    }
+
+    /**
+     * Marks the given address as unhealthy, which moves it to the end of the
+     * addresses returned for its host for {@link #getUnhealthyMillis()}.
+     */
+    public void markUnhealthy(InetAddress address) {
+        if (address != null && unhealthyMillis > 0) {
+            unhealthyUntil.put(address, currentTimeMillis() + unhealthyMillis);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Marked " + address + " as unhealthy");
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given address has not been marked as unhealthy
+     * recently.
+     */
+    public boolean isHealthy(InetAddress address) {
+        return isHealthy(address, currentTimeMillis());
+    }
+
+    /** Discards all cached addresses and health information. */
+    public void clear() {
+        cache.clear();
+        unhealthyUntil.clear();
+    }
+
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    public long getMaxStaleMillis() {
+        return maxStaleMillis;
+    }
+
+    public long getUnhealthyMillis() {
+        return unhealthyMillis;
+    }
+
+    @SdkTestInternalApi
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isHealthy(InetAddress address, long now) {
+        Long until = unhealthyUntil.get(address);
+        if (until == null) {
+            return true;
+        }
+        if (now >= until) {
+            unhealthyUntil.remove(address, until);
+            return true;
+        }
+        return false;
+    }
+
+    private Entry lookup(String host) throws UnknownHostException {
+        InetAddress[] addresses = delegate.resolve(host);
+        if (addresses == null || addresses.length == 0) {
+            throw new UnknownHostException(host);
+        }
+        Entry entry = new Entry(addresses.clone(), currentTimeMillis());
+        if (cache.size() >= MAX_CACHED_HOSTS) {
+            evictExpired();
+        }
+        cache.put(host, entry);
+        return entry;
+    }
+
+    private void refresh(final String host, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lookup(host);
+                    } catch (Exception e) {
+                        LOG.debug("Unable to refresh the addresses of " + host
+                                + ", the cached addresses are used for now", e);
+                        entry.refreshAfter = currentTimeMillis() + timeToLiveMillis;
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The refresh will be attempted again on the next lookup
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Keeps the cache bounded when many different hosts are looked up, such
+     * as with virtual hosted S3 buckets.
+     */
+    private void evictExpired() {
+        long now = currentTimeMillis();
+        for (Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator(); it.hasNext();) {
+            if (now - it.next().getValue().resolvedAt >= timeToLiveMillis) {
+                it.remove();
+            }
+        }
+        for (Iterator<String> it = cache.keySet().iterator();
+                it.hasNext() && cache.size() >= MAX_CACHED_HOSTS;) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private class Entry {
+        private final InetAddress[] addresses;
+        private final long resolvedAt;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long refreshAfter;
+
+        Entry(InetAddress[] addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+            this.refreshAfter = resolvedAt + timeToLiveMillis;
+        }
+
+        /**
+         * Returns the addresses rotated by one position from the previous
+         * call, with the unhealthy ones moved to the end.
+         */
+        InetAddress[] nextOrder(long now) {
+            int length = addresses.length;
+            int start = (next.getAndIncrement() & Integer.MAX_VALUE) % length;
+            InetAddress[] ordered = new InetAddress[length];
+            List<InetAddress> unhealthy = null;
+            int i = 0;
+            for (int j = 0; j < length; j++) {
+                InetAddress address = addresses[(start + j) % length];
+                if (isHealthy(address, now)) {
+                    ordered[i++] = address;
+                } else {
+                    if (unhealthy == null) {
+                        unhealthy = new ArrayList<InetAddress>();
+                    }
+                    unhealthy.add(address);
+                }
+            }
+            if (unhealthy != null) {
+                for (InetAddress address : unhealthy) {
+                    ordered[i++] = address;
+                }
+            }
+            return ordered;
+        }
+    }
+}
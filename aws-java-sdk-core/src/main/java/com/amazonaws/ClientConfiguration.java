@@ -15,8 +15,10 @@
 package com.amazonaws;
 
 import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.retry.HedgingPolicy;
 import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.tracing.RequestTracer;
 import com.amazonaws.util.VersionInfoUtils;
 import org.apache.http.annotation.NotThreadSafe;
 
@@ -50,6 +52,15 @@ public class ClientConfiguration {
     /** The default max connection pool size. */
     public static final int DEFAULT_MAX_CONNECTIONS = 50;
 
+    /**
+     * The default max number of connections per route (target host), which means the whole pool
+     * can be used by a single route.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = -1;
+
+    /** The default number of connections opened when a client is created, which is none. */
+    public static final int DEFAULT_CONNECTION_POOL_WARM_UP_SIZE = 0;
+
     /**
      * The default on whether to utilize the USE_EXPECT_CONTINUE handshake for operations. Currently
      * only honored for PUT operations.
@@ -154,6 +165,15 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /**
+     * The maximum number of open HTTP connections to a single route (target host). A negative
+     * value means {@link #maxConnections}.
+     */
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    /** The number of connections to open to the endpoint when the client is created. */
+    private int connectionPoolWarmUpSize = DEFAULT_CONNECTION_POOL_WARM_UP_SIZE;
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered over an established,
      * open connection before the connection is timed out. A value of 0 means infinity, and is not
@@ -247,6 +267,18 @@ public class ClientConfiguration {
      */
     private DnsResolver dnsResolver = new SystemDefaultDnsResolver();
 
+    /**
+     * The tracer receiving the tracing spans of the requests; or null if the
+     * requests are not traced.
+     */
+    private RequestTracer requestTracer;
+
+    /**
+     * The hedging policy of the idempotent reads; or null if requests are not
+     * hedged.
+     */
+    private HedgingPolicy hedgingPolicy;
+
     /**
      * An instance of {@link SecureRandom} configured by the user; or the JDK default will be used
      * if it is set to null or not explicitly configured.
@@ -277,6 +309,8 @@ public class ClientConfiguration {
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout = other.connectionTimeout;
         this.maxConnections = other.maxConnections;
+        this.maxConnectionsPerRoute = other.maxConnectionsPerRoute;
+        this.connectionPoolWarmUpSize = other.connectionPoolWarmUpSize;
         this.maxErrorRetry = other.maxErrorRetry;
         this.retryPolicy = other.retryPolicy;
         this.throttleRetries = other.throttleRetries;
@@ -300,6 +334,8 @@ public class ClientConfiguration {
         this.signerOverride = other.signerOverride;
         this.responseMetadataCacheSize = other.responseMetadataCacheSize;
         this.dnsResolver = other.dnsResolver;
+        this.requestTracer = other.requestTracer;
+        this.hedgingPolicy = other.hedgingPolicy;
         this.useExpectContinue = other.useExpectContinue;
         this.apacheHttpClientConfig = new ApacheHttpClientConfig(other.apacheHttpClientConfig);
     }
@@ -384,6 +420,83 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of allowed open HTTP connections to a single route (target
+     * host), or a negative value if a single route may use all {@link #getMaxConnections()}
+     * connections.
+     *
+     * @return The maximum number of allowed open HTTP connections per route.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to a single route (target host).
+     * Clients that talk to several hosts, such as S3 clients using virtual hosted buckets, can use
+     * this to keep one busy host from taking all connections of the pool. By default, it is set to
+     * {@value #DEFAULT_MAX_CONNECTIONS_PER_ROUTE}, which means a single route may use all
+     * {@link #getMaxConnections()} connections.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of allowed open HTTP connections per route.
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to a single route (target host)
+     * and returns the updated ClientConfiguration object.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of allowed open HTTP connections per route.
+     * @return The updated ClientConfiguration object.
+     * @see #setMaxConnectionsPerRoute(int)
+     */
+    public ClientConfiguration withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+        return this;
+    }
+
+    /**
+     * Returns the number of connections opened to the endpoint of the client's first request.
+     */
+    public int getConnectionPoolWarmUpSize() {
+        return connectionPoolWarmUpSize;
+    }
+
+    /**
+     * Sets the number of connections opened to the endpoint of the client's first request, so
+     * that the requests that follow don't pay for the TCP and TLS handshakes. The pool is warmed
+     * up once, for the endpoint the client actually uses, or on
+     * {@link AmazonWebServiceClient#warmUpConnectionPool()}. The connections are opened in the
+     * background and returned to the pool, where they are subject to
+     * {@link #getConnectionMaxIdleMillis()} like any other idle connection. The number is capped
+     * one below the maximum number of connections of the route, so that requests always have a
+     * connection left. By default, it is set to {@value #DEFAULT_CONNECTION_POOL_WARM_UP_SIZE}.
+     *
+     * @param connectionPoolWarmUpSize
+     *            The number of connections to open up front.
+     */
+    public void setConnectionPoolWarmUpSize(int connectionPoolWarmUpSize) {
+        this.connectionPoolWarmUpSize = connectionPoolWarmUpSize;
+    }
+
+    /**
+     * Sets the number of connections opened to the endpoint of the client's first request and
+     * returns the updated ClientConfiguration object.
+     *
+     * @param connectionPoolWarmUpSize
+     *            The number of connections to open up front.
+     * @return The updated ClientConfiguration object.
+     * @see #setConnectionPoolWarmUpSize(int)
+     */
+    public ClientConfiguration withConnectionPoolWarmUpSize(int connectionPoolWarmUpSize) {
+        setConnectionPoolWarmUpSize(connectionPoolWarmUpSize);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -1608,6 +1721,68 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the tracer receiving the tracing spans of the requests made by
+     * the client; or null if the requests are not traced.
+     */
+    public RequestTracer getRequestTracer() {
+        return requestTracer;
+    }
+
+    /**
+     * Sets the tracer receiving the tracing spans of the requests made by the
+     * client, with the latency of every attempt broken down into its phases;
+     * or null to disable tracing, which is the default.
+     *
+     * @see RequestTracer
+     */
+    public void setRequestTracer(final RequestTracer requestTracer) {
+        this.requestTracer = requestTracer;
+    }
+
+    /**
+     * Sets the tracer receiving the tracing spans of the requests made by the
+     * client.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setRequestTracer(RequestTracer)
+     */
+    public ClientConfiguration withRequestTracer(final RequestTracer requestTracer) {
+        setRequestTracer(requestTracer);
+        return this;
+    }
+
+    /**
+     * Returns the hedging policy of the idempotent reads made by the client;
+     * or null if requests are not hedged.
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging policy of the idempotent reads made by the client; or
+     * null to disable hedging, which is the default. When enabled, a second
+     * attempt is sent for an eligible request that has not received a
+     * response after the hedging delay, and the first response is used.
+     *
+     * @see HedgingPolicy
+     */
+    public void setHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging policy of the idempotent reads made by the client.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setHedgingPolicy(HedgingPolicy)
+     */
+    public ClientConfiguration withHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+        setHedgingPolicy(hedgingPolicy);
+        return this;
+    }
+
     /**
      * Returns the response metadata cache size.
      */
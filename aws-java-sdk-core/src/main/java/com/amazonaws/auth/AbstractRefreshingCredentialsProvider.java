@@ -0,0 +1,372 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Base class of credentials providers whose credentials expire, and that refresh them in the
+ * background before they do.
+ * <p>
+ * Once credentials have been loaded, a refresh is scheduled on a scheduler shared by all
+ * providers, at a random time between {@link #getPrefetchMillis()} and half way to
+ * {@link #getStaleMillis()} before the credentials expire, so that providers created together do
+ * not all refresh at the same time. Callers keep getting the cached credentials while the refresh
+ * is under way, and if it fails, it is retried in the background. Only once the credentials are
+ * within {@link #getStaleMillis()} of expiring, or if there are none yet, do callers load them
+ * themselves.
+ * <p>
+ * Refreshes are single-flight: concurrent callers needing new credentials wait for the one load
+ * under way rather than start their own.
+ *
+ * @param <T>
+ *            the type of credentials provided
+ */
+@ThreadSafe
+public abstract class AbstractRefreshingCredentialsProvider<T extends AWSCredentials>
+        implements AWSCredentialsProvider {
+
+    private static final Log LOG = LogFactory.getLog(AbstractRefreshingCredentialsProvider.class);
+
+    /**
+     * The time before a failed background refresh is attempted again, and the
+     * minimum time between two refreshes.
+     */
+    private static final long MIN_REFRESH_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Random RANDOM = new Random();
+
+    private final long prefetchMillis;
+    private final long staleMillis;
+    private final long refreshIntervalMillis;
+
+    /** Held while loading credentials. */
+    private final Object loadLock = new Object();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile T credentials;
+    private volatile Date expiration;
+    private volatile long lastLoadMillis;
+    private volatile long lastAttemptMillis;
+
+    /** Guarded by loadLock. */
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * @param prefetchMillis
+     *            the time before expiry from which credentials are refreshed in the background
+     * @param staleMillis
+     *            the time before expiry from which callers wait for new credentials
+     * @param refreshIntervalMillis
+     *            the time after a load from which credentials are refreshed in the background,
+     *            whatever their expiry, or 0 for never
+     */
+    protected AbstractRefreshingCredentialsProvider(
+            long prefetchMillis,
+            long staleMillis,
+            long refreshIntervalMillis) {
+
+        if (staleMillis < 0 || prefetchMillis < staleMillis) {
+            throw new IllegalArgumentException(
+                    "Prefetch time must be at least the stale time, which must not be negative");
+        }
+        this.prefetchMillis = prefetchMillis;
+        this.staleMillis = staleMillis;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * Loads new credentials, and stores them with {@link #setCredentials(AWSCredentials, Date)}.
+     * Called by one thread at a time.
+     *
+     * @throws AmazonClientException
+     *             if the credentials could not be loaded
+     */
+    protected abstract void loadCredentials();
+
+    /**
+     * Returns the current credentials, loading them first if there are none or they are about to
+     * expire. Never blocks while the current credentials are still fresh.
+     */
+    @Override
+    public T getCredentials() {
+        if (isStale()) {
+            loadBlocking();
+        } else if (isRefreshDue()
+                && System.currentTimeMillis() - lastAttemptMillis >= MIN_REFRESH_DELAY_MILLIS) {
+            refreshAsync();
+        }
+        T current = getCurrentCredentials();
+        if (current == null) {
+            throw new AmazonClientException("Unable to load credentials");
+        }
+        return current;
+    }
+
+    /**
+     * Loads new credentials, waiting for them.
+     */
+    @Override
+    public void refresh() {
+        synchronized (loadLock) {
+            attemptLoad();
+            loaded();
+        }
+    }
+
+    /**
+     * Starts a refresh in the background, unless one is already under way.
+     */
+    protected void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Scheduler.INSTANCE.execute(new RefreshTask(this));
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores newly loaded credentials.
+     *
+     * @param expiration
+     *            the expiry of the credentials, or null if unknown
+     */
+    protected void setCredentials(T credentials, Date expiration) {
+        this.expiration = expiration;
+        this.credentials = credentials;
+    }
+
+    /**
+     * Forgets the current credentials, so that they are loaded again on next use.
+     */
+    protected void clearCredentials() {
+        this.credentials = null;
+        this.expiration = null;
+    }
+
+    /**
+     * @return the current credentials, or null if there are none
+     */
+    protected T getCurrentCredentials() {
+        return credentials;
+    }
+
+    /**
+     * @return the expiry of the current credentials, or null if unknown
+     */
+    protected Date getCurrentExpiration() {
+        return expiration;
+    }
+
+    protected long getPrefetchMillis() {
+        return prefetchMillis;
+    }
+
+    protected long getStaleMillis() {
+        return staleMillis;
+    }
+
+    /**
+     * @return whether there are no credentials, or they are about to expire, so that callers must
+     *         wait for new ones
+     */
+    protected boolean isStale() {
+        if (getCurrentCredentials() == null) {
+            return true;
+        }
+        Date expiry = getCurrentExpiration();
+        return expiry != null
+                && expiry.getTime() - System.currentTimeMillis() < getStaleMillis();
+    }
+
+    /**
+     * @return whether the credentials should be refreshed
+     */
+    protected boolean isRefreshDue() {
+        return System.currentTimeMillis() >= nextRefreshMillis();
+    }
+
+    /**
+     * @return whether the current credentials have expired
+     */
+    protected boolean isExpired() {
+        Date expiry = getCurrentExpiration();
+        return expiry != null && expiry.getTime() < System.currentTimeMillis();
+    }
+
+    private long nextRefreshMillis() {
+        if (getCurrentCredentials() == null) {
+            return 0;
+        }
+        long next = Long.MAX_VALUE;
+        Date expiry = getCurrentExpiration();
+        if (expiry != null) {
+            next = expiry.getTime() - getPrefetchMillis();
+        }
+        if (refreshIntervalMillis > 0) {
+            next = Math.min(next, lastLoadMillis + refreshIntervalMillis);
+        }
+        return next;
+    }
+
+    private void loadBlocking() {
+        synchronized (loadLock) {
+            // Loaded by another caller while waiting for the lock
+            if (!isStale()) {
+                return;
+            }
+            try {
+                attemptLoad();
+            } catch (RuntimeException e) {
+                if (getCurrentCredentials() == null || isExpired()) {
+                    throw e;
+                }
+                // Still usable for a little while
+                LOG.debug("Unable to load new credentials, using current ones", e);
+                scheduleRefresh(MIN_REFRESH_DELAY_MILLIS);
+                return;
+            }
+            loaded();
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            synchronized (loadLock) {
+                if (!isRefreshDue()) {
+                    return;
+                }
+                try {
+                    attemptLoad();
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to refresh credentials in the background", e);
+                    scheduleRefresh(MIN_REFRESH_DELAY_MILLIS);
+                    return;
+                }
+                loaded();
+            }
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /** Must be called with loadLock held. */
+    private void attemptLoad() {
+        lastAttemptMillis = System.currentTimeMillis();
+        loadCredentials();
+    }
+
+    /** Must be called with loadLock held. */
+    private void loaded() {
+        lastLoadMillis = System.currentTimeMillis();
+
+        long next = nextRefreshMillis();
+        if (next == Long.MAX_VALUE) {
+            // Never expires
+            return;
+        }
+        long delay = next - System.currentTimeMillis();
+        // Spread refreshes over the first half of the prefetch window
+        long window = (getPrefetchMillis() - getStaleMillis()) / 2;
+        if (window > 0) {
+            delay += (long) (RANDOM.nextDouble() * window);
+        }
+        scheduleRefresh(Math.max(delay, MIN_REFRESH_DELAY_MILLIS));
+    }
+
+    /** Must be called with loadLock held. */
+    private void scheduleRefresh(long delayMillis) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = Scheduler.INSTANCE.schedule(
+                new ScheduledRefreshTask(new WeakReference<AbstractRefreshingCredentialsProvider<?>>(this)),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class RefreshTask implements Runnable {
+
+        private final AbstractRefreshingCredentialsProvider<?> provider;
+
+        RefreshTask(AbstractRefreshingCredentialsProvider<?> provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void run() {
+            provider.refreshInBackground();
+        }
+    }
+
+    /**
+     * Refreshes a provider at a later time, unless it is no longer in use by then.
+     */
+    private static final class ScheduledRefreshTask implements Runnable {
+
+        private final WeakReference<AbstractRefreshingCredentialsProvider<?>> provider;
+
+        ScheduledRefreshTask(WeakReference<AbstractRefreshingCredentialsProvider<?>> provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void run() {
+            AbstractRefreshingCredentialsProvider<?> target = provider.get();
+            if (target != null && target.refreshing.compareAndSet(false, true)) {
+                target.refreshInBackground();
+            }
+        }
+    }
+
+    /**
+     * The daemon threads shared by all providers, created on first use.
+     */
+    private static final class Scheduler {
+
+        private static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            final AtomicInteger count = new AtomicInteger();
+            return new ScheduledThreadPoolExecutor(2, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "aws-credentials-refresh-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
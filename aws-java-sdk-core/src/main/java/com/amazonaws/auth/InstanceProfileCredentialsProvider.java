@@ -16,9 +16,6 @@ package com.amazonaws.auth;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,8 +30,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 /**
  * Credentials provider implementation that loads credentials from the Amazon
  * EC2 Instance Metadata Service.
+ * <p>
+ * Credentials are refreshed in the background when they are close to expiring,
+ * or an hour after they were loaded, so that callers do not wait for the
+ * metadata service once credentials have been loaded.
  */
-public class InstanceProfileCredentialsProvider implements AWSCredentialsProvider {
+public class InstanceProfileCredentialsProvider
+        extends AbstractRefreshingCredentialsProvider<AWSCredentials> {
 
     private static final Log LOG = LogFactory.getLog(InstanceProfileCredentialsProvider.class);
 
@@ -50,6 +52,13 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      */
     private static final int EXPIRATION_THRESHOLD = 1000 * 60 * 15;
 
+    /**
+     * The threshold before credentials expire (in milliseconds) at which
+     * callers wait for new credentials, rather than use the current ones while
+     * new ones are loaded in the background.
+     */
+    private static final int STALE_THRESHOLD = 1000 * 60;
+
     /** The name of the Json Object that contains the access key.*/
     private static final String ACCESS_KEY_ID = "AccessKeyId";
 
@@ -59,13 +68,6 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     /** The name of the Json Object that contains the token.*/
     private static final String TOKEN = "Token";
 
-    /**
-     * The wait time, after which the background thread initiates a refresh to
-     * load latest credentials if needed.
-     */
-    private static final int ASYNC_REFRESH_INTERVAL_TIME_MINUTES= 1;
-
-
     /** The current instance profile credentials */
     protected volatile AWSCredentials credentials;
 
@@ -75,64 +77,60 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     /** The time of the last attempt to check for new credentials */
     protected volatile Date lastInstanceProfileCheck;
 
-    /**
-     * The executor service used for refreshing the credentials in the
-     * background.
-     */
-    private volatile ScheduledExecutorService executor;
-
     public InstanceProfileCredentialsProvider() {
         this(false);
     }
 
     /**
-     * Spins up a new thread to refresh the credentials asynchronously if
-     * refreshCredentialsAsync is set to true, otherwise the credentials will be
-     * refreshed from the instance metadata service synchronously,
+     * Starts loading the credentials in the background right away if
+     * refreshCredentialsAsync is set to true, otherwise they are loaded on
+     * first use. Either way, they are refreshed in the background afterwards.
      *
      * @param refreshCredentialsAsync
-     *            true if credentials needs to be refreshed asynchronously else
-     *            false.
+     *            true if credentials should be loaded ahead of first use.
      */
     public InstanceProfileCredentialsProvider(boolean refreshCredentialsAsync) {
+        super(EXPIRATION_THRESHOLD, STALE_THRESHOLD, REFRESH_THRESHOLD);
         if (refreshCredentialsAsync) {
-            executor = Executors.newScheduledThreadPool(1);
-            executor.scheduleWithFixedDelay(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        getCredentials();
-                    } catch (AmazonClientException ace) {
-                        handleError(ace);
-                    } catch (RuntimeException re) {
-                        handleError(re);
-                    } catch (Error e) {
-                        handleError(e);
-                    }
-                }
-            }, 0, ASYNC_REFRESH_INTERVAL_TIME_MINUTES, TimeUnit.MINUTES);
+            refreshAsync();
         }
     }
 
-    private void handleError(Throwable t) {
-        credentials = null;
-        LOG.error(t.getMessage(), t);
-    }
-
+    @Override
     public AWSCredentials getCredentials() {
-        if (needsToLoadCredentials())
-            loadCredentials();
+        AWSCredentials current = super.getCredentials();
         if (expired()) {
             throw new AmazonClientException(
                     "The credentials received from the Amazon EC2 metadata service have expired");
         }
-        return credentials;
+        return current;
     }
 
+    @Override
     public void refresh() {
         credentials = null;
     }
 
+    @Override
+    protected AWSCredentials getCurrentCredentials() {
+        return credentials;
+    }
+
+    @Override
+    protected Date getCurrentExpiration() {
+        return credentialsExpiration;
+    }
+
+    @Override
+    protected void clearCredentials() {
+        credentials = null;
+    }
+
+    @Override
+    protected boolean isRefreshDue() {
+        return needsToLoadCredentials();
+    }
+
     protected boolean needsToLoadCredentials() {
         if (credentials == null) return true;
 
@@ -174,9 +172,8 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
         return false;
     }
 
-    private synchronized void loadCredentials() {
-        if (!needsToLoadCredentials()) return;
-
+    @Override
+    protected void loadCredentials() {
         JsonNode accessKey;
         JsonNode secretKey;
         JsonNode node;
@@ -251,11 +248,4 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     public String toString() {
         return getClass().getSimpleName();
     }
-
-    @Override
-    protected void finalize() throws Throwable {
-        if (executor != null) {
-            executor.shutdownNow();
-        }
-    }
 }
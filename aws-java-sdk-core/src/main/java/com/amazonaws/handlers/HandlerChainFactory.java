@@ -19,7 +19,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.util.ClassLoaderHelper;
@@ -29,6 +32,13 @@ import com.amazonaws.util.ClassLoaderHelper;
  */
 public class HandlerChainFactory {
 
+    /**
+     * The handler class names listed in each resource, so that the resource
+     * is only located and read once no matter how many clients are built.
+     */
+    private static final ConcurrentMap<String, List<String>> HANDLER_CLASS_NAMES =
+            new ConcurrentHashMap<String, List<String>>();
+
     /**
      * For backward compatibility, constructs a new request handler chain
      * adapted to {@link RequestHandler2} by analyzing the specified classpath
@@ -62,20 +72,9 @@ public class HandlerChainFactory {
 
     private List<RequestHandler2> createRequestHandlerChain(String resource, Class<?> handlerApiClass) {
         List<RequestHandler2> handlers = new ArrayList<RequestHandler2>();
-        BufferedReader reader = null;
 
         try {
-            InputStream input = getClass().getResourceAsStream(resource);
-            if (input == null) return handlers;
-
-            reader = new BufferedReader(new InputStreamReader(input));
-            while (true) {
-                String requestHandlerClassName = reader.readLine();
-                if (requestHandlerClassName == null)
-                    break;
-                requestHandlerClassName = requestHandlerClassName.trim();
-                if (requestHandlerClassName.equals("")) 
-                    continue;
+            for (String requestHandlerClassName : getHandlerClassNames(resource)) {
                 Class<?> requestHandlerClass = ClassLoaderHelper.loadClass(
                     requestHandlerClassName,
                     handlerApiClass, getClass());
@@ -102,6 +101,36 @@ public class HandlerChainFactory {
         } catch (Exception e) {
             throw new AmazonClientException("Unable to instantiate request handler chain for client: "
                     + e.getMessage(), e);
+        }
+        return handlers;
+    }
+
+    /**
+     * Returns the handler class names listed in the given classpath resource,
+     * or an empty list if there is no such resource.
+     */
+    private List<String> getHandlerClassNames(String resource) throws IOException {
+        List<String> classNames = HANDLER_CLASS_NAMES.get(resource);
+        if (classNames != null) {
+            return classNames;
+        }
+
+        classNames = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            InputStream input = getClass().getResourceAsStream(resource);
+            if (input != null) {
+                reader = new BufferedReader(new InputStreamReader(input));
+                while (true) {
+                    String requestHandlerClassName = reader.readLine();
+                    if (requestHandlerClassName == null)
+                        break;
+                    requestHandlerClassName = requestHandlerClassName.trim();
+                    if (requestHandlerClassName.equals(""))
+                        continue;
+                    classNames.add(requestHandlerClassName);
+                }
+            }
         } finally {
             try {
                 if (reader != null) {
@@ -110,6 +139,8 @@ public class HandlerChainFactory {
             } catch (IOException e) {
             }
         }
-        return handlers;
+        classNames = Collections.unmodifiableList(classNames);
+        HANDLER_CLASS_NAMES.putIfAbsent(resource, classNames);
+        return classNames;
     }
 }
@@ -26,6 +26,8 @@ import com.amazonaws.event.ProgressInputStream;
 import com.amazonaws.event.ProgressListener;
 import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.conn.ConnectionPoolStatistics;
+import com.amazonaws.http.conn.ConnectionPoolStatisticsProvider;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.http.exception.HttpRequestTimeoutException;
 import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
@@ -44,6 +46,10 @@ import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
 import com.amazonaws.retry.internal.AuthRetryParameters;
+import com.amazonaws.tracing.RequestTracer;
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
 import com.amazonaws.util.*;
 import com.amazonaws.util.AWSRequestMetrics.Field;
 import org.apache.commons.logging.Log;
@@ -51,12 +57,17 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.http.*;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.BasicHttpContext;
@@ -69,6 +80,8 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.amazonaws.SDKGlobalConfiguration.PROFILING_SYSTEM_PROPERTY;
 import static com.amazonaws.event.SDKProgressPublisher.*;
@@ -142,6 +155,12 @@ public class AmazonHttpClient {
     /** Retry capacity manager, used to manage throttled retry resource */
     private final CapacityManager retryCapacity;
 
+    /** Set once the connection pool has been warmed up, so that it is only warmed up once. */
+    private final AtomicBoolean connectionPoolWarmedUp = new AtomicBoolean();
+
+    /** Sends the hedges of idempotent reads; or null if requests are not hedged. */
+    private final RequestHedger requestHedger;
+
     /**
      * Timer to enforce timeouts on the whole execution of the request (request handlers, retries,
      * backoff strategy, unmarshalling, etc)
@@ -205,6 +224,9 @@ public class AmazonHttpClient {
         int throttledRetryMaxCapacity = clientConfig.useThrottledRetries()
                 ? THROTTLED_RETRY_COST * THROTTLED_RETRIES : -1;
         this.retryCapacity = new CapacityManager(throttledRetryMaxCapacity);
+        this.requestHedger = clientConfig.getHedgingPolicy() == null ? null
+                : new RequestHedger(clientConfig.getHedgingPolicy(), httpClient,
+                        retryCapacity, THROTTLED_RETRY_COST);
     }
 
     /**
@@ -260,7 +282,7 @@ public class AmazonHttpClient {
             sf = new SdkTLSSocketFactory(HttpClientFactory.createSSLContext(config),
                     SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
         }
-        Scheme https = new Scheme("https", 443, sf);
+        Scheme https = HttpClientFactory.createScheme("https", 443, sf, config);
         schemeRegistry.register(https);
     }
 
@@ -364,6 +386,11 @@ public class AmazonHttpClient {
             mergeQueryParameters(request, customQueryParams);
         }
         final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        final List<RequestTracer> tracers = requestTracers(requestHandler2s);
+        final TraceSpan requestSpan = tracers == null ? null : newRequestSpan(request);
+        // Entered even if null, so that a request made by an untraced client
+        // while executing a traced one does not end up in the outer trace
+        final TraceSpan outerSpan = TracingContext.enter(requestSpan);
         Response<T> response = null;
         final InputStream origContent = request.getContent();
         final InputStream toBeClosed = beforeRequest(request); // for progress tracking
@@ -374,19 +401,88 @@ public class AmazonHttpClient {
         try {
             publishProgress(listener, ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
             response = executeHelper(request, responseHandler, errorResponseHandler, executionContext,
-                    requestHandler2s);
+                    requestHandler2s, tracers);
             publishProgress(listener, ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
             TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
             afterResponse(request, requestHandler2s, response, timingInfo);
             return response;
         } catch (AmazonClientException e) {
             publishProgress(listener, ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
+            if (requestSpan != null) {
+                requestSpan.addAttribute(TraceSpan.EXCEPTION, e);
+            }
             afterError(request, response, requestHandler2s, e);
             throw e;
         } finally {
             // Always close so any progress tracking would get the final events propagated.
             closeQuietly(toBeClosed, log);
             request.setContent(origContent); // restore the original content
+            TracingContext.endSpan(requestSpan);
+            TracingContext.exit(outerSpan);
+            if (requestSpan != null) {
+                for (RequestTracer tracer : tracers) {
+                    try {
+                        tracer.requestCompleted(request, requestSpan);
+                    } catch (RuntimeException ex) {
+                        log.debug("Ignoring failure of request tracer " + tracer, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tracers of the request, which are the tracer of the client
+     * configuration and the request handlers implementing
+     * {@link RequestTracer}; or null if there are none.
+     */
+    private List<RequestTracer> requestTracers(List<RequestHandler2> requestHandler2s) {
+        List<RequestTracer> tracers = null;
+        if (config.getRequestTracer() != null) {
+            tracers = new ArrayList<RequestTracer>(2);
+            tracers.add(config.getRequestTracer());
+        }
+        for (RequestHandler2 handler : requestHandler2s) {
+            if (handler instanceof RequestTracer) {
+                if (tracers == null) {
+                    tracers = new ArrayList<RequestTracer>(2);
+                }
+                tracers.add((RequestTracer) handler);
+            }
+        }
+        return tracers;
+    }
+
+    private TraceSpan newRequestSpan(Request<?> request) {
+        TraceSpan span = new TraceSpan(TraceSpan.REQUEST)
+                .addAttribute(TraceSpan.SERVICE_NAME, request.getServiceName());
+        AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+        if (awsreq != null) {
+            span.addAttribute(TraceSpan.REQUEST_TYPE, awsreq.getClass().getSimpleName());
+        }
+        return span;
+    }
+
+    /**
+     * Ends the span of an attempt, if any, and passes it to the tracers.
+     */
+    private void endAttemptSpan(Request<?> request, TraceSpan attemptSpan,
+                                ExecOneRequestParams execOneParams, List<RequestTracer> tracers) {
+        if (attemptSpan == null) {
+            return;
+        }
+        if (execOneParams.apacheResponse != null
+                && execOneParams.apacheResponse.getStatusLine() != null) {
+            attemptSpan.addAttribute(TraceSpan.STATUS_CODE,
+                    execOneParams.apacheResponse.getStatusLine().getStatusCode());
+        }
+        TracingContext.endSpan(attemptSpan);
+        for (RequestTracer tracer : tracers) {
+            try {
+                tracer.attemptCompleted(request, attemptSpan);
+            } catch (RuntimeException ex) {
+                log.debug("Ignoring failure of request tracer " + tracer, ex);
+            }
         }
     }
 
@@ -550,13 +646,15 @@ public class AmazonHttpClient {
                                           HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
                                           HttpResponseHandler<AmazonServiceException> errorResponseHandler,
                                           final ExecutionContext executionContext,
-                                          List<RequestHandler2> requestHandlers) throws InterruptedException {
+                                          List<RequestHandler2> requestHandlers,
+                                          List<RequestTracer> tracers) throws InterruptedException {
         /*
          * add the service endpoint to the logs. You can infer service name from service endpoint
          */
         final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics()
                 .addPropertyWith(Field.ServiceName, request.getServiceName())
                 .addPropertyWith(Field.ServiceEndpoint, request.getEndpoint());
+        warmUpConnectionPool(request.getEndpoint());
         // Make a copy of the original request params and headers so that we can
         // permute it in this loop and start over with the original every time.
         final Map<String, List<String>> originalParameters = new LinkedHashMap<String, List<String>>(
@@ -603,6 +701,9 @@ public class AmazonHttpClient {
                 request.setHeaders(originalHeaders);
                 request.setContent(originalContent);
             }
+            final TraceSpan attemptSpan = tracers == null ? null
+                    : TracingContext.startSpan(TraceSpan.ATTEMPT)
+                            .addAttribute(TraceSpan.ATTEMPT_NUMBER, execOneParams.requestCount);
             try {
                 Response<T> response = executeOneRequest(request, responseHandler, errorResponseHandler,
                         executionContext, awsRequestMetrics, execOneParams, requestHandlers);
@@ -613,6 +714,9 @@ public class AmazonHttpClient {
                 if (log.isInfoEnabled()) {
                     log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 }
+                if (attemptSpan != null) {
+                    attemptSpan.addAttribute(TraceSpan.EXCEPTION, ioe);
+                }
                 captureExceptionMetrics(ioe, awsRequestMetrics);
                 awsRequestMetrics.addProperty(Field.AWSRequestID, null);
                 AmazonClientException ace = new AmazonClientException(
@@ -624,6 +728,9 @@ public class AmazonHttpClient {
                 // Cache the retryable exception
                 execOneParams.retriedException = ace;
             } catch (RuntimeException e) {
+                if (attemptSpan != null) {
+                    attemptSpan.addAttribute(TraceSpan.EXCEPTION, e);
+                }
                 throw lastReset(captureExceptionMetrics(e, awsRequestMetrics), request);
             } catch (Error e) {
                 throw lastReset(captureExceptionMetrics(e, awsRequestMetrics), request);
@@ -646,6 +753,7 @@ public class AmazonHttpClient {
                         }
                     }
                 }
+                endAttemptSpan(request, attemptSpan, execOneParams, tracers);
             }
         } /* end while (true) */
     }
@@ -700,6 +808,11 @@ public class AmazonHttpClient {
          * reading any of the content until after a response is returned to the caller.
          */
         boolean leaveHttpConnectionOpen;
+        /*
+         * True if a hedge of the request was sent, consuming the same retry capacity as a
+         * throttled retry.
+         */
+        boolean hedgeCapacityConsumed;
 
         boolean isRetry() {
             return requestCount > 1 || redirectedURI != null || authRetryParam != null;
@@ -710,6 +823,7 @@ public class AmazonHttpClient {
             apacheRequest = null;
             apacheResponse = null;
             leaveHttpConnectionOpen = false;
+            hedgeCapacityConsumed = false;
         }
 
         Signer newSigner(final Request<?> request, final ExecutionContext execContext) {
@@ -759,15 +873,40 @@ public class AmazonHttpClient {
         AWSCredentials credentials = null;
         if (credentialsProvider != null) {
             requestMetrics.startEvent(Field.CredentialsRequestTime);
+            final TraceSpan span = TracingContext.startPhase(TracePhase.CredentialsRequest);
             try {
                 credentials = credentialsProvider.getCredentials();
             } finally {
+                TracingContext.endSpan(span);
                 requestMetrics.endEvent(Field.CredentialsRequestTime);
             }
         }
         return credentials;
     }
 
+    /**
+     * Returns the http request to be sent as a hedge of the first attempt of the given request;
+     * or null if it should not be hedged.
+     */
+    private HttpRequestBase newHedgeRequest(final Request<?> request,
+                                            final ExecutionContext execContext,
+                                            final ExecOneRequestParams execOneParams)
+                                                    throws IOException {
+        if (requestHedger == null || execOneParams.isRetry() || !requestHedger.shouldHedge(request)) {
+            return null;
+        }
+        return requestHedger.newHedge(execOneParams.apacheRequest,
+                httpRequestFactory.createHttpRequest(request, config, execContext));
+    }
+
+    /**
+     * Returns the name of the operation of the given request, such as "GetItem".
+     */
+    private static String operationNameOf(AmazonWebServiceRequest awsreq) {
+        String name = awsreq.getClass().getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+
     /**
      * Returns the response from executing one http request; or null for retry.
      */
@@ -799,6 +938,7 @@ public class AmazonHttpClient {
         execOneParams.newSigner(request, execContext);
         if (execOneParams.signer != null && credentials != null) {
             awsRequestMetrics.startEvent(Field.RequestSigningTime);
+            final TraceSpan span = TracingContext.startPhase(TracePhase.RequestSigning);
             try {
                 if (timeOffset != 0) {
                     // Always use the client level timeOffset if it was
@@ -813,13 +953,16 @@ public class AmazonHttpClient {
                 }
                 execOneParams.signer.sign(request, credentials);
             } finally {
+                TracingContext.endSpan(span);
                 awsRequestMetrics.endEvent(Field.RequestSigningTime);
             }
         }
         checkInterrupted();
         execOneParams.newApacheRequest(httpRequestFactory, request, config, execContext);
+        final HttpRequestBase hedgeRequest = newHedgeRequest(request, execContext, execOneParams);
 
-        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
+        captureConnectionPoolMetrics(httpClient.getConnectionManager(),
+                execOneParams.apacheRequest, awsRequestMetrics);
         HttpContext httpContext = new BasicHttpContext();
         httpContext.setAttribute(AWSRequestMetrics.class.getSimpleName(), awsRequestMetrics);
         execOneParams.resetBeforeHttpRequest();
@@ -834,7 +977,16 @@ public class AmazonHttpClient {
                 .startTimer(execOneParams.apacheRequest, getRequestTimeout(awsreq));
 
         try {
-            execOneParams.apacheResponse = httpClient.execute(execOneParams.apacheRequest, httpContext);
+            if (hedgeRequest == null) {
+                execOneParams.apacheResponse = httpClient.execute(execOneParams.apacheRequest, httpContext);
+            } else {
+                RequestHedger.HedgedResponse hedged = requestHedger.execute(
+                        request.getServiceName() + "." + operationNameOf(awsreq),
+                        execOneParams.apacheRequest, hedgeRequest, httpContext);
+                execOneParams.apacheRequest = hedged.request;
+                execOneParams.apacheResponse = hedged.response;
+                execOneParams.hedgeCapacityConsumed = hedged.capacityConsumed;
+            }
             if (shouldBufferHttpEntity(responseHandler.needsConnectionLeftOpen(), execContext, execOneParams,
                     requestAbortTaskTracker)) {
                 execOneParams.apacheResponse
@@ -880,6 +1032,9 @@ public class AmazonHttpClient {
             } else {
                 retryCapacity.release();
             }
+            if (execOneParams.hedgeCapacityConsumed) {
+                retryCapacity.release(THROTTLED_RETRY_COST);
+            }
             return new Response<T>(response, httpResponse);
         }
         if (isTemporaryRedirect(execOneParams.apacheResponse)) {
@@ -1012,6 +1167,7 @@ public class AmazonHttpClient {
      * Captures the connection pool metrics.
      */
     private void captureConnectionPoolMetrics(ClientConnectionManager connectionManager,
+                                              HttpRequestBase apacheRequest,
                                               AWSRequestMetrics awsRequestMetrics) {
         if (awsRequestMetrics.isEnabled() && connectionManager instanceof ConnPoolControl) {
             ConnPoolControl<?> control = (ConnPoolControl<?>) connectionManager;
@@ -1019,6 +1175,126 @@ public class AmazonHttpClient {
             awsRequestMetrics.withCounter(Field.HttpClientPoolAvailableCount, stats.getAvailable())
                     .withCounter(Field.HttpClientPoolLeasedCount, stats.getLeased())
                     .withCounter(Field.HttpClientPoolPendingCount, stats.getPending());
+            if (connectionManager instanceof ConnectionPoolStatisticsProvider) {
+                PoolStats routeStats = ((ConnectionPoolStatisticsProvider) connectionManager)
+                        .getConnectionPoolStatistics()
+                        .getRouteStats(URIUtils.extractHost(apacheRequest.getURI()));
+                if (routeStats != null) {
+                    awsRequestMetrics
+                            .withCounter(Field.HttpClientPoolRouteAvailableCount, routeStats.getAvailable())
+                            .withCounter(Field.HttpClientPoolRouteLeasedCount, routeStats.getLeased())
+                            .withCounter(Field.HttpClientPoolRoutePendingCount, routeStats.getPending());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the connection pool of this client, or null if
+     * the underlying http client doesn't keep them.
+     */
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+        return connectionManager instanceof ConnectionPoolStatisticsProvider
+                ? ((ConnectionPoolStatisticsProvider) connectionManager).getConnectionPoolStatistics()
+                : null;
+    }
+
+    /**
+     * Warms up the connection pool with
+     * {@link ClientConfiguration#getConnectionPoolWarmUpSize()} connections to
+     * the given endpoint, unless it has already been warmed up. Called with
+     * the endpoint of every request, so that the pool is warmed up once, for
+     * the endpoint the client actually uses.
+     *
+     * @param endpoint
+     *            The endpoint to open connections to.
+     * @return The thread opening the connections, or null if there is nothing
+     *         to warm up.
+     */
+    public Thread warmUpConnectionPool(URI endpoint) {
+        int connections = config.getConnectionPoolWarmUpSize();
+        if (connections <= 0 || connectionPoolWarmedUp.get()
+                || !connectionPoolWarmedUp.compareAndSet(false, true)) {
+            return null;
+        }
+        return warmUpConnectionPool(endpoint, connections);
+    }
+
+    /**
+     * Opens up to the given number of connections to the given endpoint in the
+     * background and returns them to the pool, so that the first requests to
+     * the endpoint don't have to wait for the TCP and TLS handshakes. Routes
+     * through a tunnelling proxy are not warmed up.
+     * <p>
+     * At least one connection of the route is left to requests, and the warm
+     * up stops as soon as requests are waiting for a connection of the route.
+     *
+     * @param endpoint
+     *            The endpoint to open connections to.
+     * @param connections
+     *            The number of connections to open, capped one below the
+     *            maximum number of connections of the route.
+     * @return The thread opening the connections, or null if there is nothing
+     *         to warm up.
+     */
+    public Thread warmUpConnectionPool(final URI endpoint, final int connections) {
+        if (connections <= 0 || !(httpClient instanceof AbstractHttpClient)) {
+            return null;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    openConnections(endpoint, connections);
+                } catch (Exception e) {
+                    log.debug("Unable to warm up the connection pool for " + endpoint, e);
+                }
+            }
+        }, "aws-sdk-connection-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void openConnections(URI endpoint, int connections) throws Exception {
+        AbstractHttpClient client = (AbstractHttpClient) httpClient;
+        ClientConnectionManager connectionManager = client.getConnectionManager();
+        HttpContext context = new BasicHttpContext();
+        HttpRoute route = client.getRoutePlanner().determineRoute(
+                URIUtils.extractHost(endpoint), new HttpGet(endpoint), context);
+        if (route.isTunnelled()) {
+            return;
+        }
+        ConnPoolControl<HttpRoute> control = null;
+        if (connectionManager instanceof ConnPoolControl) {
+            @SuppressWarnings("unchecked")
+            ConnPoolControl<HttpRoute> routeControl = (ConnPoolControl<HttpRoute>) connectionManager;
+            control = routeControl;
+            connections = Math.min(connections, control.getMaxPerRoute(route) - 1);
+        }
+        // All connections are leased before any is released, or else the pool
+        // would keep handing out the same one
+        List<ManagedClientConnection> leased = new ArrayList<ManagedClientConnection>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                if (control != null && control.getStats(route).getPending() > 0) {
+                    break;
+                }
+                ManagedClientConnection connection = connectionManager
+                        .requestConnection(route, null)
+                        .getConnection(config.getConnectionTimeout(), TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    connection.open(route, context, client.getParams());
+                }
+                connection.markReusable();
+            }
+        } finally {
+            for (ManagedClientConnection connection : leased) {
+                connectionManager.releaseConnection(connection,
+                        config.getConnectionMaxIdleMillis(), TimeUnit.MILLISECONDS);
+            }
         }
     }
 
@@ -1098,8 +1374,9 @@ public class AmazonHttpClient {
      * make more requests.
      */
     public void shutdown() {
-        clientExecutionTimer.shutdown();
-        httpRequestTimer.shutdown();
+        if (requestHedger != null) {
+            requestHedger.shutdown();
+        }
         IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
         httpClient.getConnectionManager().shutdown();
     }
@@ -1246,9 +1523,11 @@ public class AmazonHttpClient {
             AmazonWebServiceResponse<? extends T> awsResponse;
             awsRequestMetrics.startEvent(Field.ResponseProcessingTime);
             publishProgress(listener, ProgressEventType.HTTP_RESPONSE_STARTED_EVENT);
+            final TraceSpan span = TracingContext.startPhase(TracePhase.ResponseUnmarshalling);
             try {
                 awsResponse = responseHandler.handle(beforeUnmarshalling(requestHandlers, request, httpResponse));
             } finally {
+                TracingContext.endSpan(span);
                 awsRequestMetrics.endEvent(Field.ResponseProcessingTime);
             }
             publishProgress(listener, ProgressEventType.HTTP_RESPONSE_COMPLETED_EVENT);
@@ -1348,6 +1627,7 @@ public class AmazonHttpClient {
         }
         HttpResponse response = createResponse(method, request, apacheHttpResponse);
         AmazonServiceException exception = null;
+        final TraceSpan span = TracingContext.startPhase(TracePhase.ResponseUnmarshalling);
         try {
             exception = errorResponseHandler.handle(response);
             if (requestLog.isDebugEnabled())
@@ -1376,6 +1656,8 @@ public class AmazonHttpClient {
                         + (statusLine == null ? "None" : statusCode) + ", Response Text: " + reasonPhrase;
                 throw new AmazonClientException(errorMessage, e);
             }
+        } finally {
+            TracingContext.endSpan(span);
         }
 
         exception.setStatusCode(statusCode);
@@ -1426,6 +1708,7 @@ public class AmazonHttpClient {
         publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
         // Notify the progress listener of the retry
         awsRequestMetrics.startEvent(Field.RetryPauseTime);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.RetryPause);
         try {
             // don't pause if the retry was not due to a redirection
             // ie when retried exception is null
@@ -1434,6 +1717,7 @@ public class AmazonHttpClient {
                         execOneParams.requestCount, config.getRetryPolicy(), execOneParams);
             }
         } finally {
+            TracingContext.endSpan(span);
             awsRequestMetrics.endEvent(Field.RetryPauseTime);
         }
     }
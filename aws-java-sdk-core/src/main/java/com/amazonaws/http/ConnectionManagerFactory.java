@@ -42,7 +42,10 @@ class ConnectionManagerFactory {
                 TimeUnit.MILLISECONDS,
                 new DelegatingDnsResolver(config.getDnsResolver()));
 
-        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+        int maxConnectionsPerRoute = config.getMaxConnectionsPerRoute();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute > 0
+                ? Math.min(maxConnectionsPerRoute, config.getMaxConnections())
+                : config.getMaxConnections());
         connectionManager.setMaxTotal(config.getMaxConnections());
 
         if (config.useReaper()) {
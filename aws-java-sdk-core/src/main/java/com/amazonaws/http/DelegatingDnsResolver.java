@@ -19,11 +19,16 @@ import java.net.UnknownHostException;
 
 import org.apache.http.conn.DnsResolver;
 
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
+
 /**
  * Implements the {@link org.apache.http.conn.DnsResolver} interface,
  * taking in a {@link com.amazonaws.DnsResolver} implementation and executing its
  * {@link com.amazonaws.DnsResolver#resolve(String)} method to perform the
- * actual DNS resolution.
+ * actual DNS resolution. The resolution is traced as the
+ * {@link TracePhase#DnsResolution} phase of the current request attempt.
  */
 public class DelegatingDnsResolver implements DnsResolver {
 
@@ -35,6 +40,15 @@ public class DelegatingDnsResolver implements DnsResolver {
 
     @Override
     public InetAddress[] resolve(String host) throws UnknownHostException {
-        return delegate.resolve(host);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.DnsResolution);
+        if (span == null) {
+            return delegate.resolve(host);
+        }
+        try {
+            span.addAttribute(TraceSpan.HOST, host);
+            return delegate.resolve(host);
+        } finally {
+            TracingContext.endSpan(span);
+        }
     }
 }
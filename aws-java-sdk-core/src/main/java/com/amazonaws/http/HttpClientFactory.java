@@ -50,7 +50,6 @@ import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.conn.params.ConnRouteParams;
-import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -66,10 +65,13 @@ import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 
+import com.amazonaws.CachingDnsResolver;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.http.conn.SdkConnectionKeepAliveStrategy;
+import com.amazonaws.http.conn.SdkPlainSocketFactory;
+import com.amazonaws.http.conn.UnhealthyAddressTrackingSocketFactory;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.http.impl.client.HttpRequestNoRetryHandler;
 import com.amazonaws.http.impl.client.SdkHttpClient;
@@ -126,8 +128,8 @@ public class HttpClientFactory {
             ConnRouteParams.setLocalAddress(httpClientParams, config.getLocalAddress());
         }
 
-        Scheme http = new Scheme("http", 80, PlainSocketFactory.getSocketFactory());
-        Scheme https = new Scheme("https", 443, sslSocketFactory);
+        Scheme http = createScheme("http", 80, new SdkPlainSocketFactory(), config);
+        Scheme https = createScheme("https", 443, sslSocketFactory, config);
         SchemeRegistry sr = connectionManager.getSchemeRegistry();
         sr.register(http);
         sr.register(https);
@@ -138,7 +140,7 @@ public class HttpClientFactory {
          * error out.
          */
         if (SDKGlobalConfiguration.isCertCheckingDisabled()) {
-            Scheme sch = new Scheme("https", 443, new TrustingSocketFactory());
+            Scheme sch = createScheme("https", 443, new TrustingSocketFactory(), config);
             httpClient.getConnectionManager().getSchemeRegistry().register(sch);
         }
 
@@ -233,6 +235,20 @@ public class HttpClientFactory {
 
     }
 
+    /**
+     * Creates a scheme for the given socket factory. If the client uses a
+     * {@link CachingDnsResolver}, connect timeouts are reported to it so that
+     * the addresses that time out are avoided.
+     */
+    static Scheme createScheme(String name, int port, SchemeSocketFactory socketFactory,
+            ClientConfiguration config) {
+        if (config.getDnsResolver() instanceof CachingDnsResolver) {
+            socketFactory = UnhealthyAddressTrackingSocketFactory.wrap(socketFactory,
+                    (CachingDnsResolver) config.getDnsResolver());
+        }
+        return new Scheme(name, port, socketFactory);
+    }
+
     /**
      * Simple implementation of SchemeSocketFactory (and
      * LayeredSchemeSocketFactory) that bypasses SSL certificate checks. This
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.amazonaws.Request;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.http.timers.HashedWheelTimer;
+import com.amazonaws.metrics.LatencyHistogram;
+import com.amazonaws.retry.HedgingPolicy;
+import com.amazonaws.util.CapacityManager;
+
+/**
+ * Sends a second, identical attempt of an idempotent request that has not
+ * received a response after the hedging delay of its operation, and returns
+ * whichever response arrives first; the other attempt is aborted.
+ * <p>
+ * The delay of an operation is the configured percentile of its observed
+ * latency, once enough requests have completed. Hedges are bounded by a token
+ * bucket, which every eligible request fills by the budget percentage of a
+ * hedge, and each hedge also consumes the same retry capacity as a throttled
+ * retry; the capacity is released by the caller once the request succeeds.
+ */
+@ThreadSafe
+class RequestHedger {
+
+    /** Requests with a larger payload are never hedged. */
+    static final long MAX_HEDGED_CONTENT_LENGTH = 256 * 1024;
+
+    /** Number of latencies an operation needs before its percentile is used. */
+    static final int MIN_SAMPLES = 100;
+
+    /** Number of latencies after which the histogram of an operation starts over. */
+    static final int MAX_SAMPLES = 10000;
+
+    /** Tokens spent by a hedge; every eligible request earns the budget percentage of it. */
+    private static final int HEDGE_COST = 100;
+
+    /** At most ten hedges may be sent in a burst. */
+    private static final int MAX_TOKENS = 10 * HEDGE_COST;
+
+    /** Maximum number of hedges in flight at the same time. */
+    private static final int MAX_HEDGES_IN_FLIGHT = 16;
+
+    /** Race states: no hedge has been sent and no response has been received yet. */
+    private static final int NONE = 0;
+    /** The hedge has been sent, consuming retry capacity, and no response has won yet. */
+    private static final int LAUNCHED = 1;
+    private static final int PRIMARY = 2;
+    private static final int HEDGE = 3;
+
+    private static final Log log = LogFactory.getLog(RequestHedger.class);
+
+    private final HedgingPolicy policy;
+    private final HttpClient httpClient;
+    private final CapacityManager retryCapacity;
+    private final int retryCost;
+    private final ConcurrentMap<String, OperationLatency> latencies =
+            new ConcurrentHashMap<String, OperationLatency>();
+    private final AtomicInteger tokens = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param policy
+     *            The hedging policy of the client
+     * @param httpClient
+     *            The client the hedges are sent with
+     * @param retryCapacity
+     *            The retry capacity of the client
+     * @param retryCost
+     *            The capacity consumed by a hedge
+     */
+    RequestHedger(HedgingPolicy policy, HttpClient httpClient,
+            CapacityManager retryCapacity, int retryCost) {
+        this.policy = policy;
+        this.httpClient = httpClient;
+        this.retryCapacity = retryCapacity;
+        this.retryCost = retryCost;
+        this.executor = new ThreadPoolExecutor(0, MAX_HEDGES_IN_FLIGHT, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "aws-sdk-hedged-request-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Returns true if the given request may be hedged by the policy.
+     */
+    boolean shouldHedge(Request<?> request) {
+        return policy.getHedgeCondition().shouldHedge(request.getOriginalRequest());
+    }
+
+    /**
+     * Buffers the payload of the given http request, if any, so that it can be
+     * sent twice, and returns a copy of the request to be used as its hedge; or
+     * null if the payload is too large or of unknown length.
+     *
+     * @param primary
+     *            The http request of the first attempt
+     * @param hedge
+     *            A new http request created for the same request
+     */
+    HttpRequestBase newHedge(HttpRequestBase primary, HttpRequestBase hedge) throws IOException {
+        hedge.setURI(primary.getURI());
+        if (!(primary instanceof HttpEntityEnclosingRequestBase)) {
+            return hedge;
+        }
+        HttpEntity entity = ((HttpEntityEnclosingRequestBase) primary).getEntity();
+        if (entity == null) {
+            return hedge;
+        }
+        long contentLength = entity.getContentLength();
+        if (contentLength < 0 || contentLength > MAX_HEDGED_CONTENT_LENGTH) {
+            return null;
+        }
+        ByteArrayEntity buffered = new ByteArrayEntity(EntityUtils.toByteArray(entity));
+        buffered.setContentType(entity.getContentType());
+        buffered.setContentEncoding(entity.getContentEncoding());
+        ((HttpEntityEnclosingRequestBase) primary).setEntity(buffered);
+        ((HttpEntityEnclosingRequestBase) hedge).setEntity(buffered);
+        return hedge;
+    }
+
+    /**
+     * Sends the primary request on the calling thread, and its hedge once the
+     * hedging delay of the operation has elapsed without a response.
+     *
+     * @param operation
+     *            Name of the operation, such as "AmazonDynamoDBv2.GetItem"
+     * @param primary
+     *            The http request of the first attempt
+     * @param hedge
+     *            The copy of the request returned by
+     *            {@link #newHedge(HttpRequestBase, HttpRequestBase)}
+     * @param context
+     *            The http context of the primary request
+     * @return The http request that won the race, and its response
+     */
+    HedgedResponse execute(String operation, HttpRequestBase primary, HttpRequestBase hedge,
+            HttpContext context) throws IOException, InterruptedException {
+        earnTokens();
+        final OperationLatency latency = getLatency(operation);
+        final Race race = new Race(primary, hedge);
+        final long startNanos = System.nanoTime();
+        final HashedWheelTimer.Timeout timeout = HashedWheelTimer.getSharedInstance().newTimeout(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        launch(race);
+                    }
+                }, latency.getDelayMillis(), TimeUnit.MILLISECONDS);
+
+        HttpResponse response;
+        try {
+            response = httpClient.execute(primary, context);
+        } catch (IOException e) {
+            if (timeout.cancel() || !race.awaitHedge(primary)) {
+                throw e;
+            }
+            latency.record(startNanos);
+            return new HedgedResponse(hedge, race.hedgeResponse, true);
+        }
+
+        for (;;) {
+            int state = race.winner.get();
+            if (state == HEDGE) {
+                break;
+            }
+            if (race.winner.compareAndSet(state, PRIMARY)) {
+                // If the timer already fired, the hedge is either in flight, or
+                // will find out that the primary won and give its capacity back
+                if (state == LAUNCHED || !timeout.cancel()) {
+                    hedge.abort();
+                }
+                latency.record(startNanos);
+                return new HedgedResponse(primary, response, state == LAUNCHED);
+            }
+        }
+        // The hedge won while the primary response was being received
+        primary.abort();
+        race.awaitHedge(primary);
+        latency.record(startNanos);
+        return new HedgedResponse(hedge, race.hedgeResponse, true);
+    }
+
+    /**
+     * Stops the threads sending the hedges.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs on the timer thread when the hedging delay has elapsed; sends the
+     * hedge if the budget and the retry capacity allow it.
+     * <p>
+     * The capacity belongs to the request once the race has moved to
+     * {@link #LAUNCHED}, and is released by the caller when the request
+     * succeeds; until then it is given back here if the hedge is not sent.
+     */
+    private void launch(final Race race) {
+        if (race.winner.get() != NONE || !spendTokens()) {
+            race.hedgeDone.countDown();
+            return;
+        }
+        if (!retryCapacity.acquire(retryCost)) {
+            tokens.addAndGet(HEDGE_COST);
+            race.hedgeDone.countDown();
+            return;
+        }
+        if (!race.winner.compareAndSet(NONE, LAUNCHED)) {
+            // The primary request won while the capacity was being acquired
+            refund();
+            race.hedgeDone.countDown();
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    race.runHedge();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Otherwise the primary request already won, counting the capacity as consumed
+            if (race.winner.compareAndSet(LAUNCHED, NONE)) {
+                refund();
+            }
+            race.hedgeDone.countDown();
+        }
+    }
+
+    /**
+     * Gives back the tokens and the retry capacity of a hedge that was not sent.
+     */
+    private void refund() {
+        retryCapacity.release(retryCost);
+        tokens.addAndGet(HEDGE_COST);
+    }
+
+    private void earnTokens() {
+        for (;;) {
+            int current = tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+            int next = Math.min(MAX_TOKENS, current + policy.getBudgetPercent());
+            if (tokens.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    private boolean spendTokens() {
+        for (;;) {
+            int current = tokens.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    private OperationLatency getLatency(String operation) {
+        OperationLatency latency = latencies.get(operation);
+        if (latency == null) {
+            OperationLatency existing = latencies.putIfAbsent(operation,
+                    latency = new OperationLatency());
+            if (existing != null) {
+                latency = existing;
+            }
+        }
+        return latency;
+    }
+
+    /**
+     * The http request that won the race, and its response.
+     */
+    static final class HedgedResponse {
+        final HttpRequestBase request;
+        final HttpResponse response;
+        /** True if a hedge was sent, consuming retry capacity. */
+        final boolean capacityConsumed;
+
+        HedgedResponse(HttpRequestBase request, HttpResponse response, boolean capacityConsumed) {
+            this.request = request;
+            this.response = response;
+            this.capacityConsumed = capacityConsumed;
+        }
+    }
+
+    /**
+     * The latencies observed for an operation, and the hedging delay derived
+     * from them.
+     */
+    private final class OperationLatency {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private volatile long delayMillis = policy.getDelayMillis();
+
+        long getDelayMillis() {
+            return delayMillis;
+        }
+
+        void record(long startNanos) {
+            if (policy.getDelayPercentile() == 0) {
+                return;
+            }
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            long count = histogram.getCount();
+            if (count % MIN_SAMPLES == 0) {
+                delayMillis = Math.max(1, TimeUnit.MICROSECONDS.toMillis(
+                        histogram.getPercentile(policy.getDelayPercentile())));
+                if (count >= MAX_SAMPLES) {
+                    histogram.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * The state shared by the primary request and its hedge. The first one to
+     * receive a response wins, and aborts the other.
+     */
+    private final class Race {
+        final HttpRequestBase primary;
+        final HttpRequestBase hedge;
+        final AtomicInteger winner = new AtomicInteger(NONE);
+        /** Counted down once the hedge has completed, or will not be sent. */
+        final CountDownLatch hedgeDone = new CountDownLatch(1);
+        volatile HttpResponse hedgeResponse;
+
+        Race(HttpRequestBase primary, HttpRequestBase hedge) {
+            this.primary = primary;
+            this.hedge = hedge;
+        }
+
+        void runHedge() {
+            try {
+                hedgeResponse = httpClient.execute(hedge, new BasicHttpContext());
+                if (winner.compareAndSet(LAUNCHED, HEDGE)) {
+                    primary.abort();
+                } else {
+                    hedge.abort();
+                }
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Hedged request failed: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.debug("Hedged request failed", e);
+            } finally {
+                hedgeDone.countDown();
+            }
+        }
+
+        /**
+         * Waits for the hedge once the primary request has failed, and returns
+         * true if the hedge won. The hedge is abandoned if the primary request
+         * was aborted for a timeout rather than by the hedge.
+         */
+        boolean awaitHedge(HttpRequestBase primary) throws InterruptedException {
+            if (winner.get() != HEDGE && primary.isAborted()) {
+                hedge.abort();
+            }
+            try {
+                hedgeDone.await();
+            } catch (InterruptedException e) {
+                hedge.abort();
+                throw e;
+            }
+            return winner.get() == HEDGE;
+        }
+    }
+}
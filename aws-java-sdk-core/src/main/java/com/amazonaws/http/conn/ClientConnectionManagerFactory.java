@@ -23,6 +23,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.pool.ConnPoolControl;
 
 public class ClientConnectionManagerFactory {
@@ -30,48 +32,70 @@ public class ClientConnectionManagerFactory {
 
     /**
      * Returns a wrapped instance of {@link ClientConnectionManager}
-     * to capture the necessary performance metrics.
+     * to capture the necessary performance metrics. The returned instance
+     * also implements {@link ConnectionPoolStatisticsProvider}.
      * @param orig the target instance to be wrapped
      */
+    @SuppressWarnings("unchecked")
     public static ClientConnectionManager wrap(ClientConnectionManager orig) {
         if (orig instanceof Wrapped)
             throw new IllegalArgumentException();
         final Class<?>[] interfaces;
+        final ConnectionPoolStatistics stats;
         if (orig instanceof ConnPoolControl) {
             interfaces = new Class<?>[] { 
                     ClientConnectionManager.class,
                     ConnPoolControl.class,
+                    ConnectionPoolStatisticsProvider.class,
                     Wrapped.class 
             };
+            stats = new ConnectionPoolStatistics((ConnPoolControl<HttpRoute>) orig);
         } else {
             interfaces = new Class<?>[] { 
                     ClientConnectionManager.class,
+                    ConnectionPoolStatisticsProvider.class,
                     Wrapped.class 
             };
+            stats = new ConnectionPoolStatistics(null);
         }
+        ConnectionPoolAdmin.getInstance().register(stats);
         return (ClientConnectionManager) Proxy.newProxyInstance(
                 // https://github.com/aws/aws-sdk-java/pull/48#issuecomment-29454423
                 ClientConnectionManagerFactory.class.getClassLoader(),
                 interfaces,
-                new Handler(orig));
+                new Handler(orig, stats));
     }
 
     /**
      * The handler behind the dynamic proxy for {@link ClientConnectionManager}
      * so that the any returned instance of {@link ClientConnectionRequest} can
-     * further wrapped for capturing performance metrics.
+     * further wrapped for capturing performance metrics, and the leasing and
+     * releasing of connections is recorded in the pool statistics.
      */
     private static class Handler implements InvocationHandler {
         private final ClientConnectionManager orig;
-        Handler(ClientConnectionManager real) {
+        private final ConnectionPoolStatistics stats;
+        Handler(ClientConnectionManager real, ConnectionPoolStatistics stats) {
             this.orig = real;
+            this.stats = stats;
         }
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getConnectionPoolStatistics".equals(name)) {
+                return stats;
+            } else if ("requestConnection".equals(name) && args[0] instanceof HttpRoute) {
+                stats.connectionRequested((HttpRoute) args[0]);
+            } else if ("releaseConnection".equals(name) && args[0] instanceof ManagedClientConnection) {
+                stats.connectionReleased((ManagedClientConnection) args[0]);
+            } else if ("shutdown".equals(name)) {
+                stats.shutdown();
+                ConnectionPoolAdmin.getInstance().unregister(stats);
+            }
             try {
                 Object ret = method.invoke(orig, args);
                 return ret instanceof ClientConnectionRequest
-                     ? ClientConnectionRequestFactory.wrap((ClientConnectionRequest) ret)
+                     ? ClientConnectionRequestFactory.wrap((ClientConnectionRequest) ret, stats)
                      : ret
                      ;
             } catch (InvocationTargetException e) {
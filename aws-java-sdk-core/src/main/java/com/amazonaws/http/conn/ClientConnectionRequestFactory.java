@@ -22,9 +22,13 @@ import java.lang.reflect.Proxy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
 
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
 import com.amazonaws.util.AWSServiceMetrics;
 
 class ClientConnectionRequestFactory {
@@ -38,27 +42,32 @@ class ClientConnectionRequestFactory {
      * Returns a wrapped instance of {@link ClientConnectionRequest}
      * to capture the necessary performance metrics.
      * @param orig the target instance to be wrapped
+     * @param stats the statistics of the pool the connection is leased from
      */
-    static ClientConnectionRequest wrap(ClientConnectionRequest orig) {
+    static ClientConnectionRequest wrap(ClientConnectionRequest orig,
+            ConnectionPoolStatistics stats) {
         if (orig instanceof Wrapped)
             throw new IllegalArgumentException();
         return (ClientConnectionRequest) Proxy.newProxyInstance(
                 // https://github.com/aws/aws-sdk-java/pull/48#issuecomment-29454423
                 ClientConnectionRequestFactory.class.getClassLoader(),
                 interfaces,
-                new Handler(orig));
+                new Handler(orig, stats));
     }
 
     /**
      * The handler behind the dynamic proxy for {@link ClientConnectionRequest}
      * so that the latency of the
      * {@link ClientConnectionRequest#getConnection(long, java.util.concurrent.TimeUnit)}
-     * can be captured.
+     * can be captured, and traced as the {@link TracePhase#ConnectionLease}
+     * phase of the current request attempt.
      */
     private static class Handler implements InvocationHandler {
         private final ClientConnectionRequest orig;
-        Handler(ClientConnectionRequest orig) {
+        private final ConnectionPoolStatistics stats;
+        Handler(ClientConnectionRequest orig, ConnectionPoolStatistics stats) {
             this.orig = orig;
+            this.stats = stats;
         }
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
@@ -66,9 +75,15 @@ class ClientConnectionRequestFactory {
                 if ("getConnection".equals(method.getName())) {
                     ServiceLatencyProvider latencyProvider = new ServiceLatencyProvider(
                             AWSServiceMetrics.HttpClientGetConnectionTime);
+                    final TraceSpan span = TracingContext.startPhase(TracePhase.ConnectionLease);
+                    long start = System.nanoTime();
                     try {
-                        return method.invoke(orig, args);
+                        Object connection = method.invoke(orig, args);
+                        stats.connectionLeased((ManagedClientConnection) connection,
+                                System.nanoTime() - start);
+                        return connection;
                     } finally {
+                        TracingContext.endSpan(span);
                         AwsSdkMetrics.getServiceMetricCollector()
                                 .collectLatency(latencyProvider.endTiming());
                     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.pool.PoolStats;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.jmx.MBeans;
+
+/**
+ * Keeps track of the {@link ConnectionPoolStatistics} of every HTTP client
+ * and exposes them through JMX under {@value #MBEAN_OBJECT_NAME}.
+ * <p>
+ * Pools are only weakly referenced, so clients that are discarded without
+ * being shut down are not kept alive by the MBean.
+ */
+@ThreadSafe
+public class ConnectionPoolAdmin implements ConnectionPoolAdminMBean {
+
+    public static final String MBEAN_OBJECT_NAME =
+            "com.amazonaws.management:type=ConnectionPools";
+
+    private static final ConnectionPoolAdmin INSTANCE = new ConnectionPoolAdmin();
+
+    private final Map<ConnectionPoolStatistics, String> pools =
+            new WeakHashMap<ConnectionPoolStatistics, String>();
+    private final AtomicInteger poolCount = new AtomicInteger();
+    private boolean registered;
+
+    public static ConnectionPoolAdmin getInstance() {
+        return INSTANCE;
+    }
+
+    void register(ConnectionPoolStatistics stats) {
+        synchronized (pools) {
+            pools.put(stats, "pool-" + poolCount.incrementAndGet());
+            if (!registered) {
+                registered = true;
+                registerMBean();
+            }
+        }
+    }
+
+    void unregister(ConnectionPoolStatistics stats) {
+        synchronized (pools) {
+            pools.remove(stats);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeans.registerMBean(MBEAN_OBJECT_NAME, this);
+        } catch (Exception e) {
+            LogFactory.getLog(ConnectionPoolAdmin.class).debug(
+                    "Unable to register the connection pool MBean", e);
+        } catch (LinkageError e) {
+            // JMX is not available on this platform
+            LogFactory.getLog(ConnectionPoolAdmin.class).debug(
+                    "Unable to register the connection pool MBean", e);
+        }
+    }
+
+    private List<ConnectionPoolStatistics> snapshot() {
+        synchronized (pools) {
+            return new ArrayList<ConnectionPoolStatistics>(pools.keySet());
+        }
+    }
+
+    @Override
+    public int getPoolCount() {
+        return snapshot().size();
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        int total = 0;
+        for (ConnectionPoolStatistics stats : snapshot()) {
+            PoolStats poolStats = stats.getTotalStats();
+            total += poolStats == null ? 0 : poolStats.getLeased();
+        }
+        return total;
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        int total = 0;
+        for (ConnectionPoolStatistics stats : snapshot()) {
+            PoolStats poolStats = stats.getTotalStats();
+            total += poolStats == null ? 0 : poolStats.getAvailable();
+        }
+        return total;
+    }
+
+    @Override
+    public int getPendingConnectionRequests() {
+        int total = 0;
+        for (ConnectionPoolStatistics stats : snapshot()) {
+            PoolStats poolStats = stats.getTotalStats();
+            total += poolStats == null ? 0 : poolStats.getPending();
+        }
+        return total;
+    }
+
+    @Override
+    public long getMaxLeaseWaitMillis() {
+        long max = 0;
+        for (ConnectionPoolStatistics stats : snapshot()) {
+            max = Math.max(max, stats.getLeaseWaitTime().getMax());
+        }
+        return max / 1000;
+    }
+
+    @Override
+    public String[] getPoolStatistics() {
+        List<String> lines = new ArrayList<String>();
+        synchronized (pools) {
+            for (Map.Entry<ConnectionPoolStatistics, String> entry : pools.entrySet()) {
+                lines.add(entry.getValue() + ": " + entry.getKey());
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void resetHistograms() {
+        for (ConnectionPoolStatistics stats : snapshot()) {
+            stats.getLeaseWaitTime().reset();
+            stats.getLeaseTime().reset();
+        }
+    }
+}
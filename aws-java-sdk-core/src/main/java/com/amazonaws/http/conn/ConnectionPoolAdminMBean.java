@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+/**
+ * JMX view of the connection pools of all live HTTP clients.
+ */
+public interface ConnectionPoolAdminMBean {
+
+    public int getPoolCount();
+
+    public int getLeasedConnections();
+
+    public int getAvailableConnections();
+
+    public int getPendingConnectionRequests();
+
+    /**
+     * The largest time (milliseconds) any request waited to lease a
+     * connection.
+     */
+    public long getMaxLeaseWaitMillis();
+
+    /**
+     * One line per pool with its total and per route counts and its lease
+     * wait time and lease time histograms.
+     */
+    public String[] getPoolStatistics();
+
+    /**
+     * Discards the recorded lease wait time and lease time histograms.
+     */
+    public void resetHistograms();
+}
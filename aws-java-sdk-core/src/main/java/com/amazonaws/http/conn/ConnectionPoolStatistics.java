@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.metrics.LatencyHistogram;
+
+/**
+ * Statistics of the connection pool of a single HTTP client: the number of
+ * leased, available and pending connections in total and per route, and
+ * histograms of how long requests waited to lease a connection and how long
+ * connections were held once leased.
+ */
+@ThreadSafe
+public class ConnectionPoolStatistics {
+
+    private final ConnPoolControl<HttpRoute> pool;
+
+    private final LatencyHistogram leaseWaitMicros = new LatencyHistogram();
+    private final LatencyHistogram leaseMicros = new LatencyHistogram();
+
+    /** Routes seen so far, keyed by target host. */
+    private final ConcurrentMap<HttpHost, HttpRoute> routes =
+            new ConcurrentHashMap<HttpHost, HttpRoute>();
+
+    /** When each currently leased connection was handed out. */
+    private final ConcurrentMap<ManagedClientConnection, Long> leaseStartNanos =
+            new ConcurrentHashMap<ManagedClientConnection, Long>();
+
+    /**
+     * @param pool
+     *            The pool to report counts of, or null if the connection
+     *            manager is not a pool; only the histograms are kept then.
+     */
+    public ConnectionPoolStatistics(ConnPoolControl<HttpRoute> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the total counts of the pool, or null if unknown.
+     */
+    public PoolStats getTotalStats() {
+        return pool == null ? null : pool.getTotalStats();
+    }
+
+    /**
+     * Returns the counts of every route the pool has leased connections for.
+     */
+    public Map<HttpRoute, PoolStats> getRouteStats() {
+        if (pool == null) {
+            return Collections.emptyMap();
+        }
+        Map<HttpRoute, PoolStats> stats = new LinkedHashMap<HttpRoute, PoolStats>();
+        for (HttpRoute route : routes.values()) {
+            stats.put(route, pool.getStats(route));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the counts of the route to the given target host, or null if no
+     * connection to it has been requested yet.
+     */
+    public PoolStats getRouteStats(HttpHost target) {
+        if (pool == null) {
+            return null;
+        }
+        HttpRoute route = routes.get(target);
+        return route == null ? null : pool.getStats(route);
+    }
+
+    /**
+     * Returns how long (microseconds) requests waited to lease a connection
+     * from the pool, including the time to open a new connection.
+     */
+    public LatencyHistogram getLeaseWaitTime() {
+        return leaseWaitMicros;
+    }
+
+    /**
+     * Returns how long (microseconds) connections were leased before being
+     * returned to the pool.
+     */
+    public LatencyHistogram getLeaseTime() {
+        return leaseMicros;
+    }
+
+    void connectionRequested(HttpRoute route) {
+        if (route != null && !routes.containsKey(route.getTargetHost())) {
+            routes.putIfAbsent(route.getTargetHost(), route);
+        }
+    }
+
+    void connectionLeased(ManagedClientConnection connection, long waitNanos) {
+        leaseWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        if (connection != null) {
+            leaseStartNanos.put(connection, System.nanoTime());
+        }
+    }
+
+    void connectionReleased(ManagedClientConnection connection) {
+        Long start = connection == null ? null : leaseStartNanos.remove(connection);
+        if (start != null) {
+            leaseMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    void shutdown() {
+        leaseStartNanos.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        PoolStats total = getTotalStats();
+        if (total != null) {
+            builder.append(format(total)).append(", ");
+        }
+        builder.append("leaseWaitMicros={").append(leaseWaitMicros)
+                .append("}, leaseMicros={").append(leaseMicros).append("}");
+        for (Map.Entry<HttpRoute, PoolStats> entry : getRouteStats().entrySet()) {
+            builder.append(", ").append(entry.getKey().getTargetHost())
+                    .append("={").append(format(entry.getValue())).append("}");
+        }
+        return builder.toString();
+    }
+
+    private static String format(PoolStats stats) {
+        return "leased=" + stats.getLeased()
+                + ", available=" + stats.getAvailable()
+                + ", pending=" + stats.getPending()
+                + ", max=" + stats.getMax();
+    }
+}
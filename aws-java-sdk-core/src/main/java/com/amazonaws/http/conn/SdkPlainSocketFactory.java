@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.net.Socket;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.params.HttpParams;
+
+import com.amazonaws.internal.SdkSocket;
+
+/**
+ * Creates plain sockets wrapped in an {@link SdkSocket}, so that connecting
+ * them is logged and traced the same way as for TLS sockets.
+ */
+@ThreadSafe
+public class SdkPlainSocketFactory extends PlainSocketFactory {
+
+    @Override
+    public Socket createSocket(final HttpParams params) {
+        return createSocket();
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new SdkSocket(new Socket());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.params.HttpParams;
+
+import com.amazonaws.CachingDnsResolver;
+
+/**
+ * Socket factory that marks the addresses that could not be connected to in
+ * time as unhealthy in a {@link CachingDnsResolver}, so that new connections
+ * are opened to the other addresses of the host first.
+ */
+public class UnhealthyAddressTrackingSocketFactory implements SchemeSocketFactory {
+
+    private final SchemeSocketFactory delegate;
+    private final CachingDnsResolver resolver;
+
+    UnhealthyAddressTrackingSocketFactory(SchemeSocketFactory delegate,
+            CachingDnsResolver resolver) {
+        this.delegate = delegate;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Returns a socket factory reporting connect timeouts of the given factory
+     * to the given resolver. The returned factory is layered if the given one
+     * is.
+     */
+    public static SchemeSocketFactory wrap(SchemeSocketFactory delegate,
+            CachingDnsResolver resolver) {
+        return delegate instanceof SchemeLayeredSocketFactory
+                ? new Layered((SchemeLayeredSocketFactory) delegate, resolver)
+                : new UnhealthyAddressTrackingSocketFactory(delegate, resolver);
+    }
+
+    @Override
+    public Socket createSocket(HttpParams params) throws IOException {
+        return delegate.createSocket(params);
+    }
+
+    @Override
+    public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress,
+            InetSocketAddress localAddress, HttpParams params)
+            throws IOException, UnknownHostException, ConnectTimeoutException {
+        try {
+            return delegate.connectSocket(socket, remoteAddress, localAddress, params);
+        } catch (ConnectTimeoutException e) {
+            resolver.markUnhealthy(remoteAddress.getAddress());
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isSecure(Socket socket) throws IllegalArgumentException {
+        return delegate.isSecure(socket);
+    }
+
+    private static class Layered extends UnhealthyAddressTrackingSocketFactory
+            implements SchemeLayeredSocketFactory {
+
+        private final SchemeLayeredSocketFactory delegate;
+
+        Layered(SchemeLayeredSocketFactory delegate, CachingDnsResolver resolver) {
+            super(delegate, resolver);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port,
+                HttpParams params) throws IOException, UnknownHostException {
+            return delegate.createLayeredSocket(socket, target, port, params);
+        }
+    }
+}
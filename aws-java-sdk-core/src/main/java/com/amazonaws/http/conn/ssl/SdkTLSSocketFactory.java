@@ -38,12 +38,16 @@ import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 
 import com.amazonaws.internal.SdkSSLMetricsSocket;
 import com.amazonaws.internal.SdkSSLSocket;
 import com.amazonaws.internal.SdkSocket;
 import com.amazonaws.internal.SdkMetricsSocket;
 import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
 import com.amazonaws.util.JavaVersionParser;
 
 /**
@@ -121,6 +125,36 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
         return false;
     }
 
+    /**
+     * {@inheritDoc} The socket is wrapped before it is connected, so that
+     * connecting it and the TLS handshake are logged and traced.
+     */
+    @Override
+    public Socket createSocket(final HttpParams params) throws IOException {
+        final Socket socket = super.createSocket(params);
+        if (socket instanceof SSLSocket) {
+            return new SdkSSLSocket((SSLSocket) socket);
+        }
+        return new SdkSocket(socket);
+    }
+
+    /**
+     * {@inheritDoc} Traces the TLS handshake for sockets that are layered
+     * over an already connected plain socket.
+     */
+    @Override
+    public Socket createLayeredSocket(final Socket socket,
+                                      final String target,
+                                      final int port,
+                                      final HttpContext context) throws IOException {
+        final TraceSpan span = TracingContext.startPhase(TracePhase.TlsHandshake);
+        try {
+            return super.createLayeredSocket(socket, target, port, context);
+        } finally {
+            TracingContext.endSpan(span);
+        }
+    }
+
     @Override
     public Socket connectSocket(final Socket socket,
                                 final InetSocketAddress remoteAddress,
@@ -130,8 +164,9 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
         if (LOG.isDebugEnabled()) {
             LOG.debug("connecting to " + remoteAddress.getAddress() + ":" + remoteAddress.getPort());
         }
+        final Socket connectedSocket;
         try {
-            final Socket connectedSocket = super.connectSocket(socket, remoteAddress, localAddress, params);
+            connectedSocket = super.connectSocket(socket, remoteAddress, localAddress, params);
             if (!masterSecretValidator.isMasterSecretValid(connectedSocket)) {
                 throw log(new IllegalStateException("Invalid SSL master secret"));
             }
@@ -145,11 +180,15 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
             }
             throw sslEx;
         }
-        if (socket instanceof SSLSocket) {
-            SdkSSLSocket sslSocket = new SdkSSLSocket((SSLSocket) socket);
+        if (connectedSocket instanceof SSLSocket) {
+            SdkSSLSocket sslSocket = connectedSocket instanceof SdkSSLSocket
+                    ? (SdkSSLSocket) connectedSocket
+                    : new SdkSSLSocket((SSLSocket) connectedSocket);
             return AwsSdkMetrics.isHttpSocketReadMetricEnabled() ? new SdkSSLMetricsSocket(sslSocket) : sslSocket;
         }
-        SdkSocket sdkSocket = new SdkSocket(socket);
+        SdkSocket sdkSocket = connectedSocket instanceof SdkSocket
+                ? (SdkSocket) connectedSocket
+                : new SdkSocket(connectedSocket);
         return AwsSdkMetrics.isHttpSocketReadMetricEnabled() ? new SdkMetricsSocket(sdkSocket) : sdkSocket;
     }
 
@@ -27,12 +27,17 @@ import org.apache.http.protocol.HttpRequestExecutor;
 
 import com.amazonaws.internal.SdkMetricsSocket;
 import com.amazonaws.internal.SdkSSLMetricsSocket;
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
 
 /**
  * Used to capture the http send-request and receive-response latency metrics
- * of the http client library, with no retries involved.
+ * of the http client library, with no retries involved. The same latencies are
+ * traced as the {@link TracePhase#RequestSend} and
+ * {@link TracePhase#TimeToFirstByte} phases of the current request attempt.
  */
 public class SdkHttpRequestExecutor extends HttpRequestExecutor {
     @Override
@@ -41,6 +46,19 @@ public class SdkHttpRequestExecutor extends HttpRequestExecutor {
             final HttpClientConnection conn,
             final HttpContext context)
                 throws IOException, HttpException {
+        final TraceSpan span = TracingContext.startPhase(TracePhase.RequestSend);
+        try {
+            return doSendRequest0(request, conn, context);
+        } finally {
+            TracingContext.endSpan(span);
+        }
+    }
+
+    private HttpResponse doSendRequest0(
+            final HttpRequest request,
+            final HttpClientConnection conn,
+            final HttpContext context)
+                throws IOException, HttpException {
         AWSRequestMetrics awsRequestMetrics = (AWSRequestMetrics) context
                 .getAttribute(AWSRequestMetrics.class.getSimpleName());
 
@@ -72,6 +90,19 @@ public class SdkHttpRequestExecutor extends HttpRequestExecutor {
             final HttpClientConnection conn,
             final HttpContext          context)
                 throws HttpException, IOException {
+        final TraceSpan span = TracingContext.startPhase(TracePhase.TimeToFirstByte);
+        try {
+            return doReceiveResponse0(request, conn, context);
+        } finally {
+            TracingContext.endSpan(span);
+        }
+    }
+
+    private HttpResponse doReceiveResponse0(
+            final HttpRequest          request,
+            final HttpClientConnection conn,
+            final HttpContext          context)
+                throws HttpException, IOException {
         AWSRequestMetrics awsRequestMetrics = (AWSRequestMetrics) context
                 .getAttribute(AWSRequestMetrics.class.getSimpleName());
         if (awsRequestMetrics == null) {
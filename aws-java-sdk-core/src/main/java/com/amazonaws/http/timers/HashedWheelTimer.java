@@ -0,0 +1,461 @@
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.timers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.SdkTestInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * A hashed timing wheel used to enforce the request timeout and client execution timeout
+ * features. Scheduling and canceling a timeout are O(1) and do not contend on a shared heap;
+ * the caller only appends the timeout (or its cancellation) to a lock free queue, and a single
+ * worker thread moves it into the wheel. The precision of the timer is one tick, which is
+ * plenty for timeouts measured in seconds. The worker does not run the tasks of expired timeouts
+ * itself; it hands them to an executor, so that a task that blocks, such as aborting a request
+ * whose connection is stuck, does not hold up the timeouts of every other client.
+ * <p>
+ * A single instance, returned by {@link #getSharedInstance()}, is used by every client in the
+ * JVM. Its worker is a daemon thread that is started on demand and exits once no timeouts have
+ * been pending for a while, and the threads running its tasks exit once idle as well, so idle
+ * applications do not keep a thread around.
+ */
+@ThreadSafe
+@SdkInternalApi
+public class HashedWheelTimer {
+
+    /** Duration of a single tick of the shared timer. */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /** Number of buckets of the shared timer's wheel. */
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    /** How long the worker thread of the shared timer lingers once no timeouts are pending. */
+    public static final long DEFAULT_IDLE_MILLIS = 5 * 1000;
+
+    /** Maximum number of threads running the tasks of expired timeouts of a timer. */
+    public static final int DEFAULT_TASK_THREADS = 5;
+
+    private static final Log log = LogFactory.getLog(HashedWheelTimer.class);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final AtomicInteger taskThreadCount = new AtomicInteger();
+
+    private static final HashedWheelTimer SHARED = new HashedWheelTimer(DEFAULT_TICK_MILLIS,
+            DEFAULT_TICKS_PER_WHEEL, DEFAULT_IDLE_MILLIS);
+
+    private final long tickNanos;
+    private final long idleTicks;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> canceled = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+    private final AtomicLong expiredTimeouts = new AtomicLong();
+
+    /** Counted down when the current worker thread exits. */
+    private volatile CountDownLatch workerStopped = new CountDownLatch(0);
+
+    /** Only touched by the worker thread. */
+    private long startNanos;
+    private long tick;
+
+    /**
+     * Creates a timer running the tasks of expired timeouts on up to
+     * {@link #DEFAULT_TASK_THREADS} daemon threads of its own, which exit once idle.
+     *
+     * @param tickMillis
+     *            Duration of a tick; timeouts fire at most this late
+     * @param ticksPerWheel
+     *            Number of buckets, rounded up to a power of two
+     * @param idleMillis
+     *            How long the worker thread waits for new timeouts before exiting
+     */
+    public HashedWheelTimer(long tickMillis, int ticksPerWheel, long idleMillis) {
+        this(tickMillis, ticksPerWheel, idleMillis, newTaskExecutor(idleMillis));
+    }
+
+    /**
+     * @param tickMillis
+     *            Duration of a tick; timeouts fire at most this late
+     * @param ticksPerWheel
+     *            Number of buckets, rounded up to a power of two
+     * @param idleMillis
+     *            How long the worker thread waits for new timeouts before exiting
+     * @param taskExecutor
+     *            Executor running the tasks of expired timeouts
+     */
+    public HashedWheelTimer(long tickMillis, int ticksPerWheel, long idleMillis,
+            Executor taskExecutor) {
+        if (taskExecutor == null) {
+            throw new IllegalArgumentException("Task executor must not be null");
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel must be between 1 and 2^30");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.idleTicks = Math.max(1, idleMillis / tickMillis);
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.taskExecutor = taskExecutor;
+    }
+
+    private static Executor newTaskExecutor(long idleMillis) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_TASK_THREADS,
+                DEFAULT_TASK_THREADS, Math.max(1, idleMillis), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "aws-sdk-timeout-task-" + taskThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MAX_PRIORITY);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return The timer shared by all clients in the JVM
+     */
+    public static HashedWheelTimer getSharedInstance() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules the task to run once the delay has elapsed. The task runs on the timer's task
+     * executor, not on the worker thread, so it may block without delaying other timeouts.
+     *
+     * @return A handle that can be used to cancel the timeout
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("task must not be null");
+        }
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        pendingTimeouts.incrementAndGet();
+        scheduled.add(timeout);
+        if (!running.get() && running.compareAndSet(false, true)) {
+            startWorker();
+        }
+        return timeout;
+    }
+
+    /**
+     * @return Number of timeouts that have been scheduled but have neither expired nor been
+     *         canceled. A timeout whose task is waiting for the task executor is still pending.
+     */
+    public int getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * @return Number of timeouts that have expired, i.e. whose task has started running
+     */
+    public long getExpiredTimeouts() {
+        return expiredTimeouts.get();
+    }
+
+    /**
+     * This method is currently exposed for testing purposes
+     *
+     * @return True if the worker thread is currently running
+     */
+    @SdkTestInternalApi
+    public boolean isWorkerRunning() {
+        return running.get();
+    }
+
+    /**
+     * This method is currently exposed for testing purposes. Waits for the worker thread that is
+     * currently running, if any, to exit; a worker started later is not waited for.
+     *
+     * @return True if no worker thread was running, or it exited within the given time
+     */
+    @SdkTestInternalApi
+    public boolean awaitWorkerStopped(long timeout, TimeUnit unit) throws InterruptedException {
+        return workerStopped.await(timeout, unit);
+    }
+
+    private void startWorker() {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        workerStopped = stopped;
+        Thread thread = new Thread(new Worker(stopped),
+                "aws-sdk-timeout-wheel-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    private final class Worker implements Runnable {
+
+        private final CountDownLatch stopped;
+
+        Worker(CountDownLatch stopped) {
+            this.stopped = stopped;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work();
+            } finally {
+                stopped.countDown();
+            }
+        }
+
+        private void work() {
+            startNanos = System.nanoTime();
+            tick = 0;
+            long idle = 0;
+
+            while (true) {
+                long now = waitForNextTick();
+                removeCanceled();
+                transferScheduled();
+                expire(wheel[(int) (tick & mask)], now);
+                tick++;
+
+                if (pendingTimeouts.get() > 0) {
+                    idle = 0;
+                } else if (++idle >= idleTicks && tryStop()) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Stops the worker unless a timeout was scheduled concurrently, in which case either this
+         * worker keeps going or a new one has already been started.
+         */
+        private boolean tryStop() {
+            running.set(false);
+            if (scheduled.isEmpty() || !running.compareAndSet(false, true)) {
+                return true;
+            }
+            return false;
+        }
+
+        private long waitForNextTick() {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            while (true) {
+                long now = System.nanoTime();
+                long sleepNanos = deadline - now;
+                if (sleepNanos <= 0) {
+                    return now;
+                }
+                try {
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepNanos + 999999));
+                } catch (InterruptedException e) {
+                    // The worker is private to the timer; nobody should interrupt it
+                    log.debug("Timeout wheel worker interrupted", e);
+                }
+            }
+        }
+
+        private void removeCanceled() {
+            Timeout timeout;
+            while ((timeout = canceled.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+
+        private void transferScheduled() {
+            Timeout timeout;
+            // Bound the work per tick so a burst of schedules can't starve expiration
+            for (int i = 0; i < 100000 && (timeout = scheduled.poll()) != null; i++) {
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long calculated = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+                long ticks = Math.max(calculated, tick);
+                timeout.remainingRounds = (ticks - tick) / wheel.length;
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void expire(Bucket bucket, long now) {
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                } else if (timeout.deadlineNanos <= now) {
+                    bucket.remove(timeout);
+                    timeout.expire();
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        /** Only touched by the worker thread. */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadlineNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the timeout. Succeeds until its task starts running, even if the timeout is
+         * already past its deadline and the task is waiting for the task executor, so a task
+         * never runs after this method has returned true.
+         *
+         * @return True if the timeout was canceled by this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+            timer.canceled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        /**
+         * Called on the worker thread. The timeout only moves to the expired state once the task
+         * executor gets to it, so that it can be canceled while queued.
+         */
+        private void expire() {
+            if (state.get() != STATE_PENDING) {
+                return;
+            }
+            Runnable run = new Runnable() {
+                @Override
+                public void run() {
+                    if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                        return;
+                    }
+                    timer.pendingTimeouts.decrementAndGet();
+                    timer.expiredTimeouts.incrementAndGet();
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        log.warn("Timeout task threw an exception", t);
+                    }
+                }
+            };
+            try {
+                timer.taskExecutor.execute(run);
+            } catch (RejectedExecutionException e) {
+                // Better late on the worker than never
+                log.debug("Timeout task rejected, running it on the worker", e);
+                run.run();
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts of one wheel slot, so canceled timeouts can be unlinked
+     * in O(1). Only touched by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -25,8 +25,8 @@ import com.amazonaws.annotation.SdkInternalApi;
 @SdkInternalApi
 public class ClientExecutionAbortTaskImpl implements ClientExecutionAbortTask {
 
-    private boolean hasTaskExecuted;
-    private HttpRequestBase currentHttpRequest;
+    private volatile boolean hasTaskExecuted;
+    private volatile HttpRequestBase currentHttpRequest;
     private final Thread thread;
 
     public ClientExecutionAbortTaskImpl(Thread thread) {
@@ -39,8 +39,9 @@ public class ClientExecutionAbortTaskImpl implements ClientExecutionAbortTask {
         if (!thread.isInterrupted()) {
             thread.interrupt();
         }
-        if (!currentHttpRequest.isAborted()) {
-            currentHttpRequest.abort();
+        HttpRequestBase request = currentHttpRequest;
+        if (request != null && !request.isAborted()) {
+            request.abort();
         }
     }
 
@@ -14,15 +14,14 @@
  */
 package com.amazonaws.http.timers.client;
 
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.annotation.ThreadSafe;
 import com.amazonaws.http.AmazonHttpClient;
-import com.amazonaws.http.timers.TimeoutThreadPoolBuilder;
+import com.amazonaws.http.timers.HashedWheelTimer;
 
 /**
  * Represents a timer to enforce a timeout on the total client execution time. That is the time
@@ -33,7 +32,21 @@ import com.amazonaws.http.timers.TimeoutThreadPoolBuilder;
 @ThreadSafe
 public class ClientExecutionTimer {
 
-    private volatile ScheduledThreadPoolExecutor executor;
+    private final HashedWheelTimer wheel;
+
+    /** Set on first use so tests can tell whether the timer was ever started. */
+    private volatile HashedWheelTimer timer;
+
+    private final AtomicLong triggeredTasks = new AtomicLong();
+
+    public ClientExecutionTimer() {
+        this(HashedWheelTimer.getSharedInstance());
+    }
+
+    @SdkTestInternalApi
+    ClientExecutionTimer(HashedWheelTimer wheel) {
+        this.wheel = wheel;
+    }
 
     /**
      * Start the timer with the specified timeout and return a object that can be used to track the
@@ -48,46 +61,54 @@ public class ClientExecutionTimer {
     public ClientExecutionAbortTrackerTask startTimer(int clientExecutionTimeoutMillis) {
         if (isTimeoutDisabled(clientExecutionTimeoutMillis)) {
             return NoOpClientExecutionAbortTrackerTask.INSTANCE;
-        } else if (executor == null) {
-            initializeExecutor();
+        } else if (timer == null) {
+            timer = wheel;
         }
         return scheduleTimerTask(clientExecutionTimeoutMillis);
     }
 
     /**
-     * Executor is lazily initialized as it's not compatible with Java 6
+     * This method is current exposed for testing purposes
+     * 
+     * @return The {@link HashedWheelTimer} used by this timer, or null if no timeout has been
+     *         scheduled yet
      */
-    private synchronized void initializeExecutor() {
-        if (executor == null) {
-            executor = TimeoutThreadPoolBuilder.buildDefaultTimeoutThreadPool();
-        }
+    @SdkTestInternalApi
+    public HashedWheelTimer getTimer() {
+        return this.timer;
     }
 
     /**
      * This method is current exposed for testing purposes
-     * 
-     * @return The underlying {@link ScheduledThreadPoolExecutor}
+     *
+     * @return The number of timer tasks that have aborted a client execution
      */
     @SdkTestInternalApi
-    public ScheduledThreadPoolExecutor getExecutor() {
-        return this.executor;
+    public long getTriggeredTaskCount() {
+        return triggeredTasks.get();
     }
 
     /**
-     * Shutdown the underlying {@link ScheduledThreadPoolExecutor}. Should be invoked when
-     * {@link AmazonHttpClient} is shutdown
+     * Does nothing. The timer is shared by all clients in the JVM and its worker and task threads
+     * exit on their own once idle, so this timer owns nothing that needs releasing. Timeouts
+     * already scheduled still fire or are canceled as usual.
+     *
+     * @deprecated No longer needed; there is nothing to shut down.
      */
-    public synchronized void shutdown() {
-        if (executor != null) {
-            executor.shutdown();
-        }
+    @Deprecated
+    public void shutdown() {
     }
 
     private ClientExecutionAbortTrackerTask scheduleTimerTask(int clientExecutionTimeoutMillis) {
-        ClientExecutionAbortTask timerTask = new ClientExecutionAbortTaskImpl(Thread.currentThread());
-        ScheduledFuture<?> timerTaskFuture = executor.schedule(timerTask, clientExecutionTimeoutMillis,
-                TimeUnit.MILLISECONDS);
-        return new ClientExecutionAbortTrackerTaskImpl(timerTask, timerTaskFuture);
+        final ClientExecutionAbortTask timerTask = new ClientExecutionAbortTaskImpl(Thread.currentThread());
+        HashedWheelTimer.Timeout timeout = wheel.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                triggeredTasks.incrementAndGet();
+                timerTask.run();
+            }
+        }, clientExecutionTimeoutMillis, TimeUnit.MILLISECONDS);
+        return new ClientExecutionAbortTrackerTaskImpl(timerTask, timeout);
     }
 
     private boolean isTimeoutDisabled(int clientExecutionTimeoutMillis) {
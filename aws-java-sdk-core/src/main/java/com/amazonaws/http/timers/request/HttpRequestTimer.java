@@ -1,93 +1,115 @@
-/*
- * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License").
- * You may not use this file except in compliance with the License.
- * A copy of the License is located at
- *
- *  http://aws.amazon.com/apache2.0
- *
- * or in the "license" file accompanying this file. This file is distributed
- * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
- * express or implied. See the License for the specific language governing
- * permissions and limitations under the License.
- */
-package com.amazonaws.http.timers.request;
-
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-import org.apache.http.client.methods.HttpRequestBase;
-
-import com.amazonaws.annotation.SdkInternalApi;
-import com.amazonaws.annotation.SdkTestInternalApi;
-import com.amazonaws.annotation.ThreadSafe;
-import com.amazonaws.http.timers.TimeoutThreadPoolBuilder;
-
-/**
- * Represents a timer class to enforce HTTP request timeouts.
- */
-@ThreadSafe
-@SdkInternalApi
-public class HttpRequestTimer {
-
-    private volatile ScheduledThreadPoolExecutor executor;
-
-    /**
-     * Start the timer with the specified timeout and return a object that can be used to track the
-     * state of the timer and cancel it if need be.
-     *
-     * @param apacheRequest
-     *            HTTP request this timer will abort if triggered.
-     * @param requestTimeoutMillis
-     *            A positive value here enables the timer, a non-positive value disables it and
-     *            returns a dummy tracker task
-     * @return Implementation of {@link HttpRequestAbortTaskTrackerImpl} to query the state of the
-     *         task and cancel it if appropriate
-     */
-    public HttpRequestAbortTaskTracker startTimer(final HttpRequestBase apacheRequest, final int requestTimeoutMillis) {
-        if (isTimeoutDisabled(requestTimeoutMillis)) {
-            return NoOpHttpRequestAbortTaskTracker.INSTANCE;
-        } else if (executor == null) {
-            initializeExecutor();
-        }
-        HttpRequestAbortTaskImpl timerTask = new HttpRequestAbortTaskImpl(apacheRequest);
-        ScheduledFuture<?> timerTaskFuture = executor.schedule(timerTask, requestTimeoutMillis, TimeUnit.MILLISECONDS);
-        return new HttpRequestAbortTaskTrackerImpl(timerTask, timerTaskFuture);
-    }
-
-    private boolean isTimeoutDisabled(final int requestTimeoutMillis) {
-        return requestTimeoutMillis <= 0;
-    }
-
-    /**
-     * Executor is lazily initialized as it's not compatible with Java 6
-     */
-    private synchronized void initializeExecutor() {
-        if (executor == null) {
-            executor = TimeoutThreadPoolBuilder.buildDefaultTimeoutThreadPool();
-        }
-    }
-
-    /**
-     * Shutdown the underlying {@link ScheduledThreadPoolExecutor}. Should be invoked when
-     * {@link AmazonHttpClient} is shutdown
-     */
-    public synchronized void shutdown() {
-        if (executor != null) {
-            executor.shutdown();
-        }
-    }
-
-    /**
-     * This method is current exposed for testing purposes
-     * 
-     * @return The underlying {@link ScheduledThreadPoolExecutor}
-     */
-    @SdkTestInternalApi
-    public ScheduledThreadPoolExecutor getExecutor() {
-        return executor;
-    }
-
-}
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.timers.request;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.SdkTestInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.http.timers.HashedWheelTimer;
+
+/**
+ * Represents a timer class to enforce HTTP request timeouts.
+ */
+@ThreadSafe
+@SdkInternalApi
+public class HttpRequestTimer {
+
+    private final HashedWheelTimer wheel;
+
+    /** Set on first use so tests can tell whether the timer was ever started. */
+    private volatile HashedWheelTimer timer;
+
+    private final AtomicLong triggeredTasks = new AtomicLong();
+
+    public HttpRequestTimer() {
+        this(HashedWheelTimer.getSharedInstance());
+    }
+
+    @SdkTestInternalApi
+    HttpRequestTimer(HashedWheelTimer wheel) {
+        this.wheel = wheel;
+    }
+
+    /**
+     * Start the timer with the specified timeout and return a object that can be used to track the
+     * state of the timer and cancel it if need be.
+     *
+     * @param apacheRequest
+     *            HTTP request this timer will abort if triggered.
+     * @param requestTimeoutMillis
+     *            A positive value here enables the timer, a non-positive value disables it and
+     *            returns a dummy tracker task
+     * @return Implementation of {@link HttpRequestAbortTaskTrackerImpl} to query the state of the
+     *         task and cancel it if appropriate
+     */
+    public HttpRequestAbortTaskTracker startTimer(final HttpRequestBase apacheRequest, final int requestTimeoutMillis) {
+        if (isTimeoutDisabled(requestTimeoutMillis)) {
+            return NoOpHttpRequestAbortTaskTracker.INSTANCE;
+        } else if (timer == null) {
+            timer = wheel;
+        }
+        final HttpRequestAbortTaskImpl timerTask = new HttpRequestAbortTaskImpl(apacheRequest);
+        HashedWheelTimer.Timeout timeout = wheel.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                triggeredTasks.incrementAndGet();
+                timerTask.run();
+            }
+        }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        return new HttpRequestAbortTaskTrackerImpl(timerTask, timeout);
+    }
+
+    private boolean isTimeoutDisabled(final int requestTimeoutMillis) {
+        return requestTimeoutMillis <= 0;
+    }
+
+    /**
+     * Does nothing. The timer is shared by all clients in the JVM and its worker and task threads
+     * exit on their own once idle, so this timer owns nothing that needs releasing. Timeouts
+     * already scheduled still fire or are canceled as usual.
+     *
+     * @deprecated No longer needed; there is nothing to shut down.
+     */
+    @Deprecated
+    public void shutdown() {
+    }
+
+    /**
+     * This method is current exposed for testing purposes
+     * 
+     * @return The {@link HashedWheelTimer} used by this timer, or null if no timeout has been
+     *         scheduled yet
+     */
+    @SdkTestInternalApi
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    /**
+     * This method is current exposed for testing purposes
+     *
+     * @return The number of timer tasks that have aborted a request
+     */
+    @SdkTestInternalApi
+    public long getTriggeredTaskCount() {
+        return triggeredTasks.get();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.annotation.SdkProtectedApi;
+import com.amazonaws.retry.RetryUtils;
+
+/**
+ * Retry rules shared by the buffered clients, which send entries in batch
+ * calls and retry the entries a call rejects. A retry is meant to be
+ * scheduled after its back off rather than waited for on a thread.
+ */
+@SdkProtectedApi
+public final class BatchRetries {
+
+    /** The back off before the first retry. */
+    public static final long BASE_BACKOFF_MS = 50;
+
+    /** The longest back off between two attempts. */
+    public static final long MAX_BACKOFF_MS = 5000;
+
+    /**
+     * Error codes of batch entries rejected because the service was busy,
+     * rather than because of the entry itself.
+     */
+    private static final Set<String> RETRYABLE_ERROR_CODES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(
+                    "Throttling",
+                    "ThrottlingException",
+                    "ProvisionedThroughputExceededException",
+                    "ServiceUnavailable",
+                    "ServiceUnavailableException",
+                    "InternalFailure")));
+
+    private BatchRetries() {
+    }
+
+    /**
+     * @param attempt
+     *            the number of attempts that failed so far, minus one
+     * @return the back off before the next attempt, doubling from
+     *         {@link #BASE_BACKOFF_MS} up to {@link #MAX_BACKOFF_MS}
+     */
+    public static long backoffMs(int attempt) {
+        return backoffMs(attempt, BASE_BACKOFF_MS, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * @return the back off before the next attempt, doubling from the given
+     *         base up to the given maximum
+     */
+    public static long backoffMs(int attempt, long baseMs, long maxMs) {
+        return Math.min(maxMs, baseMs << Math.min(attempt, 16));
+    }
+
+    /**
+     * @return whether a failed call is worth making again: the service was
+     *         throttling or failed with a 500 or 503, or the client marked the
+     *         error retryable
+     */
+    public static boolean isRetryable(AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return RetryUtils.isRetryableServiceException(ase)
+                    || RetryUtils.isThrottlingException(ase);
+        }
+        return e.isRetryable();
+    }
+
+    /**
+     * @return whether an entry a batch call rejected with the given error
+     *         code is worth sending again: the service was throttling or
+     *         unavailable
+     */
+    public static boolean isRetryableErrorCode(String errorCode) {
+        return errorCode != null && RETRYABLE_ERROR_CODES.contains(errorCode);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.SdkProtectedApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Checkpoints of stream readers kept in a properties file on the local file
+ * system. Used by the file checkpoint stores of the Kinesis and DynamoDB
+ * Streams readers.
+ * <p>
+ * Checkpoints are updated in memory, and written to the file in the
+ * background at most once per flush interval, so that a reader checkpointing
+ * every batch of many shards doesn't rewrite the file for each. Checkpoints
+ * not written yet when the process stops are lost, and their shards are read
+ * again from the previous checkpoint. {@link #close()} writes any pending
+ * checkpoint. A flush interval of zero writes the file on every update, on
+ * the updating thread.
+ * <p>
+ * The file is written to a temporary file first, which is then renamed over
+ * it. Where a rename can't replace an existing file, the previous file is
+ * renamed to a backup first, and removed only once the new file is in place;
+ * the backup is loaded if the file itself is missing. The file should not be
+ * shared between processes.
+ */
+@SdkProtectedApi
+@ThreadSafe
+public class CheckpointFile implements Closeable {
+
+    private static final Log log = LogFactory.getLog(CheckpointFile.class);
+
+    private final File file;
+    private final File temp;
+    private final File backup;
+    private final long flushIntervalMs;
+
+    private final Map<String, String> checkpoints =
+            new ConcurrentHashMap<String, String>();
+
+    /** Number of updates made so far */
+    private final AtomicLong updates = new AtomicLong();
+
+    /** Number of updates included in the last write; guarded by flushTask */
+    private long written;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            try {
+                flush();
+            } catch (AmazonClientException e) {
+                log.warn("Unable to write checkpoints, will retry", e);
+                scheduleFlush();
+            }
+        }
+    };
+
+    /**
+     * Creates a checkpoint file, loading any checkpoints it already contains.
+     *
+     * @param flushIntervalMs the most time a checkpoint is kept in memory
+     *            only, or 0 to write the file on every update
+     * @throws AmazonClientException if the file exists but can't be read
+     */
+    public CheckpointFile(File file, long flushIntervalMs) {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        if (flushIntervalMs < 0) {
+            throw new IllegalArgumentException(
+                    "flushIntervalMs must not be negative");
+        }
+        this.file = file;
+        File directory = file.getAbsoluteFile().getParentFile();
+        this.temp = new File(directory, file.getName() + ".tmp");
+        this.backup = new File(directory, file.getName() + ".bak");
+        this.flushIntervalMs = flushIntervalMs;
+
+        if (file.exists()) {
+            load(file);
+        } else if (backup.exists()) {
+            // the process stopped while replacing the file
+            load(backup);
+        }
+    }
+
+    /** Returns the file the checkpoints are kept in. */
+    public File getFile() {
+        return file;
+    }
+
+    /** Returns the checkpoint for the given key, or null if there is none. */
+    public String get(String key) {
+        return checkpoints.get(key);
+    }
+
+    /**
+     * Updates the checkpoint for the given key. The file is written within
+     * the flush interval.
+     *
+     * @throws AmazonClientException if the flush interval is 0 and the file
+     *             can't be written
+     */
+    public void put(String key, String checkpoint) {
+        checkpoints.put(key, checkpoint);
+        updates.incrementAndGet();
+        if (flushIntervalMs == 0) {
+            flush();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes the file now if any checkpoint was updated since it was last
+     * written.
+     *
+     * @throws AmazonClientException if the file can't be written
+     */
+    public void flush() {
+        synchronized (flushTask) {
+            long count = updates.get();
+            if (count == written) {
+                return;
+            }
+            Properties snapshot = new Properties();
+            snapshot.putAll(checkpoints);
+            write(snapshot);
+            written = count;
+        }
+    }
+
+    /**
+     * Writes any pending checkpoint.
+     *
+     * @throws AmazonClientException if the file can't be written
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            Flusher.INSTANCE.schedule(flushTask, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void load(File from) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(from);
+            Properties properties = new Properties();
+            properties.load(in);
+            for (String key : properties.stringPropertyNames()) {
+                checkpoints.put(key, properties.getProperty(key));
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to read checkpoints from " + from, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void write(Properties snapshot) {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            snapshot.store(out, null);
+            out.getFD().sync();
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to write checkpoints to " + temp, e);
+        } finally {
+            closeQuietly(out);
+        }
+
+        if (temp.renameTo(file)) {
+            return;
+        }
+
+        // File.renameTo does not replace an existing file on every platform.
+        // Keep the previous file as a backup until the new one is in place.
+        backup.delete();
+        if (file.exists() && !file.renameTo(backup)) {
+            throw new AmazonClientException(
+                    "Unable to replace " + file + " with " + temp);
+        }
+        if (!temp.renameTo(file)) {
+            backup.renameTo(file);
+            throw new AmazonClientException(
+                    "Unable to replace " + file + " with " + temp);
+        }
+        backup.delete();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * The daemon thread writing the checkpoint files in the background,
+     * created on first use.
+     */
+    private static final class Flusher {
+
+        private static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "aws-checkpoint-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static com.amazonaws.SDKGlobalConfiguration.EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Caches resources read from the Amazon EC2 Instance Metadata Service.
+ * <p>
+ * Resources that cannot change while an instance is running, such as the
+ * instance identity document, the instance id or the AMI id, are cached for
+ * the lifetime of the cache. Other resources are cached for a configurable
+ * time to live, and security credentials are never cached. Concurrent reads of
+ * the same resource share a single request to the metadata service.
+ */
+@ThreadSafe
+public class EC2MetadataCache {
+
+    /** Default time to live (milliseconds) of mutable resources. */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 1000;
+
+    /**
+     * Resource paths that never change while the instance is running, along
+     * with the resources below them. A path ending in a slash only matches
+     * the resources below it.
+     */
+    private static final String[] IMMUTABLE_PATHS = {
+        "/latest/dynamic/instance-identity/",
+        "/latest/meta-data/ami-id",
+        "/latest/meta-data/ami-launch-index",
+        "/latest/meta-data/ami-manifest-path",
+        "/latest/meta-data/ancestor-ami-ids",
+        "/latest/meta-data/instance-id",
+        "/latest/meta-data/instance-type",
+        "/latest/meta-data/kernel-id",
+        "/latest/meta-data/mac",
+        "/latest/meta-data/placement/availability-zone",
+        "/latest/meta-data/product-codes",
+        "/latest/meta-data/ramdisk-id",
+        "/latest/meta-data/reservation-id",
+    };
+
+    /** Resource paths whose value must always be read from the service. */
+    private static final String[] UNCACHED_PREFIXES = {
+        EC2MetadataClient.SECURITY_CREDENTIALS_RESOURCE,
+        "/latest/meta-data/iam/security-credentials",
+        "/latest/meta-data/spot/",
+    };
+
+    private final EC2MetadataClient client;
+    private final long timeToLiveMillis;
+
+    private final ConcurrentMap<String, Entry> entries =
+            new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, FutureTask<Entry>> inflight =
+            new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+    public EC2MetadataCache(EC2MetadataClient client) {
+        this(client, DEFAULT_TIME_TO_LIVE_MILLIS);
+    }
+
+    /**
+     * @param client
+     *            The client used to read resources that are not cached.
+     * @param timeToLiveMillis
+     *            How long resources that may change, and resources that were
+     *            not found, are cached for.
+     */
+    public EC2MetadataCache(EC2MetadataClient client, long timeToLiveMillis) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        if (timeToLiveMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Time to live must not be negative");
+        }
+        this.client = client;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * Returns the text contents of the specified resource, reading it from
+     * the metadata service only if no fresh copy is cached.
+     *
+     * @throws IOException
+     *             If any problems were encountered while connecting to the
+     *             metadata service. Failures are not cached.
+     * @throws AmazonClientException
+     *             If the requested resource is not found.
+     */
+    public String readResource(String resourcePath)
+            throws IOException, AmazonClientException {
+
+        String key = cacheKey(resourcePath);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            entry = load(key, resourcePath);
+        }
+        if (entry.notFoundMessage != null) {
+            throw new AmazonClientException(entry.notFoundMessage);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Discards all cached resources.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Reads the resource from the metadata service, or waits for a read
+     * already started by another thread.
+     */
+    private Entry load(final String key, final String resourcePath)
+            throws IOException {
+        FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+            @Override
+            public Entry call() throws IOException {
+                return fetch(key, resourcePath);
+            }
+        });
+
+        FutureTask<Entry> existing = inflight.putIfAbsent(key, task);
+        if (existing == null) {
+            try {
+                task.run();
+            } finally {
+                inflight.remove(key, task);
+            }
+        } else {
+            task = existing;
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(
+                    "Interrupted while reading EC2 instance metadata", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException(cause.getMessage(), cause);
+        }
+    }
+
+    private Entry fetch(String key, String resourcePath) throws IOException {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        try {
+            String value = client.readResource(resourcePath);
+            long expiry = isImmutable(resourcePath)
+                    ? Long.MAX_VALUE
+                    : now + timeToLiveMillis;
+            entry = new Entry(value, null, expiry);
+        } catch (AmazonClientException e) {
+            entry = new Entry(null, e.getMessage(), now + timeToLiveMillis);
+        }
+
+        if (isCacheable(resourcePath)) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Includes the endpoint override, if any, so resources read from
+     * different endpoints are not mixed up.
+     */
+    private static String cacheKey(String resourcePath) {
+        String endpoint = System.getProperty(
+                EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY);
+        return endpoint == null ? resourcePath : endpoint + resourcePath;
+    }
+
+    static boolean isImmutable(String resourcePath) {
+        for (String path : IMMUTABLE_PATHS) {
+            if (isAtOrBelow(resourcePath, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches whole path segments, so that {@code /latest/meta-data/mac}
+     * doesn't match the mutable {@code /latest/meta-data/macs/} resources.
+     */
+    private static boolean isAtOrBelow(String resourcePath, String path) {
+        if (!resourcePath.startsWith(path)) {
+            return false;
+        }
+        return resourcePath.length() == path.length()
+                || path.endsWith("/")
+                || resourcePath.charAt(path.length()) == '/';
+    }
+
+    static boolean isCacheable(String resourcePath) {
+        return !startsWithAny(resourcePath, UNCACHED_PREFIXES);
+    }
+
+    private static boolean startsWithAny(String path, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+        final String value;
+        final String notFoundMessage;
+        final long expiresAtMillis;
+
+        Entry(String value, String notFoundMessage, long expiresAtMillis) {
+            this.value = value;
+            this.notFoundMessage = notFoundMessage;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+}
@@ -25,12 +25,22 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.IOUtils;
 
 /**
  * Simple client for accessing the Amazon EC2 Instance Metadata Service.
+ * <p>
+ * Responses are always read to the end and closed, so the underlying
+ * connection is returned to the JVM's keep-alive cache and reused by the next
+ * request instead of a new connection being opened for every lookup.
  */
 public class EC2MetadataClient {
 
+    /** Default connect timeout (milliseconds). */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000 * 2;
+
+    /** Default read timeout (milliseconds). */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 1000 * 5;
 
     /** Default endpoint for the Amazon EC2 Instance Metadata Service. */
     private static final String EC2_METADATA_SERVICE_URL = "http://169.254.169.254";
@@ -40,6 +50,28 @@ public class EC2MetadataClient {
 
     private static final Log log = LogFactory.getLog(EC2MetadataClient.class);
 
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public EC2MetadataClient() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param connectTimeoutMillis
+     *            The maximum time to wait for a connection to the metadata
+     *            service.
+     * @param readTimeoutMillis
+     *            The maximum time to wait for data from the metadata service.
+     */
+    public EC2MetadataClient(int connectTimeoutMillis, int readTimeoutMillis) {
+        if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeouts must be positive");
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
     /**
      * Connects to the Amazon EC2 Instance Metadata Service to retrieve the
      * default credential information (if any).
@@ -84,10 +116,10 @@ public class EC2MetadataClient {
         log.debug("Connecting to EC2 instance metadata service at URL: " + url.toString());
 
         HttpURLConnection connection = (HttpURLConnection)url.openConnection();
-        connection.setConnectTimeout(1000 * 2);
-        connection.setReadTimeout(1000 * 5);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
         connection.setRequestMethod("GET");
-        connection.setDoOutput(true);
+        connection.setUseCaches(false);
         connection.connect();
 
         return readResponse(connection);
@@ -108,25 +140,36 @@ public class EC2MetadataClient {
      *             If any problems ocurred while reading the response.
      */
     private String readResponse(HttpURLConnection connection) throws IOException {
-    	if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND)
-    		throw new AmazonClientException("The requested metadata is not found at " + connection.getURL());
-    	
-        InputStream inputStream = connection.getInputStream();
-
-        try {
-            StringBuilder buffer = new StringBuilder();
-            while (true) {
-                int c = inputStream.read();
-                if (c == -1) break;
-                buffer.append((char)c);
+        int statusCode = connection.getResponseCode();
+        if (statusCode != HttpURLConnection.HTTP_OK) {
+            // Drain the error body so the connection can still be reused
+            drain(connection.getErrorStream());
+            if (statusCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new AmazonClientException("The requested metadata is not found at " + connection.getURL());
             }
+            throw new IOException("Unexpected response code " + statusCode
+                    + " from EC2 instance metadata service at " + connection.getURL());
+        }
 
-            return buffer.toString();
+        InputStream inputStream = connection.getInputStream();
+        try {
+            return IOUtils.toString(inputStream);
         } finally {
             inputStream.close();
         }
     }
 
+    private static void drain(InputStream inputStream) {
+        if (inputStream == null) return;
+        try {
+            IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            log.debug("Unable to read error response from EC2 instance metadata service", e);
+        } finally {
+            IOUtils.closeQuietly(inputStream, log);
+        }
+    }
+
     /**
      * Constructs a URL to the EC2 metadata service for the specified
      * resource path.
@@ -22,6 +22,10 @@ import javax.net.ssl.SSLSocket;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
+
 public class SdkSSLSocket extends DelegateSSLSocket {
     private static final Log log = LogFactory.getLog(SdkSSLSocket.class);
 
@@ -42,7 +46,14 @@ public class SdkSSLSocket extends DelegateSSLSocket {
     public void connect(SocketAddress endpoint) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.Connect);
+        try {
+            if (span != null)
+                span.addAttribute(TraceSpan.REMOTE_ADDRESS, endpoint);
+            sock.connect(endpoint);
+        } finally {
+            TracingContext.endSpan(span);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
@@ -51,11 +62,28 @@ public class SdkSSLSocket extends DelegateSSLSocket {
     public void connect(SocketAddress endpoint, int timeout) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint, timeout);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.Connect);
+        try {
+            if (span != null)
+                span.addAttribute(TraceSpan.REMOTE_ADDRESS, endpoint);
+            sock.connect(endpoint, timeout);
+        } finally {
+            TracingContext.endSpan(span);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
 
+    @Override
+    public void startHandshake() throws IOException {
+        final TraceSpan span = TracingContext.startPhase(TracePhase.TlsHandshake);
+        try {
+            sock.startHandshake();
+        } finally {
+            TracingContext.endSpan(span);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (log.isDebugEnabled())
@@ -21,6 +21,10 @@ import java.net.SocketAddress;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
+
 public class SdkSocket extends DelegateSocket {
     private static final Log log = LogFactory.getLog(SdkSocket.class);
 
@@ -41,7 +45,14 @@ public class SdkSocket extends DelegateSocket {
     public void connect(SocketAddress endpoint) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.Connect);
+        try {
+            if (span != null)
+                span.addAttribute(TraceSpan.REMOTE_ADDRESS, endpoint);
+            sock.connect(endpoint);
+        } finally {
+            TracingContext.endSpan(span);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
@@ -50,7 +61,14 @@ public class SdkSocket extends DelegateSocket {
     public void connect(SocketAddress endpoint, int timeout) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint, timeout);
+        final TraceSpan span = TracingContext.startPhase(TracePhase.Connect);
+        try {
+            if (span != null)
+                span.addAttribute(TraceSpan.REMOTE_ADDRESS, endpoint);
+            sock.connect(endpoint, timeout);
+        } finally {
+            TracingContext.endSpan(span);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
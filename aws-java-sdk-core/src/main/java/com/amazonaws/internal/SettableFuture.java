@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.SdkProtectedApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * The future of a single entry sent by a buffered client, completed by the
+ * batch call that sends it. Only the first completion counts. It can't be
+ * cancelled.
+ * <p>
+ * Subclasses may override {@link #onSuccess} and {@link #onError}, for
+ * instance to notify an async handler; they are called once, on the
+ * completing thread, after the future is done.
+ */
+@SdkProtectedApi
+@ThreadSafe
+public class SettableFuture<T> implements Future<T> {
+
+    private static final Log log = LogFactory.getLog(SettableFuture.class);
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile T result;
+    private volatile Exception error;
+
+    /**
+     * Completes the future with the given result.
+     *
+     * @return false if the future was already completed
+     */
+    public boolean set(T value) {
+        if (!completed.compareAndSet(false, true)) {
+            return false;
+        }
+        result = value;
+        done.countDown();
+        try {
+            onSuccess(value);
+        } catch (RuntimeException e) {
+            log.warn("Completion callback threw an exception", e);
+        }
+        return true;
+    }
+
+    /**
+     * Completes the future with the given error.
+     *
+     * @return false if the future was already completed
+     */
+    public boolean setException(Exception e) {
+        if (!completed.compareAndSet(false, true)) {
+            return false;
+        }
+        error = e;
+        done.countDown();
+        try {
+            onError(e);
+        } catch (RuntimeException re) {
+            log.warn("Completion callback threw an exception", re);
+        }
+        return true;
+    }
+
+    /**
+     * Called once the future has completed with a result. Does nothing by
+     * default.
+     */
+    protected void onSuccess(T value) {
+    }
+
+    /**
+     * Called once the future has completed with an error. Does nothing by
+     * default.
+     */
+    protected void onError(Exception e) {
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+}
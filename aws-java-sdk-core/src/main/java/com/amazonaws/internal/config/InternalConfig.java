@@ -39,13 +39,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Immutable
 public class InternalConfig {
 
-    //@formatter:off
-    private static final ObjectMapper MAPPER = new ObjectMapper()
-            .disable(MapperFeature.CAN_OVERRIDE_ACCESS_MODIFIERS)
-            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-            .configure(JsonParser.Feature.ALLOW_COMMENTS, true);
-    //@formatter:on
-
     private static final InternalLogApi log = InternalLogFactory.getLog(InternalConfig.class);
 
     static final String DEFAULT_CONFIG_RESOURCE_RELATIVE_PATH = "awssdk_config_default.json";
@@ -233,25 +226,36 @@ public class InternalConfig {
     static InternalConfigJsonHelper loadfrom(URL url) throws JsonParseException, JsonMappingException, IOException {
         if (url == null)
             throw new IllegalArgumentException();
-        InternalConfigJsonHelper target = MAPPER.readValue(url, InternalConfigJsonHelper.class);
+        InternalConfigJsonHelper target = MapperHolder.MAPPER.readValue(url, InternalConfigJsonHelper.class);
         return target;
     }
 
     /**
      * Loads and returns the AWS Java SDK internal configuration from the classpath.
+     * The default configuration is compiled into {@link PrecompiledInternalConfig}, so
+     * that Jackson is only needed when an override configuration is present.
      */
     static InternalConfig load() throws JsonParseException, JsonMappingException, IOException {
-        // First try loading via the class by using a relative path
-        URL url = ClassLoaderHelper.getResource(DEFAULT_CONFIG_RESOURCE_RELATIVE_PATH, true, InternalConfig.class); // classesFirst=true
-        if (url == null) { // Then try with the absolute path
-            url = ClassLoaderHelper.getResource(DEFAULT_CONFIG_RESOURCE_ABSOLUTE_PATH, InternalConfig.class);
+        URL overrideUrl = getOverrideConfigResource();
+        if (overrideUrl == null) {
+            log.debug("Configuration override " + CONFIG_OVERRIDE_RESOURCE + " not found.");
+            InternalConfig config = new InternalConfig(PrecompiledInternalConfig.defaults(),
+                    new InternalConfigJsonHelper());
+            config.setDefaultConfigFileLocation(getDefaultConfigResource());
+            return config;
         }
+        return loadFromJson();
+    }
+
+    /**
+     * Loads and returns the AWS Java SDK internal configuration from the JSON files on the
+     * classpath.
+     */
+    static InternalConfig loadFromJson() throws JsonParseException, JsonMappingException, IOException {
+        URL url = getDefaultConfigResource();
         InternalConfigJsonHelper config = loadfrom(url);
         InternalConfigJsonHelper configOverride;
-        URL overrideUrl = ClassLoaderHelper.getResource("/" + CONFIG_OVERRIDE_RESOURCE, InternalConfig.class);
-        if (overrideUrl == null) { // Try without a leading "/"
-            overrideUrl = ClassLoaderHelper.getResource(CONFIG_OVERRIDE_RESOURCE, InternalConfig.class);
-        }
+        URL overrideUrl = getOverrideConfigResource();
         if (overrideUrl == null) {
             log.debug("Configuration override " + CONFIG_OVERRIDE_RESOURCE + " not found.");
             configOverride = new InternalConfigJsonHelper();
@@ -264,6 +268,36 @@ public class InternalConfig {
         return merged;
     }
 
+    private static URL getDefaultConfigResource() {
+        // First try loading via the class by using a relative path
+        URL url = ClassLoaderHelper.getResource(DEFAULT_CONFIG_RESOURCE_RELATIVE_PATH, true, InternalConfig.class); // classesFirst=true
+        if (url == null) { // Then try with the absolute path
+            url = ClassLoaderHelper.getResource(DEFAULT_CONFIG_RESOURCE_ABSOLUTE_PATH, InternalConfig.class);
+        }
+        return url;
+    }
+
+    private static URL getOverrideConfigResource() {
+        URL overrideUrl = ClassLoaderHelper.getResource("/" + CONFIG_OVERRIDE_RESOURCE, InternalConfig.class);
+        if (overrideUrl == null) { // Try without a leading "/"
+            overrideUrl = ClassLoaderHelper.getResource(CONFIG_OVERRIDE_RESOURCE, InternalConfig.class);
+        }
+        return overrideUrl;
+    }
+
+    /**
+     * Holds the Jackson object mapper, which is only created when a configuration file is
+     * actually parsed.
+     */
+    private static class MapperHolder {
+        //@formatter:off
+        private static final ObjectMapper MAPPER = new ObjectMapper()
+                .disable(MapperFeature.CAN_OVERRIDE_ACCESS_MODIFIERS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+        //@formatter:on
+    }
+
     /*
      * For debugging purposes
      */
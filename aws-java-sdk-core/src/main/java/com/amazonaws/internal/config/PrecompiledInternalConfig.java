@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal.config;
+
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * The internal configuration of com/amazonaws/internal/config/awssdk_config_default.json,
+ * compiled into code so that it can be loaded without parsing JSON.
+ * <p>
+ * Generated by PrecompiledMetadataGeneratorTask; do not edit.
+ */
+@SdkInternalApi
+final class PrecompiledInternalConfig {
+
+    private PrecompiledInternalConfig() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static InternalConfigJsonHelper defaults() {
+        InternalConfigJsonHelper config = new InternalConfigJsonHelper();
+        config.setDefaultSigner(new SignerConfigJsonHelper("AWS4SignerType"));
+        config.setServiceSigners(
+                signer("importexport", "QueryStringSignerType"),
+                signer("s3", "AWSS3V4SignerType"));
+        config.setRegionSigners();
+        config.setServiceRegionSigners(
+                signer("s3/us-east-1", "S3SignerType"),
+                signer("s3/us-west-1", "S3SignerType"),
+                signer("s3/us-west-2", "S3SignerType"),
+                signer("s3/eu-west-1", "S3SignerType"),
+                signer("s3/ap-southeast-1", "S3SignerType"),
+                signer("s3/ap-southeast-2", "S3SignerType"),
+                signer("s3/ap-northeast-1", "S3SignerType"),
+                signer("s3/sa-east-1", "S3SignerType"),
+                signer("s3/us-gov-west-1", "S3SignerType"),
+                signer("s3/fips-us-gov-west-1", "S3SignerType"),
+                signer("sdb/us-east-1", "QueryStringSignerType"),
+                signer("sdb/us-west-1", "QueryStringSignerType"),
+                signer("sdb/us-west-2", "QueryStringSignerType"),
+                signer("sdb/eu-west-1", "QueryStringSignerType"),
+                signer("sdb/ap-southeast-1", "QueryStringSignerType"),
+                signer("sdb/ap-southeast-2", "QueryStringSignerType"),
+                signer("sdb/ap-northeast-1", "QueryStringSignerType"),
+                signer("sdb/sa-east-1", "QueryStringSignerType"),
+                signer("sdb/us-gov-west-1", "QueryStringSignerType"));
+        config.setHttpClients(
+                httpClient("AmazonSimpleWorkflowClient", "swf", null),
+                httpClient("AmazonCloudWatchClient", "monitoring", null),
+                httpClient("DataPipelineClient", "datapipeline", null),
+                httpClient("AmazonIdentityManagementClient", "iam", null),
+                httpClient("AmazonSimpleDBClient", "sdb", null),
+                httpClient("AmazonSimpleEmailServiceClient", "email", "email"),
+                httpClient("AWSSecurityTokenServiceClient", "sts", null),
+                httpClient("AmazonCognitoIdentityClient", "cognito-identity", null),
+                httpClient("AmazonCognitoSyncClient", "cognito-sync", null),
+                httpClient("AmazonCloudSearchDomainClient", "cloudsearch", null),
+                httpClient("AWSSimpleSystemsManagementClient", "ssm", null),
+                httpClient("AWSDirectoryServiceClient", "ds", null),
+                httpClient("AmazonDynamoDBStreamsClient", "dynamodb", "streams.dynamodb"),
+                httpClient("AWSIotClient", null, "iot"));
+        config.setHostRegexToRegionMappings(new HostRegexToRegionMappingJsonHelper[] {
+                hostRegexToRegionMapping("(.+\\.)?s3\\.amazonaws\\.com", "us-east-1"),
+                hostRegexToRegionMapping("(.+\\.)?s3-external-1\\.amazonaws\\.com", "us-east-1"),
+                hostRegexToRegionMapping("(.+\\.)?s3-fips-us-gov-west-1\\.amazonaws\\.com", "us-gov-west-1")
+        });
+        config.setUserAgentTemplate("aws-sdk-{platform}/{version} {os.name}/{os.version} {java.vm.name}/{java.vm.version}/{java.version}{language.and.region}");
+        return config;
+    }
+
+    private static JsonIndex<SignerConfigJsonHelper, SignerConfig> signer(String key, String signerType) {
+        return new JsonIndex<SignerConfigJsonHelper, SignerConfig>(key,
+                new SignerConfigJsonHelper(signerType));
+    }
+
+    private static JsonIndex<HttpClientConfigJsonHelper, HttpClientConfig> httpClient(String key,
+            String serviceName, String regionMetadataServiceName) {
+        return new JsonIndex<HttpClientConfigJsonHelper, HttpClientConfig>(key,
+                new HttpClientConfigJsonHelper(serviceName, regionMetadataServiceName));
+    }
+
+    private static HostRegexToRegionMappingJsonHelper hostRegexToRegionMapping(String hostNameRegex,
+            String regionName) {
+        HostRegexToRegionMappingJsonHelper mapping = new HostRegexToRegionMappingJsonHelper();
+        mapping.setHostNameRegex(hostNameRegex);
+        mapping.setRegionName(regionName);
+        return mapping;
+    }
+}
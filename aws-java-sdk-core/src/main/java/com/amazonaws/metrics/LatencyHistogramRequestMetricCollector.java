@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+/**
+ * A request metric collector that keeps a {@link LatencyHistogram} of the
+ * {@link Field#ClientExecuteTime} (microseconds) of every service and
+ * operation, such as "AmazonDynamoDBv2.GetItem". As it only reads the metrics
+ * through {@link AWSRequestMetrics#export(RequestMetricVisitor)}, the SDK
+ * records them in their compact form, which makes it cheap enough to be left
+ * enabled in production.
+ * <p>
+ * It can be set at the SDK, client or request level like any other request
+ * metric collector, e.g.
+ * <pre>
+ * LatencyHistogramRequestMetricCollector histograms = new LatencyHistogramRequestMetricCollector();
+ * AwsSdkMetrics.setRequestMetricCollector(histograms);
+ * ...
+ * long p99 = histograms.getHistogram("AmazonDynamoDBv2", "GetItem").getPercentile(99);
+ * </pre>
+ */
+@ThreadSafe
+public class LatencyHistogramRequestMetricCollector extends RequestMetricCollector {
+
+    private static final String REQUEST_SUFFIX = "Request";
+
+    /** Histograms by service name, then by original request class. */
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, LatencyHistogram>> histograms =
+            new ConcurrentHashMap<String, ConcurrentMap<Class<?>, LatencyHistogram>>();
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        AWSRequestMetrics metrics = request.getAWSRequestMetrics();
+        if (metrics == null || request.getServiceName() == null) {
+            return;
+        }
+        ClientExecuteTimeVisitor visitor = new ClientExecuteTimeVisitor();
+        metrics.export(visitor);
+        if (visitor.nanos >= 0) {
+            histogramOf(request.getServiceName(), request.getOriginalRequest())
+                    .record(TimeUnit.NANOSECONDS.toMicros(visitor.nanos));
+        }
+    }
+
+    @Override
+    public boolean isCompactMetricsSupported() {
+        return true;
+    }
+
+    /**
+     * Returns the histogram of the given service and operation, or null if no
+     * request of the operation completed yet.
+     *
+     * @param serviceName
+     *            The service name, e.g. "AmazonDynamoDBv2"
+     * @param operationName
+     *            The operation name, e.g. "GetItem"
+     */
+    public LatencyHistogram getHistogram(String serviceName, String operationName) {
+        return getHistograms().get(serviceName + "." + operationName);
+    }
+
+    /**
+     * Returns a snapshot of all histograms, keyed by the service and the
+     * operation name separated by a dot.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> snapshot = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, ConcurrentMap<Class<?>, LatencyHistogram>> service
+                : histograms.entrySet()) {
+            for (Map.Entry<Class<?>, LatencyHistogram> operation
+                    : service.getValue().entrySet()) {
+                snapshot.put(service.getKey() + "." + operationNameOf(operation.getKey()),
+                        operation.getValue());
+            }
+        }
+        return snapshot;
+    }
+
+    /** Discards all histograms. */
+    public void reset() {
+        histograms.clear();
+    }
+
+    private LatencyHistogram histogramOf(String serviceName,
+            AmazonWebServiceRequest originalRequest) {
+        ConcurrentMap<Class<?>, LatencyHistogram> operations = histograms.get(serviceName);
+        if (operations == null) {
+            ConcurrentMap<Class<?>, LatencyHistogram> created =
+                    new ConcurrentHashMap<Class<?>, LatencyHistogram>();
+            operations = histograms.putIfAbsent(serviceName, created);
+            if (operations == null) {
+                operations = created;
+            }
+        }
+        Class<?> operation = originalRequest == null
+                ? AmazonWebServiceRequest.class
+                : originalRequest.getClass();
+        LatencyHistogram histogram = operations.get(operation);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = operations.putIfAbsent(operation, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    private static String operationNameOf(Class<?> requestClass) {
+        String name = requestClass.getSimpleName();
+        return name.endsWith(REQUEST_SUFFIX) && name.length() > REQUEST_SUFFIX.length()
+                ? name.substring(0, name.length() - REQUEST_SUFFIX.length())
+                : name;
+    }
+
+    private static class ClientExecuteTimeVisitor implements RequestMetricVisitor {
+        private long nanos = -1;
+
+        @Override
+        public void visitCounter(String name, long value) {
+        }
+
+        @Override
+        public void visitEvent(String name, int count, long totalNanos) {
+            if (Field.ClientExecuteTime.name().equals(name)) {
+                nanos = totalNanos;
+            }
+        }
+
+        @Override
+        public void visitProperty(String name, Object value) {
+        }
+    }
+}
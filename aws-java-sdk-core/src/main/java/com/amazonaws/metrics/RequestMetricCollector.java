@@ -43,6 +43,17 @@ public abstract class RequestMetricCollector {
     public abstract void collectMetrics(Request<?> request, Response<?> response);
     public boolean isEnabled() { return true; }
 
+    /**
+     * Returns true if this collector only reads the request metrics through
+     * {@link com.amazonaws.util.AWSRequestMetrics#export(RequestMetricVisitor)}
+     * and {@link com.amazonaws.util.AWSRequestMetrics#getProperty(MetricType)},
+     * in which case the SDK records them in the cheaper
+     * {@link com.amazonaws.util.AWSRequestMetricsCompactSupport} form. Returns
+     * false by default, as the full {@link com.amazonaws.util.TimingInfo} of
+     * every event is only available otherwise.
+     */
+    public boolean isCompactMetricsSupported() { return false; }
+
     /** A convenient instance of a no-op request metric collector. */
     public static final RequestMetricCollector NONE = new RequestMetricCollector() {
         @Override public void collectMetrics(Request<?> request, Response<?> response) {}
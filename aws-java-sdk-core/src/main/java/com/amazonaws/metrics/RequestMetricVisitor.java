@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import com.amazonaws.util.AWSRequestMetrics;
+
+/**
+ * Receives the metrics of a request one at a time, without the metrics having
+ * to be copied into intermediate collections first.
+ *
+ * @see AWSRequestMetrics#export(RequestMetricVisitor)
+ */
+public interface RequestMetricVisitor {
+
+    /**
+     * Receives the value of a counter, such as
+     * {@link AWSRequestMetrics.Field#RequestCount}.
+     */
+    public void visitCounter(String name, long value);
+
+    /**
+     * Receives a timed event, such as
+     * {@link AWSRequestMetrics.Field#HttpRequestTime}.
+     *
+     * @param count
+     *            The number of times the event completed, e.g. once per
+     *            retry.
+     * @param totalNanos
+     *            The total time (nanoseconds) taken by all occurrences of
+     *            the event.
+     */
+    public void visitEvent(String name, int count, long totalNanos);
+
+    /**
+     * Receives a property, such as {@link AWSRequestMetrics.Field#StatusCode}.
+     * Properties added more than once are received once per value.
+     */
+    public void visitProperty(String name, Object value);
+}
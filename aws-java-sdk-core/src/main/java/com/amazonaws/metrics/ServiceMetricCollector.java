@@ -35,6 +35,12 @@ public abstract class ServiceMetricCollector {
      * Collects metrics for non-request specific latencies.
      */
     public abstract void collectLatency(ServiceLatencyProvider provider);
+    /**
+     * Collects metrics counting non-request specific events, such as the
+     * evictions from a cache. A metric sampled with 1 or 0 per event has the
+     * ratio of the events it counts as its average. Ignored by default.
+     */
+    public void collectCount(ServiceMetricType type, long count) {}
 
     public boolean isEnabled() { return true; }
     /** A convenient instance of a no-op service metric collector. */
@@ -53,6 +53,11 @@
  * This metric is collected from the respective <a 
  * href="https://hc.apache.org/httpcomponents-core-ga/httpcore/apidocs/org/apache/http/pool/PoolStats.html"
  * >PoolStats</a>. before the connection of a request is obtained</li>
+ * <li>HttpClientPoolRouteAvailableCount, HttpClientPoolRouteLeasedCount and
+ * HttpClientPoolRoutePendingCount - The same counts as above, restricted to
+ * the connections to the target host of the request. These are not captured by
+ * default, but can be enabled by adding them to the predefined metric types
+ * via {@link com.amazonaws.metrics.AwsSdkMetrics#add(MetricType)}.</li>
  * <li>HttpRequestTime - Number of milliseconds taken for a logical request/response 
  * round trip to AWS. Captured on a per request type level.</li>
  * <li>HttpClientSendRequestTime - Number of milliseconds taken for a physical request
@@ -24,7 +24,6 @@ import com.amazonaws.util.IOUtils;
 import com.amazonaws.util.json.Jackson;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -53,11 +52,6 @@ public class PartitionsLoader {
     public static final String PARTITIONS_OVERRIDE_RESOURCE_PATH =
             "com/amazonaws/partitions/override/endpoints.json";
 
-    /**
-     * Jackson object mapper that is used for parsing the partition files.
-     */
-    private static final ObjectMapper mapper = Jackson.getObjectMapper();
-
     /**
      * classloader to to be used for loading the partitions.
      */
@@ -69,7 +63,8 @@ public class PartitionsLoader {
 
     /**
      * Loads the partition files from the {@link #PARTITIONS_OVERRIDE_RESOURCE_PATH}. If no files are present, then
-     * loads the partition files from the {@link #PARTITIONS_RESOURCE_PATH}
+     * uses the partitions of {@link #PARTITIONS_RESOURCE_PATH}, which are compiled into
+     * {@link PrecompiledPartitions} so that they are loaded without parsing JSON.
      * <p/>
      * Builds the {@link RegionMetadata} from the partition files.
      */
@@ -81,19 +76,27 @@ public class PartitionsLoader {
         if (stream != null) {
             return new PartitionMetadataProvider(loadPartitionFromStream(stream, PARTITIONS_OVERRIDE_RESOURCE_PATH).getPartitions());
         } else {
-            stream = classLoader.getResourceAsStream(PARTITIONS_RESOURCE_PATH);
-            if (stream == null) {
-                throw new AmazonClientException("Unable to load parition metadata from " + PARTITIONS_RESOURCE_PATH);
-            }
-            return new PartitionMetadataProvider(loadPartitionFromStream(stream, PARTITIONS_RESOURCE_PATH).getPartitions());
+            return new PartitionMetadataProvider(PrecompiledPartitions.build().getPartitions());
+        }
+    }
+
+    /**
+     * Loads the partition files from the {@link #PARTITIONS_RESOURCE_PATH},
+     * parsing the JSON rather than using the precompiled partitions.
+     */
+    Partitions loadDefaultPartitions() {
+        InputStream stream = classLoader.getResourceAsStream(PARTITIONS_RESOURCE_PATH);
+        if (stream == null) {
+            throw new AmazonClientException("Unable to load parition metadata from " + PARTITIONS_RESOURCE_PATH);
         }
+        return loadPartitionFromStream(stream, PARTITIONS_RESOURCE_PATH);
     }
 
     private Partitions loadPartitionFromStream(InputStream stream, String location) {
 
         try {
 
-            return mapper.readValue(stream, Partitions.class);
+            return Jackson.getObjectMapper().readValue(stream, Partitions.class);
 
         } catch (IOException e) {
             throw new AmazonClientException("Error while loading partitions " +
@@ -0,0 +1,1314 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.partitions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.partitions.model.CredentialScope;
+import com.amazonaws.partitions.model.Endpoint;
+import com.amazonaws.partitions.model.Partition;
+import com.amazonaws.partitions.model.Partitions;
+import com.amazonaws.partitions.model.Region;
+import com.amazonaws.partitions.model.Service;
+
+/**
+ * The partition metadata of com/amazonaws/partitions/endpoints.json, compiled into
+ * code so that it can be loaded without parsing JSON.
+ * <p>
+ * Generated by PrecompiledMetadataGeneratorTask; do not edit.
+ */
+@SdkInternalApi
+final class PrecompiledPartitions {
+
+    private PrecompiledPartitions() {
+    }
+
+    static Partitions build() {
+        List<Partition> partitions = new ArrayList<Partition>();
+        partitions.add(aws());
+        partitions.add(awsCn());
+        partitions.add(awsUsGov());
+        return new Partitions("1", partitions);
+    }
+
+    private static Partition aws() {
+        Map<String, Region> regions = new LinkedHashMap<String, Region>();
+        regions.put("aws-global", new Region("AWS partition-global endpoint"));
+        regions.put("us-east-1", new Region("US East (N. Virginia)"));
+        regions.put("us-west-1", new Region("US West (N. California)"));
+        regions.put("us-west-2", new Region("US West (Oregon)"));
+        regions.put("ap-northeast-1", new Region("Asia Pacific (Tokyo)"));
+        regions.put("ap-northeast-2", new Region("Asia Pacific (Seoul)"));
+        regions.put("ap-southeast-1", new Region("Asia Pacific (Singapore)"));
+        regions.put("ap-southeast-2", new Region("Asia Pacific (Sydney)"));
+        regions.put("sa-east-1", new Region("South America (Sao Paulo)"));
+        regions.put("eu-west-1", new Region("EU (Ireland)"));
+        regions.put("eu-central-1", new Region("EU (Frankfurt)"));
+        regions.put("s3-external-1", new Region("S3 external 1 region"));
+
+        Map<String, Service> services = new LinkedHashMap<String, Service>();
+        services.put("apigateway", awsApigateway());
+        services.put("appstream", awsAppstream());
+        services.put("autoscaling", awsAutoscaling());
+        services.put("cloudformation", awsCloudformation());
+        services.put("cloudfront", awsCloudfront());
+        services.put("cloudhsm", awsCloudhsm());
+        services.put("cloudsearch", awsCloudsearch());
+        services.put("cloudtrail", awsCloudtrail());
+        services.put("codecommit", awsCodecommit());
+        services.put("codedeploy", awsCodedeploy());
+        services.put("codepipeline", awsCodepipeline());
+        services.put("cognito-identity", awsCognitoIdentity());
+        services.put("cognito-sync", awsCognitoSync());
+        services.put("config", awsConfig());
+        services.put("datapipeline", awsDatapipeline());
+        services.put("data.iot", awsDataIot());
+        services.put("devicefarm", awsDevicefarm());
+        services.put("directconnect", awsDirectconnect());
+        services.put("dms", awsDms());
+        services.put("ds", awsDs());
+        services.put("dynamodb", awsDynamodb());
+        services.put("ec2", awsEc2());
+        services.put("ecs", awsEcs());
+        services.put("elasticache", awsElasticache());
+        services.put("elasticbeanstalk", awsElasticbeanstalk());
+        services.put("elasticfilesystem", awsElasticfilesystem());
+        services.put("elasticloadbalancing", awsElasticloadbalancing());
+        services.put("elasticmapreduce", awsElasticmapreduce());
+        services.put("elastictranscoder", awsElastictranscoder());
+        services.put("email", awsEmail());
+        services.put("gamelift", awsGamelift());
+        services.put("glacier", awsGlacier());
+        services.put("iam", awsIam());
+        services.put("importexport", awsImportexport());
+        services.put("iot", awsIot());
+        services.put("kinesis", awsKinesis());
+        services.put("kms", awsKms());
+        services.put("lambda", awsLambda());
+        services.put("logs", awsLogs());
+        services.put("machinelearning", awsMachinelearning());
+        services.put("marketplacecommerceanalytics", awsMarketplacecommerceanalytics());
+        services.put("mobileanalytics", awsMobileanalytics());
+        services.put("monitoring", awsMonitoring());
+        services.put("opsworks", awsOpsworks());
+        services.put("rds", awsRds());
+        services.put("redshift", awsRedshift());
+        services.put("route53", awsRoute53());
+        services.put("route53domains", awsRoute53domains());
+        services.put("s3", awsS3());
+        services.put("sdb", awsSdb());
+        services.put("sns", awsSns());
+        services.put("sqs", awsSqs());
+        services.put("ssm", awsSsm());
+        services.put("storagegateway", awsStoragegateway());
+        services.put("streams.dynamodb", awsStreamsDynamodb());
+        services.put("sts", awsSts());
+        services.put("support", awsSupport());
+        services.put("swf", awsSwf());
+        services.put("waf", awsWaf());
+        services.put("workspaces", awsWorkspaces());
+
+        Partition partition = new Partition("aws", regions, services);
+        partition.setPartitionName("AWS Standard");
+        partition.setDnsSuffix("amazonaws.com");
+        partition.setRegionRegex("^(us|eu|ap|sa)\\-\\w+\\-\\d+$");
+        partition.setDefaults(endpoint("{service}.{region}.{dnsSuffix}", null, set("https"), set("v4"), null));
+        return partition;
+    }
+
+    private static Service awsApigateway() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsAppstream() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsAutoscaling() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCloudformation() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCloudfront() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", endpoint("cloudfront.amazonaws.com", credentialScope("us-east-1", null), set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsCloudhsm() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCloudsearch() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCloudtrail() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCodecommit() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCodedeploy() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCodepipeline() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCognitoIdentity() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCognitoSync() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsConfig() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDatapipeline() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDataIot() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, credentialScope(null, "iotdata"), set("https", "mqqt"), null, null));
+        return service;
+    }
+
+    private static Service awsDevicefarm() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-west-2", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDirectconnect() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDms() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        endpoints.put("local", endpoint("localhost:8000", credentialScope("us-east-1", null), set("http"), null, null));
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsEc2() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsEcs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsElasticache() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsElasticbeanstalk() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsElasticfilesystem() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-west-2", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsElasticloadbalancing() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsElasticmapreduce() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", endpoint(null, null, null, null, "{service}.{region}.{dnsSuffix}"));
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", endpoint(null, null, null, null, "{service}.{region}.{dnsSuffix}"));
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, "{region}.{service}.{dnsSuffix}"));
+        return service;
+    }
+
+    private static Service awsElastictranscoder() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsEmail() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsGamelift() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsGlacier() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsIam() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", endpoint("iam.amazonaws.com", credentialScope("us-east-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsImportexport() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", endpoint("importexport.amazonaws.com", null, null, set("v2"), null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsIot() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, credentialScope(null, "execute-api"), null, null, null));
+        return service;
+    }
+
+    private static Service awsKinesis() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsKms() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsLambda() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsLogs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsMachinelearning() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsMarketplacecommerceanalytics() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsMobileanalytics() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsMonitoring() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsOpsworks() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsRds() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", endpoint(null, null, null, null, "{service}.{dnsSuffix}"));
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsRedshift() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsRoute53() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", endpoint("route53.amazonaws.com", credentialScope("us-east-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsRoute53domains() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsS3() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", endpoint("s3.amazonaws.com", null, null, null, null));
+        endpoints.put("s3-external-1", endpoint("s3-external-1.amazonaws.com", credentialScope("us-east-1", null), null, null, null));
+        endpoints.put("us-west-1", endpoint("s3-us-west-1.amazonaws.com", null, null, null, null));
+        endpoints.put("us-west-2", endpoint("s3-us-west-2.amazonaws.com", null, null, null, null));
+        endpoints.put("ap-northeast-1", endpoint("s3-ap-northeast-1.amazonaws.com", null, null, null, null));
+        endpoints.put("ap-northeast-2", endpoint(null, null, null, set("s3v4"), null));
+        endpoints.put("ap-southeast-1", endpoint("s3-ap-southeast-1.amazonaws.com", null, null, null, null));
+        endpoints.put("ap-southeast-2", endpoint("s3-ap-southeast-2.amazonaws.com", null, null, null, null));
+        endpoints.put("sa-east-1", endpoint("s3-sa-east-1.amazonaws.com", null, null, null, null));
+        endpoints.put("eu-west-1", endpoint("s3-eu-west-1.amazonaws.com", null, null, null, null));
+        endpoints.put("eu-central-1", endpoint(null, null, null, set("s3v4"), null));
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), set("s3", "s3v4"), null));
+        service.setPartitionEndpoint("us-east-1");
+        return service;
+    }
+
+    private static Service awsSdb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", endpoint("sdb.amazonaws.com", null, null, null, null));
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsSns() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsSqs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", endpoint(null, null, null, null, "queue.{dnsSuffix}"));
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, "{region}.queue.{dnsSuffix}"));
+        return service;
+    }
+
+    private static Service awsSsm() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsStoragegateway() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsStreamsDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, credentialScope(null, "dynamodb"), set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsSts() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", new Endpoint());
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", endpoint("sts.ap-northeast-2.amazonaws.com", credentialScope("ap-northeast-2", null), null, null, null));
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint("sts.amazonaws.com", credentialScope("us-east-1", null), null, null, null));
+        service.setPartitionEndpoint("aws-global");
+        return service;
+    }
+
+    private static Service awsSupport() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsSwf() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-northeast-2", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("sa-east-1", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        endpoints.put("eu-central-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsWaf() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-global", endpoint("waf.amazonaws.com", credentialScope("us-east-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsWorkspaces() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-east-1", new Endpoint());
+        endpoints.put("us-west-2", new Endpoint());
+        endpoints.put("ap-northeast-1", new Endpoint());
+        endpoints.put("ap-southeast-1", new Endpoint());
+        endpoints.put("ap-southeast-2", new Endpoint());
+        endpoints.put("eu-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Partition awsCn() {
+        Map<String, Region> regions = new LinkedHashMap<String, Region>();
+        regions.put("aws-cn-global", new Region("AWS China partition-global endpoint"));
+        regions.put("cn-north-1", new Region("China (Beijing)"));
+
+        Map<String, Service> services = new LinkedHashMap<String, Service>();
+        services.put("autoscaling", awsCnAutoscaling());
+        services.put("cloudformation", awsCnCloudformation());
+        services.put("cloudtrail", awsCnCloudtrail());
+        services.put("directconnect", awsCnDirectconnect());
+        services.put("dynamodb", awsCnDynamodb());
+        services.put("ec2", awsCnEc2());
+        services.put("elasticache", awsCnElasticache());
+        services.put("elasticbeanstalk", awsCnElasticbeanstalk());
+        services.put("elasticloadbalancing", awsCnElasticloadbalancing());
+        services.put("elasticmapreduce", awsCnElasticmapreduce());
+        services.put("glacier", awsCnGlacier());
+        services.put("iam", awsCnIam());
+        services.put("kinesis", awsCnKinesis());
+        services.put("monitoring", awsCnMonitoring());
+        services.put("rds", awsCnRds());
+        services.put("s3", awsCnS3());
+        services.put("sns", awsCnSns());
+        services.put("sqs", awsCnSqs());
+        services.put("storagegateway", awsCnStoragegateway());
+        services.put("streams.dynamodb", awsCnStreamsDynamodb());
+        services.put("sts", awsCnSts());
+        services.put("swf", awsCnSwf());
+
+        Partition partition = new Partition("aws-cn", regions, services);
+        partition.setPartitionName("AWS China");
+        partition.setDnsSuffix("amazonaws.com.cn");
+        partition.setRegionRegex("^cn\\-\\w+\\-\\d+$");
+        partition.setDefaults(endpoint("{service}.{region}.{dnsSuffix}", null, set("https"), set("v4"), null));
+        return partition;
+    }
+
+    private static Service awsCnAutoscaling() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnCloudformation() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnCloudtrail() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnDirectconnect() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnEc2() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnElasticache() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnElasticbeanstalk() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnElasticloadbalancing() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnElasticmapreduce() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnGlacier() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnIam() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-cn-global", endpoint("iam.cn-north-1.amazonaws.com.cn", credentialScope("cn-north-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-cn-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsCnKinesis() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnMonitoring() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnRds() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnS3() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), set("s3v4"), null));
+        return service;
+    }
+
+    private static Service awsCnSns() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnSqs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, set("http", "https"), null, "{region}.queue.{dnsSuffix}"));
+        return service;
+    }
+
+    private static Service awsCnStoragegateway() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnStreamsDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, credentialScope(null, "dynamodb"), set("http", "https"), null, null));
+        return service;
+    }
+
+    private static Service awsCnSts() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsCnSwf() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("cn-north-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Partition awsUsGov() {
+        Map<String, Region> regions = new LinkedHashMap<String, Region>();
+        regions.put("aws-us-gov-global", new Region("AWS GovCloud (US) partition-global endpoint"));
+        regions.put("us-gov-west-1", new Region("AWS GovCloud (US)"));
+
+        Map<String, Service> services = new LinkedHashMap<String, Service>();
+        services.put("autoscaling", awsUsGovAutoscaling());
+        services.put("cloudformation", awsUsGovCloudformation());
+        services.put("cloudhsm", awsUsGovCloudhsm());
+        services.put("cloudtrail", awsUsGovCloudtrail());
+        services.put("dynamodb", awsUsGovDynamodb());
+        services.put("streams.dynamodb", awsUsGovStreamsDynamodb());
+        services.put("ec2", awsUsGovEc2());
+        services.put("elasticache", awsUsGovElasticache());
+        services.put("elasticloadbalancing", awsUsGovElasticloadbalancing());
+        services.put("elasticmapreduce", awsUsGovElasticmapreduce());
+        services.put("glacier", awsUsGovGlacier());
+        services.put("iam", awsUsGovIam());
+        services.put("kms", awsUsGovKms());
+        services.put("monitoring", awsUsGovMonitoring());
+        services.put("rds", awsUsGovRds());
+        services.put("redshift", awsUsGovRedshift());
+        services.put("s3", awsUsGovS3());
+        services.put("sns", awsUsGovSns());
+        services.put("sqs", awsUsGovSqs());
+        services.put("sts", awsUsGovSts());
+        services.put("swf", awsUsGovSwf());
+
+        Partition partition = new Partition("aws-us-gov", regions, services);
+        partition.setPartitionName("AWS GovCloud (US)");
+        partition.setDnsSuffix("amazonaws.com");
+        partition.setRegionRegex("^us\\-gov\\-\\w+\\-\\d+$");
+        partition.setDefaults(endpoint("{service}.{region}.{dnsSuffix}", null, set("https"), set("v4"), null));
+        return partition;
+    }
+
+    private static Service awsUsGovAutoscaling() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovCloudformation() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovCloudhsm() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovCloudtrail() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovStreamsDynamodb() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, credentialScope(null, "dynamodb"), null, null, null));
+        return service;
+    }
+
+    private static Service awsUsGovEc2() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovElasticache() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovElasticloadbalancing() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovElasticmapreduce() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovGlacier() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovIam() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("aws-us-gov-global", endpoint("iam.us-gov.amazonaws.com", credentialScope("us-gov-west-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setPartitionEndpoint("aws-us-gov-global");
+        service.setRegionalized(false);
+        return service;
+    }
+
+    private static Service awsUsGovKms() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovMonitoring() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovRds() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovRedshift() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovS3() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint("s3-us-gov-west-1.amazonaws.com", null, set("http", "https"), null, null));
+        endpoints.put("fips-us-gov-west-1", endpoint("s3-fips-us-gov-west-1.amazonaws.com", credentialScope("us-gov-west-1", null), null, null, null));
+        Service service = new Service(endpoints);
+        service.setDefaults(endpoint(null, null, null, set("s3", "s3v4"), null));
+        return service;
+    }
+
+    private static Service awsUsGovSns() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, null));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovSqs() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", endpoint(null, null, set("http", "https"), null, "{region}.queue.{dnsSuffix}"));
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovSts() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Service awsUsGovSwf() {
+        Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("us-gov-west-1", new Endpoint());
+        Service service = new Service(endpoints);
+        return service;
+    }
+
+    private static Endpoint endpoint(String hostName, CredentialScope credentialScope,
+            Set<String> protocols, Set<String> signatureVersions, String sslCommonName) {
+        Endpoint endpoint = new Endpoint();
+        endpoint.setHostName(hostName);
+        endpoint.setCredentialScope(credentialScope);
+        endpoint.setProtocols(protocols);
+        endpoint.setSignatureVersions(signatureVersions);
+        endpoint.setSslCommonName(sslCommonName);
+        return endpoint;
+    }
+
+    private static CredentialScope credentialScope(String region, String service) {
+        CredentialScope credentialScope = new CredentialScope();
+        credentialScope.setRegion(region);
+        credentialScope.setService(service);
+        return credentialScope;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+}
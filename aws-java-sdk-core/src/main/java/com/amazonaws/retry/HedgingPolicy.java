@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.annotation.Immutable;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Hedging policy that can be configured on a specific service client using
+ * {@link ClientConfiguration#setHedgingPolicy(HedgingPolicy)}. When the first
+ * attempt of an eligible request has not received a response after the hedging
+ * delay, a second, identical attempt is sent; the first response received is
+ * used and the other attempt is aborted.
+ * <p>
+ * Hedging only makes sense for idempotent requests, and costs extra load on
+ * the service. It is therefore bounded by a budget, expressed as a percentage
+ * of the eligible requests, and draws on the same capacity as throttled
+ * retries (see {@link ClientConfiguration#setUseThrottleRetries(boolean)}).
+ * This class is immutable, therefore safe to be shared by multiple clients.
+ */
+@Immutable
+public final class HedgingPolicy {
+
+    /** Default delay before a request is hedged, until its latency is known. */
+    public static final long DEFAULT_DELAY_MILLIS = 100;
+
+    /** Default percentile of the observed latency used as the hedging delay. */
+    public static final double DEFAULT_DELAY_PERCENTILE = 95.0;
+
+    /** Default maximum percentage of eligible requests that are hedged. */
+    public static final int DEFAULT_BUDGET_PERCENT = 5;
+
+    /**
+     * Condition matching the idempotent read operations whose tail latency
+     * typically benefits from hedging: DynamoDB GetItem, and Amazon S3
+     * GetObject and HeadObject (GetObjectMetadata).
+     * <p>
+     * Amazon SQS ReceiveMessage is deliberately not included: it is not
+     * idempotent, as the messages received by an aborted attempt remain
+     * invisible until their visibility timeout expires.
+     */
+    public static final HedgeCondition IDEMPOTENT_READS = new RequestTypeHedgeCondition(
+            "GetItemRequest",
+            "GetObjectRequest",
+            "GetObjectMetadataRequest");
+
+    private final HedgeCondition hedgeCondition;
+    private final long delayMillis;
+    private final double delayPercentile;
+    private final int budgetPercent;
+
+    /**
+     * Constructs a hedging policy for the {@link #IDEMPOTENT_READS} with the
+     * default delay and budget.
+     */
+    public HedgingPolicy() {
+        this(IDEMPOTENT_READS, DEFAULT_DELAY_MILLIS, DEFAULT_DELAY_PERCENTILE,
+                DEFAULT_BUDGET_PERCENT);
+    }
+
+    /**
+     * Constructs a new hedging policy.
+     *
+     * @param hedgeCondition
+     *            Condition on whether a specific request may be hedged. If null
+     *            value is specified, {@link #IDEMPOTENT_READS} is used.
+     * @param delayMillis
+     *            Delay in milliseconds before a request is hedged. When a delay
+     *            percentile is specified, this delay is only used until enough
+     *            latencies of the operation have been observed.
+     * @param delayPercentile
+     *            Percentile, between 0 and 100, of the observed latency of an
+     *            operation used as the hedging delay of its requests; or 0 to
+     *            always use the fixed delay.
+     * @param budgetPercent
+     *            Maximum percentage, between 1 and 100, of eligible requests
+     *            that are hedged.
+     */
+    public HedgingPolicy(HedgeCondition hedgeCondition,
+                         long delayMillis,
+                         double delayPercentile,
+                         int budgetPercent) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Please provide a non-negative value for delayMillis.");
+        }
+        if (delayPercentile < 0 || delayPercentile > 100) {
+            throw new IllegalArgumentException("Please provide a value between 0 and 100 for delayPercentile.");
+        }
+        if (budgetPercent < 1 || budgetPercent > 100) {
+            throw new IllegalArgumentException("Please provide a value between 1 and 100 for budgetPercent.");
+        }
+        this.hedgeCondition = hedgeCondition == null ? IDEMPOTENT_READS : hedgeCondition;
+        this.delayMillis = delayMillis;
+        this.delayPercentile = delayPercentile;
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * Returns the condition on whether a specific request may be hedged.
+     */
+    public HedgeCondition getHedgeCondition() {
+        return hedgeCondition;
+    }
+
+    /**
+     * Returns the delay in milliseconds before a request is hedged, used until
+     * enough latencies of its operation have been observed.
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * Returns the percentile of the observed latency of an operation used as
+     * the hedging delay of its requests; or 0 if the fixed delay is always used.
+     */
+    public double getDelayPercentile() {
+        return delayPercentile;
+    }
+
+    /**
+     * Returns the maximum percentage of eligible requests that are hedged.
+     */
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * The hook for providing custom condition on whether a request may be
+     * hedged. Only requests that are safe to be sent twice should be.
+     * <p>
+     * Long-polling requests must not be matched either: they would always
+     * be hedged, and since the hedging delay is derived from the latency of
+     * the matching requests, their wait time would also distort the delay.
+     */
+    public static interface HedgeCondition {
+        /**
+         * Returns whether the given request may be hedged.
+         *
+         * @param originalRequest
+         *            The original request object being executed. For
+         *            services using a request marshaller, this is the
+         *            original request object before it was marshalled.
+         */
+        public boolean shouldHedge(AmazonWebServiceRequest originalRequest);
+    }
+
+    /**
+     * Hedges the requests whose class has one of the given simple names.
+     */
+    private static final class RequestTypeHedgeCondition implements HedgeCondition {
+        private final Set<String> requestTypes;
+
+        RequestTypeHedgeCondition(String... requestTypes) {
+            this.requestTypes = Collections.unmodifiableSet(
+                    new HashSet<String>(Arrays.asList(requestTypes)));
+        }
+
+        @Override
+        public boolean shouldHedge(AmazonWebServiceRequest originalRequest) {
+            return originalRequest != null
+                    && requestTypes.contains(originalRequest.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.tracing;
+
+import com.amazonaws.Request;
+
+/**
+ * A service provider interface that can be used to receive the tracing spans
+ * of AWS SDK requests. A tracer is registered either via
+ * {@link com.amazonaws.ClientConfiguration#setRequestTracer(RequestTracer)},
+ * or by having a {@link com.amazonaws.handlers.RequestHandler2} of the client
+ * or request also implement this interface.
+ * <p>
+ * Each request is traced as a span named {@link TraceSpan#REQUEST}, whose
+ * children are the spans of the individual attempts, named
+ * {@link TraceSpan#ATTEMPT}. The children of an attempt span are the phases of
+ * the attempt, named after the {@link TracePhase} values. Phases nest where
+ * they occur within one another.
+ * <p>
+ * Tracers are called on the thread executing the request and should return
+ * quickly; any exception thrown by a tracer is logged and ignored.
+ */
+public interface RequestTracer {
+
+    /**
+     * Called when an attempt to send the given request has completed, whether
+     * successfully or not.
+     *
+     * @param request
+     *            the request being executed
+     * @param attemptSpan
+     *            the ended span of the attempt
+     */
+    public void attemptCompleted(Request<?> request, TraceSpan attemptSpan);
+
+    /**
+     * Called once the given request has completed, including all its retries.
+     *
+     * @param request
+     *            the request executed
+     * @param requestSpan
+     *            the ended span of the request, with one child span per
+     *            attempt
+     */
+    public void requestCompleted(Request<?> request, TraceSpan requestSpan);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.tracing;
+
+/**
+ * The phases of a request attempt that are traced as spans.
+ */
+public enum TracePhase {
+    /** Sleeping before a retry. */
+    RetryPause,
+    /** Retrieving the credentials used to sign the request. */
+    CredentialsRequest,
+    /** Signing the request. */
+    RequestSigning,
+    /** Waiting to lease a connection from the connection pool. */
+    ConnectionLease,
+    /** Resolving the host name of the endpoint into IP addresses. */
+    DnsResolution,
+    /** Establishing the TCP connection. */
+    Connect,
+    /** Performing the TLS handshake. */
+    TlsHandshake,
+    /** Writing the request line, headers and body to the connection. */
+    RequestSend,
+    /** Waiting for the status line and headers of the response. */
+    TimeToFirstByte,
+    /** Unmarshalling the response, or the error response, of the service. */
+    ResponseUnmarshalling,
+    ;
+}
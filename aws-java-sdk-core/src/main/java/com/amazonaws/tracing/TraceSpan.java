@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+/**
+ * A named and timed portion of the execution of a request, with optional
+ * attributes and child spans. Spans are created and ended by the SDK on the
+ * thread executing the request.
+ *
+ * @see RequestTracer
+ */
+@NotThreadSafe
+public final class TraceSpan {
+    /** Name of the span covering the whole execution of a request. */
+    public static final String REQUEST = "Request";
+    /** Name of the span covering one attempt to send a request. */
+    public static final String ATTEMPT = "Attempt";
+
+    /** Attribute of the request span; the name of the service. */
+    public static final String SERVICE_NAME = "ServiceName";
+    /** Attribute of the request span; the simple class name of the request. */
+    public static final String REQUEST_TYPE = "RequestType";
+    /** Attribute of an attempt span; the one-based number of the attempt. */
+    public static final String ATTEMPT_NUMBER = "AttemptNumber";
+    /** Attribute of an attempt span; the HTTP status code of the response. */
+    public static final String STATUS_CODE = "StatusCode";
+    /** Attribute of a request or attempt span; the exception it failed with. */
+    public static final String EXCEPTION = "Exception";
+    /** Attribute of a {@link TracePhase#DnsResolution} span; the host name resolved. */
+    public static final String HOST = "Host";
+    /** Attribute of a {@link TracePhase#Connect} span; the remote address. */
+    public static final String REMOTE_ADDRESS = "RemoteAddress";
+
+    private final String name;
+    private final TraceSpan parent;
+    private final long startTimeMillis;
+    private final long startNanoTime;
+    private long endNanoTime = -1;
+    private List<TraceSpan> children;
+    private Map<String, Object> attributes;
+
+    /**
+     * Starts a new root span with the given name.
+     */
+    public TraceSpan(String name) {
+        this(name, null);
+    }
+
+    private TraceSpan(String name, TraceSpan parent) {
+        this.name = name;
+        this.parent = parent;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanoTime = System.nanoTime();
+    }
+
+    /**
+     * Starts a new span with the given name as the last child of this span.
+     */
+    TraceSpan startChild(String childName) {
+        TraceSpan child = new TraceSpan(childName, this);
+        if (children == null) {
+            children = new ArrayList<TraceSpan>(4);
+        }
+        children.add(child);
+        return child;
+    }
+
+    /**
+     * Ends this span, unless it has already been ended.
+     */
+    void end() {
+        if (endNanoTime == -1) {
+            endNanoTime = System.nanoTime();
+        }
+    }
+
+    /** Returns the name of this span. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the parent of this span; or null if this is a root span. */
+    public TraceSpan getParent() {
+        return parent;
+    }
+
+    /** Returns the wall clock time this span started at, in milliseconds since epoch. */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /** Returns true if this span has ended. */
+    public boolean isEnded() {
+        return endNanoTime != -1;
+    }
+
+    /**
+     * Returns the duration of this span in the given unit; or -1 if the span
+     * has not ended yet.
+     */
+    public long getDuration(TimeUnit unit) {
+        return endNanoTime == -1 ? -1 : unit.convert(endNanoTime - startNanoTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the offset of the start of this span from the start of its root
+     * span, in the given unit.
+     */
+    public long getStartOffset(TimeUnit unit) {
+        TraceSpan root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return unit.convert(startNanoTime - root.startNanoTime, TimeUnit.NANOSECONDS);
+    }
+
+    /** Returns the child spans of this span, in the order they were started. */
+    public List<TraceSpan> getChildren() {
+        return children == null
+             ? Collections.<TraceSpan>emptyList()
+             : Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Returns the child spans of this span with the given name, in the order
+     * they were started.
+     */
+    public List<TraceSpan> getChildren(String childName) {
+        List<TraceSpan> named = new ArrayList<TraceSpan>();
+        for (TraceSpan child : getChildren()) {
+            if (child.name.equals(childName)) {
+                named.add(child);
+            }
+        }
+        return named;
+    }
+
+    /** Returns the attributes of this span. */
+    public Map<String, Object> getAttributes() {
+        return attributes == null
+             ? Collections.<String, Object>emptyMap()
+             : Collections.unmodifiableMap(attributes);
+    }
+
+    /** Returns the value of the given attribute; or null if it is not set. */
+    public Object getAttribute(String key) {
+        return attributes == null ? null : attributes.get(key);
+    }
+
+    /** Sets the value of the given attribute, and returns this span. */
+    public TraceSpan addAttribute(String key, Object value) {
+        if (attributes == null) {
+            attributes = new LinkedHashMap<String, Object>(4);
+        }
+        attributes.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append('=').append(getDuration(TimeUnit.MICROSECONDS)).append("us");
+        if (attributes != null) {
+            sb.append(attributes);
+        }
+        if (children != null) {
+            sb.append(children);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.tracing;
+
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * Keeps track of the innermost open span of the request being executed on the
+ * current thread, so that the phases of a request can be traced from the
+ * layers that have no access to the request itself, such as the connection
+ * pool, the DNS resolver and the sockets.
+ * <p>
+ * Until a span is first entered on any thread, all methods return after a
+ * single volatile read, so tracing costs next to nothing when disabled.
+ */
+@SdkInternalApi
+public final class TracingContext {
+    private static final ThreadLocal<TraceSpan> CURRENT_SPAN = new ThreadLocal<TraceSpan>();
+    private static volatile boolean used;
+
+    private TracingContext() {
+    }
+
+    /**
+     * Returns the innermost open span of the current thread; or null if none.
+     */
+    public static TraceSpan currentSpan() {
+        return used ? CURRENT_SPAN.get() : null;
+    }
+
+    /**
+     * Makes the given span, which may be null, the innermost open span of the
+     * current thread, and returns the previous one so that it can be restored
+     * via {@link #exit(TraceSpan)}.
+     */
+    public static TraceSpan enter(TraceSpan span) {
+        if (!used) {
+            if (span == null) {
+                return null;
+            }
+            used = true;
+        }
+        TraceSpan previous = CURRENT_SPAN.get();
+        CURRENT_SPAN.set(span);
+        return previous;
+    }
+
+    /**
+     * Restores the given span returned by {@link #enter(TraceSpan)}.
+     */
+    public static void exit(TraceSpan previous) {
+        if (used) {
+            if (previous == null) {
+                CURRENT_SPAN.remove();
+            } else {
+                CURRENT_SPAN.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Starts a span with the given name as a child of the innermost open span
+     * of the current thread, and makes it the innermost open span.
+     *
+     * @return the new span; or null if the current thread is not tracing a
+     *         request.
+     */
+    public static TraceSpan startSpan(String name) {
+        if (!used) {
+            return null;
+        }
+        TraceSpan parent = CURRENT_SPAN.get();
+        if (parent == null) {
+            return null;
+        }
+        TraceSpan span = parent.startChild(name);
+        CURRENT_SPAN.set(span);
+        return span;
+    }
+
+    /**
+     * Starts a span for the given phase.
+     *
+     * @see #startSpan(String)
+     */
+    public static TraceSpan startPhase(TracePhase phase) {
+        return used ? startSpan(phase.name()) : null;
+    }
+
+    /**
+     * Ends the given span, if not null, and makes its parent the innermost
+     * open span of the current thread.
+     */
+    public static void endSpan(TraceSpan span) {
+        if (span != null) {
+            span.end();
+            CURRENT_SPAN.set(span.getParent());
+        }
+    }
+}
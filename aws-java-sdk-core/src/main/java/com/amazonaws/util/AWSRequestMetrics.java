@@ -17,6 +17,7 @@ package com.amazonaws.util;
 
 import com.amazonaws.metrics.MetricType;
 import com.amazonaws.metrics.RequestMetricType;
+import com.amazonaws.metrics.RequestMetricVisitor;
 import org.apache.http.annotation.NotThreadSafe;
 
 import java.util.Collections;
@@ -138,6 +139,21 @@ public class AWSRequestMetrics {
          * /apidocs/org/apache/http/pool/PoolStats.html
          */
         HttpClientPoolPendingCount,
+        /**
+         * The number of idle persistent connections to the target host of
+         * the request.
+         */
+        HttpClientPoolRouteAvailableCount,
+        /**
+         * The number of persistent connections to the target host of the
+         * request currently being used to execute requests.
+         */
+        HttpClientPoolRouteLeasedCount,
+        /**
+         * The number of connection requests to the target host of the
+         * request being blocked awaiting a free connection.
+         */
+        HttpClientPoolRoutePendingCount,
         RetryPauseTime,
 //      S3DownloadThroughput, // migrated to S3RequestMetric in the S3 client library
 //      S3UploadThroughput,   // migrated to S3RequestMetric in the S3 client library
@@ -220,6 +236,12 @@ public class AWSRequestMetrics {
     }
 
     public void log() {}
+
+    /**
+     * Passes all counters, completed events and properties of this request to
+     * the given visitor.
+     */
+    public void export(RequestMetricVisitor visitor) {}
     public List<Object> getProperty(String propertyName){ return Collections.emptyList(); }
     public List<Object> getProperty(MetricType f) { return Collections.emptyList(); }
 }
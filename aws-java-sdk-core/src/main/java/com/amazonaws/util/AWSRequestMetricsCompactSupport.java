@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.NotThreadSafe;
+
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.RequestMetricVisitor;
+
+/**
+ * A compact alternative to {@link AWSRequestMetricsFullSupport}, which keeps
+ * the counters, events and properties of every {@link Field} in fixed slots
+ * instead of maps of lists.
+ * <p>
+ * Only the number and the total time of the occurrences of an event are kept,
+ * rather than a {@link TimingInfo} per occurrence, so the metrics can only be
+ * read back through {@link #export(RequestMetricVisitor)} and
+ * {@link #getProperty(MetricType)}. This class is instantiated instead of
+ * {@link AWSRequestMetricsFullSupport} when the request metric collector in
+ * use {@linkplain RequestMetricCollector#isCompactMetricsSupported() supports
+ * it}.
+ */
+@NotThreadSafe
+public class AWSRequestMetricsCompactSupport extends AWSRequestMetrics {
+
+    private static final Field[] FIELDS = Field.values();
+    private static final Map<String, Field> FIELDS_BY_NAME = new HashMap<String, Field>();
+    static {
+        for (Field field : FIELDS) {
+            FIELDS_BY_NAME.put(field.name(), field);
+        }
+    }
+
+    private static final Log latencyLogger = LogFactory.getLog("com.amazonaws.latency");
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+    /** Stands for a null property value in a slot. */
+    private static final Object NULL = new Object();
+
+    private final long[] counters = new long[FIELDS.length];
+    private final boolean[] hasCounter = new boolean[FIELDS.length];
+    private final long[] eventStartNanos = new long[FIELDS.length];
+    private final long[] eventTotalNanos = new long[FIELDS.length];
+    private final int[] eventCounts = new int[FIELDS.length];
+    /** Either the single value of a property or a {@link Values} list. */
+    private final Object[] properties = new Object[FIELDS.length];
+
+    /** Keeps the metrics of types other than {@link Field}, which are rare. */
+    private AWSRequestMetricsFullSupport others;
+
+    public AWSRequestMetricsCompactSupport() {
+        super(TimingInfo.startTiming());
+        Arrays.fill(eventStartNanos, NOT_STARTED);
+    }
+
+    @Override
+    public void startEvent(String eventName) {
+        Field field = FIELDS_BY_NAME.get(eventName);
+        if (field == null) {
+            others().startEvent(eventName);
+        } else {
+            startEvent(field);
+        }
+    }
+
+    @Override
+    public void startEvent(MetricType f) {
+        if (f instanceof Field) {
+            eventStartNanos[((Field) f).ordinal()] = System.nanoTime();
+        } else {
+            others().startEvent(f);
+        }
+    }
+
+    @Override
+    public void endEvent(String eventName) {
+        Field field = FIELDS_BY_NAME.get(eventName);
+        if (field == null) {
+            others().endEvent(eventName);
+        } else {
+            endEvent(field);
+        }
+    }
+
+    @Override
+    public void endEvent(MetricType f) {
+        if (!(f instanceof Field)) {
+            others().endEvent(f);
+            return;
+        }
+        int i = ((Field) f).ordinal();
+        long start = eventStartNanos[i];
+        if (start == NOT_STARTED) {
+            LogFactory.getLog(getClass()).warn
+                ("Trying to end an event which was never started: " + f.name());
+            return;
+        }
+        eventTotalNanos[i] += System.nanoTime() - start;
+        eventCounts[i]++;
+        eventStartNanos[i] = NOT_STARTED;
+    }
+
+    @Override
+    public void incrementCounter(String event) {
+        Field field = FIELDS_BY_NAME.get(event);
+        if (field == null) {
+            others().incrementCounter(event);
+        } else {
+            incrementCounter(field);
+        }
+    }
+
+    @Override
+    public void incrementCounter(MetricType f) {
+        if (f instanceof Field) {
+            int i = ((Field) f).ordinal();
+            counters[i]++;
+            hasCounter[i] = true;
+        } else {
+            others().incrementCounter(f);
+        }
+    }
+
+    @Override
+    public void setCounter(String counterName, long count) {
+        Field field = FIELDS_BY_NAME.get(counterName);
+        if (field == null) {
+            others().setCounter(counterName, count);
+        } else {
+            setCounter(field, count);
+        }
+    }
+
+    @Override
+    public void setCounter(MetricType f, long count) {
+        if (f instanceof Field) {
+            int i = ((Field) f).ordinal();
+            counters[i] = count;
+            hasCounter[i] = true;
+        } else {
+            others().setCounter(f, count);
+        }
+    }
+
+    @Override
+    public void addProperty(String propertyName, Object value) {
+        Field field = FIELDS_BY_NAME.get(propertyName);
+        if (field == null) {
+            others().addProperty(propertyName, value);
+        } else {
+            addProperty(field, value);
+        }
+    }
+
+    @Override
+    public void addProperty(MetricType f, Object value) {
+        if (!(f instanceof Field)) {
+            others().addProperty(f, value);
+            return;
+        }
+        int i = ((Field) f).ordinal();
+        Object current = properties[i];
+        if (current == null) {
+            properties[i] = value == null ? NULL : value;
+        } else if (current instanceof Values) {
+            ((Values) current).add(value);
+        } else {
+            Values values = new Values();
+            values.add(current == NULL ? null : current);
+            values.add(value);
+            properties[i] = values;
+        }
+    }
+
+    @Override
+    public List<Object> getProperty(String propertyName) {
+        Field field = FIELDS_BY_NAME.get(propertyName);
+        if (field == null) {
+            return others == null ? null : others.getProperty(propertyName);
+        }
+        return getProperty(field);
+    }
+
+    @Override
+    public List<Object> getProperty(MetricType f) {
+        if (!(f instanceof Field)) {
+            return others == null ? null : others.getProperty(f);
+        }
+        Object current = properties[((Field) f).ordinal()];
+        if (current == null) {
+            return null;
+        } else if (current instanceof Values) {
+            return Collections.unmodifiableList((Values) current);
+        }
+        return Collections.singletonList(current == NULL ? null : current);
+    }
+
+    @Override
+    public void export(RequestMetricVisitor visitor) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            String name = FIELDS[i].name();
+            if (hasCounter[i]) {
+                visitor.visitCounter(name, counters[i]);
+            }
+            if (eventCounts[i] > 0) {
+                visitor.visitEvent(name, eventCounts[i], eventTotalNanos[i]);
+            }
+            Object current = properties[i];
+            if (current instanceof Values) {
+                for (Object value : (Values) current) {
+                    visitor.visitProperty(name, value);
+                }
+            } else if (current != null) {
+                visitor.visitProperty(name, current == NULL ? null : current);
+            }
+        }
+        if (others != null) {
+            others.export(visitor);
+        }
+    }
+
+    @Override
+    public void log() {
+        if (latencyLogger.isInfoEnabled()) {
+            final StringBuilder builder = new StringBuilder();
+            export(new RequestMetricVisitor() {
+                @Override
+                public void visitCounter(String name, long value) {
+                    builder.append(name).append('=').append(value).append(", ");
+                }
+
+                @Override
+                public void visitEvent(String name, int count, long totalNanos) {
+                    builder.append(name).append('=')
+                            .append(TimingInfo.durationMilliOf(0, totalNanos))
+                            .append(count > 1 ? " (" + count + " times)" : "")
+                            .append(", ");
+                }
+
+                @Override
+                public void visitProperty(String name, Object value) {
+                    builder.append(name).append('=').append(value).append(", ");
+                }
+            });
+            latencyLogger.info(builder.toString());
+        }
+    }
+
+    /** Always returns true. */
+    @Override
+    public final boolean isEnabled() {
+        return true;
+    }
+
+    private AWSRequestMetricsFullSupport others() {
+        if (others == null) {
+            others = new AWSRequestMetricsFullSupport();
+        }
+        return others;
+    }
+
+    /** The values of a property added more than once. */
+    private static final class Values extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+
+        Values() {
+            super(4);
+        }
+    }
+}
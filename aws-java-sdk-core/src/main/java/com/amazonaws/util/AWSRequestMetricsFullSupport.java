@@ -28,6 +28,7 @@ import org.apache.http.annotation.NotThreadSafe;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.MetricType;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.RequestMetricVisitor;
 
 /**
  * In contrast to {@link AWSRequestMetrics}, which is intended to be a minimal
@@ -204,6 +205,32 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
         }
     }
 
+    @Override
+    public void export(RequestMetricVisitor visitor) {
+        for (Entry<String, List<Object>> entry : properties.entrySet()) {
+            for (Object value : entry.getValue()) {
+                visitor.visitProperty(entry.getKey(), value);
+            }
+        }
+        for (Entry<String, Number> entry : timingInfo.getAllCounters().entrySet()) {
+            visitor.visitCounter(entry.getKey(), entry.getValue().longValue());
+        }
+        for (Entry<String, List<TimingInfo>> entry : timingInfo
+                .getSubMeasurementsByName().entrySet()) {
+            int count = 0;
+            long totalNanos = 0;
+            for (TimingInfo event : entry.getValue()) {
+                if (event.isEndTimeKnown()) {
+                    count++;
+                    totalNanos += event.getEndTimeNano() - event.getStartTimeNano();
+                }
+            }
+            if (count > 0) {
+                visitor.visitEvent(entry.getKey(), count, totalNanos);
+            }
+        }
+    }
+
     private void keyValueFormat(Object key, Object value, StringBuilder builder) {
         builder.append(key).append(KEY_VALUE_SEPARATOR).append(value).append(COMMA_SEPARATOR);
     }
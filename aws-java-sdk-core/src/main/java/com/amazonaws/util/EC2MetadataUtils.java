@@ -20,12 +20,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.EC2MetadataCache;
 import com.amazonaws.internal.EC2MetadataClient;
 import com.amazonaws.util.json.Jackson;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -60,8 +60,11 @@ public class EC2MetadataUtils {
 
     private static final int DEFAULT_QUERY_RETRIES = 3;
     private static final int MINIMUM_RETRY_WAIT_TIME_MILLISECONDS = 250;
-    private static Map<String, String> cache = new ConcurrentHashMap<String, String>();
-    private static EC2MetadataClient ec2MetadataClient = new EC2MetadataClient();
+    private static final int CONNECT_TIMEOUT_MILLISECONDS = 1000;
+    private static final int READ_TIMEOUT_MILLISECONDS = 1000 * 2;
+    private static final EC2MetadataCache metadataCache = new EC2MetadataCache(
+            new EC2MetadataClient(CONNECT_TIMEOUT_MILLISECONDS,
+                    READ_TIMEOUT_MILLISECONDS));
 
     private static final ObjectMapper mapper = new ObjectMapper();
     static {
@@ -367,7 +370,7 @@ public class EC2MetadataUtils {
 
         List<String> items;
         try {
-            String response = ec2MetadataClient.readResource(path);
+            String response = metadataCache.readResource(path);
             if (slurp)
                 items = Collections.singletonList(response);
             else
@@ -390,14 +393,8 @@ public class EC2MetadataUtils {
     }
 
     private static String fetchData(String path) {
-        return fetchData(path, false);
-    }
-
-    private static String fetchData(String path, boolean force) {
         try {
-            if (force || !cache.containsKey(path))
-                cache.put(path, getData(path));
-            return cache.get(path);
+            return getData(path);
         } catch (Exception e) {
             return null;
         }
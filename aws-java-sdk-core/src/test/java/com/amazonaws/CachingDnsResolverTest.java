@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingDnsResolverTest {
+
+    private static final String HOST = "service.amazonaws.com";
+    private static final long TTL = 1000;
+    private static final long MAX_STALE = 5000;
+    private static final long UNHEALTHY = 2000;
+
+    private StubResolver stub;
+    private TestResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new StubResolver(address(1), address(2), address(3));
+        resolver = new TestResolver(stub);
+    }
+
+    @Test
+    public void addressesAreCached() throws Exception {
+        resolver.resolve(HOST);
+        resolver.resolve(HOST);
+        assertEquals(1, stub.lookups);
+    }
+
+    @Test
+    public void addressesAreRotated() throws Exception {
+        Set<InetAddress> first = new HashSet<InetAddress>();
+        for (int i = 0; i < 3; i++) {
+            InetAddress[] addresses = resolver.resolve(HOST);
+            assertEquals(3, addresses.length);
+            first.add(addresses[0]);
+        }
+        assertEquals(3, first.size());
+    }
+
+    @Test
+    public void expiredAddressesAreRefreshedInBackground() throws Exception {
+        resolver.resolve(HOST);
+        stub.addresses = new InetAddress[] { address(4) };
+        resolver.now += TTL;
+
+        // The stale addresses are returned while the refresh is pending
+        assertEquals(3, resolver.resolve(HOST).length);
+        assertEquals(1, stub.lookups);
+
+        resolver.runRefreshes();
+        assertEquals(2, stub.lookups);
+        assertEquals(address(4), resolver.resolve(HOST)[0]);
+    }
+
+    @Test
+    public void staleAddressesAreServedWhenRefreshFails() throws Exception {
+        resolver.resolve(HOST);
+        stub.failing = true;
+        resolver.now += TTL;
+
+        resolver.resolve(HOST);
+        resolver.runRefreshes();
+        assertEquals(3, resolver.resolve(HOST).length);
+
+        resolver.now += MAX_STALE;
+        try {
+            resolver.resolve(HOST);
+            fail("Expected UnknownHostException");
+        } catch (UnknownHostException expected) {
+        }
+    }
+
+    @Test
+    public void unhealthyAddressesAreReturnedLast() throws Exception {
+        resolver.markUnhealthy(address(2));
+        assertFalse(resolver.isHealthy(address(2)));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(address(2), resolver.resolve(HOST)[2]);
+        }
+
+        resolver.now += UNHEALTHY;
+        assertTrue(resolver.isHealthy(address(2)));
+    }
+
+    private static InetAddress address(int lastByte) throws UnknownHostException {
+        return InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, (byte) lastByte });
+    }
+
+    private static class StubResolver implements DnsResolver {
+        volatile InetAddress[] addresses;
+        volatile boolean failing;
+        int lookups;
+
+        StubResolver(InetAddress... addresses) {
+            this.addresses = addresses;
+        }
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            lookups++;
+            if (failing) {
+                throw new UnknownHostException(host);
+            }
+            return addresses;
+        }
+    }
+
+    /**
+     * Runs refreshes on demand and uses a fake clock.
+     */
+    private static class TestResolver extends CachingDnsResolver {
+        long now = 100000;
+        final Set<Runnable> refreshes;
+
+        TestResolver(DnsResolver delegate) {
+            this(delegate, new HashSet<Runnable>());
+        }
+
+        private TestResolver(DnsResolver delegate, final Set<Runnable> refreshes) {
+            super(delegate, TTL, MAX_STALE, UNHEALTHY, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    refreshes.add(command);
+                }
+            });
+            this.refreshes = refreshes;
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+
+        void runRefreshes() {
+            for (Runnable refresh : refreshes) {
+                refresh.run();
+            }
+            refreshes.clear();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.HandlerChainFactory;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.regions.Region;
+import com.amazonaws.regions.Regions;
+
+/**
+ * Measures the time from JVM start to the completion of the first request
+ * made by a newly constructed client. Each sample runs in a fresh JVM, so
+ * that class loading and one-time initialization are included.
+ * <p>
+ * Usage: {@code java -cp <test classpath> com.amazonaws.StartupBenchmark [runs]}
+ */
+public class StartupBenchmark {
+
+    private static final String PROBE = "probe";
+
+    private static final int DEFAULT_RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && PROBE.equals(args[0])) {
+            probe();
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+
+        List<Long> samples = new ArrayList<Long>();
+        for (int i = 0; i < runs; i++) {
+            samples.add(fork());
+        }
+        Collections.sort(samples);
+        System.out.println("time to first request over " + runs + " runs: median "
+                + samples.get(runs / 2) + " ms, min " + samples.get(0)
+                + " ms, max " + samples.get(runs - 1) + " ms");
+    }
+
+    /**
+     * Runs the probe in a new JVM and returns the milliseconds it reports.
+     */
+    private static long fork() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java";
+        Process process = new ProcessBuilder(Arrays.asList(java, "-cp",
+                System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), PROBE))
+                .redirectErrorStream(true)
+                .start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), "UTF-8"));
+        String last = null;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                last = line;
+            }
+        } finally {
+            reader.close();
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException("Probe failed: " + last);
+        }
+        return Long.parseLong(last.trim());
+    }
+
+    /**
+     * Constructs a client, points it to a region and sends one signed request
+     * to a local server, then prints the elapsed milliseconds since JVM start.
+     */
+    private static void probe() throws Exception {
+        long start = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+        final ServerSocket server = new ServerSocket(0);
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                respondOk(server);
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        AmazonBenchmarkClient client = new AmazonBenchmarkClient(new ClientConfiguration());
+        client.setRegion(Region.getRegion(Regions.US_WEST_2));
+        client.setEndpoint("http://localhost:" + server.getLocalPort());
+        client.sendRequest();
+
+        System.out.println(System.currentTimeMillis() - start);
+        client.shutdown();
+        server.close();
+    }
+
+    private static void respondOk(ServerSocket server) {
+        try {
+            Socket socket = server.accept();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                // Discard the request headers
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 200 OK\r\n"
+                    + "Content-Length: 0\r\n"
+                    + "Connection: close\r\n\r\n").getBytes("UTF-8"));
+            out.flush();
+            socket.close();
+        } catch (IOException e) {
+            // The probe fails on its own if no response is sent
+        }
+    }
+
+    /**
+     * A client initialized the same way as the generated service clients.
+     */
+    private static class AmazonBenchmarkClient extends AmazonWebServiceClient {
+
+        AmazonBenchmarkClient(ClientConfiguration config) {
+            super(config);
+            setServiceNameIntern("dynamodb");
+            setEndpointPrefix("dynamodb");
+            setEndpoint("https://dynamodb.us-east-1.amazonaws.com");
+            HandlerChainFactory chainFactory = new HandlerChainFactory();
+            requestHandler2s.addAll(chainFactory.newRequestHandlerChain(
+                    "/com/amazonaws/services/dynamodbv2/request.handlers"));
+            requestHandler2s.addAll(chainFactory.newRequestHandler2Chain(
+                    "/com/amazonaws/services/dynamodbv2/request.handler2s"));
+        }
+
+        void sendRequest() {
+            AmazonWebServiceRequest original = new AmazonWebServiceRequest() {
+            };
+            Request<AmazonWebServiceRequest> request =
+                    new DefaultRequest<AmazonWebServiceRequest>(original, "dynamodb");
+            request.setHttpMethod(HttpMethodName.GET);
+            request.setEndpoint(endpoint);
+
+            ExecutionContext executionContext = createExecutionContext(original);
+            executionContext.setCredentials(new BasicAWSCredentials("access", "secret"));
+            client.execute(request, new ResponseHandler(), new ErrorResponseHandler(),
+                    executionContext);
+        }
+    }
+
+    private static class ResponseHandler
+            implements HttpResponseHandler<AmazonWebServiceResponse<Object>> {
+
+        @Override
+        public AmazonWebServiceResponse<Object> handle(HttpResponse response) {
+            return new AmazonWebServiceResponse<Object>();
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class ErrorResponseHandler
+            implements HttpResponseHandler<AmazonServiceException> {
+
+        @Override
+        public AmazonServiceException handle(HttpResponse response) {
+            return new AmazonServiceException("Unexpected status " + response.getStatusCode());
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+public class AbstractRefreshingCredentialsProviderTest {
+
+    private static final long ONE_MINUTE = 60 * 1000L;
+
+    @Test
+    public void testConcurrentFirstLoadsAreSingleFlight() throws Exception {
+        final CountingProvider provider = new CountingProvider(60 * ONE_MINUTE);
+        provider.loadDelayMillis = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<AWSCredentials>> futures = new ArrayList<Future<AWSCredentials>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.submit(new Callable<AWSCredentials>() {
+                    @Override
+                    public AWSCredentials call() {
+                        return provider.getCredentials();
+                    }
+                }));
+            }
+            for (Future<AWSCredentials> future : futures) {
+                assertEquals("key1", future.get().getAWSAccessKeyId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, provider.loads.get());
+    }
+
+    @Test
+    public void testFreshCredentialsAreCached() {
+        CountingProvider provider = new CountingProvider(60 * ONE_MINUTE);
+        AWSCredentials first = provider.getCredentials();
+        assertSame(first, provider.getCredentials());
+        assertEquals(1, provider.loads.get());
+    }
+
+    @Test
+    public void testStaleCredentialsAreReloaded() {
+        CountingProvider provider = new CountingProvider(ONE_MINUTE / 2);
+        provider.getCredentials();
+        assertEquals("key2", provider.getCredentials().getAWSAccessKeyId());
+    }
+
+    @Test
+    public void testStaleCredentialsAreUsedIfReloadFails() {
+        CountingProvider provider = new CountingProvider(ONE_MINUTE / 2);
+        AWSCredentials first = provider.getCredentials();
+        provider.failing = true;
+        assertSame(first, provider.getCredentials());
+    }
+
+    @Test
+    public void testFailedFirstLoadIsThrown() {
+        CountingProvider provider = new CountingProvider(60 * ONE_MINUTE);
+        provider.failing = true;
+        try {
+            provider.getCredentials();
+            fail("Expected an AmazonClientException");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void testRefreshLoadsNewCredentials() {
+        CountingProvider provider = new CountingProvider(60 * ONE_MINUTE);
+        provider.getCredentials();
+        provider.refresh();
+        assertEquals("key2", provider.getCredentials().getAWSAccessKeyId());
+    }
+
+    @Test
+    public void testRefreshInPrefetchWindowDoesNotBlockCallers() throws Exception {
+        CountingProvider provider = new CountingProvider(3 * ONE_MINUTE);
+        AWSCredentials cached = new BasicAWSCredentials("cached", "secret");
+        // within the prefetch window, but not yet stale
+        provider.setCredentials(cached, new Date(System.currentTimeMillis() + 3 * ONE_MINUTE));
+        provider.loadGate = new CountDownLatch(1);
+
+        try {
+            assertSame(cached, provider.getCredentials());
+            assertTrue(provider.loading.await(5, TimeUnit.SECONDS));
+
+            // the refresh is blocked, and callers keep getting the cached credentials
+            for (int i = 0; i < 100; i++) {
+                assertSame(cached, provider.getCredentials());
+            }
+            assertEquals(0, provider.loads.get());
+        } finally {
+            provider.loadGate.countDown();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (provider.getCredentials() == cached && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("key1", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(1, provider.loads.get());
+        assertNotSame(Thread.currentThread(), provider.loadThread);
+    }
+
+    private static class CountingProvider
+            extends AbstractRefreshingCredentialsProvider<AWSCredentials> {
+
+        final AtomicInteger loads = new AtomicInteger();
+        final long lifetimeMillis;
+        volatile long loadDelayMillis;
+        volatile boolean failing;
+        volatile CountDownLatch loadGate;
+        volatile Thread loadThread;
+        final CountDownLatch loading = new CountDownLatch(1);
+
+        CountingProvider(long lifetimeMillis) {
+            super(5 * ONE_MINUTE, ONE_MINUTE, 0);
+            this.lifetimeMillis = lifetimeMillis;
+        }
+
+        @Override
+        protected void loadCredentials() {
+            loadThread = Thread.currentThread();
+            loading.countDown();
+            if (failing) {
+                throw new AmazonClientException("failed");
+            }
+            if (loadGate != null) {
+                try {
+                    loadGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (loadDelayMillis > 0) {
+                try {
+                    Thread.sleep(loadDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int load = loads.incrementAndGet();
+            setCredentials(new BasicAWSCredentials("key" + load, "secret"),
+                    new Date(System.currentTimeMillis() + lifetimeMillis));
+        }
+    }
+}
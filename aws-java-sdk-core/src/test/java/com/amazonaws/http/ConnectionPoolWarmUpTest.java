@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.conn.ConnectionPoolStatistics;
+
+public class ConnectionPoolWarmUpTest {
+
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final List<Socket> sockets = new ArrayList<Socket>();
+    private ServerSocket serverSocket;
+    private AmazonHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sockets.add(serverSocket.accept());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IOException expected) {
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.shutdown();
+        }
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void warmUpOpensConnections() throws Exception {
+        client = new AmazonHttpClient(new ClientConfiguration());
+        URI endpoint = URI.create("http://localhost:" + serverSocket.getLocalPort());
+
+        client.warmUpConnectionPool(endpoint, 3).join();
+
+        assertEquals(3, awaitAccepted(3));
+        ConnectionPoolStatistics stats = client.getConnectionPoolStatistics();
+        PoolStats routeStats = stats.getRouteStats(new HttpHost("localhost", serverSocket.getLocalPort()));
+        assertNotNull(routeStats);
+        assertEquals(3, routeStats.getAvailable());
+        assertEquals(0, routeStats.getLeased());
+        assertEquals(3, stats.getLeaseTime().getCount());
+    }
+
+    @Test
+    public void warmUpLeavesAConnectionOfTheRouteToRequests() throws Exception {
+        client = new AmazonHttpClient(new ClientConfiguration().withMaxConnectionsPerRoute(3));
+        URI endpoint = URI.create("http://localhost:" + serverSocket.getLocalPort());
+
+        client.warmUpConnectionPool(endpoint, 5).join();
+
+        assertEquals(2, awaitAccepted(2));
+        assertEquals(2, client.getConnectionPoolStatistics().getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void poolIsWarmedUpOnce() throws Exception {
+        client = new AmazonHttpClient(new ClientConfiguration().withConnectionPoolWarmUpSize(2));
+        URI endpoint = URI.create("http://localhost:" + serverSocket.getLocalPort());
+
+        client.warmUpConnectionPool(endpoint).join();
+
+        assertEquals(2, awaitAccepted(2));
+        assertNull(client.warmUpConnectionPool(endpoint));
+        assertNull(client.warmUpConnectionPool(URI.create("http://127.0.0.1:" + serverSocket.getLocalPort())));
+    }
+
+    @Test
+    public void settingTheEndpointDoesNotWarmUpThePool() throws Exception {
+        AmazonWebServiceClient serviceClient = new AmazonWebServiceClient(
+                new ClientConfiguration().withConnectionPoolWarmUpSize(2)) { };
+        try {
+            serviceClient.setEndpoint("http://localhost:" + serverSocket.getLocalPort());
+            Thread.sleep(200);
+            assertEquals(0, accepted.get());
+
+            serviceClient.warmUpConnectionPool();
+            assertEquals(2, awaitAccepted(2));
+        } finally {
+            serviceClient.shutdown();
+        }
+    }
+
+    /**
+     * Connections may be established before the server gets to accept them.
+     */
+    private int awaitAccepted(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && accepted.get() < expected; i++) {
+            Thread.sleep(10);
+        }
+        return accepted.get();
+    }
+}
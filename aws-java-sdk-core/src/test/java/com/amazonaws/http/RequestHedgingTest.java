@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.response.DummyResponseHandler;
+import com.amazonaws.http.response.NullErrorResponseHandler;
+import com.amazonaws.http.server.MockServer;
+import com.amazonaws.retry.HedgingPolicy;
+import com.amazonaws.retry.HedgingPolicy.HedgeCondition;
+import com.amazonaws.util.CapacityManager;
+
+public class RequestHedgingTest extends MockServerTestBase {
+
+    private static final int MAX_CAPACITY = 1000;
+    private static final int RETRY_COST = 5;
+
+    private final SlowFirstConnectionBehavior behavior = new SlowFirstConnectionBehavior();
+
+    @Override
+    protected MockServer buildMockServer() {
+        return new MockServer(behavior);
+    }
+
+    @Test
+    public void slowRequest_HedgeResponseIsUsed() throws Exception {
+        AmazonHttpClient httpClient = newClient(true);
+        try {
+            long start = System.currentTimeMillis();
+            httpClient.execute(newGetRequest(), new DummyResponseHandler(),
+                    new NullErrorResponseHandler(), new ExecutionContext());
+
+            assertTrue(System.currentTimeMillis() - start < 4000);
+            assertEquals(2, behavior.connections.get());
+        } finally {
+            httpClient.shutdown();
+        }
+    }
+
+    @Test
+    public void requestNotMatchingCondition_IsNotHedged() throws Exception {
+        behavior.holdFirstConnection = false;
+        AmazonHttpClient httpClient = newClient(false);
+        try {
+            httpClient.execute(newGetRequest(), new DummyResponseHandler(),
+                    new NullErrorResponseHandler(), new ExecutionContext());
+
+            assertEquals(1, behavior.connections.get());
+        } finally {
+            httpClient.shutdown();
+        }
+    }
+
+    @Test
+    public void hedgeBudget_LimitsHedgesAndConsumesRetryCapacity() throws Exception {
+        DelayedResponseBehavior delayed = new DelayedResponseBehavior(200, 0);
+        MockServer delayedServer = new MockServer(delayed);
+        delayedServer.startServer();
+        CapacityManager capacity = new CapacityManager(MAX_CAPACITY);
+        RequestHedger hedger = newHedger(50, capacity);
+        try {
+            List<Boolean> consumed = new ArrayList<Boolean>();
+            for (int i = 0; i < 3; i++) {
+                consumed.add(executeHedged(hedger, delayedServer).capacityConsumed);
+            }
+            // Every request earns half a hedge, so only the second one is hedged
+            assertEquals(Arrays.asList(false, true, false), consumed);
+            assertEquals(MAX_CAPACITY - RETRY_COST, capacity.availableCapacity());
+            assertEquals(4, delayed.connections.get());
+        } finally {
+            hedger.shutdown();
+            delayedServer.stopServer();
+        }
+    }
+
+    @Test
+    public void primaryWinningWhileHedgeIsLaunched_RetryCapacityIsNotLeaked() throws Exception {
+        // Acquiring the capacity of a hedge takes longer than the response to
+        // the primary request, so the primary wins while the hedge is launched
+        MockServer delayedServer = new MockServer(new DelayedResponseBehavior(20, 0));
+        delayedServer.startServer();
+        CapacityManager capacity = new CapacityManager(MAX_CAPACITY) {
+            @Override
+            public boolean acquire(int capacity) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.acquire(capacity);
+            }
+        };
+        RequestHedger hedger = newHedger(100, capacity);
+        try {
+            for (int i = 0; i < 5; i++) {
+                if (executeHedged(hedger, delayedServer).capacityConsumed) {
+                    // Released by AmazonHttpClient once the request succeeds
+                    capacity.release(RETRY_COST);
+                }
+            }
+            // Hedges launched too late give their capacity back on the timer thread
+            long deadline = System.currentTimeMillis() + 5000;
+            while (capacity.availableCapacity() != MAX_CAPACITY
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(MAX_CAPACITY, capacity.availableCapacity());
+        } finally {
+            hedger.shutdown();
+            delayedServer.stopServer();
+        }
+    }
+
+    private static RequestHedger newHedger(int budgetPercent, CapacityManager capacity) {
+        HttpClient httpClient = new HttpClientFactory().createHttpClient(new ClientConfiguration());
+        return new RequestHedger(new HedgingPolicy(condition(true), 10, 0, budgetPercent),
+                httpClient, capacity, RETRY_COST);
+    }
+
+    private static RequestHedger.HedgedResponse executeHedged(RequestHedger hedger,
+            MockServer server) throws Exception {
+        HttpGet primary = new HttpGet(server.getEndpoint());
+        HttpRequestBase hedge = hedger.newHedge(primary, new HttpGet());
+        RequestHedger.HedgedResponse response = hedger.execute("Test.Get", primary, hedge,
+                new BasicHttpContext());
+        EntityUtils.consume(response.response.getEntity());
+        return response;
+    }
+
+    private static HedgeCondition condition(final boolean hedge) {
+        return new HedgeCondition() {
+            @Override
+            public boolean shouldHedge(AmazonWebServiceRequest originalRequest) {
+                return hedge;
+            }
+        };
+    }
+
+    private static AmazonHttpClient newClient(final boolean hedge) {
+        return new AmazonHttpClient(new ClientConfiguration()
+                .withSocketTimeout(5000)
+                .withMaxErrorRetry(0)
+                .withHedgingPolicy(new HedgingPolicy(condition(hedge), 50, 0, 100)));
+    }
+
+    /**
+     * Answers every connection on its own thread after a fixed delay, plus a
+     * random delay of up to the given jitter.
+     */
+    private static class DelayedResponseBehavior implements MockServer.ServerBehaviorStrategy {
+
+        final AtomicInteger connections = new AtomicInteger();
+        private final long delayMillis;
+        private final int jitterMillis;
+        private final Random random = new Random();
+
+        DelayedResponseBehavior(long delayMillis, int jitterMillis) {
+            this.delayMillis = delayMillis;
+            this.jitterMillis = jitterMillis;
+        }
+
+        @Override
+        public void runServer(ServerSocket serverSocket) {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    final long delay = delayMillis
+                            + (jitterMillis == 0 ? 0 : random.nextInt(jitterMillis));
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            respond(socket, delay);
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            } catch (IOException e) {
+                // The server socket was closed
+            }
+        }
+
+        private static void respond(Socket socket, long delay) {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null && line.length() > 0) {
+                    // Discard the request headers
+                }
+                Thread.sleep(delay);
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n"
+                        + "Connection: close\r\n\r\nHi").getBytes("UTF-8"));
+                out.flush();
+                socket.close();
+            } catch (Exception e) {
+                // The client aborted the request
+            }
+        }
+    }
+
+    /**
+     * Never answers the first connection, and answers the other ones
+     * immediately.
+     */
+    private static class SlowFirstConnectionBehavior implements MockServer.ServerBehaviorStrategy {
+
+        final AtomicInteger connections = new AtomicInteger();
+        final List<Socket> heldSockets = new ArrayList<Socket>();
+        volatile boolean holdFirstConnection = true;
+
+        @Override
+        public void runServer(ServerSocket serverSocket) {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    if (connections.incrementAndGet() == 1 && holdFirstConnection) {
+                        heldSockets.add(socket);
+                        continue;
+                    }
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n"
+                            + "Connection: close\r\n\r\nHi").getBytes("UTF-8"));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The server socket was closed
+            }
+        }
+    }
+}
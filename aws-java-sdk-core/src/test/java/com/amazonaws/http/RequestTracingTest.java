@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.request.EmptyHttpRequest;
+import com.amazonaws.http.response.DummyResponseHandler;
+import com.amazonaws.http.response.NullErrorResponseHandler;
+import com.amazonaws.http.server.MockServer;
+import com.amazonaws.tracing.RequestTracer;
+import com.amazonaws.tracing.TracePhase;
+import com.amazonaws.tracing.TraceSpan;
+import com.amazonaws.tracing.TracingContext;
+
+public class RequestTracingTest extends MockServerTestBase {
+
+    private int statusCode = 200;
+
+    @Override
+    protected MockServer buildMockServer() {
+        return new MockServer(MockServer.DummyResponseServerBehavior.build(statusCode, "Status", "Hi"));
+    }
+
+    @Test
+    public void successfulRequest_TracesPhasesOfSingleAttempt() throws Exception {
+        RecordingTracer tracer = new RecordingTracer();
+        AmazonHttpClient httpClient = new AmazonHttpClient(
+                new ClientConfiguration().withRequestTracer(tracer));
+
+        httpClient.execute(newGetRequest(), new DummyResponseHandler(),
+                new NullErrorResponseHandler(), new ExecutionContext());
+
+        assertEquals(1, tracer.requests.size());
+        TraceSpan requestSpan = tracer.requests.get(0);
+        assertEquals(TraceSpan.REQUEST, requestSpan.getName());
+        assertTrue(requestSpan.isEnded());
+
+        List<TraceSpan> attempts = requestSpan.getChildren(TraceSpan.ATTEMPT);
+        assertEquals(1, attempts.size());
+        assertEquals(tracer.attempts, attempts);
+        TraceSpan attempt = attempts.get(0);
+        assertEquals(1, attempt.getAttribute(TraceSpan.ATTEMPT_NUMBER));
+        assertEquals(200, attempt.getAttribute(TraceSpan.STATUS_CODE));
+        assertEquals(Arrays.asList(
+                TracePhase.ConnectionLease.name(),
+                TracePhase.DnsResolution.name(),
+                TracePhase.Connect.name(),
+                TracePhase.RequestSend.name(),
+                TracePhase.TimeToFirstByte.name(),
+                TracePhase.ResponseUnmarshalling.name()),
+                names(attempt.getChildren()));
+        for (TraceSpan phase : attempt.getChildren()) {
+            assertTrue(phase.isEnded());
+            assertTrue(phase.getDuration(TimeUnit.NANOSECONDS) >= 0);
+        }
+        assertNotNull(attempt.getChildren(TracePhase.DnsResolution.name()).get(0)
+                .getAttribute(TraceSpan.HOST));
+        assertNull(TracingContext.currentSpan());
+    }
+
+    @Test
+    public void retriedRequest_TracesEveryAttempt() throws Exception {
+        server.stopServer();
+        statusCode = 500;
+        server = buildMockServer();
+        server.startServer();
+
+        RecordingTracer tracer = new RecordingTracer();
+        AmazonHttpClient httpClient = new AmazonHttpClient(
+                new ClientConfiguration().withMaxErrorRetry(1));
+        List<RequestHandler2> handlers = Collections.<RequestHandler2>singletonList(tracer);
+
+        try {
+            httpClient.execute(newGetRequest(), new DummyResponseHandler(),
+                    new NullErrorResponseHandler(), new ExecutionContext(handlers, false, null));
+            fail("Expected exception");
+        } catch (AmazonServiceException expected) {
+            TraceSpan requestSpan = tracer.requests.get(0);
+            assertSame(expected, requestSpan.getAttribute(TraceSpan.EXCEPTION));
+        }
+
+        assertEquals(2, tracer.attempts.size());
+        TraceSpan retry = tracer.attempts.get(1);
+        assertEquals(2, retry.getAttribute(TraceSpan.ATTEMPT_NUMBER));
+        assertEquals(500, retry.getAttribute(TraceSpan.STATUS_CODE));
+        assertEquals(TracePhase.RetryPause.name(), retry.getChildren().get(0).getName());
+        assertTrue(names(retry.getChildren()).contains(TracePhase.ResponseUnmarshalling.name()));
+    }
+
+    @Test
+    public void httpsRequest_TracesConnectAndTlsHandshake() throws Exception {
+        RecordingTracer tracer = new RecordingTracer();
+        AmazonHttpClient httpClient = new AmazonHttpClient(new ClientConfiguration()
+                .withRequestTracer(tracer).withMaxErrorRetry(0).withSocketTimeout(5 * 1000));
+        // The mock server doesn't speak TLS, so the handshake fails, but it is still traced
+        EmptyHttpRequest request = new EmptyHttpRequest(
+                "https://localhost:" + server.getPort(), HttpMethodName.GET);
+
+        try {
+            httpClient.execute(request, new DummyResponseHandler(),
+                    new NullErrorResponseHandler(), new ExecutionContext());
+            fail("Expected exception");
+        } catch (AmazonClientException expected) {
+        }
+
+        assertEquals(1, tracer.attempts.size());
+        TraceSpan attempt = tracer.attempts.get(0);
+        List<String> phases = names(attempt.getChildren());
+        assertTrue(phases.toString(), phases.contains(TracePhase.Connect.name()));
+        assertTrue(phases.toString(), phases.contains(TracePhase.TlsHandshake.name()));
+        assertTrue(phases.indexOf(TracePhase.Connect.name())
+                < phases.indexOf(TracePhase.TlsHandshake.name()));
+        assertTrue(attempt.getChildren(TracePhase.TlsHandshake.name()).get(0).isEnded());
+        assertNull(TracingContext.currentSpan());
+    }
+
+    @Test
+    public void noTracer_NothingIsTraced() throws Exception {
+        AmazonHttpClient httpClient = new AmazonHttpClient(new ClientConfiguration());
+
+        httpClient.execute(newGetRequest(), new DummyResponseHandler(),
+                new NullErrorResponseHandler(), new ExecutionContext());
+
+        assertNull(TracingContext.currentSpan());
+    }
+
+    private static List<String> names(List<TraceSpan> spans) {
+        List<String> names = new ArrayList<String>();
+        for (TraceSpan span : spans) {
+            names.add(span.getName());
+        }
+        return names;
+    }
+
+    private static class RecordingTracer extends RequestHandler2 implements RequestTracer {
+        final List<TraceSpan> attempts = new ArrayList<TraceSpan>();
+        final List<TraceSpan> requests = new ArrayList<TraceSpan>();
+
+        @Override
+        public void attemptCompleted(Request<?> request, TraceSpan attemptSpan) {
+            attempts.add(attemptSpan);
+        }
+
+        @Override
+        public void requestCompleted(Request<?> request, TraceSpan requestSpan) {
+            requests.add(requestSpan);
+        }
+    }
+}
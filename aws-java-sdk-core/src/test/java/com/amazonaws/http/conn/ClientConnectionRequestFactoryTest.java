@@ -38,13 +38,13 @@ public class ClientConnectionRequestFactoryTest {
 
     @Test
     public void wrapOnce() {
-        ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop);
+        ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop, new ConnectionPoolStatistics(null));
         assertTrue(wrapped instanceof Wrapped);
     }
 
     @Test(expected=IllegalArgumentException.class)
     public void wrapTwice() {
-        ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop);
-        ClientConnectionRequestFactory.wrap(wrapped);
+        ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop, new ConnectionPoolStatistics(null));
+        ClientConnectionRequestFactory.wrap(wrapped, new ConnectionPoolStatistics(null));
     }
 }
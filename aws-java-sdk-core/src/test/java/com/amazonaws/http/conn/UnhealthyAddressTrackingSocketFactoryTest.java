@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.junit.Test;
+
+import com.amazonaws.CachingDnsResolver;
+
+public class UnhealthyAddressTrackingSocketFactoryTest {
+
+    private final CachingDnsResolver resolver = new CachingDnsResolver();
+
+    @Test
+    public void layeringIsPreserved() {
+        assertFalse(UnhealthyAddressTrackingSocketFactory.wrap(
+                PlainSocketFactory.getSocketFactory(), resolver)
+                instanceof SchemeLayeredSocketFactory);
+        assertTrue(UnhealthyAddressTrackingSocketFactory.wrap(
+                SSLSocketFactory.getSocketFactory(), resolver)
+                instanceof SchemeLayeredSocketFactory);
+    }
+
+    @Test
+    public void connectTimeoutMarksAddressUnhealthy() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        SchemeSocketFactory factory = UnhealthyAddressTrackingSocketFactory.wrap(
+                new TimingOutSocketFactory(), resolver);
+        try {
+            factory.connectSocket(new Socket(), new InetSocketAddress(address, 443),
+                    null, new BasicHttpParams());
+            fail("Expected ConnectTimeoutException");
+        } catch (ConnectTimeoutException expected) {
+        }
+        assertFalse(resolver.isHealthy(address));
+    }
+
+    private static class TimingOutSocketFactory implements SchemeSocketFactory {
+        @Override
+        public Socket createSocket(HttpParams params) {
+            return new Socket();
+        }
+
+        @Override
+        public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpParams params) throws IOException {
+            throw new ConnectTimeoutException("timed out");
+        }
+
+        @Override
+        public boolean isSecure(Socket socket) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void taskRunsAfterDelay() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000);
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(countDown(latch), 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Fired after " + elapsedMillis + "ms", elapsedMillis >= 100);
+        assertTrue(timeout.isExpired());
+        assertEquals(1, timer.getExpiredTimeouts());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void canceledTaskNeverRuns() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000);
+        final AtomicInteger runs = new AtomicInteger();
+        List<HashedWheelTimer.Timeout> timeouts = new ArrayList<HashedWheelTimer.Timeout>();
+        for (int i = 0; i < 100; i++) {
+            timeouts.add(timer.newTimeout(increment(runs), 50, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(100, timer.getPendingTimeouts());
+
+        for (HashedWheelTimer.Timeout timeout : timeouts) {
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+        }
+        assertEquals(0, timer.getPendingTimeouts());
+
+        // Fires after the canceled timeouts would have
+        CountDownLatch later = new CountDownLatch(1);
+        timer.newTimeout(countDown(later), 100, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertEquals(1, timer.getExpiredTimeouts());
+    }
+
+    @Test
+    public void timeoutsLongerThanOneRotationFireInOrder() throws Exception {
+        // One rotation of this wheel is 8ms
+        HashedWheelTimer timer = new HashedWheelTimer(1, 8, 1000);
+        final List<Integer> fired = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        for (final int delay : new int[] { 90, 30, 60 }) {
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    fired.add(delay);
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(30, fired.get(0).intValue());
+        assertEquals(60, fired.get(1).intValue());
+        assertEquals(90, fired.get(2).intValue());
+    }
+
+    @Test
+    public void workerStopsWhenIdleAndRestartsOnDemand() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 50);
+        CountDownLatch first = new CountDownLatch(1);
+        timer.newTimeout(countDown(first), 10, TimeUnit.MILLISECONDS);
+        assertTrue(timer.isWorkerRunning());
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        assertTrue(timer.awaitWorkerStopped(5, TimeUnit.SECONDS));
+        assertFalse(timer.isWorkerRunning());
+
+        CountDownLatch second = new CountDownLatch(1);
+        timer.newTimeout(countDown(second), 10, TimeUnit.MILLISECONDS);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTimer() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("boom");
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(countDown(latch), 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, timer.getExpiredTimeouts());
+    }
+
+    @Test
+    public void blockedTaskDoesNotDelayOtherTimeouts() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        try {
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+            CountDownLatch later = new CountDownLatch(1);
+            timer.newTimeout(countDown(later), 10, TimeUnit.MILLISECONDS);
+            assertTrue(later.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void tasksRunOnTheGivenExecutor() throws Exception {
+        final List<Runnable> handedOff = Collections.synchronizedList(new ArrayList<Runnable>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handedOff.add(command);
+                latch.countDown();
+            }
+        });
+        AtomicInteger runs = new AtomicInteger();
+        timer.newTimeout(increment(runs), 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        handedOff.get(0).run();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void cancelWinsWhileTaskIsQueued() throws Exception {
+        final List<Runnable> handedOff = Collections.synchronizedList(new ArrayList<Runnable>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1000, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handedOff.add(command);
+                latch.countDown();
+            }
+        });
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout =
+                timer.newTimeout(increment(runs), 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.cancel());
+        handedOff.get(0).run();
+
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isExpired());
+        assertEquals(0, timer.getExpiredTimeouts());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+    private static Runnable increment(final AtomicInteger counter) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        };
+    }
+}
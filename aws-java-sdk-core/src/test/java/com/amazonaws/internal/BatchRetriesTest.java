@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchRetriesTest {
+
+    @Test
+    public void testBackoffDoublesUpToTheMaximum() {
+        Assert.assertEquals(50, BatchRetries.backoffMs(0));
+        Assert.assertEquals(100, BatchRetries.backoffMs(1));
+        Assert.assertEquals(BatchRetries.MAX_BACKOFF_MS, BatchRetries.backoffMs(100));
+        Assert.assertEquals(200, BatchRetries.backoffMs(1, 100, 1000));
+        Assert.assertEquals(1000, BatchRetries.backoffMs(5, 100, 1000));
+    }
+
+    @Test
+    public void testRetryableErrorCodes() {
+        Assert.assertTrue(BatchRetries.isRetryableErrorCode("ServiceUnavailableException"));
+        Assert.assertTrue(BatchRetries.isRetryableErrorCode("ProvisionedThroughputExceededException"));
+        Assert.assertFalse(BatchRetries.isRetryableErrorCode("InvalidArgumentException"));
+        Assert.assertFalse(BatchRetries.isRetryableErrorCode(null));
+    }
+}
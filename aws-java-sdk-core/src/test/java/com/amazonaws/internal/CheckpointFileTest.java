@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckpointFileTest {
+
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("checkpoints", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "checkpoints");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void checkpointsAreReloaded() {
+        CheckpointFile checkpoints = new CheckpointFile(file, 0);
+        checkpoints.put("shard-1", "100");
+        checkpoints.put("shard-2", "200");
+        checkpoints.put("shard-1", "101");
+
+        CheckpointFile reloaded = new CheckpointFile(file, 0);
+        assertEquals("101", reloaded.get("shard-1"));
+        assertEquals("200", reloaded.get("shard-2"));
+        assertNull(reloaded.get("shard-3"));
+        assertFalse(new File(directory, "checkpoints.tmp").exists());
+        assertFalse(new File(directory, "checkpoints.bak").exists());
+    }
+
+    @Test
+    public void updatesAreWrittenBehindAndCoalesced() {
+        CheckpointFile checkpoints = new CheckpointFile(file, 60 * 1000);
+        for (int i = 0; i < 1000; i++) {
+            checkpoints.put("shard", Integer.toString(i));
+        }
+
+        // nothing written by the updating thread
+        assertFalse(file.exists());
+        assertEquals("999", checkpoints.get("shard"));
+
+        checkpoints.close();
+        assertEquals("999", new CheckpointFile(file, 0).get("shard"));
+    }
+
+    @Test
+    public void updatesAreWrittenWithinTheFlushInterval() throws Exception {
+        CheckpointFile checkpoints = new CheckpointFile(file, 50);
+        checkpoints.put("shard", "1");
+
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!file.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("1", new CheckpointFile(file, 0).get("shard"));
+    }
+
+    @Test
+    public void flushWithoutUpdates_DoesNotWrite() {
+        CheckpointFile checkpoints = new CheckpointFile(file, 60 * 1000);
+        checkpoints.flush();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void backupIsLoadedWhenFileIsMissing() throws IOException {
+        // as left by a process stopped while replacing the file
+        write(new File(directory, "checkpoints.bak"), "shard", "previous");
+        write(new File(directory, "checkpoints.tmp"), "shard", "next");
+
+        CheckpointFile checkpoints = new CheckpointFile(file, 0);
+        assertEquals("previous", checkpoints.get("shard"));
+
+        checkpoints.put("shard", "latest");
+        assertEquals("latest", new CheckpointFile(file, 0).get("shard"));
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void fileIsPreferredToBackup() throws IOException {
+        // as left by a process stopped before removing the backup
+        write(new File(directory, "checkpoints.bak"), "shard", "previous");
+        write(file, "shard", "current");
+
+        assertEquals("current", new CheckpointFile(file, 0).get("shard"));
+    }
+
+    private static void write(File to, String key, String value) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        OutputStream out = new FileOutputStream(to);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.util.StringUtils;
+
+public class EC2MetadataCacheTest {
+
+    private static final String INSTANCE_ID = "/latest/meta-data/instance-id";
+    private static final String IAM_INFO = "/latest/meta-data/iam/info";
+    private static final String CREDENTIALS =
+            EC2MetadataClient.SECURITY_CREDENTIALS_RESOURCE + "role";
+
+    private KeepAliveServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new KeepAliveServer();
+        server.start();
+        System.setProperty(
+                SDKGlobalConfiguration.EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY,
+                "http://localhost:" + server.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+        System.clearProperty(
+                SDKGlobalConfiguration.EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY);
+    }
+
+    @Test
+    public void testImmutableResourcesAreCachedForever() throws Exception {
+        EC2MetadataCache cache = new EC2MetadataCache(new EC2MetadataClient(), 0);
+
+        Assert.assertEquals("i-1", cache.readResource(INSTANCE_ID));
+        Assert.assertEquals("i-1", cache.readResource(INSTANCE_ID));
+        Assert.assertEquals(1, server.requests(INSTANCE_ID));
+    }
+
+    @Test
+    public void testOnlyWholePathSegmentsAreImmutable() {
+        Assert.assertTrue(EC2MetadataCache.isImmutable("/latest/meta-data/mac"));
+        Assert.assertTrue(EC2MetadataCache.isImmutable(
+                "/latest/dynamic/instance-identity/document"));
+        Assert.assertFalse(EC2MetadataCache.isImmutable("/latest/meta-data/macs/"));
+        Assert.assertFalse(EC2MetadataCache.isImmutable(
+                "/latest/meta-data/network/interfaces/macs/0e:00:00:00:00:01/local-ipv4s"));
+        Assert.assertFalse(EC2MetadataCache.isImmutable("/latest/meta-data/instance-id-x"));
+        Assert.assertTrue(EC2MetadataCache.isImmutable("/latest/meta-data/product-codes/0"));
+    }
+
+    @Test
+    public void testMutableResourcesExpire() throws Exception {
+        EC2MetadataCache cache = new EC2MetadataCache(new EC2MetadataClient(), 0);
+        cache.readResource(IAM_INFO);
+        cache.readResource(IAM_INFO);
+        Assert.assertEquals(2, server.requests(IAM_INFO));
+
+        cache = new EC2MetadataCache(new EC2MetadataClient(), 60000);
+        cache.readResource(IAM_INFO);
+        cache.readResource(IAM_INFO);
+        Assert.assertEquals(3, server.requests(IAM_INFO));
+    }
+
+    @Test
+    public void testCredentialsAreNotCached() throws Exception {
+        EC2MetadataCache cache = new EC2MetadataCache(new EC2MetadataClient());
+        cache.readResource(CREDENTIALS);
+        cache.readResource(CREDENTIALS);
+        Assert.assertEquals(2, server.requests(CREDENTIALS));
+    }
+
+    @Test
+    public void testNotFoundIsCached() throws Exception {
+        EC2MetadataCache cache = new EC2MetadataCache(new EC2MetadataClient());
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.readResource("/latest/meta-data/missing");
+                Assert.fail("Expected AmazonClientException");
+            } catch (AmazonClientException expected) {
+            }
+        }
+        Assert.assertEquals(1, server.requests("/latest/meta-data/missing"));
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneRequest() throws Exception {
+        final EC2MetadataCache cache =
+                new EC2MetadataCache(new EC2MetadataClient());
+        server.delayMillis = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 10; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return cache.readResource(INSTANCE_ID);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                Assert.assertEquals("i-1", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, server.requests(INSTANCE_ID));
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        EC2MetadataClient client = new EC2MetadataClient();
+        for (int i = 0; i < 5; i++) {
+            client.readResource(CREDENTIALS);
+        }
+        try {
+            client.readResource("/latest/meta-data/missing");
+            Assert.fail("Expected AmazonClientException");
+        } catch (AmazonClientException expected) {
+        }
+        client.readResource(CREDENTIALS);
+
+        Assert.assertEquals(1, server.connections.get());
+    }
+
+    /**
+     * Serves any number of requests on each connection until the client
+     * closes it.
+     */
+    private static class KeepAliveServer {
+
+        final AtomicInteger connections = new AtomicInteger();
+        final ConcurrentMap<String, AtomicInteger> requests =
+                new ConcurrentHashMap<String, AtomicInteger>();
+        volatile long delayMillis;
+
+        private final ServerSocket socket;
+
+        KeepAliveServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        }
+
+        int getLocalPort() {
+            return socket.getLocalPort();
+        }
+
+        int requests(String path) {
+            AtomicInteger count = requests.get(path);
+            return count == null ? 0 : count.get();
+        }
+
+        void start() {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            final Socket connection = socket.accept();
+                            connections.incrementAndGet();
+                            Thread handler = new Thread() {
+                                @Override
+                                public void run() {
+                                    serve(connection);
+                                }
+                            };
+                            handler.setDaemon(true);
+                            handler.start();
+                        }
+                    } catch (IOException closed) {
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws IOException {
+            socket.close();
+        }
+
+        private void serve(Socket connection) {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        connection.getInputStream(), StringUtils.UTF8));
+                OutputStream output = connection.getOutputStream();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String path = line.split(" ")[1];
+                    while ((line = reader.readLine()) != null && line.length() > 0) {
+                    }
+                    respond(path, output);
+                }
+            } catch (Exception e) {
+            } finally {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void respond(String path, OutputStream output)
+                throws IOException, InterruptedException {
+
+            AtomicInteger count = requests.get(path);
+            if (count == null) {
+                requests.putIfAbsent(path, new AtomicInteger());
+                count = requests.get(path);
+            }
+            count.incrementAndGet();
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+
+            String status = "200 OK";
+            String body;
+            if (path.equals(INSTANCE_ID)) {
+                body = "i-1";
+            } else if (path.equals(IAM_INFO)) {
+                body = "{\"Code\":\"Success\"}";
+            } else if (path.equals(CREDENTIALS)) {
+                body = "{\"AccessKeyId\":\"foo\"}";
+            } else {
+                status = "404 Not Found";
+                body = "Not Found";
+            }
+
+            byte[] bytes = body.getBytes(StringUtils.UTF8);
+            output.write(("HTTP/1.1 " + status + "\r\n"
+                    + "Content-Length: " + bytes.length + "\r\n"
+                    + "\r\n").getBytes(StringUtils.UTF8));
+            output.write(bytes);
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SettableFutureTest {
+
+    @Test
+    public void testOnlyTheFirstCompletionCounts() throws Exception {
+        final AtomicInteger callbacks = new AtomicInteger();
+        SettableFuture<String> future = new SettableFuture<String>() {
+            @Override
+            protected void onSuccess(String value) {
+                callbacks.incrementAndGet();
+            }
+
+            @Override
+            protected void onError(Exception e) {
+                callbacks.incrementAndGet();
+            }
+        };
+
+        Assert.assertTrue(future.set("first"));
+        Assert.assertFalse(future.set("second"));
+        Assert.assertFalse(future.setException(new RuntimeException()));
+        Assert.assertEquals("first", future.get());
+        Assert.assertEquals(1, callbacks.get());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        SettableFuture<String> future = new SettableFuture<String>();
+        IllegalStateException error = new IllegalStateException();
+        Assert.assertTrue(future.setException(error));
+        Assert.assertTrue(future.isDone());
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            Assert.fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void testFailingCallbackStillCompletes() throws Exception {
+        SettableFuture<String> future = new SettableFuture<String>() {
+            @Override
+            protected void onSuccess(String value) {
+                throw new RuntimeException("handler failed");
+            }
+        };
+        Assert.assertTrue(future.set("value"));
+        Assert.assertEquals("value", future.get());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testGetTimesOut() throws Exception {
+        new SettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+    }
+}
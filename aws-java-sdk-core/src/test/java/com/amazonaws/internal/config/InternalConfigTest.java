@@ -18,6 +18,7 @@ import org.junit.Test;
 
 import com.amazonaws.regions.Regions;
 import com.amazonaws.util.ClassLoaderHelper;
+import com.amazonaws.util.json.Jackson;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
@@ -178,6 +179,20 @@ public class InternalConfigTest {
         assertNotNull(config);
     }
 
+    /**
+     * Verifies that the precompiled defaults are in sync with the default
+     * configuration file. If this test fails, regenerate
+     * {@link PrecompiledInternalConfig} with the PrecompiledMetadataGeneratorTask
+     * in the code generator.
+     */
+    @Test
+    public void precompiledDefaultsMatchConfigFile() throws Exception {
+        URL url = ClassLoaderHelper.getResource(InternalConfig.DEFAULT_CONFIG_RESOURCE_ABSOLUTE_PATH);
+        assertEquals(
+                Jackson.getObjectMapper().valueToTree(InternalConfig.loadfrom(url)),
+                Jackson.getObjectMapper().valueToTree(PrecompiledInternalConfig.defaults()));
+    }
+
     @Test
     public void load() throws Exception {
         InternalConfig config = InternalConfig.load();
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompactSupport;
+
+public class LatencyHistogramRequestMetricCollectorTest {
+
+    private final LatencyHistogramRequestMetricCollector collector =
+            new LatencyHistogramRequestMetricCollector();
+
+    @Test
+    public void latencyIsRecordedPerOperation() throws Exception {
+        collector.collectMetrics(completedRequest(new GetThingRequest()), null);
+        collector.collectMetrics(completedRequest(new GetThingRequest()), null);
+        collector.collectMetrics(completedRequest(new PutThingRequest()), null);
+
+        LatencyHistogram get = collector.getHistogram("AmazonThings", "GetThing");
+        assertEquals(2, get.getCount());
+        assertTrue(get.getMax() >= 1000);
+        assertEquals(1, collector.getHistogram("AmazonThings", "PutThing").getCount());
+        assertEquals(2, collector.getHistograms().size());
+    }
+
+    @Test
+    public void requestsWithoutClientExecuteTimeAreIgnored() {
+        DefaultRequest<Void> request =
+                new DefaultRequest<Void>(new GetThingRequest(), "AmazonThings");
+        request.setAWSRequestMetrics(new AWSRequestMetricsCompactSupport());
+        collector.collectMetrics(request, null);
+        assertNull(collector.getHistogram("AmazonThings", "GetThing"));
+    }
+
+    @Test
+    public void compactMetricsAreSupported() {
+        assertTrue(collector.isCompactMetricsSupported());
+    }
+
+    private static DefaultRequest<Void> completedRequest(AmazonWebServiceRequest original)
+            throws InterruptedException {
+        DefaultRequest<Void> request = new DefaultRequest<Void>(original, "AmazonThings");
+        AWSRequestMetrics metrics = new AWSRequestMetricsCompactSupport();
+        metrics.startEvent(Field.ClientExecuteTime);
+        Thread.sleep(1);
+        metrics.endEvent(Field.ClientExecuteTime);
+        request.setAWSRequestMetrics(metrics);
+        return request;
+    }
+
+    private static class GetThingRequest extends AmazonWebServiceRequest {
+    }
+
+    private static class PutThingRequest extends AmazonWebServiceRequest {
+    }
+}
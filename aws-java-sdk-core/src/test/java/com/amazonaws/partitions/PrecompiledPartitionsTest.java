@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.partitions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.partitions.model.Partitions;
+import com.amazonaws.util.json.Jackson;
+
+/**
+ * Verifies that the precompiled partitions are in sync with endpoints.json.
+ * If this test fails, regenerate {@link PrecompiledPartitions} with the
+ * PrecompiledMetadataGeneratorTask in the code generator.
+ */
+public class PrecompiledPartitionsTest {
+
+    @Test
+    public void precompiledPartitionsMatchEndpointsJson() {
+        Partitions parsed = new PartitionsLoader().loadDefaultPartitions();
+        Partitions precompiled = PrecompiledPartitions.build();
+
+        Assert.assertEquals(
+                Jackson.getObjectMapper().valueToTree(parsed),
+                Jackson.getObjectMapper().valueToTree(precompiled));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.metrics.RequestMetricVisitor;
+import com.amazonaws.metrics.SimpleMetricType;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+public class AWSRequestMetricsCompactSupportTest {
+
+    @Test
+    public void countersAreKept() {
+        AWSRequestMetrics metrics = new AWSRequestMetricsCompactSupport();
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.setCounter(Field.HttpClientPoolLeasedCount, 7);
+        metrics.incrementCounter("Custom");
+
+        Recorder recorder = export(metrics);
+        assertEquals(Long.valueOf(2), recorder.counters.get("RequestCount"));
+        assertEquals(Long.valueOf(7), recorder.counters.get("HttpClientPoolLeasedCount"));
+        assertEquals(Long.valueOf(1), recorder.counters.get("Custom"));
+        assertEquals(3, recorder.counters.size());
+    }
+
+    @Test
+    public void eventsAreAccumulated() throws Exception {
+        AWSRequestMetrics metrics = new AWSRequestMetricsCompactSupport();
+        for (int i = 0; i < 2; i++) {
+            metrics.startEvent(Field.HttpRequestTime);
+            Thread.sleep(5);
+            metrics.endEvent(Field.HttpRequestTime);
+        }
+        // Ending an event which was not started is ignored
+        metrics.endEvent(Field.RequestSigningTime);
+
+        Recorder recorder = export(metrics);
+        assertEquals(Integer.valueOf(2), recorder.eventCounts.get("HttpRequestTime"));
+        assertTrue(recorder.eventNanos.get("HttpRequestTime") >= 10000000L);
+        assertEquals(1, recorder.eventCounts.size());
+    }
+
+    @Test
+    public void propertiesKeepAllValues() {
+        AWSRequestMetrics metrics = new AWSRequestMetricsCompactSupport();
+        assertNull(metrics.getProperty(Field.StatusCode));
+
+        metrics.addProperty(Field.StatusCode, 500);
+        assertEquals(Arrays.<Object>asList(500), metrics.getProperty(Field.StatusCode));
+
+        metrics.addProperty(Field.StatusCode, 200);
+        assertEquals(Arrays.<Object>asList(500, 200), metrics.getProperty(Field.StatusCode));
+        assertEquals(Arrays.<Object>asList(500, 200), metrics.getProperty("StatusCode"));
+
+        metrics.addProperty(new SimpleMetricType() {
+            @Override
+            public String name() {
+                return "Custom";
+            }
+        }, "value");
+        assertEquals(Arrays.<Object>asList("value"), metrics.getProperty("Custom"));
+    }
+
+    @Test
+    public void fullSupportExportsTheSameMetrics() {
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.startEvent(Field.HttpRequestTime);
+        metrics.endEvent(Field.HttpRequestTime);
+        metrics.addProperty(Field.StatusCode, 200);
+
+        Recorder recorder = export(metrics);
+        assertEquals(Long.valueOf(1), recorder.counters.get("RequestCount"));
+        assertEquals(Integer.valueOf(1), recorder.eventCounts.get("HttpRequestTime"));
+        assertEquals(200, recorder.properties.get("StatusCode"));
+    }
+
+    private static Recorder export(AWSRequestMetrics metrics) {
+        Recorder recorder = new Recorder();
+        metrics.export(recorder);
+        return recorder;
+    }
+
+    private static class Recorder implements RequestMetricVisitor {
+        final Map<String, Long> counters = new HashMap<String, Long>();
+        final Map<String, Integer> eventCounts = new HashMap<String, Integer>();
+        final Map<String, Long> eventNanos = new HashMap<String, Long>();
+        final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public void visitCounter(String name, long value) {
+            counters.put(name, value);
+        }
+
+        @Override
+        public void visitEvent(String name, int count, long totalNanos) {
+            eventCounts.put(name, count);
+            eventNanos.put(name, totalNanos);
+        }
+
+        @Override
+        public void visitProperty(String name, Object value) {
+            properties.put(name, value);
+        }
+    }
+}
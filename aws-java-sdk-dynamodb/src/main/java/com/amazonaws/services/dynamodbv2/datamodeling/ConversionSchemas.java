@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -204,6 +206,9 @@ public final class ConversionSchemas {
         private final DynamoDBMappingsRegistry registry;
         private final S3ClientCache s3cc;
 
+        private final ConcurrentMap<Class<?>, UnconversionPlan> plans =
+                new ConcurrentHashMap<Class<?>, UnconversionPlan>();
+
         public StandardItemConverter(
                 MarshallerSet marshallerSet,
                 UnmarshallerSet unmarshallerSet,
@@ -416,21 +421,80 @@ public final class ConversionSchemas {
                 return result;
             }
 
-            final DynamoDBMappingsRegistry.Mappings mappings = registry.mappingsOf(clazz);
-
-            for (final DynamoDBMappingsRegistry.Mapping mapping : mappings.getMappings()) {
-                String attributeName = mapping.getAttributeName();
-                AttributeValue av = value.get(attributeName);
+            for (final PlannedAttribute attribute : getPlan(clazz).attributes) {
+                AttributeValue av = value.get(attribute.mapping.getAttributeName());
                 if (av != null) {
-                    ArgumentUnmarshaller unmarshaller = getUnmarshaller(mapping.getter(), mapping.setter());
-                    Object unmarshalled = unmarshall(unmarshaller, mapping.setter(), av);
-                    mapping.setValueOf(result, unmarshalled);
+                    Object unmarshalled = unmarshall(
+                            attribute.getUnmarshaller(), attribute.mapping.setter(), av);
+                    attribute.mapping.setValueOf(result, unmarshalled);
                 }
             }
 
             return result;
         }
 
+        private UnconversionPlan getPlan(Class<?> clazz) {
+            UnconversionPlan plan = plans.get(clazz);
+            if (plan == null) {
+                plan = new UnconversionPlan(registry.mappingsOf(clazz));
+                UnconversionPlan existing = plans.putIfAbsent(clazz, plan);
+                if (existing != null) {
+                    plan = existing;
+                }
+            }
+            return plan;
+        }
+
+        /**
+         * The attributes of a class in the order they are unconverted. Each
+         * attribute's unmarshaller is resolved the first time the attribute
+         * is seen in an item and reused from then on, so that unconverting a
+         * large result set does not look up and wrap the same unmarshallers
+         * again for every item.
+         * <p>
+         * This caches the unconversion plan only. Items still reach the
+         * converter as {@code AttributeValue} maps, not straight from the
+         * JSON parser: the mapper only sees the results of the
+         * {@code AmazonDynamoDB} interface, and has no hook into the response
+         * unmarshallers of the client. The maps of GetItem, Query and Scan
+         * results are compact views, which create an {@code AttributeValue}
+         * only for the attributes read here.
+         */
+        private final class UnconversionPlan {
+
+            private final PlannedAttribute[] attributes;
+
+            private UnconversionPlan(DynamoDBMappingsRegistry.Mappings mappings) {
+                List<PlannedAttribute> list = new ArrayList<PlannedAttribute>();
+                for (DynamoDBMappingsRegistry.Mapping mapping : mappings.getMappings()) {
+                    list.add(new PlannedAttribute(mapping));
+                }
+                this.attributes = list.toArray(new PlannedAttribute[list.size()]);
+            }
+        }
+
+        private final class PlannedAttribute {
+
+            private final DynamoDBMappingsRegistry.Mapping mapping;
+            private volatile ArgumentUnmarshaller unmarshaller;
+
+            private PlannedAttribute(DynamoDBMappingsRegistry.Mapping mapping) {
+                this.mapping = mapping;
+            }
+
+            private ArgumentUnmarshaller getUnmarshaller() {
+                ArgumentUnmarshaller result = unmarshaller;
+                if (result == null) {
+                    // Resolved lazily so that an attribute with no usable
+                    // unmarshaller only fails items that actually contain it.
+                    result = StandardItemConverter.this.getUnmarshaller(
+                            mapping.getter(), mapping.setter());
+                    unmarshaller = result;
+                }
+                return result;
+            }
+        }
+
         private ArgumentUnmarshaller getUnmarshaller(
                 Method getter,
                 Method setter) {
@@ -28,6 +28,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,12 +38,16 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.metrics.ServiceMetricCollector;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTableSchemaParser.TableIndexesInfo;
+import com.amazonaws.services.dynamodbv2.metrics.DynamoDBServiceMetric;
 import com.amazonaws.services.dynamodbv2.model.AttributeAction;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
@@ -59,7 +65,6 @@ import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
-import com.amazonaws.services.dynamodbv2.model.GetItemResult;
 import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutItemResult;
@@ -192,6 +197,21 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
     private final AttributeTransformer transformer;
 
+    /**
+     * Item converters for the built-in conversion schemas of
+     * {@link ConversionSchemas}. A converter is reused across operations so
+     * that the per-class state it builds up while unconverting items is not
+     * thrown away after every page of results. Custom schemas get a new
+     * converter for each operation, so that a mapper handed a new schema per
+     * call does not hold on to every one of them.
+     * <p>
+     * Items are unconverted from the {@code AttributeValue} maps of the
+     * results; there is no path from the JSON response straight to the
+     * mapped objects.
+     */
+    private final ConcurrentMap<ConversionSchema, ItemConverter> converters =
+            new ConcurrentHashMap<ConversionSchema, ItemConverter>();
+
     /**
      * The max back off time for batch get. The configuration for batch write
      * has been moved to DynamoDBMapperConfig
@@ -429,9 +449,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         rq.setTableName(tableName);
         rq.setConsistentRead(config.getConsistentReads() == ConsistentReads.CONSISTENT);
 
-
-        GetItemResult item = db.getItem(applyUserAgent(rq));
-        Map<String, AttributeValue> itemAttributes = item.getItem();
+        Map<String, AttributeValue> itemAttributes = loadItem(rq, config);
         if ( itemAttributes == null ) {
             return null;
         }
@@ -443,6 +461,74 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return object;
     }
 
+    /**
+     * Fetches the item identified by the given request. If an item cache is
+     * configured, eventually consistent reads are served from it when
+     * possible, and every item fetched from DynamoDB is written to it unless
+     * a write invalidated it in the meantime.
+     */
+    private Map<String, AttributeValue> loadItem(
+            GetItemRequest rq,
+            DynamoDBMapperConfig config) {
+
+        final ItemCache itemCache = config.getItemCache();
+        if (itemCache == null) {
+            return db.getItem(applyUserAgent(rq)).getItem();
+        }
+
+        final ServiceMetricCollector collector = AwsSdkMetrics.getServiceMetricCollector();
+        final boolean useCache = !Boolean.TRUE.equals(rq.isConsistentRead());
+        final boolean collectMetrics = useCache && collector.isEnabled();
+
+        if (useCache) {
+            final ServiceLatencyProvider hitTime = collectMetrics
+                    ? new ServiceLatencyProvider(DynamoDBServiceMetric.DynamoDBMapperItemCacheHitTime)
+                    : null;
+            Map<String, AttributeValue> cached = itemCache.get(rq.getTableName(), rq.getKey());
+            if (collectMetrics) {
+                collector.collectCount(DynamoDBServiceMetric.DynamoDBMapperItemCacheHitRatio,
+                        cached == null ? 0 : 1);
+            }
+            if (cached != null) {
+                if (collectMetrics) {
+                    collector.collectLatency(hitTime.endTiming());
+                }
+                return cached;
+            }
+        }
+
+        final ServiceLatencyProvider missTime = collectMetrics
+                ? new ServiceLatencyProvider(DynamoDBServiceMetric.DynamoDBMapperItemCacheMissTime)
+                : null;
+        // Taken before the read, so that the item is not cached if a write
+        // invalidates it while the read is in flight
+        final long loadToken = itemCache.beginLoad(rq.getTableName(), rq.getKey());
+        Map<String, AttributeValue> item = db.getItem(applyUserAgent(rq)).getItem();
+        if (collectMetrics) {
+            collector.collectLatency(missTime.endTiming());
+        }
+        if (item != null) {
+            itemCache.put(rq.getTableName(), rq.getKey(), item, loadToken);
+        }
+        return item;
+    }
+
+    /**
+     * Returns the primary key attributes of the given item of the class given.
+     */
+    private Map<String, AttributeValue> getKeyOfItem(
+            Class<?> clazz,
+            Map<String, AttributeValue> item) {
+
+        final DynamoDBMappingsRegistry.Mappings mappings = registry.mappingsOf(clazz);
+
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        for (final DynamoDBMappingsRegistry.Mapping mapping : mappings.getPrimaryKeys()) {
+            key.put(mapping.getAttributeName(), item.get(mapping.getAttributeName()));
+        }
+        return key;
+    }
+
     /**
      * Returns a key map for the key object given.
      *
@@ -1103,7 +1189,17 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                     .withReturnValues(ReturnValue.ALL_NEW)
                     .withRequestMetricCollector(saveConfig.getRequestMetricCollector());
 
-            return db.updateItem(applyUserAgent(req));
+            final ItemCache itemCache = saveConfig.getItemCache();
+            if (itemCache == null) {
+                return db.updateItem(applyUserAgent(req));
+            }
+
+            try {
+                return db.updateItem(applyUserAgent(req));
+            } finally {
+                // Even a failed update may have been applied
+                itemCache.invalidate(getTableName(), getPrimaryKeyAttributeValues());
+            }
         }
 
         /**
@@ -1132,7 +1228,18 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                     .withConditionalOperator(userProvidedConditionOperator)
                     .withRequestMetricCollector(saveConfig.getRequestMetricCollector());
 
-            return db.putItem(applyUserAgent(req));
+            final ItemCache itemCache = saveConfig.getItemCache();
+            if (itemCache == null) {
+                return db.putItem(applyUserAgent(req));
+            }
+
+            Map<String, AttributeValue> key = getKeyOfItem(this.clazz, attributeValues);
+            try {
+                return db.putItem(applyUserAgent(req));
+            } finally {
+                // Even a failed put may have been applied
+                itemCache.invalidate(getTableName(), key);
+            }
         }
 
         /**
@@ -1274,7 +1381,16 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                             deleteExpression.getConditionalOperator());
 
         }
-        db.deleteItem(applyUserAgent(req));
+
+        final ItemCache itemCache = config.getItemCache();
+        try {
+            db.deleteItem(applyUserAgent(req));
+        } finally {
+            // Even a failed delete may have been applied
+            if (itemCache != null) {
+                itemCache.invalidate(tableName, key);
+            }
+        }
     }
 
     @Override
@@ -1337,6 +1453,14 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         ItemConverter converter = getConverter(config);
 
+        // The keys of every item written or deleted, when an item cache is
+        // configured; the whole batch may partially fail, so the items are
+        // invalidated rather than written through.
+        final ItemCache itemCache = config.getItemCache();
+        final Map<String, List<Map<String, AttributeValue>>> cachedKeys = itemCache == null
+                ? null
+                : new HashMap<String, List<Map<String, AttributeValue>>>();
+
         List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
         for ( Object toWrite : objectsToWrite ) {
             Class<?> clazz = toWrite.getClass();
@@ -1373,10 +1497,14 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
             AttributeTransformer.Parameters<?> parameters =
                 toParameters(attributeValues, clazz, tableName, config);
 
+            Map<String, AttributeValue> item = transformAttributes(parameters);
+            if (cachedKeys != null) {
+                addCachedKey(cachedKeys, tableName, getKeyOfItem(clazz, item));
+            }
+
             requestItems.get(tableName).add(
                 new WriteRequest().withPutRequest(
-                    new PutRequest().withItem(
-                        transformAttributes(parameters))));
+                    new PutRequest().withItem(item)));
         }
 
         for ( Object toDelete : objectsToDelete ) {
@@ -1392,55 +1520,64 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
             requestItems.get(tableName).add(
                     new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
+
+            if (cachedKeys != null) {
+                addCachedKey(cachedKeys, tableName, key);
+            }
         }
 
-        // Break into chunks of 25 items and make service requests to DynamoDB
-        while ( !requestItems.isEmpty() ) {
+        try {
+            // Break into chunks of 25 items and make service requests to DynamoDB
+            while ( !requestItems.isEmpty() ) {
 
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
+                HashMap<String, List<WriteRequest>> batch =
+                        new HashMap<String, List<WriteRequest>>();
 
-            int i = 0;
+                int i = 0;
 
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
-            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
+                Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
+                while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
 
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
+                    Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
 
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
+                    batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
+                    Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
 
-                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
+                    while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
+                        WriteRequest writeRequest = writeRequestIter.next();
+                        batch.get(tableRequest.getKey()).add(writeRequest);
+                        writeRequestIter.remove();
+                    }
 
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if ( !writeRequestIter.hasNext() ) {
-                    tableIter.remove();
+                    // If we've processed all the write requests for this table,
+                    // remove it from the parent iterator.
+                    if ( !writeRequestIter.hasNext() ) {
+                        tableIter.remove();
+                    }
                 }
-            }
 
-            List<FailedBatch> failedBatches = writeOneBatch(batch, config.getBatchWriteRetryStrategy());
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
+                List<FailedBatch> failedBatches = writeOneBatch(batch, config.getBatchWriteRetryStrategy());
+                if (failedBatches != null) {
+                    totalFailedBatches.addAll(failedBatches);
+
+                    // If contains throttling exception, we do a backoff
+                    if (containsThrottlingException(failedBatches)) {
+                        try {
+                            Thread.sleep(1000 * 2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new AmazonClientException(e.getMessage(), e);
+                        }
                     }
                 }
             }
+        } finally {
+            // Even a failed batch may have been partially applied
+            if (cachedKeys != null) {
+                invalidateCachedKeys(itemCache, cachedKeys);
+            }
         }
 
-
-
         // Once the entire batch is processed, update assigned keys in memory
         for ( ValueUpdate update : inMemoryUpdates ) {
             update.apply();
@@ -1449,6 +1586,30 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return totalFailedBatches;
     }
 
+    private static void addCachedKey(
+            Map<String, List<Map<String, AttributeValue>>> cachedKeys,
+            String tableName,
+            Map<String, AttributeValue> key) {
+
+        List<Map<String, AttributeValue>> keys = cachedKeys.get(tableName);
+        if (keys == null) {
+            keys = new ArrayList<Map<String, AttributeValue>>();
+            cachedKeys.put(tableName, keys);
+        }
+        keys.add(key);
+    }
+
+    private static void invalidateCachedKeys(
+            ItemCache itemCache,
+            Map<String, List<Map<String, AttributeValue>>> cachedKeys) {
+
+        for (Entry<String, List<Map<String, AttributeValue>>> entry : cachedKeys.entrySet()) {
+            for (Map<String, AttributeValue> key : entry.getValue()) {
+                itemCache.invalidate(entry.getKey(), key);
+            }
+        }
+    }
+
     /**
      * Process one batch of requests(max 25). It will divide the batch if
      * receives request too large exception(the total size of the request is beyond 1M).
@@ -2517,10 +2678,26 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
     private ItemConverter getConverter(DynamoDBMapperConfig config) {
         ConversionSchema schema = config.getConversionSchema();
+        if (schema != ConversionSchemas.V1
+                && schema != ConversionSchemas.V2_COMPATIBLE
+                && schema != ConversionSchemas.V2) {
+            return newConverter(schema);
+        }
+
+        ItemConverter converter = converters.get(schema);
+        if (converter == null) {
+            converter = newConverter(schema);
+            ItemConverter existing = converters.putIfAbsent(schema, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
+    }
 
+    private ItemConverter newConverter(ConversionSchema schema) {
         ConversionSchema.Dependencies params = new ConversionSchema.Dependencies()
                 .with(S3ClientCache.class, s3cc);
-
         return schema.getConverter(params);
     }
 
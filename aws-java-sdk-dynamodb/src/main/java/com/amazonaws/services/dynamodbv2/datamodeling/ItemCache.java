@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * A cache of DynamoDB items keyed by table name and primary key. When one is
+ * configured via {@link DynamoDBMapperConfig.Builder#withItemCache(ItemCache)},
+ * the {@link DynamoDBMapper} serves eventually consistent {@code load} calls
+ * from it and fills it on a miss. On {@code save}, {@code delete} and
+ * {@code batchWrite}, the item is invalidated once the write is done.
+ * <p>
+ * A load may read the old image of an item, and then try to cache it only
+ * after a concurrent write has invalidated the item. To keep that image out
+ * of the cache, the mapper calls {@link #beginLoad} before its GetItem and
+ * passes the returned token to {@link #put}, which must ignore the item if it
+ * has been invalidated since the token was taken.
+ * <p>
+ * Items are cached in the raw form returned by the service, before any
+ * {@link AttributeTransformer} is applied, so one cache may be shared by
+ * several mappers. Since transformers and callers are free to modify the maps
+ * and attribute values they are given, implementations must not share
+ * attribute values between the items they are given or return and the items
+ * they hold. Implementations must be thread safe.
+ *
+ * @see LocalItemCache
+ */
+public interface ItemCache {
+
+    /**
+     * Returns the cached item with the given key, or null if the item is not
+     * cached or its entry has expired.
+     *
+     * @param tableName
+     *            the name of the table the item belongs to
+     * @param key
+     *            the primary key attributes of the item
+     */
+    public Map<String, AttributeValue> get(
+            String tableName,
+            Map<String, AttributeValue> key);
+
+    /**
+     * Returns a token identifying the point in time before an item is read
+     * from DynamoDB, to be passed to {@link #put} along with the item read.
+     *
+     * @param tableName
+     *            the name of the table the item belongs to
+     * @param key
+     *            the primary key attributes of the item
+     */
+    public long beginLoad(String tableName, Map<String, AttributeValue> key);
+
+    /**
+     * Caches the given item, unless it has been invalidated since the given
+     * token was returned by {@link #beginLoad}. Implementations are free to
+     * ignore the item for other reasons too, for example because caching is
+     * disabled for the table.
+     *
+     * @param tableName
+     *            the name of the table the item belongs to
+     * @param key
+     *            the primary key attributes of the item
+     * @param item
+     *            the complete set of attributes of the item
+     * @param loadToken
+     *            the token returned by {@link #beginLoad} before the item was
+     *            read
+     */
+    public void put(
+            String tableName,
+            Map<String, AttributeValue> key,
+            Map<String, AttributeValue> item,
+            long loadToken);
+
+    /**
+     * Removes the item with the given key from the cache, if present.
+     *
+     * @param tableName
+     *            the name of the table the item belongs to
+     * @param key
+     *            the primary key attributes of the item
+     */
+    public void invalidate(String tableName, Map<String, AttributeValue> key);
+}
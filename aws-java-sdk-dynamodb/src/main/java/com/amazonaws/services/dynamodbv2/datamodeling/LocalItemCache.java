@@ -0,0 +1,445 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ServiceMetricCollector;
+import com.amazonaws.services.dynamodbv2.metrics.DynamoDBServiceMetric;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * An in-memory {@link ItemCache} bounded by item count and entry age.
+ * <p>
+ * The entries are spread over up to {@link #MAX_SEGMENTS} segments by key,
+ * each with its own lock, so that threads working on different items seldom
+ * wait for each other. When a segment is full, its least recently used item
+ * is evicted; eviction is therefore least recently used per segment rather
+ * than across the whole cache. Small caches use a single segment. Every entry
+ * expires after a time-to-live which defaults to the one given at construction
+ * and can be overridden per table; a time-to-live of zero disables caching for
+ * a table.
+ * <p>
+ * Each segment remembers the keys it most recently invalidated, as many as it
+ * can hold items but at least {@code 64}, so that {@link #put} can tell
+ * whether its item was invalidated since {@link #beginLoad}. If a load spans
+ * more invalidations than that, its item is conservatively not cached.
+ * <p>
+ * Items are copied, attribute values included, when they are put and when
+ * they are returned. Evictions are reported to the SDK service metric
+ * collector as {@link DynamoDBServiceMetric#DynamoDBMapperItemCacheEvictions}.
+ * For example:
+ *
+ * <pre class="brush: java">
+ * LocalItemCache cache = new LocalItemCache(50000, 5, TimeUnit.SECONDS)
+ *     .withTableTimeToLive("Sessions", 500, TimeUnit.MILLISECONDS)
+ *     .withTableTimeToLive("Ledger", 0, TimeUnit.MILLISECONDS);
+ * DynamoDBMapper mapper = new DynamoDBMapper(client,
+ *     new DynamoDBMapperConfig.Builder().withItemCache(cache).build());
+ * </pre>
+ */
+@ThreadSafe
+public class LocalItemCache implements ItemCache {
+
+    /** Default maximum number of items held by the cache. */
+    public static final int DEFAULT_MAX_ITEMS = 10000;
+
+    /** Default time-to-live of a cache entry, in milliseconds. */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 5000;
+
+    /** Maximum number of independently locked segments of a cache. */
+    public static final int MAX_SEGMENTS = 16;
+
+    /** Minimum number of items a segment can hold, so that eviction stays close to LRU. */
+    private static final int MIN_SEGMENT_ITEMS = 64;
+
+    private final long defaultTimeToLiveNanos;
+    private final Map<String, Long> tableTimeToLiveNanos =
+            new ConcurrentHashMap<String, Long>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private final Segment[] segments;
+
+    /**
+     * Constructs a cache with {@link #DEFAULT_MAX_ITEMS} and
+     * {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+     */
+    public LocalItemCache() {
+        this(DEFAULT_MAX_ITEMS, DEFAULT_TIME_TO_LIVE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a cache with the given capacity and default time-to-live.
+     *
+     * @param maxItems
+     *            the maximum number of items held; once a segment is full,
+     *            its least recently used item is evicted
+     * @param timeToLive
+     *            the default time-to-live of an entry
+     * @param unit
+     *            the unit of {@code timeToLive}
+     */
+    public LocalItemCache(int maxItems, long timeToLive, TimeUnit unit) {
+        if (maxItems <= 0) {
+            throw new IllegalArgumentException("maxItems must be positive");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive must not be negative");
+        }
+        this.defaultTimeToLiveNanos = unit.toNanos(timeToLive);
+
+        int count = 1;
+        while (count < MAX_SEGMENTS && maxItems / (count * 2) >= MIN_SEGMENT_ITEMS) {
+            count *= 2;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the remainder so that the capacities add up to maxItems
+            int capacity = maxItems / count + (i < maxItems % count ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Overrides the time-to-live of the entries of the given table. A
+     * time-to-live of zero disables caching for the table.
+     *
+     * @return this cache
+     */
+    public LocalItemCache withTableTimeToLive(String tableName, long timeToLive, TimeUnit unit) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive must not be negative");
+        }
+        tableTimeToLiveNanos.put(tableName, unit.toNanos(timeToLive));
+        return this;
+    }
+
+    @Override
+    public Map<String, AttributeValue> get(String tableName, Map<String, AttributeValue> key) {
+        final CacheKey cacheKey = new CacheKey(tableName, key);
+        final Segment segment = segmentFor(cacheKey);
+        synchronized (segment) {
+            CacheEntry entry = segment.entries.get(cacheKey);
+            if (entry != null) {
+                if (entry.expiresAtNanos - currentTimeNanos() > 0) {
+                    hits.incrementAndGet();
+                    return copyOf(entry.item);
+                }
+                segment.entries.remove(cacheKey);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public long beginLoad(String tableName, Map<String, AttributeValue> key) {
+        final Segment segment = segmentFor(new CacheKey(tableName, key));
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    @Override
+    public void put(
+            String tableName,
+            Map<String, AttributeValue> key,
+            Map<String, AttributeValue> item,
+            long loadToken) {
+
+        final long timeToLiveNanos = timeToLiveNanosOf(tableName);
+        if (timeToLiveNanos <= 0) {
+            return;
+        }
+        final CacheEntry entry = new CacheEntry(
+                copyOf(item),
+                currentTimeNanos() + timeToLiveNanos);
+        final CacheKey cacheKey = new CacheKey(tableName,
+                new HashMap<String, AttributeValue>(key));
+        final Segment segment = segmentFor(cacheKey);
+        final boolean evicted;
+        synchronized (segment) {
+            if (segment.isInvalidatedSince(cacheKey, loadToken)) {
+                return;
+            }
+            segment.entries.put(cacheKey, entry);
+            evicted = segment.evicted;
+            segment.evicted = false;
+        }
+        if (evicted) {
+            evictions.incrementAndGet();
+            final ServiceMetricCollector collector = AwsSdkMetrics.getServiceMetricCollector();
+            if (collector.isEnabled()) {
+                collector.collectCount(DynamoDBServiceMetric.DynamoDBMapperItemCacheEvictions, 1);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(String tableName, Map<String, AttributeValue> key) {
+        final CacheKey cacheKey = new CacheKey(tableName,
+                new HashMap<String, AttributeValue>(key));
+        final Segment segment = segmentFor(cacheKey);
+        synchronized (segment) {
+            segment.entries.remove(cacheKey);
+            segment.generation++;
+            // Re-insert so that the key moves to the newest end
+            segment.invalidated.remove(cacheKey);
+            segment.invalidated.put(cacheKey, segment.generation);
+        }
+    }
+
+    /**
+     * Removes all the entries from the cache. Loads in flight do not cache
+     * their items.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.invalidated.clear();
+                segment.generation++;
+                segment.forgottenGeneration = segment.generation;
+            }
+        }
+    }
+
+    /** Returns the number of entries currently held, including expired ones. */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /** Returns the number of lookups served from the cache. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Returns the number of lookups that were not served from the cache. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of lookups served from the cache, or zero if there
+     * has been no lookup yet.
+     */
+    public double getHitRatio() {
+        final long hitCount = hits.get();
+        final long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /** Returns the number of entries evicted because the cache was full. */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** Returns the number of entries discarded because they had expired. */
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    /** Returns the current time in nanoseconds; overridable for testing. */
+    long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    private Segment segmentFor(CacheKey cacheKey) {
+        // Spread the hash so that keys differing only in their high bits use
+        // different segments
+        int hash = cacheKey.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private long timeToLiveNanosOf(String tableName) {
+        final Long timeToLiveNanos = tableTimeToLiveNanos.get(tableName);
+        return timeToLiveNanos == null ? defaultTimeToLiveNanos : timeToLiveNanos;
+    }
+
+    /**
+     * Returns a copy of the given item that shares no mutable state with it.
+     */
+    private static Map<String, AttributeValue> copyOf(Map<String, AttributeValue> item) {
+        final Map<String, AttributeValue> copy = new HashMap<String, AttributeValue>(
+                Math.max((int) (item.size() / .75f) + 1, 16));
+        for (Map.Entry<String, AttributeValue> e : item.entrySet()) {
+            copy.put(e.getKey(), copyOf(e.getValue()));
+        }
+        return copy;
+    }
+
+    private static AttributeValue copyOf(AttributeValue value) {
+        final AttributeValue copy = new AttributeValue();
+        copy.setS(value.getS());
+        copy.setN(value.getN());
+        if (value.getB() != null) {
+            copy.setB(value.getB().duplicate());
+        }
+        if (value.getSS() != null) {
+            copy.setSS(new ArrayList<String>(value.getSS()));
+        }
+        if (value.getNS() != null) {
+            copy.setNS(new ArrayList<String>(value.getNS()));
+        }
+        if (value.getBS() != null) {
+            final List<ByteBuffer> bs = new ArrayList<ByteBuffer>(value.getBS().size());
+            for (ByteBuffer b : value.getBS()) {
+                bs.add(b.duplicate());
+            }
+            copy.setBS(bs);
+        }
+        if (value.getM() != null) {
+            copy.setM(copyOf(value.getM()));
+        }
+        if (value.getL() != null) {
+            final List<AttributeValue> l = new ArrayList<AttributeValue>(value.getL().size());
+            for (AttributeValue element : value.getL()) {
+                l.add(copyOf(element));
+            }
+            copy.setL(l);
+        }
+        copy.setNULL(value.getNULL());
+        copy.setBOOL(value.getBOOL());
+        return copy;
+    }
+
+    /**
+     * A part of the cache, guarded by its own monitor.
+     */
+    private static final class Segment {
+
+        /** Access-ordered, so iteration starts at the least recently used entry. */
+        private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+        /**
+         * The generation at which each recently invalidated key was last
+         * invalidated, oldest first.
+         */
+        private final LinkedHashMap<CacheKey, Long> invalidated;
+
+        /** Incremented by every invalidation in this segment. */
+        private long generation;
+
+        /** The newest generation dropped from {@link #invalidated}. */
+        private long forgottenGeneration;
+
+        /** Set when the last put evicted an entry. */
+        private boolean evicted;
+
+        Segment(final int maxItems) {
+            this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                    if (size() > maxItems) {
+                        evicted = true;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            final int maxInvalidated = Math.max(maxItems, MIN_SEGMENT_ITEMS);
+            this.invalidated = new LinkedHashMap<CacheKey, Long>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CacheKey, Long> eldest) {
+                    if (size() > maxInvalidated) {
+                        forgottenGeneration = eldest.getValue();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Returns true if the given key may have been invalidated after the
+         * given generation.
+         */
+        boolean isInvalidatedSince(CacheKey cacheKey, long loadToken) {
+            if (forgottenGeneration > loadToken) {
+                return true;
+            }
+            final Long lastInvalidated = invalidated.get(cacheKey);
+            return lastInvalidated != null && lastInvalidated > loadToken;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String tableName;
+        private final Map<String, AttributeValue> key;
+        private final int hashCode;
+
+        CacheKey(String tableName, Map<String, AttributeValue> key) {
+            this.tableName = tableName;
+            this.key = key;
+            this.hashCode = 31 * tableName.hashCode() + key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return hashCode == other.hashCode
+                    && tableName.equals(other.tableName)
+                    && key.equals(other.key);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final Map<String, AttributeValue> item;
+        private final long expiresAtNanos;
+
+        CacheEntry(Map<String, AttributeValue> item, long expiresAtNanos) {
+            this.item = item;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
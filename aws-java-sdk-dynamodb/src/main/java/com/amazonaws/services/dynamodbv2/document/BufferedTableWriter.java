@@ -0,0 +1,582 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.internal.BatchRetries;
+import com.amazonaws.internal.SettableFuture;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.internal.InternalUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Coalesces independent put and delete requests into BatchWriteItem calls.
+ * <p>
+ * Writes are collected into a batch that is sent when it holds
+ * {@link BufferedTableWriterConfig#getMaxBatchSize()} writes, or
+ * {@link BufferedTableWriterConfig#getMaxBatchOpenMs()} after its first
+ * write, whichever comes first. A batch may span several tables. Each write
+ * gets its own future, which completes once the write has been applied or
+ * fails with the error for that write:
+ * <ul>
+ * <li>Unprocessed items returned by BatchWriteItem are sent again, with
+ * exponential back off, up to
+ * {@link BufferedTableWriterConfig#getMaxUnprocessedRetries()} times.</li>
+ * <li>If the service rejects a whole batch as invalid, its writes are sent
+ * again one at a time, so that only the offending writes fail.</li>
+ * </ul>
+ * BatchWriteItem does not support condition expressions or return values;
+ * use {@link Table} for writes that need them.
+ * <p>
+ * At most {@link BufferedTableWriterConfig#getMaxInflightBatches()} batches
+ * are in flight. Queuing a write blocks while that many are in flight and
+ * another full batch is waiting for its turn, which bounds the writes held
+ * in memory.
+ * <p>
+ * A BatchWriteItem call never contains two writes to the same item: the
+ * later write of a batch is sent in a following call, once the earlier one
+ * is done. Writes to the same item may however end up in batches that are
+ * in flight at the same time, so wait for the future of a write before
+ * issuing another write to the same item if their order matters.
+ * <p>
+ * The key schema of every table written to is looked up with DescribeTable
+ * when the first batch writing to it is sent, on the writer's threads, and
+ * cached.
+ */
+@ThreadSafe
+public class BufferedTableWriter {
+
+    private static final Log log = LogFactory.getLog(BufferedTableWriter.class);
+
+    private final AmazonDynamoDB client;
+    private final BufferedTableWriterConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Key attribute names by table name. */
+    private final ConcurrentMap<String, List<String>> keyAttributeNames =
+            new ConcurrentHashMap<String, List<String>>();
+
+    private final Object lock = new Object();
+
+    /** The batch accepting writes, or null. Guarded by lock. */
+    private Batch openBatch;
+
+    /** Closed batches waiting for an in-flight slot. Guarded by lock. */
+    private final LinkedList<Batch> readyBatches = new LinkedList<Batch>();
+
+    /** Batches that have been sent and are not done. Guarded by lock. */
+    private int inflightBatches;
+
+    /** Batches that have been opened and are not done. Guarded by lock. */
+    private int pendingBatches;
+
+    /** Guarded by lock. */
+    private boolean shutdown;
+
+    public BufferedTableWriter(AmazonDynamoDB client) {
+        this(client, new BufferedTableWriterConfig());
+    }
+
+    public BufferedTableWriter(
+            AmazonDynamoDB client,
+            BufferedTableWriterConfig config) {
+
+        if (client == null) {
+            throw new IllegalArgumentException("client must be specified");
+        }
+        this.client = client;
+        this.config = new BufferedTableWriterConfig(config);
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(
+                this.config.getMaxInflightBatches(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "dynamodb-buffered-writer-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Queues a put of the given item.
+     *
+     * @return a future that completes once the item has been written
+     */
+    public Future<Void> putItem(String tableName, Item item) {
+        Map<String, AttributeValue> attributes = InternalUtils.toAttributeValues(item);
+        return submit(tableName,
+                new WriteRequest().withPutRequest(
+                        new PutRequest().withItem(attributes)));
+    }
+
+    /**
+     * Queues a delete of the item with the given primary key.
+     *
+     * @return a future that completes once the item has been deleted
+     */
+    public Future<Void> deleteItem(String tableName, PrimaryKey primaryKey) {
+        Map<String, AttributeValue> key = InternalUtils.toAttributeValueMap(primaryKey);
+        return submit(tableName,
+                new WriteRequest().withDeleteRequest(
+                        new DeleteRequest().withKey(key)));
+    }
+
+    /**
+     * Queues all puts and deletes of the given table write items.
+     *
+     * @return one future per write, puts first, in the order of the
+     *         table write items
+     */
+    public List<Future<Void>> write(TableWriteItems tableWriteItems) {
+        String tableName = tableWriteItems.getTableName();
+        Collection<Item> itemsToPut = tableWriteItems.getItemsToPut();
+        List<PrimaryKey> keysToDelete = tableWriteItems.getPrimaryKeysToDelete();
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        if (itemsToPut != null) {
+            for (Item item : itemsToPut) {
+                futures.add(putItem(tableName, item));
+            }
+        }
+        if (keysToDelete != null) {
+            for (PrimaryKey key : keysToDelete) {
+                futures.add(deleteItem(tableName, key));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Sends the open batch, if any, and waits until every write queued so
+     * far is done.
+     */
+    public void flush() {
+        synchronized (lock) {
+            sendOpenBatch();
+            awaitPendingBatches();
+        }
+    }
+
+    /**
+     * Flushes all queued writes and releases the writer's threads. Writes
+     * queued after this call fail with an {@link AmazonClientException}.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            sendOpenBatch();
+            awaitPendingBatches();
+        }
+        executor.shutdown();
+    }
+
+    private Future<Void> submit(String tableName, WriteRequest request) {
+        Write write = new Write(tableName, request);
+
+        synchronized (lock) {
+            awaitBatchSpace();
+
+            if (openBatch == null) {
+                openBatch = new Batch();
+                pendingBatches++;
+                scheduleClose(openBatch);
+            }
+
+            openBatch.writes.add(write);
+            if (openBatch.writes.size() >= config.getMaxBatchSize()) {
+                sendOpenBatch();
+            }
+        }
+
+        return write.future;
+    }
+
+    /**
+     * Waits while a closed batch is waiting for an in-flight slot. Must be
+     * called with lock held.
+     */
+    private void awaitBatchSpace() {
+        while (true) {
+            if (shutdown) {
+                throw new AmazonClientException(
+                        "The buffered table writer has been shut down");
+            }
+            if (readyBatches.isEmpty()) {
+                return;
+            }
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(
+                        "Interrupted while waiting for a batch to be sent", e);
+            }
+        }
+    }
+
+    private void scheduleClose(final Batch batch) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    if (openBatch == batch) {
+                        sendOpenBatch();
+                    }
+                }
+            }
+        }, config.getMaxBatchOpenMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /** Must be called with lock held. */
+    private void sendOpenBatch() {
+        if (openBatch != null) {
+            readyBatches.add(openBatch);
+            openBatch = null;
+            sendReadyBatches();
+        }
+    }
+
+    /** Must be called with lock held. */
+    private void sendReadyBatches() {
+        while (inflightBatches < config.getMaxInflightBatches() && !readyBatches.isEmpty()) {
+            inflightBatches++;
+            executor.execute(readyBatches.poll());
+        }
+    }
+
+    /** Must be called with lock held. */
+    private void awaitPendingBatches() {
+        boolean interrupted = false;
+        while (pendingBatches > 0) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<String, AttributeValue> keyOf(
+            String tableName,
+            Map<String, AttributeValue> item) {
+
+        Map<String, AttributeValue> key = new LinkedHashMap<String, AttributeValue>();
+        for (String name : getKeyAttributeNames(tableName)) {
+            key.put(name, item.get(name));
+        }
+        return key;
+    }
+
+    private List<String> getKeyAttributeNames(String tableName) {
+        List<String> names = keyAttributeNames.get(tableName);
+        if (names == null) {
+            List<KeySchemaElement> schema = client.describeTable(tableName)
+                    .getTable().getKeySchema();
+            names = new ArrayList<String>(schema.size());
+            for (KeySchemaElement element : schema) {
+                names.add(element.getAttributeName());
+            }
+            keyAttributeNames.putIfAbsent(tableName, names);
+        }
+        return names;
+    }
+
+    /**
+     * The writes of a batch, sent in one BatchWriteItem call, or more if it
+     * holds several writes to the same item. Unprocessed items are sent again
+     * after their back off, scheduled on the executor rather than waited for
+     * on a thread.
+     */
+    private final class Batch implements Runnable {
+
+        /** The writes, in the order they were queued. Guarded by lock until sent. */
+        private final List<Write> writes = new ArrayList<Write>();
+
+        /** The writes left for the following calls, in order. Used by one run at a time. */
+        private List<Write> queued;
+
+        /** The writes of the current call by item, and the attempt at sending them. */
+        private Map<WriteKey, Write> remaining;
+        private int attempt;
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                if (queued == null) {
+                    queued = writes;
+                }
+                finished = send();
+            } catch (RuntimeException e) {
+                if (remaining != null) {
+                    failAll(remaining.values(), e);
+                }
+                failAll(queued, e);
+            } finally {
+                if (finished) {
+                    done();
+                }
+            }
+        }
+
+        /**
+         * Makes the calls of the batch in turn.
+         *
+         * @return false if unprocessed items have been scheduled to be sent
+         *         again
+         */
+        private boolean send() {
+            while (true) {
+                if (remaining == null || remaining.isEmpty()) {
+                    if (queued.isEmpty()) {
+                        return true;
+                    }
+                    remaining = nextCall();
+                    attempt = 0;
+                }
+                if (!sendCall()) {
+                    return false;
+                }
+                remaining = null;
+            }
+        }
+
+        /**
+         * Takes the writes of the next call off the queued writes: the first
+         * write to each item.
+         */
+        private Map<WriteKey, Write> nextCall() {
+            Map<WriteKey, Write> call = new LinkedHashMap<WriteKey, Write>();
+            List<Write> later = new ArrayList<Write>();
+            for (Write write : queued) {
+                WriteKey key = write.key();
+                if (call.containsKey(key)) {
+                    // BatchWriteItem rejects two writes to the same item
+                    later.add(write);
+                } else {
+                    call.put(key, write);
+                }
+            }
+            queued = later;
+            return call;
+        }
+
+        /**
+         * @return false if unprocessed items have been scheduled to be sent
+         *         again
+         */
+        private boolean sendCall() {
+            BatchWriteItemResult result;
+            try {
+                result = client.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(toRequestItems(remaining.values())));
+            } catch (AmazonServiceException e) {
+                if (e.getErrorType() == ErrorType.Client
+                        && !RetryUtils.isThrottlingException(e)
+                        && remaining.size() > 1) {
+                    log.debug("Batch rejected, writing items one at a time", e);
+                    writeIndividually(remaining.values());
+                } else {
+                    failAll(remaining.values(), e);
+                }
+                return true;
+            }
+
+            Map<WriteKey, Write> unprocessed = new LinkedHashMap<WriteKey, Write>();
+            Map<String, List<WriteRequest>> unprocessedItems = result.getUnprocessedItems();
+            if (unprocessedItems != null) {
+                for (Map.Entry<String, List<WriteRequest>> entry
+                        : unprocessedItems.entrySet()) {
+                    for (WriteRequest request : entry.getValue()) {
+                        WriteKey key = keyOf(entry.getKey(), request);
+                        Write write = remaining.remove(key);
+                        if (write != null) {
+                            unprocessed.put(key, write);
+                        }
+                    }
+                }
+            }
+
+            for (Write write : remaining.values()) {
+                write.future.set(null);
+            }
+            if (unprocessed.isEmpty()) {
+                return true;
+            }
+
+            if (attempt >= config.getMaxUnprocessedRetries()) {
+                failAll(unprocessed.values(), new AmazonClientException(
+                        "Write was still unprocessed after "
+                        + (attempt + 1) + " BatchWriteItem attempts"));
+                return true;
+            }
+
+            long delay = BatchRetries.backoffMs(attempt);
+            remaining = unprocessed;
+            attempt++;
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            return false;
+        }
+
+        private void done() {
+            synchronized (lock) {
+                inflightBatches--;
+                pendingBatches--;
+                sendReadyBatches();
+                lock.notifyAll();
+            }
+        }
+
+        private WriteKey keyOf(String tableName, WriteRequest request) {
+            if (request.getPutRequest() != null) {
+                return new WriteKey(tableName, BufferedTableWriter.this.keyOf(
+                        tableName, request.getPutRequest().getItem()));
+            }
+            return new WriteKey(tableName, request.getDeleteRequest().getKey());
+        }
+
+        private void writeIndividually(Collection<Write> writes) {
+            for (Write write : writes) {
+                try {
+                    String tableName = write.tableName;
+                    if (write.request.getPutRequest() != null) {
+                        client.putItem(new PutItemRequest()
+                                .withTableName(tableName)
+                                .withItem(write.request.getPutRequest().getItem()));
+                    } else {
+                        client.deleteItem(new DeleteItemRequest()
+                                .withTableName(tableName)
+                                .withKey(write.request.getDeleteRequest().getKey()));
+                    }
+                    write.future.set(null);
+                } catch (RuntimeException e) {
+                    write.future.setException(e);
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<WriteRequest>> toRequestItems(
+            Collection<Write> writes) {
+
+        Map<String, List<WriteRequest>> requestItems =
+                new LinkedHashMap<String, List<WriteRequest>>();
+        for (Write write : writes) {
+            List<WriteRequest> requests = requestItems.get(write.tableName);
+            if (requests == null) {
+                requests = new ArrayList<WriteRequest>();
+                requestItems.put(write.tableName, requests);
+            }
+            requests.add(write.request);
+        }
+        return requestItems;
+    }
+
+    private static void failAll(Collection<Write> writes, Exception e) {
+        for (Write write : writes) {
+            write.future.setException(e);
+        }
+    }
+
+    private final class Write {
+        private final String tableName;
+        private final WriteRequest request;
+        private final SettableFuture<Void> future = new SettableFuture<Void>();
+
+        Write(String tableName, WriteRequest request) {
+            this.tableName = tableName;
+            this.request = request;
+        }
+
+        /**
+         * @return the item written to, which may take a DescribeTable call
+         */
+        WriteKey key() {
+            if (request.getPutRequest() != null) {
+                return new WriteKey(tableName,
+                        keyOf(tableName, request.getPutRequest().getItem()));
+            }
+            return new WriteKey(tableName, request.getDeleteRequest().getKey());
+        }
+    }
+
+    /** Identifies the item written to by a write. */
+    private static final class WriteKey {
+        private final String tableName;
+        private final Map<String, AttributeValue> key;
+
+        WriteKey(String tableName, Map<String, AttributeValue> key) {
+            this.tableName = tableName;
+            this.key = key == null
+                    ? Collections.<String, AttributeValue>emptyMap()
+                    : key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof WriteKey)) {
+                return false;
+            }
+            WriteKey other = (WriteKey) obj;
+            return tableName.equals(other.tableName) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tableName.hashCode() + key.hashCode();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.document;
+
+/**
+ * Configuration of a {@link BufferedTableWriter}.
+ */
+public class BufferedTableWriterConfig {
+
+    /** The maximum number of write requests in a BatchWriteItem call. */
+    public static final int SERVICE_MAX_BATCH_SIZE = 25;
+
+    /**
+     * The maximum number of writes sent in a single BatchWriteItem call.
+     */
+    private int maxBatchSize;
+
+    /** 25 writes */
+    public static final int MAX_BATCH_SIZE_DEFAULT = SERVICE_MAX_BATCH_SIZE;
+
+    /**
+     * The maximum time (milliseconds) a batch is held open for more writes.
+     * The longer this time, the fewer calls are made, but the longer each
+     * write waits before it is sent.
+     */
+    private long maxBatchOpenMs;
+
+    /** 20 milliseconds */
+    public static final long MAX_BATCH_OPEN_MS_DEFAULT = 20;
+
+    /**
+     * The maximum number of batches in flight at the same time. This is also
+     * the number of threads used by the writer. Queuing a write blocks while
+     * this many batches are in flight and another one is waiting to be sent.
+     */
+    private int maxInflightBatches;
+
+    /** 5 batches */
+    public static final int MAX_INFLIGHT_BATCHES_DEFAULT = 5;
+
+    /**
+     * The maximum number of times unprocessed items of a batch are sent
+     * again before their writes fail.
+     */
+    private int maxUnprocessedRetries;
+
+    /** 10 retries */
+    public static final int MAX_UNPROCESSED_RETRIES_DEFAULT = 10;
+
+    public BufferedTableWriterConfig() {
+        this.maxBatchSize = MAX_BATCH_SIZE_DEFAULT;
+        this.maxBatchOpenMs = MAX_BATCH_OPEN_MS_DEFAULT;
+        this.maxInflightBatches = MAX_INFLIGHT_BATCHES_DEFAULT;
+        this.maxUnprocessedRetries = MAX_UNPROCESSED_RETRIES_DEFAULT;
+    }
+
+    /** copy constructor */
+    public BufferedTableWriterConfig(BufferedTableWriterConfig other) {
+        this.maxBatchSize = other.maxBatchSize;
+        this.maxBatchOpenMs = other.maxBatchOpenMs;
+        this.maxInflightBatches = other.maxInflightBatches;
+        this.maxUnprocessedRetries = other.maxUnprocessedRetries;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1 || maxBatchSize > SERVICE_MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(
+                    "Max batch size must be between 1 and "
+                    + SERVICE_MAX_BATCH_SIZE);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public BufferedTableWriterConfig withMaxBatchSize(int maxBatchSize) {
+        setMaxBatchSize(maxBatchSize);
+        return this;
+    }
+
+    public long getMaxBatchOpenMs() {
+        return maxBatchOpenMs;
+    }
+
+    public void setMaxBatchOpenMs(long maxBatchOpenMs) {
+        if (maxBatchOpenMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max batch open time must not be negative");
+        }
+        this.maxBatchOpenMs = maxBatchOpenMs;
+    }
+
+    public BufferedTableWriterConfig withMaxBatchOpenMs(long maxBatchOpenMs) {
+        setMaxBatchOpenMs(maxBatchOpenMs);
+        return this;
+    }
+
+    public int getMaxInflightBatches() {
+        return maxInflightBatches;
+    }
+
+    public void setMaxInflightBatches(int maxInflightBatches) {
+        if (maxInflightBatches < 1) {
+            throw new IllegalArgumentException(
+                    "Max inflight batches must be positive");
+        }
+        this.maxInflightBatches = maxInflightBatches;
+    }
+
+    public BufferedTableWriterConfig withMaxInflightBatches(int maxInflightBatches) {
+        setMaxInflightBatches(maxInflightBatches);
+        return this;
+    }
+
+    public int getMaxUnprocessedRetries() {
+        return maxUnprocessedRetries;
+    }
+
+    public void setMaxUnprocessedRetries(int maxUnprocessedRetries) {
+        if (maxUnprocessedRetries < 0) {
+            throw new IllegalArgumentException(
+                    "Max unprocessed retries must not be negative");
+        }
+        this.maxUnprocessedRetries = maxUnprocessedRetries;
+    }
+
+    public BufferedTableWriterConfig withMaxUnprocessedRetries(int maxUnprocessedRetries) {
+        setMaxUnprocessedRetries(maxUnprocessedRetries);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedTableWriterConfig [maxBatchSize=" + maxBatchSize
+                + ", maxBatchOpenMs=" + maxBatchOpenMs
+                + ", maxInflightBatches=" + maxInflightBatches
+                + ", maxUnprocessedRetries=" + maxUnprocessedRetries + "]";
+    }
+}
@@ -40,6 +40,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.util.CompactItem;
 import com.amazonaws.util.VersionInfoUtils;
 
 /**
@@ -296,6 +297,14 @@ public enum InternalUtils {
         if (values == null) {
             return null;
         }
+        // Items fresh off a GetItem, Query or Scan response convert without
+        // creating an AttributeValue per attribute
+        CompactItem compact = CompactItem.fromUntouchedView(values);
+        if (compact != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, T> result = (Map<String, T>) compact.toSimpleMap();
+            return result;
+        }
 
         Map<String, T> result = new LinkedHashMap<String, T>(values.size());
         for (Map.Entry<String, AttributeValue> entry : values.entrySet()) {
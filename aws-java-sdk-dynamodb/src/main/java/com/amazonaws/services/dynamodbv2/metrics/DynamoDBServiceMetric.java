@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.metrics;
+
+import com.amazonaws.metrics.ServiceMetricType;
+
+/**
+ * DynamoDB specific non-request metric types. These are not part of the
+ * predefined metrics by default; add them with
+ * {@link com.amazonaws.metrics.AwsSdkMetrics#addAll(java.util.Collection)} to
+ * have them uploaded.
+ */
+public enum DynamoDBServiceMetric implements ServiceMetricType {
+    /**
+     * Time taken by a DynamoDBMapper load served from the item cache. The
+     * sample count of this metric is the number of cache hits.
+     */
+    DynamoDBMapperItemCacheHitTime,
+    /**
+     * Time taken by the GetItem call of a DynamoDBMapper load that missed the
+     * item cache. Comparing it against the hit time gives the latency saved
+     * by the cache.
+     */
+    DynamoDBMapperItemCacheMissTime,
+    /**
+     * Sampled once per eventually consistent DynamoDBMapper load made with an
+     * item cache: 1 if the load was served from the cache, 0 otherwise. The
+     * average of this metric is the hit ratio of the cache.
+     */
+    DynamoDBMapperItemCacheHitRatio,
+    /**
+     * Number of items evicted from a {@code LocalItemCache} because it was
+     * full. A high rate relative to the loads means the cache is too small.
+     */
+    DynamoDBMapperItemCacheEvictions,
+    ;
+
+    @Override public String getServiceName() { return "DynamoDBMapper"; }
+}
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.util.CompactItemJsonUnmarshaller;
 import com.amazonaws.transform.SimpleTypeJsonUnmarshallers.*;
 import com.amazonaws.transform.*;
 
@@ -53,11 +54,8 @@ public class GetItemResultJsonUnmarshaller implements
             if (token == FIELD_NAME || token == START_OBJECT) {
                 if (context.testExpression("Item", targetDepth)) {
                     context.nextToken();
-                    getItemResult
-                            .setItem(new MapUnmarshaller<String, AttributeValue>(
-                                    StringJsonUnmarshaller.getInstance(),
-                                    AttributeValueJsonUnmarshaller
-                                            .getInstance()).unmarshall(context));
+                    getItemResult.setItem(CompactItemJsonUnmarshaller
+                            .getAttributeValueMapInstance().unmarshall(context));
                 }
                 if (context.testExpression("ConsumedCapacity", targetDepth)) {
                     context.nextToken();
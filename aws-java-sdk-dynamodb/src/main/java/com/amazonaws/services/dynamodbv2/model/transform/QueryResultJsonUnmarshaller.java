@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.util.CompactItemJsonUnmarshaller;
 import com.amazonaws.transform.SimpleTypeJsonUnmarshallers.*;
 import com.amazonaws.transform.*;
 
@@ -55,11 +56,8 @@ public class QueryResultJsonUnmarshaller implements
                     context.nextToken();
                     queryResult
                             .setItems(new ListUnmarshaller<java.util.Map<String, AttributeValue>>(
-                                    new MapUnmarshaller<String, AttributeValue>(
-                                            StringJsonUnmarshaller
-                                                    .getInstance(),
-                                            AttributeValueJsonUnmarshaller
-                                                    .getInstance()))
+                                    CompactItemJsonUnmarshaller
+                                            .getAttributeValueMapInstance())
                                     .unmarshall(context));
                 }
                 if (context.testExpression("Count", targetDepth)) {
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+
+/**
+ * Reads all shards of a DynamoDB stream in parallel and hands their records
+ * to a {@link ShardRecordProcessor}.
+ * <p>
+ * The reader discovers shards with DescribeStream, both when it starts and
+ * periodically afterwards. A shard is read only once its parent has been
+ * read to its end (or when the parent is no longer part of the stream), so
+ * records for the same item are always processed in order. After every
+ * processed batch the sequence number of its last record is saved to a
+ * {@link CheckpointStore}; a restarted reader resumes each shard right after
+ * its checkpoint and skips shards checkpointed as complete.
+ * <p>
+ * Shards do not get a thread of their own. Each shard is a task on a shared
+ * {@link ScheduledExecutorService} that reschedules itself after every
+ * GetRecords call: immediately if the call returned a full batch, after the
+ * minimum poll interval if it returned some records, and after an interval
+ * that doubles up to the maximum if it returned none or failed. Idle shards
+ * therefore cost neither a thread nor a steady stream of empty calls.
+ *
+ * @see StreamShardReaderConfig
+ */
+public class StreamShardReader {
+
+    private static final Log log = LogFactory.getLog(StreamShardReader.class);
+
+    private final AmazonDynamoDBStreams streams;
+    private final String streamArn;
+    private final ShardRecordProcessor processor;
+    private final CheckpointStore checkpointStore;
+    private final StreamShardReaderConfig config;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /** Shards of the stream as of the last discovery, by id. */
+    private volatile Map<String, Shard> knownShards =
+            Collections.<String, Shard>emptyMap();
+
+    /** Shards currently being read, by id. */
+    private final ConcurrentMap<String, ShardTask> activeShards =
+            new ConcurrentHashMap<String, ShardTask>();
+
+    /** Shards that have been read to their end. */
+    private final Set<String> completedShards = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+
+    private volatile ScheduledFuture<?> discovery;
+    private volatile boolean started;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a reader with the default configuration and its own thread
+     * pool.
+     */
+    public StreamShardReader(
+            AmazonDynamoDBStreams streams,
+            String streamArn,
+            ShardRecordProcessor processor,
+            CheckpointStore checkpointStore) {
+
+        this(streams, streamArn, processor, checkpointStore,
+                new StreamShardReaderConfig());
+    }
+
+    /**
+     * Creates a reader with the given configuration and its own thread pool
+     * of {@link StreamShardReaderConfig#getThreadPoolSize()} threads.
+     */
+    public StreamShardReader(
+            AmazonDynamoDBStreams streams,
+            String streamArn,
+            ShardRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            StreamShardReaderConfig config) {
+
+        this(streams, streamArn, processor, checkpointStore, config,
+                createExecutor(config.getThreadPoolSize()), true);
+    }
+
+    /**
+     * Creates a reader that runs on the given executor. The executor is not
+     * shut down by {@link #shutdown()}.
+     */
+    public StreamShardReader(
+            AmazonDynamoDBStreams streams,
+            String streamArn,
+            ShardRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            StreamShardReaderConfig config,
+            ScheduledExecutorService executor) {
+
+        this(streams, streamArn, processor, checkpointStore, config,
+                executor, false);
+    }
+
+    private StreamShardReader(
+            AmazonDynamoDBStreams streams,
+            String streamArn,
+            ShardRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            StreamShardReaderConfig config,
+            ScheduledExecutorService executor,
+            boolean ownsExecutor) {
+
+        if (streams == null) {
+            throw new IllegalArgumentException("streams must not be null");
+        }
+        if (streamArn == null) {
+            throw new IllegalArgumentException("streamArn must not be null");
+        }
+        if (processor == null) {
+            throw new IllegalArgumentException("processor must not be null");
+        }
+        if (checkpointStore == null) {
+            throw new IllegalArgumentException(
+                    "checkpointStore must not be null");
+        }
+
+        this.streams = streams;
+        this.streamArn = streamArn;
+        this.processor = processor;
+        this.checkpointStore = checkpointStore;
+        this.config = new StreamShardReaderConfig(config);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts discovering and reading shards. Returns immediately.
+     *
+     * @throws IllegalStateException if the reader was already started
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Reader already started");
+        }
+        started = true;
+
+        discovery = executor.scheduleWithFixedDelay(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            discoverShards();
+                        } catch (Exception e) {
+                            log.warn("Unable to discover shards of "
+                                    + streamArn, e);
+                        }
+                    }
+                },
+                0,
+                config.getShardDiscoveryIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading. Batches being processed are allowed to finish; no
+     * further GetRecords calls are made. Shuts down the reader's thread pool
+     * if it created one.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (discovery != null) {
+            discovery.cancel(false);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the reader's own thread pool to terminate after
+     * {@link #shutdown()}. Returns true immediately if the reader runs on an
+     * executor it was given.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        return !ownsExecutor || executor.awaitTermination(timeout, unit);
+    }
+
+    /** Returns the ids of the shards currently being read. */
+    public Set<String> getActiveShardIds() {
+        return Collections.unmodifiableSet(activeShards.keySet());
+    }
+
+    /**
+     * Returns the ids of the shards read to their end since the reader was
+     * started, including those found checkpointed as complete.
+     */
+    public Set<String> getCompletedShardIds() {
+        return Collections.unmodifiableSet(completedShards);
+    }
+
+    /**
+     * Describes the stream and starts reading every shard that is ready. The
+     * DescribeStream calls are made without holding the reader's lock, so
+     * that shards completing in the meantime aren't held up.
+     */
+    void discoverShards() {
+        if (shutdown) {
+            return;
+        }
+
+        Map<String, Shard> shards = new HashMap<String, Shard>();
+        String lastShardId = null;
+        do {
+            StreamDescription description = streams.describeStream(
+                    new DescribeStreamRequest()
+                            .withStreamArn(streamArn)
+                            .withExclusiveStartShardId(lastShardId))
+                    .getStreamDescription();
+
+            for (Shard shard : description.getShards()) {
+                shards.put(shard.getShardId(), shard);
+            }
+            lastShardId = description.getLastEvaluatedShardId();
+        } while (lastShardId != null);
+
+        synchronized (this) {
+            knownShards = shards;
+            startReadyShards();
+        }
+    }
+
+    /**
+     * Starts reading every known shard that is neither active nor complete
+     * and whose parent has been read to its end.
+     */
+    private synchronized void startReadyShards() {
+        if (shutdown) {
+            return;
+        }
+
+        Map<String, Shard> shards = knownShards;
+
+        // Pick up shards completed by an earlier reader first, so that their
+        // children can be started in the same pass.
+        for (String shardId : shards.keySet()) {
+            if (!completedShards.contains(shardId)
+                    && !activeShards.containsKey(shardId)
+                    && CheckpointStore.SHARD_END.equals(
+                            checkpointStore.getCheckpoint(streamArn, shardId))) {
+                completedShards.add(shardId);
+            }
+        }
+
+        for (Shard shard : shards.values()) {
+            String shardId = shard.getShardId();
+            if (completedShards.contains(shardId)
+                    || activeShards.containsKey(shardId)) {
+                continue;
+            }
+
+            String parentId = shard.getParentShardId();
+            boolean parentRead = parentId != null
+                    && completedShards.contains(parentId);
+
+            if (parentId == null
+                    || parentRead
+                    || !shards.containsKey(parentId)) {
+
+                // Reading a child from LATEST would skip the records written
+                // to it while its parent was being read.
+                ShardIteratorType initialPosition = parentRead
+                        ? ShardIteratorType.TRIM_HORIZON
+                        : config.getInitialPosition();
+
+                ShardTask task = new ShardTask(shardId, initialPosition,
+                        checkpointStore.getCheckpoint(streamArn, shardId));
+                activeShards.put(shardId, task);
+                executor.execute(task);
+            }
+        }
+    }
+
+    private void shardCompleted(String shardId) {
+        activeShards.remove(shardId);
+        completedShards.add(shardId);
+        startReadyShards();
+    }
+
+    private static ScheduledExecutorService createExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "dynamodb-streams-reader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Reads one shard. Runs on the executor and reschedules itself after
+     * every GetRecords call until the shard ends or the reader shuts down.
+     */
+    private final class ShardTask implements Runnable {
+
+        private final String shardId;
+        private ShardIteratorType initialPosition;
+
+        /** Sequence number of the last processed record, or null. */
+        private String checkpoint;
+
+        private String iterator;
+        private long delayMs;
+
+        ShardTask(String shardId,
+                  ShardIteratorType initialPosition,
+                  String checkpoint) {
+
+            this.shardId = shardId;
+            this.initialPosition = initialPosition;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public void run() {
+            if (shutdown) {
+                return;
+            }
+
+            try {
+                if (iterator == null) {
+                    iterator = getShardIterator();
+                }
+
+                GetRecordsResult result = streams.getRecords(
+                        new GetRecordsRequest()
+                                .withShardIterator(iterator)
+                                .withLimit(config.getMaxRecordsPerCall()));
+
+                List<Record> records = result.getRecords();
+                if (!records.isEmpty()) {
+                    // The iterator only moves on once the batch has been
+                    // processed, so a failed batch is read again.
+                    processor.processRecords(shardId, records);
+
+                    checkpoint = records.get(records.size() - 1)
+                            .getDynamodb().getSequenceNumber();
+                    checkpointStore.setCheckpoint(streamArn, shardId, checkpoint);
+                }
+
+                iterator = result.getNextShardIterator();
+                if (iterator == null) {
+                    processor.shardEnded(shardId);
+                    checkpointStore.setCheckpoint(
+                            streamArn, shardId, CheckpointStore.SHARD_END);
+                    shardCompleted(shardId);
+                    return;
+                }
+
+                if (records.size() >= config.getMaxRecordsPerCall()) {
+                    delayMs = 0;
+                } else if (!records.isEmpty()) {
+                    delayMs = config.getMinPollIntervalMs();
+                } else {
+                    backOff();
+                }
+
+            } catch (ExpiredIteratorException e) {
+                log.debug("Shard iterator of " + shardId + " expired", e);
+                iterator = null;
+                delayMs = 0;
+
+            } catch (TrimmedDataAccessException e) {
+                log.warn("Records of " + shardId + " after " + checkpoint
+                        + " have been trimmed; resuming at the trim horizon", e);
+                iterator = null;
+                checkpoint = null;
+                initialPosition = ShardIteratorType.TRIM_HORIZON;
+                delayMs = 0;
+
+            } catch (Exception e) {
+                log.warn("Unable to read records of " + shardId, e);
+                backOff();
+            }
+
+            schedule();
+        }
+
+        private String getShardIterator() {
+            GetShardIteratorRequest request = new GetShardIteratorRequest()
+                    .withStreamArn(streamArn)
+                    .withShardId(shardId);
+
+            if (checkpoint == null) {
+                request.setShardIteratorType(initialPosition);
+            } else {
+                request.setShardIteratorType(
+                        ShardIteratorType.AFTER_SEQUENCE_NUMBER);
+                request.setSequenceNumber(checkpoint);
+            }
+
+            return streams.getShardIterator(request).getShardIterator();
+        }
+
+        private void backOff() {
+            long minDelayMs = Math.max(1, config.getMinPollIntervalMs());
+            delayMs = Math.min(
+                    config.getMaxPollIntervalMs(),
+                    Math.max(minDelayMs, delayMs * 2));
+        }
+
+        private void schedule() {
+            if (shutdown) {
+                return;
+            }
+            try {
+                executor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // The executor was shut down from under us
+                log.debug("Unable to schedule read of " + shardId, e);
+            }
+        }
+    }
+}
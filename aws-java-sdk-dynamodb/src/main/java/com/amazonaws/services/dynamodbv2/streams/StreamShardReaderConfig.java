@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+
+/**
+ * Configuration of a {@link StreamShardReader}.
+ */
+public class StreamShardReaderConfig {
+
+    /**
+     * Where to start reading a shard that has no checkpoint and whose parent
+     * was not processed by the reader. Only TRIM_HORIZON and LATEST are
+     * meaningful here.
+     */
+    private ShardIteratorType initialPosition;
+
+    /** TRIM_HORIZON */
+    public static final ShardIteratorType INITIAL_POSITION_DEFAULT =
+            ShardIteratorType.TRIM_HORIZON;
+
+    /**
+     * The maximum number of records requested by each GetRecords call.
+     */
+    private int maxRecordsPerCall;
+
+    /** 1000 records, the service maximum */
+    public static final int MAX_RECORDS_PER_CALL_DEFAULT = 1000;
+
+    /**
+     * The delay between two GetRecords calls on a shard that returned some,
+     * but not a full batch of, records. A shard that returns a full batch is
+     * polled again immediately.
+     */
+    private long minPollIntervalMs;
+
+    /** 200 milliseconds */
+    public static final long MIN_POLL_INTERVAL_MS_DEFAULT = 200;
+
+    /**
+     * The longest delay between two GetRecords calls. The delay doubles, up
+     * to this value, every time a shard returns no records or a call fails.
+     */
+    private long maxPollIntervalMs;
+
+    /** 5 seconds */
+    public static final long MAX_POLL_INTERVAL_MS_DEFAULT = 5000;
+
+    /**
+     * How often DescribeStream is called to discover new shards.
+     */
+    private long shardDiscoveryIntervalMs;
+
+    /** 30 seconds */
+    public static final long SHARD_DISCOVERY_INTERVAL_MS_DEFAULT = 30000;
+
+    /**
+     * The number of threads of the pool created by the reader when it is not
+     * given an executor. All shards share these threads.
+     */
+    private int threadPoolSize;
+
+    /** 4 threads */
+    public static final int THREAD_POOL_SIZE_DEFAULT = 4;
+
+    public StreamShardReaderConfig() {
+        this.initialPosition = INITIAL_POSITION_DEFAULT;
+        this.maxRecordsPerCall = MAX_RECORDS_PER_CALL_DEFAULT;
+        this.minPollIntervalMs = MIN_POLL_INTERVAL_MS_DEFAULT;
+        this.maxPollIntervalMs = MAX_POLL_INTERVAL_MS_DEFAULT;
+        this.shardDiscoveryIntervalMs = SHARD_DISCOVERY_INTERVAL_MS_DEFAULT;
+        this.threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+    }
+
+    /** copy constructor */
+    public StreamShardReaderConfig(StreamShardReaderConfig other) {
+        this.initialPosition = other.initialPosition;
+        this.maxRecordsPerCall = other.maxRecordsPerCall;
+        this.minPollIntervalMs = other.minPollIntervalMs;
+        this.maxPollIntervalMs = other.maxPollIntervalMs;
+        this.shardDiscoveryIntervalMs = other.shardDiscoveryIntervalMs;
+        this.threadPoolSize = other.threadPoolSize;
+    }
+
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON
+                && initialPosition != ShardIteratorType.LATEST) {
+            throw new IllegalArgumentException(
+                    "Initial position must be TRIM_HORIZON or LATEST");
+        }
+        this.initialPosition = initialPosition;
+    }
+
+    public StreamShardReaderConfig withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    public int getMaxRecordsPerCall() {
+        return maxRecordsPerCall;
+    }
+
+    public void setMaxRecordsPerCall(int maxRecordsPerCall) {
+        if (maxRecordsPerCall < 1 || maxRecordsPerCall > MAX_RECORDS_PER_CALL_DEFAULT) {
+            throw new IllegalArgumentException(
+                    "Max records per call must be between 1 and "
+                    + MAX_RECORDS_PER_CALL_DEFAULT);
+        }
+        this.maxRecordsPerCall = maxRecordsPerCall;
+    }
+
+    public StreamShardReaderConfig withMaxRecordsPerCall(int maxRecordsPerCall) {
+        setMaxRecordsPerCall(maxRecordsPerCall);
+        return this;
+    }
+
+    public long getMinPollIntervalMs() {
+        return minPollIntervalMs;
+    }
+
+    public void setMinPollIntervalMs(long minPollIntervalMs) {
+        if (minPollIntervalMs < 0) {
+            throw new IllegalArgumentException(
+                    "Min poll interval must not be negative");
+        }
+        this.minPollIntervalMs = minPollIntervalMs;
+    }
+
+    public StreamShardReaderConfig withMinPollIntervalMs(long minPollIntervalMs) {
+        setMinPollIntervalMs(minPollIntervalMs);
+        return this;
+    }
+
+    public long getMaxPollIntervalMs() {
+        return maxPollIntervalMs;
+    }
+
+    public void setMaxPollIntervalMs(long maxPollIntervalMs) {
+        if (maxPollIntervalMs < 1) {
+            throw new IllegalArgumentException(
+                    "Max poll interval must be positive");
+        }
+        this.maxPollIntervalMs = maxPollIntervalMs;
+    }
+
+    public StreamShardReaderConfig withMaxPollIntervalMs(long maxPollIntervalMs) {
+        setMaxPollIntervalMs(maxPollIntervalMs);
+        return this;
+    }
+
+    public long getShardDiscoveryIntervalMs() {
+        return shardDiscoveryIntervalMs;
+    }
+
+    public void setShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        if (shardDiscoveryIntervalMs < 1) {
+            throw new IllegalArgumentException(
+                    "Shard discovery interval must be positive");
+        }
+        this.shardDiscoveryIntervalMs = shardDiscoveryIntervalMs;
+    }
+
+    public StreamShardReaderConfig withShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        setShardDiscoveryIntervalMs(shardDiscoveryIntervalMs);
+        return this;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "Thread pool size must be positive");
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public StreamShardReaderConfig withThreadPoolSize(int threadPoolSize) {
+        setThreadPoolSize(threadPoolSize);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamShardReaderConfig [initialPosition=" + initialPosition
+                + ", maxRecordsPerCall=" + maxRecordsPerCall
+                + ", minPollIntervalMs=" + minPollIntervalMs
+                + ", maxPollIntervalMs=" + maxPollIntervalMs
+                + ", shardDiscoveryIntervalMs=" + shardDiscoveryIntervalMs
+                + ", threadPoolSize=" + threadPoolSize + "]";
+    }
+}
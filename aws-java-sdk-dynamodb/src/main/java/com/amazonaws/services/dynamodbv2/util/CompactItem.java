@@ -0,0 +1,542 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * A compact, read-only representation of a DynamoDB item (or of a map or list
+ * attribute value) that avoids allocating one {@link AttributeValue} per
+ * attribute.
+ * <p>
+ * Attribute names, types and values are held in parallel arrays. Numbers are
+ * kept in their string form and only parsed into a {@link BigDecimal} the
+ * first time they are requested. Nested maps and lists are themselves
+ * {@code CompactItem}s; a list has no attribute names and its elements are
+ * addressed by position.
+ * <p>
+ * Instances are produced by {@link CompactItemJsonUnmarshaller} straight from
+ * the service response. The GetItem, Query and Scan result unmarshallers hand
+ * them out through {@link #asAttributeValueMap()}, a map view that only
+ * creates an {@code AttributeValue} for the attributes that are actually read;
+ * the document API converts untouched views with {@link #toSimpleMap()}
+ * without going through {@code AttributeValue}s at all.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class CompactItem {
+
+    /**
+     * The DynamoDB data type of an attribute value.
+     */
+    public static enum Type {
+        S, N, B, SS, NS, BS, M, L, NULL, BOOL
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    /** Items with more attributes than this are looked up through a hash index. */
+    private static final int MAX_LINEAR_LOOKUP = 8;
+
+    private final String[] names;
+    private final byte[] types;
+    private final Object[] values;
+    private final int size;
+
+    /**
+     * Lazily parsed numbers, allocated on the first number lookup. Racing
+     * lookups may each allocate the array or parse a number; that only costs
+     * a repeated parse.
+     */
+    private volatile AtomicReferenceArray<BigDecimal> numbers;
+
+    /**
+     * Open-addressing table from the hash of an attribute name to its
+     * position plus one, built on the first lookup in a large item.
+     */
+    private volatile int[] index;
+
+    private CompactItem(String[] names, byte[] types, Object[] values, int size) {
+        this.names = names;
+        this.types = types;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns a compact copy of the given low-level item.
+     */
+    public static CompactItem fromAttributeValueMap(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return null;
+        }
+        Builder builder = new Builder(false, item.size());
+        for (Map.Entry<String, AttributeValue> e : item.entrySet()) {
+            builder.add(e.getKey(), e.getValue());
+        }
+        return builder.build();
+    }
+
+    /** Returns the number of attributes, or of elements for a list. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if this is a list value, whose elements have no names. */
+    public boolean isList() {
+        return names == null;
+    }
+
+    /** Returns the name of the attribute at the given position. */
+    public String getName(int index) {
+        checkIndex(index);
+        return names == null ? null : names[index];
+    }
+
+    /** Returns the type of the attribute at the given position. */
+    public Type getType(int index) {
+        checkIndex(index);
+        return TYPES[types[index]];
+    }
+
+    /**
+     * Returns the position of the attribute with the given name, or -1 if
+     * there is no such attribute.
+     */
+    public int indexOf(String name) {
+        if (names == null || name == null) {
+            return -1;
+        }
+        if (size <= MAX_LINEAR_LOOKUP) {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int[] table = index;
+        if (table == null) {
+            table = buildIndex();
+            index = table;
+        }
+        int mask = table.length - 1;
+        for (int slot = name.hashCode() & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int[] buildIndex() {
+        int[] table = new int[Integer.highestOneBit(size) << 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = names[i].hashCode() & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    /** Returns true if the attribute with the given name is present. */
+    public boolean hasAttribute(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Returns the type of the attribute with the given name, or null if there
+     * is no such attribute.
+     */
+    public Type getType(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : TYPES[types[index]];
+    }
+
+    /** Returns the string value of the given attribute, or null. */
+    public String getString(String name) {
+        return (String) valueOf(name, Type.S);
+    }
+
+    /** Returns the string value at the given position. */
+    public String getString(int index) {
+        return (String) valueAt(index, Type.S);
+    }
+
+    /**
+     * Returns the number value of the given attribute, or null. The number is
+     * parsed on the first call and remembered.
+     */
+    public BigDecimal getNumber(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : getNumber(index);
+    }
+
+    /** Returns the number value at the given position. */
+    public BigDecimal getNumber(int index) {
+        String text = (String) valueAt(index, Type.N);
+        AtomicReferenceArray<BigDecimal> cache = numbers;
+        if (cache == null) {
+            cache = new AtomicReferenceArray<BigDecimal>(size);
+            numbers = cache;
+        }
+        BigDecimal number = cache.get(index);
+        if (number == null) {
+            number = new BigDecimal(text);
+            cache.set(index, number);
+        }
+        return number;
+    }
+
+    /**
+     * Returns the number value of the given attribute as sent by the service,
+     * without parsing it, or null.
+     */
+    public String getNumberText(String name) {
+        return (String) valueOf(name, Type.N);
+    }
+
+    /** Returns a read-only view of the binary value of the given attribute, or null. */
+    public ByteBuffer getBinary(String name) {
+        ByteBuffer value = (ByteBuffer) valueOf(name, Type.B);
+        return value == null ? null : value.asReadOnlyBuffer();
+    }
+
+    /** Returns the string set value of the given attribute, or null. */
+    @SuppressWarnings("unchecked")
+    public List<String> getStringSet(String name) {
+        return (List<String>) valueOf(name, Type.SS);
+    }
+
+    /** Returns the number set value of the given attribute, as text, or null. */
+    @SuppressWarnings("unchecked")
+    public List<String> getNumberSet(String name) {
+        return (List<String>) valueOf(name, Type.NS);
+    }
+
+    /** Returns the binary set value of the given attribute, or null. */
+    @SuppressWarnings("unchecked")
+    public List<ByteBuffer> getBinarySet(String name) {
+        return (List<ByteBuffer>) valueOf(name, Type.BS);
+    }
+
+    /** Returns the map value of the given attribute, or null. */
+    public CompactItem getMap(String name) {
+        return (CompactItem) valueOf(name, Type.M);
+    }
+
+    /** Returns the list value of the given attribute, or null. */
+    public CompactItem getList(String name) {
+        return (CompactItem) valueOf(name, Type.L);
+    }
+
+    /** Returns the boolean value of the given attribute, or null. */
+    public Boolean getBoolean(String name) {
+        return (Boolean) valueOf(name, Type.BOOL);
+    }
+
+    /** Returns true if the given attribute is present and set to NULL. */
+    public boolean isNull(String name) {
+        int index = indexOf(name);
+        return index >= 0 && TYPES[types[index]] == Type.NULL;
+    }
+
+    /**
+     * Returns the low-level representation of the value at the given
+     * position.
+     */
+    public AttributeValue toAttributeValue(int index) {
+        checkIndex(index);
+        Object value = values[index];
+        switch (TYPES[types[index]]) {
+        case S: return new AttributeValue().withS((String) value);
+        case N: return new AttributeValue().withN((String) value);
+        case B: return new AttributeValue().withB(((ByteBuffer) value).duplicate());
+        case SS: return new AttributeValue().withSS(new ArrayList<String>(castList(value, String.class)));
+        case NS: return new AttributeValue().withNS(new ArrayList<String>(castList(value, String.class)));
+        case BS: return new AttributeValue().withBS(duplicates(castList(value, ByteBuffer.class)));
+        case M: return new AttributeValue().withM(((CompactItem) value).asAttributeValueMap());
+        case L: return new AttributeValue().withL(((CompactItem) value).toAttributeValueList());
+        case NULL: return new AttributeValue().withNULL(Boolean.TRUE);
+        case BOOL: return new AttributeValue().withBOOL((Boolean) value);
+        default: throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Returns the low-level representation of this item, as accepted by the
+     * {@code DynamoDBMapper}.
+     *
+     * @throws IllegalStateException if this is a list value
+     */
+    public Map<String, AttributeValue> toAttributeValueMap() {
+        if (names == null) {
+            throw new IllegalStateException("A list value has no attribute names");
+        }
+        Map<String, AttributeValue> result = new HashMap<String, AttributeValue>(capacityOf(size));
+        for (int i = 0; i < size; i++) {
+            result.put(names[i], toAttributeValue(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a low-level view of this item. The view creates the
+     * {@code AttributeValue} of an attribute the first time it is read and
+     * hands out the same instance afterwards, so changes made to it stick.
+     * It can be modified like a {@code HashMap}; the first change that adds
+     * or removes an attribute copies it into a {@code LinkedHashMap}.
+     * <p>
+     * Like a {@code HashMap}, the view can be read but not modified by
+     * several threads at once.
+     *
+     * @throws IllegalStateException if this is a list value
+     */
+    public Map<String, AttributeValue> asAttributeValueMap() {
+        if (names == null) {
+            throw new IllegalStateException("A list value has no attribute names");
+        }
+        return new CompactItemMap(this);
+    }
+
+    /**
+     * Returns the item behind a view returned by
+     * {@link #asAttributeValueMap()}, or null if the given map is not such a
+     * view or may no longer match it because an {@code AttributeValue} has
+     * been read out of it or the view has been modified.
+     */
+    public static CompactItem fromUntouchedView(Map<String, AttributeValue> map) {
+        return map instanceof CompactItemMap
+                ? ((CompactItemMap) map).getUntouchedItem()
+                : null;
+    }
+
+    /**
+     * Returns the low-level representation of the elements of this list
+     * value.
+     */
+    public List<AttributeValue> toAttributeValueList() {
+        List<AttributeValue> result = new ArrayList<AttributeValue>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(toAttributeValue(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value at the given position in the simple Java form used by
+     * the document API: String, BigDecimal, byte[], sets thereof, Boolean,
+     * null, Map or List.
+     */
+    public Object toSimpleValue(int index) {
+        checkIndex(index);
+        Object value = values[index];
+        switch (TYPES[types[index]]) {
+        case S:
+        case BOOL:
+            return value;
+        case N:
+            return getNumber(index);
+        case B:
+            return BinaryUtils.copyAllBytesFrom((ByteBuffer) value);
+        case SS:
+            return new LinkedHashSet<String>(castList(value, String.class));
+        case NS: {
+            List<String> texts = castList(value, String.class);
+            Set<BigDecimal> set = new LinkedHashSet<BigDecimal>(capacityOf(texts.size()));
+            for (String text : texts) {
+                set.add(new BigDecimal(text));
+            }
+            return set;
+        }
+        case BS: {
+            List<ByteBuffer> buffers = castList(value, ByteBuffer.class);
+            Set<byte[]> set = new LinkedHashSet<byte[]>(capacityOf(buffers.size()));
+            for (ByteBuffer buffer : buffers) {
+                set.add(BinaryUtils.copyAllBytesFrom(buffer));
+            }
+            return set;
+        }
+        case M: return ((CompactItem) value).toSimpleMap();
+        case L: return ((CompactItem) value).toSimpleList();
+        case NULL: return null;
+        default: throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Returns this item in the simple Java form accepted by
+     * {@code Item.fromMap}.
+     *
+     * @throws IllegalStateException if this is a list value
+     */
+    public Map<String, Object> toSimpleMap() {
+        if (names == null) {
+            throw new IllegalStateException("A list value has no attribute names");
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>(capacityOf(size));
+        for (int i = 0; i < size; i++) {
+            result.put(names[i], toSimpleValue(i));
+        }
+        return result;
+    }
+
+    /** Returns the elements of this list value in simple Java form. */
+    public List<Object> toSimpleList() {
+        List<Object> result = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(toSimpleValue(i));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return names == null
+                ? toAttributeValueList().toString()
+                : toAttributeValueMap().toString();
+    }
+
+    private Object valueOf(String name, Type expected) {
+        int index = indexOf(name);
+        return index < 0 ? null : valueAt(index, expected);
+    }
+
+    private Object valueAt(int index, Type expected) {
+        checkIndex(index);
+        Type actual = TYPES[types[index]];
+        if (actual != expected) {
+            throw new IllegalStateException("Attribute "
+                    + (names == null ? String.valueOf(index) : names[index])
+                    + " is of type " + actual + ", not " + expected);
+        }
+        return values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(Object value, Class<T> elementType) {
+        return (List<T>) value;
+    }
+
+    private static List<ByteBuffer> duplicates(List<ByteBuffer> buffers) {
+        List<ByteBuffer> result = new ArrayList<ByteBuffer>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+            result.add(buffer.duplicate());
+        }
+        return result;
+    }
+
+    private static int capacityOf(int size) {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+    /**
+     * Accumulates the attributes of a {@link CompactItem} in growable arrays.
+     */
+    static final class Builder {
+        private String[] names;
+        private byte[] types;
+        private Object[] values;
+        private int size;
+
+        Builder(boolean list, int expectedSize) {
+            int capacity = Math.max(expectedSize, 4);
+            this.names = list ? null : new String[capacity];
+            this.types = new byte[capacity];
+            this.values = new Object[capacity];
+        }
+
+        /**
+         * Appends a value. The value must be a String for S and N, a
+         * ByteBuffer for B, a List for SS, NS and BS, a CompactItem for M and
+         * L, a Boolean for BOOL and null for NULL.
+         */
+        Builder add(String name, Type type, Object value) {
+            if (size == types.length) {
+                int capacity = size * 2;
+                if (names != null) {
+                    names = Arrays.copyOf(names, capacity);
+                }
+                types = Arrays.copyOf(types, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            if (names != null) {
+                names[size] = name;
+            }
+            types[size] = (byte) type.ordinal();
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        Builder add(String name, AttributeValue value) {
+            if (value.getS() != null) {
+                return add(name, Type.S, value.getS());
+            } else if (value.getN() != null) {
+                return add(name, Type.N, value.getN());
+            } else if (value.getB() != null) {
+                return add(name, Type.B, value.getB().duplicate());
+            } else if (value.getSS() != null) {
+                return add(name, Type.SS, new ArrayList<String>(value.getSS()));
+            } else if (value.getNS() != null) {
+                return add(name, Type.NS, new ArrayList<String>(value.getNS()));
+            } else if (value.getBS() != null) {
+                return add(name, Type.BS, duplicates(value.getBS()));
+            } else if (value.getM() != null) {
+                return add(name, Type.M, fromAttributeValueMap(value.getM()));
+            } else if (value.getL() != null) {
+                Builder list = new Builder(true, value.getL().size());
+                for (AttributeValue element : value.getL()) {
+                    list.add(null, element);
+                }
+                return add(name, Type.L, list.build());
+            } else if (Boolean.TRUE.equals(value.getNULL())) {
+                return add(name, Type.NULL, null);
+            } else if (value.getBOOL() != null) {
+                return add(name, Type.BOOL, value.getBOOL());
+            }
+            throw new IllegalArgumentException(
+                    "Attribute value must not be empty: " + value);
+        }
+
+        CompactItem build() {
+            return new CompactItem(names, types, values, size);
+        }
+    }
+}
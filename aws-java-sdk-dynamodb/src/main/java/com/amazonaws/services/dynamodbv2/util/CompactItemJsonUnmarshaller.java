@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import static com.fasterxml.jackson.core.JsonToken.END_ARRAY;
+import static com.fasterxml.jackson.core.JsonToken.END_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.FIELD_NAME;
+import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.util.CompactItem.Type;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.transform.Unmarshaller;
+import com.amazonaws.util.Base64;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Unmarshalls the JSON form of a DynamoDB item, i.e. the {@code Item} member
+ * of a GetItem response or an element of the {@code Items} member of a Query
+ * or Scan response, into a {@link CompactItem}.
+ * <p>
+ * Attribute values are read straight from the underlying {@link JsonParser}
+ * rather than token by token through the {@link JsonUnmarshallerContext}, so
+ * that no intermediate {@code AttributeValue}, list or map is allocated. The
+ * unmarshaller can be used wherever an
+ * {@code AttributeValueJsonUnmarshaller}-backed {@code MapUnmarshaller} is,
+ * for example as the element unmarshaller of a {@code ListUnmarshaller};
+ * {@link #getAttributeValueMapInstance()} returns a drop-in replacement that
+ * yields {@link CompactItem#asAttributeValueMap()} views.
+ */
+public class CompactItemJsonUnmarshaller implements
+        Unmarshaller<CompactItem, JsonUnmarshallerContext> {
+
+    private static final CompactItemJsonUnmarshaller instance =
+            new CompactItemJsonUnmarshaller();
+
+    private static final Unmarshaller<Map<String, AttributeValue>, JsonUnmarshallerContext>
+            mapInstance = new Unmarshaller<Map<String, AttributeValue>, JsonUnmarshallerContext>() {
+                @Override
+                public Map<String, AttributeValue> unmarshall(JsonUnmarshallerContext context)
+                        throws Exception {
+                    CompactItem item = instance.unmarshall(context);
+                    return item == null ? null : item.asAttributeValueMap();
+                }
+            };
+
+    public static CompactItemJsonUnmarshaller getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns an unmarshaller for the {@code Item} member of a GetItem result
+     * and the elements of the {@code Items} member of a Query or Scan result,
+     * which produces a low-level view of a {@link CompactItem}.
+     */
+    public static Unmarshaller<Map<String, AttributeValue>, JsonUnmarshallerContext>
+            getAttributeValueMapInstance() {
+        return mapInstance;
+    }
+
+    /**
+     * Unmarshalls the item whose START_OBJECT token is the current token of
+     * the given context. On return the context is positioned on the matching
+     * END_OBJECT token.
+     */
+    @Override
+    public CompactItem unmarshall(JsonUnmarshallerContext context)
+            throws Exception {
+
+        JsonToken token = context.getCurrentToken();
+        if (token == null) {
+            token = context.nextToken();
+        }
+        if (token == VALUE_NULL) {
+            return null;
+        }
+        expect(START_OBJECT, token);
+
+        JsonParser parser = context.getJsonParser();
+        CompactItem.Builder builder = new CompactItem.Builder(false, 8);
+
+        // Attribute names go through the context so that it keeps track of
+        // the current field; the attribute values, which are complete JSON
+        // objects, are consumed directly from the parser.
+        while ((token = context.nextToken()) == FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            parseAttributeValue(parser, builder, name);
+        }
+        expect(END_OBJECT, token);
+        return builder.build();
+    }
+
+    /**
+     * Unmarshalls the item whose START_OBJECT token is the current token of
+     * the given parser. On return the parser is positioned on the matching
+     * END_OBJECT token.
+     */
+    public CompactItem unmarshall(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == VALUE_NULL) {
+            return null;
+        }
+        expect(START_OBJECT, token);
+        return parseMap(parser);
+    }
+
+    /**
+     * Parses the members of a map whose START_OBJECT token has just been
+     * read.
+     */
+    private static CompactItem parseMap(JsonParser parser) throws IOException {
+        CompactItem.Builder builder = new CompactItem.Builder(false, 8);
+        JsonToken token;
+        while ((token = parser.nextToken()) == FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            parseAttributeValue(parser, builder, name);
+        }
+        expect(END_OBJECT, token);
+        return builder.build();
+    }
+
+    /**
+     * Parses the elements of a list whose START_ARRAY token has just been
+     * read.
+     */
+    private static CompactItem parseList(JsonParser parser) throws IOException {
+        CompactItem.Builder builder = new CompactItem.Builder(true, 8);
+        JsonToken token;
+        while ((token = parser.nextToken()) != END_ARRAY) {
+            expect(START_OBJECT, token);
+            parseAttributeValue(parser, builder, null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses an attribute value such as <code>{"N":"42"}</code>, whose
+     * START_OBJECT token is the current token, and appends it to the builder.
+     */
+    private static void parseAttributeValue(
+            JsonParser parser,
+            CompactItem.Builder builder,
+            String name) throws IOException {
+
+        expect(START_OBJECT, parser.getCurrentToken());
+        expect(FIELD_NAME, parser.nextToken());
+        Type type = typeOf(parser.getCurrentName());
+        JsonToken token = parser.nextToken();
+
+        switch (type) {
+        case S:
+        case N:
+            builder.add(name, type, parser.getText());
+            break;
+        case B:
+            builder.add(name, type, decode(parser.getText()));
+            break;
+        case SS:
+        case NS:
+            builder.add(name, type, parseStrings(parser));
+            break;
+        case BS: {
+            List<String> texts = parseStrings(parser);
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(texts.size());
+            for (String text : texts) {
+                buffers.add(decode(text));
+            }
+            builder.add(name, type, buffers);
+            break;
+        }
+        case M:
+            expect(START_OBJECT, token);
+            builder.add(name, type, parseMap(parser));
+            break;
+        case L:
+            expect(JsonToken.START_ARRAY, token);
+            builder.add(name, type, parseList(parser));
+            break;
+        case NULL:
+            builder.add(name, type, null);
+            break;
+        case BOOL:
+            builder.add(name, type, Boolean.valueOf(parser.getBooleanValue()));
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+
+        // Skip anything after the type member, up to the end of the value
+        while ((token = parser.nextToken()) != END_OBJECT) {
+            if (token == null) {
+                throw new AmazonClientException("Unexpected end of JSON input");
+            }
+            parser.skipChildren();
+        }
+    }
+
+    private static List<String> parseStrings(JsonParser parser) throws IOException {
+        expect(JsonToken.START_ARRAY, parser.getCurrentToken());
+        List<String> strings = new ArrayList<String>();
+        while (parser.nextToken() != END_ARRAY) {
+            strings.add(parser.getText());
+        }
+        return strings;
+    }
+
+    private static ByteBuffer decode(String base64) {
+        return ByteBuffer.wrap(Base64.decode(base64));
+    }
+
+    private static Type typeOf(String tag) {
+        try {
+            return Type.valueOf(tag);
+        } catch (IllegalArgumentException e) {
+            throw new AmazonClientException(
+                    "Unknown attribute value type: " + tag, e);
+        }
+    }
+
+    private static void expect(JsonToken expected, JsonToken actual) {
+        if (actual != expected) {
+            throw new AmazonClientException(
+                    "Expected " + expected + " but got " + actual);
+        }
+    }
+}
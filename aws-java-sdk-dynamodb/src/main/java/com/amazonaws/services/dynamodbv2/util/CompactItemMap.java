@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * The map view returned by {@link CompactItem#asAttributeValueMap()}.
+ * <p>
+ * Until an attribute is added or removed, reads go to the compact item and
+ * each {@code AttributeValue} is created on its first read and remembered;
+ * replacing the value of an existing attribute only replaces the remembered
+ * value. The first structural change copies the view into a
+ * {@code LinkedHashMap} that serves all further operations.
+ */
+final class CompactItemMap extends AbstractMap<String, AttributeValue>
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CompactItem item;
+
+    /** The values handed out or stored so far, by position in the item. */
+    private final AtomicReferenceArray<AttributeValue> values;
+
+    /** Set once an attribute has been read out of or stored into the view. */
+    private volatile boolean touched;
+
+    /** Set on the first structural change; then holds the whole map. */
+    private Map<String, AttributeValue> copy;
+
+    CompactItemMap(CompactItem item) {
+        this.item = item;
+        this.values = new AtomicReferenceArray<AttributeValue>(item.size());
+    }
+
+    /**
+     * Returns the underlying item if no value has been read out of or stored
+     * into this view yet, or null otherwise.
+     */
+    CompactItem getUntouchedItem() {
+        return touched || copy != null ? null : item;
+    }
+
+    @Override
+    public int size() {
+        return copy != null ? copy.size() : item.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (copy != null) {
+            return copy.containsKey(key);
+        }
+        return key instanceof String && item.indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public AttributeValue get(Object key) {
+        if (copy != null) {
+            return copy.get(key);
+        }
+        int index = key instanceof String ? item.indexOf((String) key) : -1;
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public AttributeValue put(String key, AttributeValue value) {
+        if (copy == null) {
+            int index = item.indexOf(key);
+            if (index >= 0) {
+                return replaceAt(index, value);
+            }
+        }
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public AttributeValue remove(Object key) {
+        if (copy == null && !containsKey(key)) {
+            return null;
+        }
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, AttributeValue>> entrySet() {
+        return copy != null ? copy.entrySet() : new EntrySet();
+    }
+
+    private AttributeValue valueAt(int index) {
+        touched = true;
+        AttributeValue value = values.get(index);
+        if (value == null) {
+            value = item.toAttributeValue(index);
+            if (!values.compareAndSet(index, null, value)) {
+                value = values.get(index);
+            }
+        }
+        return value;
+    }
+
+    private AttributeValue replaceAt(int index, AttributeValue value) {
+        AttributeValue previous = valueAt(index);
+        values.set(index, value);
+        return previous;
+    }
+
+    private Map<String, AttributeValue> materialize() {
+        if (copy == null) {
+            Map<String, AttributeValue> map = new LinkedHashMap<String, AttributeValue>(
+                    Math.max((int) (item.size() / .75f) + 1, 16));
+            for (int i = 0; i < item.size(); i++) {
+                map.put(item.getName(i), valueAt(i));
+            }
+            copy = map;
+        }
+        return copy;
+    }
+
+    /** Serializes the view as a plain map. */
+    private Object writeReplace() {
+        return new LinkedHashMap<String, AttributeValue>(this);
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, AttributeValue>> {
+
+        @Override
+        public int size() {
+            return CompactItemMap.this.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, AttributeValue>> iterator() {
+            if (copy != null) {
+                return copy.entrySet().iterator();
+            }
+            return new Iterator<Map.Entry<String, AttributeValue>>() {
+                private int next;
+                private int last = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < item.size();
+                }
+
+                @Override
+                public Map.Entry<String, AttributeValue> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next++;
+                    return new Entry(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0) {
+                        throw new IllegalStateException();
+                    }
+                    CompactItemMap.this.remove(item.getName(last));
+                    last = -1;
+                }
+            };
+        }
+    }
+
+    /** An entry that reads and writes through to the view. */
+    private final class Entry implements Map.Entry<String, AttributeValue> {
+        private final int index;
+
+        Entry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return item.getName(index);
+        }
+
+        @Override
+        public AttributeValue getValue() {
+            return copy != null ? copy.get(getKey()) : valueAt(index);
+        }
+
+        @Override
+        public AttributeValue setValue(AttributeValue value) {
+            return copy != null ? copy.put(getKey(), value) : replaceAt(index, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            AttributeValue value = getValue();
+            return getKey().equals(e.getKey())
+                    && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            AttributeValue value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
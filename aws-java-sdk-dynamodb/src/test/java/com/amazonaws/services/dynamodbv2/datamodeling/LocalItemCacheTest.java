@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ByteThroughputProvider;
+import com.amazonaws.metrics.MetricCollector;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.metrics.ServiceMetricCollector;
+import com.amazonaws.metrics.ServiceMetricType;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
+import com.amazonaws.services.dynamodbv2.metrics.DynamoDBServiceMetric;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+public class LocalItemCacheTest {
+
+    private static final String TABLE_NAME = "tableName";
+    private static final String HASH_ATTR = "hash";
+
+    private long now;
+    private LocalItemCache cache;
+
+    @Before
+    public void setup() {
+        now = 0;
+        cache = new LocalItemCache(2, 10, TimeUnit.NANOSECONDS) {
+            @Override
+            long currentTimeNanos() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testGetReturnsCachedItem() {
+        put(cache, "foo");
+
+        Assert.assertEquals(item("foo"), cache.get(TABLE_NAME, key("foo")));
+        Assert.assertNull(cache.get("otherTable", key("foo")));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEntryExpiresAfterTimeToLive() {
+        put(cache, "foo");
+
+        now = 9;
+        Assert.assertNotNull(cache.get(TABLE_NAME, key("foo")));
+        now = 10;
+        Assert.assertNull(cache.get(TABLE_NAME, key("foo")));
+        Assert.assertEquals(1, cache.getExpirationCount());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        put(cache, "a");
+        put(cache, "b");
+        cache.get(TABLE_NAME, key("a"));
+        put(cache, "c");
+
+        Assert.assertNotNull(cache.get(TABLE_NAME, key("a")));
+        Assert.assertNull(cache.get(TABLE_NAME, key("b")));
+        Assert.assertNotNull(cache.get(TABLE_NAME, key("c")));
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testZeroTableTimeToLiveDisablesCaching() {
+        cache.withTableTimeToLive(TABLE_NAME, 0, TimeUnit.SECONDS);
+        put(cache, "foo");
+
+        Assert.assertNull(cache.get(TABLE_NAME, key("foo")));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMapperLoadIsServedFromCacheUntilDelete() {
+        AmazonDynamoDB ddbMock = createMock(AmazonDynamoDB.class);
+        DynamoDBMapper mapper = new DynamoDBMapper(ddbMock,
+                new DynamoDBMapperConfig.Builder()
+                        .withItemCache(new LocalItemCache())
+                        .build());
+
+        // GetItem is expected once before and once after the delete
+        expect(ddbMock.getItem(isA(GetItemRequest.class)))
+                .andReturn(new GetItemResult().withItem(item("foo")))
+                .times(2);
+        expect(ddbMock.deleteItem(isA(DeleteItemRequest.class)))
+                .andReturn(new DeleteItemResult());
+        replay(ddbMock);
+
+        Assert.assertEquals("foo", mapper.load(Item.class, "foo").getHash());
+        Assert.assertEquals("foo", mapper.load(Item.class, "foo").getHash());
+        mapper.delete(new Item("foo"));
+        Assert.assertEquals("foo", mapper.load(Item.class, "foo").getHash());
+
+        verify(ddbMock);
+    }
+
+    @Test
+    public void testSegmentedCacheHoldsAtMostMaxItems() {
+        LocalItemCache large = new LocalItemCache(1000, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 5000; i++) {
+            put(large, "k" + i);
+        }
+
+        Assert.assertTrue(large.size() <= 1000);
+        Assert.assertEquals(5000 - large.size(), large.getEvictionCount());
+        Assert.assertEquals(item("k4999"), large.get(TABLE_NAME, key("k4999")));
+    }
+
+    @Test
+    public void testSaveInvalidatesItemCachedDuringTheWrite() {
+        final LocalItemCache itemCache = new LocalItemCache();
+        AmazonDynamoDB ddb = new AbstractAmazonDynamoDB() {
+            @Override
+            public PutItemResult putItem(PutItemRequest request) {
+                // A load racing with the write caches the old image
+                put(itemCache, "foo");
+                return new PutItemResult();
+            }
+
+            @Override
+            public UpdateItemResult updateItem(UpdateItemRequest request) {
+                put(itemCache, "foo");
+                return new UpdateItemResult().withAttributes(item("foo"));
+            }
+        };
+        DynamoDBMapper mapper = new DynamoDBMapper(ddb,
+                new DynamoDBMapperConfig.Builder()
+                        .withItemCache(itemCache)
+                        .build());
+
+        mapper.save(new Item("foo"), new DynamoDBMapperConfig(SaveBehavior.CLOBBER));
+        Assert.assertNull(itemCache.get(TABLE_NAME, key("foo")));
+
+        mapper.save(new Item("foo"));
+        Assert.assertNull(itemCache.get(TABLE_NAME, key("foo")));
+    }
+
+    @Test
+    public void testLoadOverlappingAWriteDoesNotCacheTheOldImage() {
+        final LocalItemCache itemCache = new LocalItemCache();
+        final AtomicInteger getItemCalls = new AtomicInteger();
+        final AtomicReference<DynamoDBMapper> mapper = new AtomicReference<DynamoDBMapper>();
+        AmazonDynamoDB ddb = new AbstractAmazonDynamoDB() {
+            @Override
+            public GetItemResult getItem(GetItemRequest request) {
+                if (getItemCalls.incrementAndGet() == 1) {
+                    // The old image has been read when a save completes
+                    mapper.get().save(new Item("foo"),
+                            new DynamoDBMapperConfig(SaveBehavior.CLOBBER));
+                }
+                return new GetItemResult().withItem(item("foo"));
+            }
+
+            @Override
+            public PutItemResult putItem(PutItemRequest request) {
+                return new PutItemResult();
+            }
+        };
+        mapper.set(new DynamoDBMapper(ddb,
+                new DynamoDBMapperConfig.Builder()
+                        .withItemCache(itemCache)
+                        .build()));
+
+        mapper.get().load(Item.class, "foo");
+        Assert.assertNull(itemCache.get(TABLE_NAME, key("foo")));
+
+        mapper.get().load(Item.class, "foo");
+        mapper.get().load(Item.class, "foo");
+        Assert.assertEquals(2, getItemCalls.get());
+    }
+
+    @Test
+    public void testInvalidationOnlyBlocksItsOwnKey() {
+        long token = cache.beginLoad(TABLE_NAME, key("foo"));
+        cache.invalidate(TABLE_NAME, key("bar"));
+        cache.put(TABLE_NAME, key("foo"), item("foo"), token);
+        Assert.assertNotNull(cache.get(TABLE_NAME, key("foo")));
+
+        token = cache.beginLoad(TABLE_NAME, key("foo"));
+        cache.invalidate(TABLE_NAME, key("foo"));
+        cache.put(TABLE_NAME, key("foo"), item("foo"), token);
+        Assert.assertNull(cache.get(TABLE_NAME, key("foo")));
+    }
+
+    @Test
+    public void testLoadSpanningForgottenInvalidationsIsNotCached() {
+        long token = cache.beginLoad(TABLE_NAME, key("foo"));
+        for (int i = 0; i < 100; i++) {
+            cache.invalidate(TABLE_NAME, key("k" + i));
+        }
+        cache.put(TABLE_NAME, key("foo"), item("foo"), token);
+        Assert.assertNull(cache.get(TABLE_NAME, key("foo")));
+
+        put(cache, "foo");
+        Assert.assertNotNull(cache.get(TABLE_NAME, key("foo")));
+    }
+
+    @Test
+    public void testCachedItemsShareNoAttributeValues() {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(item("foo"));
+        item.put("b", new AttributeValue().withB(ByteBuffer.wrap(new byte[] {1, 2})));
+        cache.put(TABLE_NAME, key("foo"), item, cache.beginLoad(TABLE_NAME, key("foo")));
+
+        item.get(HASH_ATTR).setS("changed");
+        Map<String, AttributeValue> cached = cache.get(TABLE_NAME, key("foo"));
+        Assert.assertEquals("foo", cached.get(HASH_ATTR).getS());
+
+        cached.get(HASH_ATTR).setS("changed");
+        cached.get("b").getB().get();
+        cached.remove("b");
+        cached = cache.get(TABLE_NAME, key("foo"));
+        Assert.assertEquals("foo", cached.get(HASH_ATTR).getS());
+        Assert.assertEquals(2, cached.get("b").getB().remaining());
+    }
+
+    @Test
+    public void testEvictionsAndHitRatioAreReported() {
+        final List<ServiceMetricType> types = new ArrayList<ServiceMetricType>();
+        final List<Long> counts = new ArrayList<Long>();
+        final ServiceMetricCollector collector = new ServiceMetricCollector() {
+            @Override
+            public void collectByteThroughput(ByteThroughputProvider provider) {
+            }
+
+            @Override
+            public void collectLatency(ServiceLatencyProvider provider) {
+            }
+
+            @Override
+            public void collectCount(ServiceMetricType type, long count) {
+                types.add(type);
+                counts.add(count);
+            }
+        };
+        AmazonDynamoDB ddb = new AbstractAmazonDynamoDB() {
+            @Override
+            public GetItemResult getItem(GetItemRequest request) {
+                return new GetItemResult().withItem(request.getKey());
+            }
+        };
+        DynamoDBMapper mapper = new DynamoDBMapper(ddb,
+                new DynamoDBMapperConfig.Builder()
+                        .withItemCache(cache)
+                        .build());
+
+        AwsSdkMetrics.setMetricCollector(new MetricCollector() {
+            @Override public boolean start() { return true; }
+            @Override public boolean stop() { return true; }
+            @Override public boolean isEnabled() { return true; }
+            @Override public RequestMetricCollector getRequestMetricCollector() {
+                return RequestMetricCollector.NONE;
+            }
+            @Override public ServiceMetricCollector getServiceMetricCollector() {
+                return collector;
+            }
+        });
+        try {
+            mapper.load(Item.class, "a");
+            mapper.load(Item.class, "a");
+            mapper.load(Item.class, "b");
+            mapper.load(Item.class, "c");
+        } finally {
+            AwsSdkMetrics.setMetricCollector(null);
+        }
+
+        Assert.assertEquals(Arrays.<ServiceMetricType>asList(
+                DynamoDBServiceMetric.DynamoDBMapperItemCacheHitRatio,
+                DynamoDBServiceMetric.DynamoDBMapperItemCacheHitRatio,
+                DynamoDBServiceMetric.DynamoDBMapperItemCacheHitRatio,
+                DynamoDBServiceMetric.DynamoDBMapperItemCacheHitRatio,
+                DynamoDBServiceMetric.DynamoDBMapperItemCacheEvictions), types);
+        Assert.assertEquals(Arrays.asList(0L, 1L, 0L, 0L, 1L), counts);
+    }
+
+    private static void put(LocalItemCache cache, String hash) {
+        cache.put(TABLE_NAME, key(hash), item(hash), cache.beginLoad(TABLE_NAME, key(hash)));
+    }
+
+    private static Map<String, AttributeValue> key(String hash) {
+        return Collections.singletonMap(HASH_ATTR, new AttributeValue(hash));
+    }
+
+    private static Map<String, AttributeValue> item(String hash) {
+        return key(hash);
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        public Item() {
+        }
+
+        public Item(String hash) {
+            this.hash = hash;
+        }
+
+        @DynamoDBHashKey(attributeName = HASH_ATTR)
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
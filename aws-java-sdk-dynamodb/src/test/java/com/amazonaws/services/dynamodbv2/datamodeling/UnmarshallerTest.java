@@ -456,6 +456,37 @@ public class UnmarshallerTest {
         assertEquals(Region.US_Standard, link.getS3Region());
     }
 
+    @Test
+    public void testObjectUnconvertedRepeatedly() {
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, AttributeValue> item =
+                    new HashMap<String, AttributeValue>();
+            item.put("name", new AttributeValue("name" + i));
+            item.put("value", new AttributeValue().withN(String.valueOf(i)));
+
+            SubClass result = CONVERTER.unconvert(SubClass.class, item);
+            assertEquals("name" + i, result.getName());
+            assertEquals(Integer.valueOf(i), result.getValue());
+        }
+    }
+
+    @Test
+    public void testUnconvertibleAttributeOnlyFailsItemsContainingIt() {
+        UnannotatedSubClass result = CONVERTER.unconvert(
+                UnannotatedSubClass.class,
+                Collections.singletonMap("other", new AttributeValue("x")));
+        Assert.assertNotNull(result);
+
+        try {
+            CONVERTER.unconvert(UnannotatedSubClass.class,
+                    Collections.singletonMap("child",
+                            new AttributeValue().withM(
+                                    Collections.<String, AttributeValue>emptyMap())));
+            Assert.fail("Expected DynamoDBMappingException");
+        } catch (DynamoDBMappingException e) {
+        }
+    }
+
     public Object unconvert(String getter, String setter, AttributeValue value) {
         try {
 
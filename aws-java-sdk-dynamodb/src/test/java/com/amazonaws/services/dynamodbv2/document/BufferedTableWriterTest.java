@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class BufferedTableWriterTest {
+
+    private static final String TABLE_NAME = "table";
+
+    private final FakeDynamoDB client = new FakeDynamoDB();
+    private BufferedTableWriter writer;
+
+    @After
+    public void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void testWritesAreCoalesced() throws Exception {
+        writer = newWriter(25);
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(writer.putItem(TABLE_NAME, item(i)));
+        }
+        futures.add(writer.deleteItem(TABLE_NAME, new PrimaryKey("id", 100)));
+        writer.flush();
+
+        for (Future<Void> future : futures) {
+            Assert.assertTrue(future.isDone());
+            future.get();
+        }
+        // Batches are sent concurrently and may complete in any order
+        List<Integer> sizes = new ArrayList<Integer>(client.batchSizes);
+        Collections.sort(sizes);
+        Assert.assertEquals(Arrays.asList(6, 25), sizes);
+    }
+
+    @Test
+    public void testWritesToSameItemGoToSeparateBatches() throws Exception {
+        writer = newWriter(25);
+
+        writer.putItem(TABLE_NAME, item(1));
+        writer.putItem(TABLE_NAME, item(1));
+        writer.flush();
+
+        Assert.assertEquals(2, client.batchSizes.size());
+    }
+
+    @Test
+    public void testUnprocessedItemsAreRetried() throws Exception {
+        writer = newWriter(25);
+        client.unprocessedOnce = true;
+
+        Future<Void> first = writer.putItem(TABLE_NAME, item(1));
+        Future<Void> second = writer.putItem(TABLE_NAME, item(2));
+        writer.flush();
+
+        first.get();
+        second.get();
+        Assert.assertEquals(2, client.batchSizes.size());
+        Assert.assertEquals(Integer.valueOf(1), client.batchSizes.get(1));
+    }
+
+    @Test
+    public void testRejectedBatchFailsOnlyInvalidWrites() throws Exception {
+        writer = newWriter(25);
+        client.rejectBatches = true;
+
+        Future<Void> valid = writer.putItem(TABLE_NAME, item(1));
+        Future<Void> invalid = writer.putItem(TABLE_NAME, item(-1));
+        writer.flush();
+
+        valid.get();
+        try {
+            invalid.get();
+            Assert.fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonServiceException);
+        }
+    }
+
+    @Test
+    public void testKeySchemaIsNotLookedUpOnTheCallerThread() throws Exception {
+        writer = newWriter(25);
+
+        writer.putItem(TABLE_NAME, item(1)).get(10, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(client.describeThread);
+        Assert.assertNotSame(Thread.currentThread(), client.describeThread);
+    }
+
+    @Test
+    public void testWritesBlockWhileBatchesAreWaiting() throws Exception {
+        writer = new BufferedTableWriter(client, new BufferedTableWriterConfig()
+                .withMaxBatchSize(1)
+                .withMaxInflightBatches(1));
+        client.batchGate = new CountDownLatch(1);
+
+        // The first batch is in flight, the second one waits for its turn
+        Future<Void> first = writer.putItem(TABLE_NAME, item(1));
+        Future<Void> second = writer.putItem(TABLE_NAME, item(2));
+
+        final CountDownLatch queued = new CountDownLatch(1);
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writer.putItem(TABLE_NAME, item(3));
+                queued.countDown();
+            }
+        });
+        writerThread.start();
+        boolean blocked = !queued.await(200, TimeUnit.MILLISECONDS);
+        client.batchGate.countDown();
+
+        Assert.assertTrue("the third write did not wait", blocked);
+        Assert.assertTrue(queued.await(10, TimeUnit.SECONDS));
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        writer.flush();
+        Assert.assertEquals(3, client.batchSizes.size());
+    }
+
+    private BufferedTableWriter newWriter(int maxBatchSize) {
+        return new BufferedTableWriter(client, new BufferedTableWriterConfig()
+                .withMaxBatchSize(maxBatchSize)
+                .withMaxBatchOpenMs(10));
+    }
+
+    private static Item item(int id) {
+        return new Item().withPrimaryKey("id", id).withString("value", "v" + id);
+    }
+
+    private static AmazonServiceException validationException() {
+        AmazonServiceException e = new AmazonServiceException("invalid");
+        e.setErrorCode("ValidationException");
+        e.setErrorType(ErrorType.Client);
+        e.setStatusCode(400);
+        return e;
+    }
+
+    private static boolean isInvalid(Map<String, AttributeValue> item) {
+        return item.get("id").getN().startsWith("-");
+    }
+
+    private static class FakeDynamoDB extends AbstractAmazonDynamoDB {
+
+        final List<Integer> batchSizes =
+                Collections.synchronizedList(new ArrayList<Integer>());
+        volatile boolean unprocessedOnce;
+        volatile boolean rejectBatches;
+        volatile Thread describeThread;
+
+        /** If set, BatchWriteItem calls wait for it to be counted down. */
+        volatile CountDownLatch batchGate;
+
+        @Override
+        public DescribeTableResult describeTable(String tableName) {
+            describeThread = Thread.currentThread();
+            return new DescribeTableResult().withTable(new TableDescription()
+                    .withTableName(tableName)
+                    .withKeySchema(new KeySchemaElement("id", KeyType.HASH)));
+        }
+
+        @Override
+        public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+            List<WriteRequest> requests = request.getRequestItems().get(TABLE_NAME);
+            batchSizes.add(requests.size());
+            if (batchGate != null) {
+                try {
+                    batchGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (rejectBatches) {
+                for (WriteRequest write : requests) {
+                    if (write.getPutRequest() != null
+                            && isInvalid(write.getPutRequest().getItem())) {
+                        throw validationException();
+                    }
+                }
+            }
+
+            BatchWriteItemResult result = new BatchWriteItemResult();
+            if (unprocessedOnce) {
+                unprocessedOnce = false;
+                result.addUnprocessedItemsEntry(TABLE_NAME,
+                        Collections.singletonList(requests.get(0)));
+            }
+            return result;
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            if (isInvalid(request.getItem())) {
+                throw validationException();
+            }
+            return new PutItemResult();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+
+public class StreamShardReaderTest {
+
+    private static final String STREAM_ARN = "arn:stream";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChildIsReadAfterParent() throws Exception {
+        FakeStreams streams = new FakeStreams();
+        streams.addShard("parent", null, "1", "2");
+        streams.addShard("child", "parent", "3");
+
+        RecordingProcessor processor = new RecordingProcessor(2);
+        File file = folder.newFile("checkpoints");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        StreamShardReader reader = newReader(streams, processor, store);
+
+        reader.start();
+        Assert.assertTrue(processor.ended.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+        Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+        store.close();
+
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), processor.sequenceNumbers);
+
+        FileCheckpointStore reloaded = new FileCheckpointStore(file);
+        Assert.assertEquals(CheckpointStore.SHARD_END,
+                reloaded.getCheckpoint(STREAM_ARN, "parent"));
+        Assert.assertEquals(CheckpointStore.SHARD_END,
+                reloaded.getCheckpoint(STREAM_ARN, "child"));
+    }
+
+    @Test
+    public void testReadResumesAfterCheckpoint() throws Exception {
+        FakeStreams streams = new FakeStreams();
+        streams.addShard("shard", null, "1", "2", "3");
+
+        FileCheckpointStore store =
+                new FileCheckpointStore(folder.newFile("checkpoints"));
+        store.setCheckpoint(STREAM_ARN, "shard", "2");
+
+        RecordingProcessor processor = new RecordingProcessor(1);
+        StreamShardReader reader = newReader(streams, processor, store);
+
+        reader.start();
+        Assert.assertTrue(processor.ended.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+
+        Assert.assertEquals(Arrays.asList("3"), processor.sequenceNumbers);
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        FakeStreams streams = new FakeStreams();
+        streams.addShard("shard", null, "1");
+
+        RecordingProcessor processor = new RecordingProcessor(1);
+        processor.failuresLeft = 1;
+        StreamShardReader reader = newReader(streams, processor,
+                new FileCheckpointStore(folder.newFile("checkpoints")));
+
+        reader.start();
+        Assert.assertTrue(processor.ended.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+
+        Assert.assertEquals(Arrays.asList("1"), processor.sequenceNumbers);
+    }
+
+    @Test
+    public void testDescribeStreamDoesNotHoldTheReaderLock() throws Exception {
+        FakeStreams streams = new FakeStreams();
+        streams.addShard("shard", null, "1");
+        streams.describeGate = new CountDownLatch(1);
+
+        RecordingProcessor processor = new RecordingProcessor(1);
+        final StreamShardReader reader = newReader(streams, processor,
+                new FileCheckpointStore(folder.newFile("checkpoints")));
+
+        reader.start();
+        Assert.assertTrue(streams.describing.await(10, TimeUnit.SECONDS));
+
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reader.shutdown();
+            }
+        });
+        stopper.start();
+        stopper.join(10 * 1000);
+        boolean stopped = !stopper.isAlive();
+        streams.describeGate.countDown();
+
+        Assert.assertTrue("shutdown waited for DescribeStream", stopped);
+        Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(reader.getActiveShardIds().isEmpty());
+    }
+
+    private static StreamShardReader newReader(
+            FakeStreams streams,
+            RecordingProcessor processor,
+            CheckpointStore store) {
+
+        return new StreamShardReader(streams, STREAM_ARN, processor, store,
+                new StreamShardReaderConfig()
+                        .withMinPollIntervalMs(1)
+                        .withMaxPollIntervalMs(10)
+                        .withMaxRecordsPerCall(1));
+    }
+
+    /**
+     * A stream whose shards are all closed. Shard iterators are of the form
+     * "shardId/index", where index is the position of the next record.
+     */
+    private static class FakeStreams extends AbstractAmazonDynamoDBStreams {
+
+        private final Map<String, Shard> shards =
+                new LinkedHashMap<String, Shard>();
+        private final Map<String, List<String>> records =
+                new LinkedHashMap<String, List<String>>();
+
+        /** If set, describeStream waits for it to be counted down. */
+        volatile CountDownLatch describeGate;
+        final CountDownLatch describing = new CountDownLatch(1);
+
+        void addShard(String shardId, String parentId, String... sequenceNumbers) {
+            shards.put(shardId, new Shard()
+                    .withShardId(shardId)
+                    .withParentShardId(parentId));
+            records.put(shardId, Arrays.asList(sequenceNumbers));
+        }
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            describing.countDown();
+            if (describeGate != null) {
+                try {
+                    describeGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new DescribeStreamResult().withStreamDescription(
+                    new StreamDescription()
+                            .withStreamArn(request.getStreamArn())
+                            .withShards(shards.values()));
+        }
+
+        @Override
+        public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            List<String> shardRecords = records.get(request.getShardId());
+            int index = 0;
+            if (ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString()
+                    .equals(request.getShardIteratorType())) {
+                index = shardRecords.indexOf(request.getSequenceNumber()) + 1;
+            } else if (ShardIteratorType.LATEST.toString()
+                    .equals(request.getShardIteratorType())) {
+                index = shardRecords.size();
+            }
+            return new GetShardIteratorResult()
+                    .withShardIterator(request.getShardId() + "/" + index);
+        }
+
+        @Override
+        public GetRecordsResult getRecords(GetRecordsRequest request) {
+            String[] parts = request.getShardIterator().split("/");
+            List<String> shardRecords = records.get(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            int end = Math.min(shardRecords.size(), index + request.getLimit());
+
+            List<Record> result = new ArrayList<Record>();
+            for (String sequenceNumber : shardRecords.subList(index, end)) {
+                result.add(new Record().withDynamodb(
+                        new StreamRecord().withSequenceNumber(sequenceNumber)));
+            }
+            return new GetRecordsResult()
+                    .withRecords(result)
+                    .withNextShardIterator(end < shardRecords.size()
+                            ? parts[0] + "/" + end
+                            : null);
+        }
+    }
+
+    private static class RecordingProcessor implements ShardRecordProcessor {
+
+        final List<String> sequenceNumbers =
+                Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch ended;
+        volatile int failuresLeft;
+
+        RecordingProcessor(int shards) {
+            this.ended = new CountDownLatch(shards);
+        }
+
+        @Override
+        public void processRecords(String shardId, List<Record> records) {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new RuntimeException("failed");
+            }
+            for (Record record : records) {
+                sequenceNumbers.add(record.getDynamodb().getSequenceNumber());
+            }
+        }
+
+        @Override
+        public void shardEnded(String shardId) {
+            ended.countDown();
+        }
+    }
+}
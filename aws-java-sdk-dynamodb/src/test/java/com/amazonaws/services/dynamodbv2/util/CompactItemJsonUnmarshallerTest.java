@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.internal.InternalUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.transform.AttributeValueJsonUnmarshaller;
+import com.amazonaws.services.dynamodbv2.model.transform.GetItemResultJsonUnmarshaller;
+import com.amazonaws.services.dynamodbv2.model.transform.QueryResultJsonUnmarshaller;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.transform.JsonUnmarshallerContextImpl;
+import com.amazonaws.transform.ListUnmarshaller;
+import com.amazonaws.transform.MapUnmarshaller;
+import com.amazonaws.transform.SimpleTypeJsonUnmarshallers.StringJsonUnmarshaller;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class CompactItemJsonUnmarshallerTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final String ITEM_JSON = "{"
+            + "\"s\":{\"S\":\"foo\"},"
+            + "\"n\":{\"N\":\"1.50\"},"
+            + "\"b\":{\"B\":\"AQI=\"},"
+            + "\"ss\":{\"SS\":[\"a\",\"b\"]},"
+            + "\"ns\":{\"NS\":[\"1\",\"2\"]},"
+            + "\"m\":{\"M\":{\"l\":{\"L\":[{\"N\":\"1\"},{\"NULL\":true},{\"BOOL\":false}]}}},"
+            + "\"bool\":{\"BOOL\":true}"
+            + "}";
+
+    @Test
+    public void testMatchesAttributeValueUnmarshalling() throws Exception {
+        String json = "{\"Item\":" + ITEM_JSON + "}";
+
+        JsonUnmarshallerContext context = contextOf(json);
+        context.nextToken();
+        context.nextToken();
+        Assert.assertEquals(JsonToken.START_OBJECT, context.nextToken());
+        CompactItem item = CompactItemJsonUnmarshaller.getInstance().unmarshall(context);
+
+        Assert.assertEquals(attributeValueMapOf(ITEM_JSON), item.toAttributeValueMap());
+        Assert.assertEquals(JsonToken.END_OBJECT, context.getCurrentToken());
+        Assert.assertEquals("Item", context.getLastParsedParentElement());
+    }
+
+    @Test
+    public void testGetItemResultHoldsCompactView() throws Exception {
+        GetItemResult result = GetItemResultJsonUnmarshaller.getInstance().unmarshall(
+                contextOf("{\"Item\":" + ITEM_JSON
+                        + ",\"ConsumedCapacity\":{\"TableName\":\"t\"}}"));
+
+        Assert.assertNotNull(CompactItem.fromUntouchedView(result.getItem()));
+        Assert.assertEquals("t", result.getConsumedCapacity().getTableName());
+        Assert.assertEquals(attributeValueMapOf(ITEM_JSON), result.getItem());
+        Assert.assertNull(CompactItem.fromUntouchedView(result.getItem()));
+    }
+
+    @Test
+    public void testQueryResultHoldsCompactViews() throws Exception {
+        QueryResult result = QueryResultJsonUnmarshaller.getInstance().unmarshall(
+                contextOf("{\"Items\":[" + ITEM_JSON + ",{\"s\":{\"S\":\"bar\"}}],"
+                        + "\"Count\":2,"
+                        + "\"LastEvaluatedKey\":{\"s\":{\"S\":\"bar\"}}}"));
+
+        Assert.assertEquals(2, result.getItems().size());
+        Assert.assertEquals(Integer.valueOf(2), result.getCount());
+        Assert.assertEquals("bar", result.getLastEvaluatedKey().get("s").getS());
+        Assert.assertEquals(attributeValueMapOf(ITEM_JSON), result.getItems().get(0));
+        Assert.assertEquals("bar", result.getItems().get(1).get("s").getS());
+    }
+
+    @Test
+    public void testDocumentConversionMatchesAttributeValuePath() throws Exception {
+        Map<String, AttributeValue> view = GetItemResultJsonUnmarshaller.getInstance()
+                .unmarshall(contextOf("{\"Item\":" + ITEM_JSON + "}")).getItem();
+        Assert.assertNotNull(CompactItem.fromUntouchedView(view));
+
+        Map<String, Object> expected =
+                InternalUtils.toSimpleMapValue(attributeValueMapOf(ITEM_JSON));
+        Map<String, Object> actual = InternalUtils.toSimpleMapValue(view);
+
+        // byte[] values compare by identity, so compare them separately
+        Assert.assertArrayEquals((byte[]) expected.remove("b"), (byte[]) actual.remove("b"));
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testTypedAccessors() throws Exception {
+        JsonUnmarshallerContext context = contextOf(ITEM_JSON);
+        CompactItem item = CompactItemJsonUnmarshaller.getInstance().unmarshall(context);
+
+        Assert.assertEquals(7, item.size());
+        Assert.assertEquals("foo", item.getString("s"));
+        Assert.assertEquals("1.50", item.getNumberText("n"));
+        Assert.assertEquals(new BigDecimal("1.50"), item.getNumber("n"));
+        Assert.assertSame(item.getNumber("n"), item.getNumber("n"));
+        Assert.assertEquals(2, item.getBinary("b").remaining());
+        Assert.assertEquals(Arrays.asList("a", "b"), item.getStringSet("ss"));
+        Assert.assertEquals(Boolean.TRUE, item.getBoolean("bool"));
+        Assert.assertNull(item.getString("missing"));
+
+        CompactItem list = item.getMap("m").getList("l");
+        Assert.assertTrue(list.isList());
+        Assert.assertEquals(CompactItem.Type.NULL, list.getType(1));
+        Assert.assertEquals(Arrays.<Object>asList(BigDecimal.ONE, null, false),
+                list.toSimpleList());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTypeMismatch() throws Exception {
+        CompactItemJsonUnmarshaller.getInstance()
+                .unmarshall(contextOf(ITEM_JSON))
+                .getString("n");
+    }
+
+    @Test
+    public void testListOfItems() throws Exception {
+        JsonUnmarshallerContext context = contextOf(
+                "[" + ITEM_JSON + ",{\"s\":{\"S\":\"bar\"}}]");
+        context.nextToken();
+
+        List<CompactItem> items = new ListUnmarshaller<CompactItem>(
+                CompactItemJsonUnmarshaller.getInstance()).unmarshall(context);
+
+        Assert.assertEquals(2, items.size());
+        Assert.assertEquals("bar", items.get(1).getString("s"));
+    }
+
+    private static Map<String, AttributeValue> attributeValueMapOf(String json)
+            throws Exception {
+        JsonUnmarshallerContext context = contextOf(json);
+        context.nextToken();
+        return new MapUnmarshaller<String, AttributeValue>(
+                StringJsonUnmarshaller.getInstance(),
+                AttributeValueJsonUnmarshaller.getInstance()).unmarshall(context);
+    }
+
+    private static JsonUnmarshallerContext contextOf(String json) throws Exception {
+        return new JsonUnmarshallerContextImpl(jsonFactory.createParser(json));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+public class CompactItemMapTest {
+
+    @Test
+    public void testReadsReturnTheSameValue() {
+        Map<String, AttributeValue> expected = itemOf(3);
+        Map<String, AttributeValue> view = viewOf(expected);
+
+        Assert.assertEquals(3, view.size());
+        Assert.assertTrue(view.containsKey("a1"));
+        Assert.assertFalse(view.containsKey("missing"));
+        Assert.assertNull(view.get("missing"));
+        Assert.assertSame(view.get("a1"), view.get("a1"));
+        Assert.assertEquals(expected, view);
+        Assert.assertEquals(view, expected);
+        Assert.assertEquals(expected.hashCode(), view.hashCode());
+    }
+
+    @Test
+    public void testChangesToValuesStick() {
+        Map<String, AttributeValue> view = viewOf(itemOf(3));
+
+        view.get("a0").setS("changed");
+        Assert.assertEquals("changed", view.get("a0").getS());
+
+        AttributeValue replacement = new AttributeValue().withN("7");
+        Assert.assertEquals("v1", view.put("a1", replacement).getS());
+        Assert.assertSame(replacement, view.get("a1"));
+        Assert.assertEquals(3, view.size());
+
+        Map.Entry<String, AttributeValue> entry = view.entrySet().iterator().next();
+        entry.setValue(new AttributeValue("again"));
+        Assert.assertEquals("again", view.get("a0").getS());
+        Assert.assertNull(CompactItem.fromUntouchedView(view));
+    }
+
+    @Test
+    public void testStructuralChangesCopyTheView() {
+        Map<String, AttributeValue> view = viewOf(itemOf(3));
+        AttributeValue a0 = view.get("a0");
+
+        view.put("added", new AttributeValue("x"));
+        Assert.assertEquals(4, view.size());
+        Assert.assertSame(a0, view.get("a0"));
+        Assert.assertEquals("x", view.get("added").getS());
+
+        Assert.assertEquals("v1", view.remove("a1").getS());
+        Assert.assertNull(view.remove("a1"));
+        Assert.assertEquals(3, view.size());
+
+        view.clear();
+        Assert.assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        Map<String, AttributeValue> view = viewOf(itemOf(3));
+
+        Iterator<Map.Entry<String, AttributeValue>> it = view.entrySet().iterator();
+        Assert.assertEquals("a0", it.next().getKey());
+        it.remove();
+
+        Map<String, AttributeValue> expected = itemOf(3);
+        expected.remove("a0");
+        Assert.assertEquals(expected, view);
+    }
+
+    @Test
+    public void testLargeItemLookups() {
+        Map<String, AttributeValue> expected = itemOf(100);
+        Map<String, AttributeValue> view = viewOf(expected);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("v" + i, view.get("a" + i).getS());
+        }
+        Assert.assertNull(view.get("a100"));
+        Assert.assertEquals(expected, view);
+    }
+
+    @Test
+    public void testNestedMapsAreViews() {
+        Map<String, AttributeValue> nested = itemOf(2);
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put("m", new AttributeValue().withM(nested));
+
+        Map<String, AttributeValue> view = viewOf(item);
+        Map<String, AttributeValue> m = view.get("m").getM();
+
+        Assert.assertNotNull(CompactItem.fromUntouchedView(m));
+        Assert.assertEquals(nested, m);
+    }
+
+    @Test
+    public void testSerializesAsPlainMap() throws Exception {
+        Map<String, AttributeValue> expected = itemOf(3);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(viewOf(expected));
+        out.close();
+        Object copy = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        Assert.assertFalse(copy instanceof CompactItemMap);
+        Assert.assertEquals(expected, copy);
+    }
+
+    private static Map<String, AttributeValue> viewOf(Map<String, AttributeValue> item) {
+        return CompactItem.fromAttributeValueMap(item).asAttributeValueMap();
+    }
+
+    private static Map<String, AttributeValue> itemOf(int size) {
+        Map<String, AttributeValue> item = new LinkedHashMap<String, AttributeValue>();
+        for (int i = 0; i < size; i++) {
+            item.put("a" + i, new AttributeValue("v" + i));
+        }
+        return item;
+    }
+}
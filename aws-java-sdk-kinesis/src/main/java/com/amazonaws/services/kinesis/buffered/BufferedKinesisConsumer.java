@@ -0,0 +1,662 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+/**
+ * Reads all shards of a Kinesis stream in parallel and hands their records
+ * to a {@link KinesisRecordProcessor}.
+ * <p>
+ * The consumer discovers shards with DescribeStream, both when it starts and
+ * periodically afterwards. A shard is read only once its parents (two of
+ * them after a merge) have been read to their end, or are no longer part of
+ * the stream, so records with the same partition key are always processed
+ * in order across splits and merges. After every processed batch the
+ * sequence number of its last record is saved to a {@link CheckpointStore};
+ * a restarted consumer resumes each shard right after its checkpoint and
+ * skips shards checkpointed as complete.
+ * <p>
+ * Shards do not get a thread of their own. Each shard has a fetch task and a
+ * process task on a shared {@link ScheduledExecutorService}:
+ * <ul>
+ * <li>The fetch task calls GetRecords and queues the records it returns,
+ * until {@link BufferedKinesisConsumerConfig#getMaxPrefetchedRecords()} are
+ * waiting to be processed. It then pauses until the process task catches
+ * up, so the next batch is usually already there when the processor asks
+ * for it.</li>
+ * <li>Between two calls, the fetch task waits as little as the minimum poll
+ * interval allows while the shard is behind the tip of the stream by more
+ * than {@link BufferedKinesisConsumerConfig#getCaughtUpThresholdMs()}, as
+ * reported by MillisBehindLatest. Once caught up, the delay halves whenever a
+ * call returns records and doubles, up to the maximum, whenever it returns
+ * none, so idle shards cost neither a thread nor a steady stream of empty
+ * calls.</li>
+ * <li>The process task hands each queued batch to the processor, in order,
+ * and checkpoints it. A batch the processor fails is delivered again after
+ * a back off.</li>
+ * </ul>
+ * Records fetched but not processed when the consumer shuts down are not
+ * checkpointed, and are read again by the next consumer.
+ *
+ * @see BufferedKinesisConsumerConfig
+ */
+public class BufferedKinesisConsumer {
+
+    private static final Log log = LogFactory.getLog(BufferedKinesisConsumer.class);
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final KinesisRecordProcessor processor;
+    private final CheckpointStore checkpointStore;
+    private final BufferedKinesisConsumerConfig config;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /** Shards of the stream as of the last discovery, by id. */
+    private volatile Map<String, Shard> knownShards =
+            Collections.<String, Shard>emptyMap();
+
+    /** Shards currently being read, by id. */
+    private final ConcurrentMap<String, ShardConsumer> activeShards =
+            new ConcurrentHashMap<String, ShardConsumer>();
+
+    /** Shards that have been read to their end. */
+    private final Set<String> completedShards = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+
+    private volatile ScheduledFuture<?> discovery;
+    private volatile boolean started;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a consumer with the default configuration and its own thread
+     * pool.
+     */
+    public BufferedKinesisConsumer(
+            AmazonKinesis kinesis,
+            String streamName,
+            KinesisRecordProcessor processor,
+            CheckpointStore checkpointStore) {
+
+        this(kinesis, streamName, processor, checkpointStore,
+                new BufferedKinesisConsumerConfig());
+    }
+
+    /**
+     * Creates a consumer with the given configuration and its own thread pool
+     * of {@link BufferedKinesisConsumerConfig#getThreadPoolSize()} threads.
+     */
+    public BufferedKinesisConsumer(
+            AmazonKinesis kinesis,
+            String streamName,
+            KinesisRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            BufferedKinesisConsumerConfig config) {
+
+        this(kinesis, streamName, processor, checkpointStore, config,
+                createExecutor(config.getThreadPoolSize()), true);
+    }
+
+    /**
+     * Creates a consumer that runs on the given executor. The executor is not
+     * shut down by {@link #shutdown()}.
+     */
+    public BufferedKinesisConsumer(
+            AmazonKinesis kinesis,
+            String streamName,
+            KinesisRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            BufferedKinesisConsumerConfig config,
+            ScheduledExecutorService executor) {
+
+        this(kinesis, streamName, processor, checkpointStore, config,
+                executor, false);
+    }
+
+    private BufferedKinesisConsumer(
+            AmazonKinesis kinesis,
+            String streamName,
+            KinesisRecordProcessor processor,
+            CheckpointStore checkpointStore,
+            BufferedKinesisConsumerConfig config,
+            ScheduledExecutorService executor,
+            boolean ownsExecutor) {
+
+        if (kinesis == null) {
+            throw new IllegalArgumentException("kinesis must not be null");
+        }
+        if (streamName == null) {
+            throw new IllegalArgumentException("streamName must not be null");
+        }
+        if (processor == null) {
+            throw new IllegalArgumentException("processor must not be null");
+        }
+        if (checkpointStore == null) {
+            throw new IllegalArgumentException(
+                    "checkpointStore must not be null");
+        }
+
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.processor = processor;
+        this.checkpointStore = checkpointStore;
+        this.config = new BufferedKinesisConsumerConfig(config);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts discovering and reading shards. Returns immediately.
+     *
+     * @throws IllegalStateException if the consumer was already started
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Consumer already started");
+        }
+        started = true;
+
+        discovery = executor.scheduleWithFixedDelay(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            discoverShards();
+                        } catch (Exception e) {
+                            log.warn("Unable to discover shards of "
+                                    + streamName, e);
+                        }
+                    }
+                },
+                0,
+                config.getShardDiscoveryIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading. Batches being processed are allowed to finish; no
+     * further GetRecords calls are made and prefetched batches are dropped.
+     * Shuts down the consumer's thread pool if it created one.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (discovery != null) {
+            discovery.cancel(false);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the consumer's own thread pool to terminate after
+     * {@link #shutdown()}. Returns true immediately if the consumer runs on
+     * an executor it was given.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+
+        return !ownsExecutor || executor.awaitTermination(timeout, unit);
+    }
+
+    /** Returns the ids of the shards currently being read. */
+    public Set<String> getActiveShardIds() {
+        return Collections.unmodifiableSet(activeShards.keySet());
+    }
+
+    /**
+     * Returns the ids of the shards read to their end since the consumer was
+     * started, including those found checkpointed as complete.
+     */
+    public Set<String> getCompletedShardIds() {
+        return Collections.unmodifiableSet(completedShards);
+    }
+
+    /**
+     * Returns how far behind the tip of the stream each active shard was at
+     * its last GetRecords call, in milliseconds, by shard id. Shards that
+     * have not been read yet are left out.
+     */
+    public Map<String, Long> getMillisBehindLatest() {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (ShardConsumer shard : activeShards.values()) {
+            long millisBehindLatest = shard.millisBehindLatest;
+            if (millisBehindLatest >= 0) {
+                result.put(shard.shardId, millisBehindLatest);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Describes the stream and starts reading every shard that is ready. The
+     * DescribeStream calls are made without holding the consumer's lock, so
+     * that shards completing in the meantime aren't held up.
+     */
+    void discoverShards() {
+        if (shutdown) {
+            return;
+        }
+
+        Map<String, Shard> shards = new HashMap<String, Shard>();
+        String lastShardId = null;
+        while (true) {
+            StreamDescription description = kinesis.describeStream(
+                    new DescribeStreamRequest()
+                            .withStreamName(streamName)
+                            .withExclusiveStartShardId(lastShardId))
+                    .getStreamDescription();
+
+            List<Shard> page = description.getShards();
+            for (Shard shard : page) {
+                shards.put(shard.getShardId(), shard);
+            }
+            if (!Boolean.TRUE.equals(description.getHasMoreShards())
+                    || page.isEmpty()) {
+                break;
+            }
+            lastShardId = page.get(page.size() - 1).getShardId();
+        }
+
+        synchronized (this) {
+            knownShards = shards;
+            startReadyShards();
+        }
+    }
+
+    /**
+     * Starts reading every known shard that is neither active nor complete
+     * and whose parents have been read to their end.
+     */
+    private synchronized void startReadyShards() {
+        if (shutdown) {
+            return;
+        }
+
+        Map<String, Shard> shards = knownShards;
+
+        // Pick up shards completed by an earlier consumer first, so that
+        // their children can be started in the same pass.
+        for (String shardId : shards.keySet()) {
+            if (!completedShards.contains(shardId)
+                    && !activeShards.containsKey(shardId)
+                    && CheckpointStore.SHARD_END.equals(
+                            checkpointStore.getCheckpoint(streamName, shardId))) {
+                completedShards.add(shardId);
+            }
+        }
+
+        for (Shard shard : shards.values()) {
+            String shardId = shard.getShardId();
+            if (completedShards.contains(shardId)
+                    || activeShards.containsKey(shardId)) {
+                continue;
+            }
+
+            String parentId = shard.getParentShardId();
+            String adjacentParentId = shard.getAdjacentParentShardId();
+            if (!isParentDone(parentId, shards)
+                    || !isParentDone(adjacentParentId, shards)) {
+                continue;
+            }
+
+            // Reading a child from LATEST would skip the records written to
+            // it while its parents were being read.
+            boolean parentRead = isCompleted(parentId)
+                    || isCompleted(adjacentParentId);
+            ShardIteratorType initialPosition = parentRead
+                    ? ShardIteratorType.TRIM_HORIZON
+                    : config.getInitialPosition();
+
+            ShardConsumer consumer = new ShardConsumer(shardId, initialPosition,
+                    checkpointStore.getCheckpoint(streamName, shardId));
+            activeShards.put(shardId, consumer);
+            executor.execute(consumer.fetchTask);
+        }
+    }
+
+    private boolean isParentDone(String parentId, Map<String, Shard> shards) {
+        return parentId == null
+                || isCompleted(parentId)
+                || !shards.containsKey(parentId);
+    }
+
+    private boolean isCompleted(String shardId) {
+        return shardId != null && completedShards.contains(shardId);
+    }
+
+    private void shardCompleted(String shardId) {
+        activeShards.remove(shardId);
+        completedShards.add(shardId);
+        startReadyShards();
+    }
+
+    private static ScheduledExecutorService createExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "kinesis-buffered-consumer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Records of one GetRecords call, queued for processing.
+     */
+    private static final class Batch {
+
+        /** Marks the end of the shard in the queue. */
+        static final Batch SHARD_END = new Batch(
+                Collections.<Record>emptyList(), null, 0);
+
+        final List<Record> records;
+
+        /** Sequence number of the last Kinesis record of the batch. */
+        final String lastSequenceNumber;
+
+        /** Number of Kinesis records, before deaggregation. */
+        final int size;
+
+        Batch(List<Record> records, String lastSequenceNumber, int size) {
+            this.records = records;
+            this.lastSequenceNumber = lastSequenceNumber;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Reads and processes one shard. Both tasks run on the executor and
+     * reschedule themselves until the shard ends or the consumer shuts down.
+     */
+    private final class ShardConsumer {
+
+        private final String shardId;
+
+        private final Runnable fetchTask = new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        };
+
+        private final Runnable processTask = new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        };
+
+        // Fetch state, only used by the fetch task
+
+        private final ShardIteratorType initialPosition;
+
+        /** Sequence number of the last fetched record, or the checkpoint. */
+        private String fetchedSequenceNumber;
+
+        private String iterator;
+        private long fetchDelayMs;
+
+        /** As of the last GetRecords call, or -1. */
+        private volatile long millisBehindLatest = -1;
+
+        // Process state, only used by the process task
+
+        private long processDelayMs;
+
+        // Queue state, guarded by this
+
+        private final LinkedList<Batch> queue = new LinkedList<Batch>();
+        private int queuedRecords;
+        private boolean fetchPaused;
+        private boolean processing;
+
+        ShardConsumer(String shardId,
+                      ShardIteratorType initialPosition,
+                      String checkpoint) {
+
+            this.shardId = shardId;
+            this.initialPosition = initialPosition;
+            this.fetchedSequenceNumber = checkpoint;
+        }
+
+        private void fetch() {
+            if (shutdown) {
+                return;
+            }
+
+            try {
+                if (iterator == null) {
+                    iterator = getShardIterator();
+                }
+
+                GetRecordsResult result = kinesis.getRecords(
+                        new GetRecordsRequest()
+                                .withShardIterator(iterator)
+                                .withLimit(config.getMaxRecordsPerCall()));
+
+                List<Record> records = result.getRecords();
+                if (result.getMillisBehindLatest() != null) {
+                    millisBehindLatest = result.getMillisBehindLatest();
+                }
+                iterator = result.getNextShardIterator();
+                boolean shardEnded = iterator == null;
+
+                Batch batch = null;
+                if (!records.isEmpty()) {
+                    fetchedSequenceNumber = records.get(records.size() - 1)
+                            .getSequenceNumber();
+                    batch = new Batch(deaggregate(records),
+                            fetchedSequenceNumber, records.size());
+                }
+                boolean paused = false;
+                if (batch != null || shardEnded) {
+                    paused = enqueue(batch, shardEnded);
+                }
+                if (shardEnded || paused) {
+                    return;
+                }
+                adaptFetchDelay(records.size());
+
+            } catch (ExpiredIteratorException e) {
+                log.debug("Shard iterator of " + shardId + " expired", e);
+                iterator = null;
+                fetchDelayMs = 0;
+
+            } catch (Exception e) {
+                log.warn("Unable to read records of " + shardId, e);
+                fetchDelayMs = backOff(fetchDelayMs);
+            }
+
+            schedule(fetchTask, fetchDelayMs);
+        }
+
+        private String getShardIterator() {
+            GetShardIteratorRequest request = new GetShardIteratorRequest()
+                    .withStreamName(streamName)
+                    .withShardId(shardId);
+
+            if (fetchedSequenceNumber == null) {
+                request.setShardIteratorType(initialPosition);
+            } else {
+                request.setShardIteratorType(
+                        ShardIteratorType.AFTER_SEQUENCE_NUMBER);
+                request.setStartingSequenceNumber(fetchedSequenceNumber);
+            }
+
+            return kinesis.getShardIterator(request).getShardIterator();
+        }
+
+        private List<Record> deaggregate(List<Record> records) {
+            if (!config.isDeaggregate()) {
+                return records;
+            }
+            List<Record> userRecords = new ArrayList<Record>(records.size());
+            for (Record record : records) {
+                userRecords.addAll(RecordAggregator.deaggregate(record));
+            }
+            return userRecords;
+        }
+
+        private void adaptFetchDelay(int fetched) {
+            long minDelayMs = config.getMinPollIntervalMs();
+            if (millisBehindLatest > config.getCaughtUpThresholdMs()
+                    || fetched >= config.getMaxRecordsPerCall()) {
+                fetchDelayMs = minDelayMs;
+            } else if (fetched > 0) {
+                fetchDelayMs = Math.max(minDelayMs, fetchDelayMs / 2);
+            } else {
+                fetchDelayMs = backOff(fetchDelayMs);
+            }
+        }
+
+        /**
+         * Queues a batch and makes sure it will be processed. The end of the
+         * shard is queued along with its last batch, and never pauses
+         * fetching: the process task must not resume a fetch task that has
+         * already read the shard to its end.
+         *
+         * @param batch the batch, or null if the call returned no records
+         * @param shardEnded whether the call reached the end of the shard
+         * @return true if fetching is paused until the queue drains
+         */
+        private boolean enqueue(Batch batch, boolean shardEnded) {
+            boolean startProcessing;
+            boolean paused;
+            synchronized (this) {
+                if (batch != null) {
+                    queue.add(batch);
+                    queuedRecords += batch.size;
+                }
+                if (shardEnded) {
+                    queue.add(Batch.SHARD_END);
+                }
+                paused = fetchPaused = !shardEnded
+                        && queuedRecords >= config.getMaxPrefetchedRecords();
+                startProcessing = !processing;
+                processing = true;
+            }
+            if (startProcessing) {
+                schedule(processTask, 0);
+            }
+            return paused;
+        }
+
+        private void process() {
+            if (shutdown) {
+                return;
+            }
+
+            Batch batch;
+            synchronized (this) {
+                batch = queue.peek();
+            }
+
+            try {
+                if (batch == Batch.SHARD_END) {
+                    processor.shardEnded(shardId);
+                    checkpointStore.setCheckpoint(
+                            streamName, shardId, CheckpointStore.SHARD_END);
+                    shardCompleted(shardId);
+                    return;
+                }
+
+                // A failed batch stays at the head of the queue and is
+                // delivered again.
+                processor.processRecords(shardId, batch.records);
+                checkpointStore.setCheckpoint(
+                        streamName, shardId, batch.lastSequenceNumber);
+                processDelayMs = 0;
+
+            } catch (Exception e) {
+                log.warn("Unable to process records of " + shardId, e);
+                processDelayMs = backOff(processDelayMs);
+                schedule(processTask, processDelayMs);
+                return;
+            }
+
+            boolean resumeFetch = false;
+            boolean more;
+            synchronized (this) {
+                queue.poll();
+                queuedRecords -= batch.size;
+                if (fetchPaused
+                        && queuedRecords < config.getMaxPrefetchedRecords()) {
+                    fetchPaused = false;
+                    resumeFetch = true;
+                }
+                more = !queue.isEmpty();
+                processing = more;
+            }
+            if (resumeFetch) {
+                schedule(fetchTask, config.getMinPollIntervalMs());
+            }
+            if (more) {
+                schedule(processTask, 0);
+            }
+        }
+
+        private long backOff(long delayMs) {
+            long minDelayMs = Math.max(1, config.getMinPollIntervalMs());
+            return Math.min(
+                    config.getMaxPollIntervalMs(),
+                    Math.max(minDelayMs, delayMs * 2));
+        }
+
+        private void schedule(Runnable task, long delayMs) {
+            if (shutdown) {
+                return;
+            }
+            try {
+                executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // The executor was shut down from under us
+                log.debug("Unable to schedule task of " + shardId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Configuration of a {@link BufferedKinesisConsumer}.
+ */
+public class BufferedKinesisConsumerConfig {
+
+    /** The maximum number of records returned by a GetRecords call. */
+    public static final int SERVICE_MAX_RECORDS_PER_CALL = 10000;
+
+    /**
+     * Where to start reading a shard that has no checkpoint and whose parents
+     * were not processed by the consumer. Only TRIM_HORIZON and LATEST are
+     * meaningful here.
+     */
+    private ShardIteratorType initialPosition;
+
+    /** TRIM_HORIZON */
+    public static final ShardIteratorType INITIAL_POSITION_DEFAULT =
+            ShardIteratorType.TRIM_HORIZON;
+
+    /**
+     * The maximum number of records requested by each GetRecords call.
+     */
+    private int maxRecordsPerCall;
+
+    /** 10000 records, the service maximum */
+    public static final int MAX_RECORDS_PER_CALL_DEFAULT = SERVICE_MAX_RECORDS_PER_CALL;
+
+    /**
+     * The shortest delay between two GetRecords calls on a shard. A shard
+     * serves at most five GetRecords calls per second, shared by all its
+     * consumers.
+     */
+    private long minPollIntervalMs;
+
+    /** 200 milliseconds */
+    public static final long MIN_POLL_INTERVAL_MS_DEFAULT = 200;
+
+    /**
+     * The longest delay between two GetRecords calls on a shard. The delay
+     * doubles, up to this value, every time a caught-up shard returns no
+     * records or a call fails.
+     */
+    private long maxPollIntervalMs;
+
+    /** 5 seconds */
+    public static final long MAX_POLL_INTERVAL_MS_DEFAULT = 5000;
+
+    /**
+     * A shard whose MillisBehindLatest is above this value is read as fast
+     * as the minimum poll interval allows. Below it, the shard is caught up,
+     * and its poll interval adapts to how often it returns records.
+     */
+    private long caughtUpThresholdMs;
+
+    /** 1 second */
+    public static final long CAUGHT_UP_THRESHOLD_MS_DEFAULT = 1000;
+
+    /**
+     * The number of records fetched and not yet processed at which a shard
+     * stops fetching, until its processor catches up.
+     */
+    private int maxPrefetchedRecords;
+
+    /** 10000 records */
+    public static final int MAX_PREFETCHED_RECORDS_DEFAULT = 10000;
+
+    /**
+     * Should records aggregated by the Kinesis Producer Library, or a
+     * {@link BufferedKinesisProducer}, be unpacked into their user records?
+     */
+    private boolean deaggregate;
+
+    /** true */
+    public static final boolean DEAGGREGATE_DEFAULT = true;
+
+    /**
+     * How often DescribeStream is called to discover new shards.
+     */
+    private long shardDiscoveryIntervalMs;
+
+    /** 30 seconds */
+    public static final long SHARD_DISCOVERY_INTERVAL_MS_DEFAULT = 30000;
+
+    /**
+     * The number of threads of the pool created by the consumer when it is
+     * not given an executor. All shards share these threads, for fetching and
+     * processing alike.
+     */
+    private int threadPoolSize;
+
+    /** 4 threads */
+    public static final int THREAD_POOL_SIZE_DEFAULT = 4;
+
+    public BufferedKinesisConsumerConfig() {
+        this.initialPosition = INITIAL_POSITION_DEFAULT;
+        this.maxRecordsPerCall = MAX_RECORDS_PER_CALL_DEFAULT;
+        this.minPollIntervalMs = MIN_POLL_INTERVAL_MS_DEFAULT;
+        this.maxPollIntervalMs = MAX_POLL_INTERVAL_MS_DEFAULT;
+        this.caughtUpThresholdMs = CAUGHT_UP_THRESHOLD_MS_DEFAULT;
+        this.maxPrefetchedRecords = MAX_PREFETCHED_RECORDS_DEFAULT;
+        this.deaggregate = DEAGGREGATE_DEFAULT;
+        this.shardDiscoveryIntervalMs = SHARD_DISCOVERY_INTERVAL_MS_DEFAULT;
+        this.threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+    }
+
+    /** copy constructor */
+    public BufferedKinesisConsumerConfig(BufferedKinesisConsumerConfig other) {
+        this.initialPosition = other.initialPosition;
+        this.maxRecordsPerCall = other.maxRecordsPerCall;
+        this.minPollIntervalMs = other.minPollIntervalMs;
+        this.maxPollIntervalMs = other.maxPollIntervalMs;
+        this.caughtUpThresholdMs = other.caughtUpThresholdMs;
+        this.maxPrefetchedRecords = other.maxPrefetchedRecords;
+        this.deaggregate = other.deaggregate;
+        this.shardDiscoveryIntervalMs = other.shardDiscoveryIntervalMs;
+        this.threadPoolSize = other.threadPoolSize;
+    }
+
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON
+                && initialPosition != ShardIteratorType.LATEST) {
+            throw new IllegalArgumentException(
+                    "Initial position must be TRIM_HORIZON or LATEST");
+        }
+        this.initialPosition = initialPosition;
+    }
+
+    public BufferedKinesisConsumerConfig withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    public int getMaxRecordsPerCall() {
+        return maxRecordsPerCall;
+    }
+
+    public void setMaxRecordsPerCall(int maxRecordsPerCall) {
+        if (maxRecordsPerCall < 1 || maxRecordsPerCall > SERVICE_MAX_RECORDS_PER_CALL) {
+            throw new IllegalArgumentException(
+                    "Max records per call must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_CALL);
+        }
+        this.maxRecordsPerCall = maxRecordsPerCall;
+    }
+
+    public BufferedKinesisConsumerConfig withMaxRecordsPerCall(int maxRecordsPerCall) {
+        setMaxRecordsPerCall(maxRecordsPerCall);
+        return this;
+    }
+
+    public long getMinPollIntervalMs() {
+        return minPollIntervalMs;
+    }
+
+    public void setMinPollIntervalMs(long minPollIntervalMs) {
+        if (minPollIntervalMs < 0) {
+            throw new IllegalArgumentException(
+                    "Min poll interval must not be negative");
+        }
+        this.minPollIntervalMs = minPollIntervalMs;
+    }
+
+    public BufferedKinesisConsumerConfig withMinPollIntervalMs(long minPollIntervalMs) {
+        setMinPollIntervalMs(minPollIntervalMs);
+        return this;
+    }
+
+    public long getMaxPollIntervalMs() {
+        return maxPollIntervalMs;
+    }
+
+    public void setMaxPollIntervalMs(long maxPollIntervalMs) {
+        if (maxPollIntervalMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max poll interval must not be negative");
+        }
+        this.maxPollIntervalMs = maxPollIntervalMs;
+    }
+
+    public BufferedKinesisConsumerConfig withMaxPollIntervalMs(long maxPollIntervalMs) {
+        setMaxPollIntervalMs(maxPollIntervalMs);
+        return this;
+    }
+
+    public long getCaughtUpThresholdMs() {
+        return caughtUpThresholdMs;
+    }
+
+    public void setCaughtUpThresholdMs(long caughtUpThresholdMs) {
+        if (caughtUpThresholdMs < 0) {
+            throw new IllegalArgumentException(
+                    "Caught up threshold must not be negative");
+        }
+        this.caughtUpThresholdMs = caughtUpThresholdMs;
+    }
+
+    public BufferedKinesisConsumerConfig withCaughtUpThresholdMs(long caughtUpThresholdMs) {
+        setCaughtUpThresholdMs(caughtUpThresholdMs);
+        return this;
+    }
+
+    public int getMaxPrefetchedRecords() {
+        return maxPrefetchedRecords;
+    }
+
+    public void setMaxPrefetchedRecords(int maxPrefetchedRecords) {
+        if (maxPrefetchedRecords < 1) {
+            throw new IllegalArgumentException(
+                    "Max prefetched records must be positive");
+        }
+        this.maxPrefetchedRecords = maxPrefetchedRecords;
+    }
+
+    public BufferedKinesisConsumerConfig withMaxPrefetchedRecords(int maxPrefetchedRecords) {
+        setMaxPrefetchedRecords(maxPrefetchedRecords);
+        return this;
+    }
+
+    public boolean isDeaggregate() {
+        return deaggregate;
+    }
+
+    public void setDeaggregate(boolean deaggregate) {
+        this.deaggregate = deaggregate;
+    }
+
+    public BufferedKinesisConsumerConfig withDeaggregate(boolean deaggregate) {
+        setDeaggregate(deaggregate);
+        return this;
+    }
+
+    public long getShardDiscoveryIntervalMs() {
+        return shardDiscoveryIntervalMs;
+    }
+
+    public void setShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        if (shardDiscoveryIntervalMs < 1) {
+            throw new IllegalArgumentException(
+                    "Shard discovery interval must be positive");
+        }
+        this.shardDiscoveryIntervalMs = shardDiscoveryIntervalMs;
+    }
+
+    public BufferedKinesisConsumerConfig withShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        setShardDiscoveryIntervalMs(shardDiscoveryIntervalMs);
+        return this;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "Thread pool size must be positive");
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public BufferedKinesisConsumerConfig withThreadPoolSize(int threadPoolSize) {
+        setThreadPoolSize(threadPoolSize);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedKinesisConsumerConfig [initialPosition=" + initialPosition
+                + ", maxRecordsPerCall=" + maxRecordsPerCall
+                + ", minPollIntervalMs=" + minPollIntervalMs
+                + ", maxPollIntervalMs=" + maxPollIntervalMs
+                + ", caughtUpThresholdMs=" + caughtUpThresholdMs
+                + ", maxPrefetchedRecords=" + maxPrefetchedRecords
+                + ", deaggregate=" + deaggregate
+                + ", shardDiscoveryIntervalMs=" + shardDiscoveryIntervalMs
+                + ", threadPoolSize=" + threadPoolSize + "]";
+    }
+}
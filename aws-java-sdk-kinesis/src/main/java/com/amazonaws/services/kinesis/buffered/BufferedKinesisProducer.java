@@ -0,0 +1,745 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.internal.BatchRetries;
+import com.amazonaws.internal.SettableFuture;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Buffers user records for a Kinesis stream and writes them with PutRecords calls.
+ * <p>
+ * Each user record is routed to the shard predicted from its hash key, using the hash key ranges
+ * returned by DescribeStream. Per shard:
+ * <ul>
+ * <li>Small user records are aggregated into Kinesis records of up to
+ * {@link BufferedKinesisProducerConfig#getMaxAggregatedRecordBytes()}, unless aggregation is
+ * disabled. A Kinesis record holding a single user record is sent as a plain record.</li>
+ * <li>Kinesis records are sent in PutRecords calls holding records of that shard only, as soon as
+ * a call is full or {@link BufferedKinesisProducerConfig#getMaxBufferTimeMs()} after the first
+ * buffered record, with at most
+ * {@link BufferedKinesisProducerConfig#getMaxInflightRequestsPerShard()} calls in flight.</li>
+ * <li>Records a call rejects with a retryable error code are sent again on their own, with
+ * exponential back off; the records that succeeded are not. Errors failing a call as a whole are
+ * left to the retry policy of the client.</li>
+ * </ul>
+ * Each user record gets its own future, which completes with the result entry of the Kinesis
+ * record carrying it. Adding a record blocks while the records not done yet exceed
+ * {@link BufferedKinesisProducerConfig#getMaxBufferedBytes()}.
+ * <p>
+ * When a record lands on another shard than predicted, because the stream was resharded, the
+ * shard map is refreshed in the background. Records keep being accepted by the service in the
+ * meantime.
+ */
+@ThreadSafe
+public class BufferedKinesisProducer {
+
+    private static final Log log = LogFactory.getLog(BufferedKinesisProducer.class);
+
+    private static final int MAX_PARTITION_KEY_LENGTH = 256;
+    private static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    /** One digest per thread, for the hash keys of partition keys. */
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            return RecordAggregator.newMd5();
+        }
+    };
+
+    private final AmazonKinesis client;
+    private final String streamName;
+    private final BufferedKinesisProducerConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Object shardMapLock = new Object();
+    private volatile ShardMap shardMap;
+    private final AtomicBoolean shardMapRefreshing = new AtomicBoolean();
+
+    private final Object lock = new Object();
+
+    /** Buffers by shard id. Guarded by lock. */
+    private final Map<String, ShardBuffer> shardBuffers = new HashMap<String, ShardBuffer>();
+
+    /** User records added and not done. Guarded by lock. */
+    private long bufferedRecords;
+
+    /** Size of the user records added and not done. Guarded by lock. */
+    private long bufferedBytes;
+
+    /** Guarded by lock. */
+    private boolean shutdown;
+
+    private final AtomicLong userRecordsPut = new AtomicLong();
+    private final AtomicLong kinesisRecordsPut = new AtomicLong();
+    private final AtomicLong bytesPut = new AtomicLong();
+    private final AtomicLong putRecordsCalls = new AtomicLong();
+    private final AtomicLong retriedRecords = new AtomicLong();
+    private final AtomicLong failedUserRecords = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    public BufferedKinesisProducer(AmazonKinesis client, String streamName) {
+        this(client, streamName, new BufferedKinesisProducerConfig());
+    }
+
+    public BufferedKinesisProducer(
+            AmazonKinesis client,
+            String streamName,
+            BufferedKinesisProducerConfig config) {
+
+        if (client == null || streamName == null) {
+            throw new IllegalArgumentException("client and stream name must be specified");
+        }
+        this.client = client;
+        this.streamName = streamName;
+        this.config = new BufferedKinesisProducerConfig(config);
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(
+                this.config.getThreadPoolSize(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "kinesis-buffered-producer-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Queues a user record, routed by the hash of its partition key.
+     *
+     * @return a future that completes once the record has been written
+     */
+    public Future<PutRecordsResultEntry> addUserRecord(String partitionKey, ByteBuffer data) {
+        return addUserRecord(partitionKey, null, data);
+    }
+
+    /**
+     * Queues a user record.
+     *
+     * @param explicitHashKey
+     *            the hash key routing the record, or null to use the hash of its partition key
+     * @return a future that completes once the record has been written
+     */
+    public Future<PutRecordsResultEntry> addUserRecord(
+            String partitionKey,
+            String explicitHashKey,
+            ByteBuffer data) {
+
+        PendingRecord record = new PendingRecord(partitionKey, explicitHashKey, data);
+        String shardId = getShardMap().shardFor(record.hashKey);
+
+        synchronized (lock) {
+            awaitBufferSpace(record.size);
+            bufferedRecords++;
+            bufferedBytes += record.size;
+
+            ShardBuffer buffer = shardBuffers.get(shardId);
+            if (buffer == null) {
+                buffer = new ShardBuffer(shardId);
+                shardBuffers.put(shardId, buffer);
+            }
+            buffer.add(record);
+        }
+        return record.future;
+    }
+
+    /**
+     * Sends all buffered records, and waits until every record added so far is done.
+     */
+    public void flush() {
+        synchronized (lock) {
+            for (ShardBuffer buffer : shardBuffers.values()) {
+                buffer.drain();
+            }
+            awaitBufferedRecords();
+        }
+    }
+
+    /**
+     * Flushes all buffered records and releases the producer's threads. Records added after this
+     * call fail with an {@link AmazonClientException}.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+        flush();
+        executor.shutdown();
+    }
+
+    /**
+     * @return a snapshot of the activity of this producer
+     */
+    public KinesisProducerMetrics getMetrics() {
+        long records;
+        long bytes;
+        synchronized (lock) {
+            records = bufferedRecords;
+            bytes = bufferedBytes;
+        }
+        return new KinesisProducerMetrics(
+                userRecordsPut.get(),
+                kinesisRecordsPut.get(),
+                bytesPut.get(),
+                putRecordsCalls.get(),
+                retriedRecords.get(),
+                failedUserRecords.get(),
+                records,
+                bytes,
+                TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+    }
+
+    /** Must be called with lock held. */
+    private void awaitBufferSpace(long size) {
+        long start = 0;
+        try {
+            while (true) {
+                if (shutdown) {
+                    throw new AmazonClientException(
+                            "The buffered Kinesis producer has been shut down");
+                }
+                if (bufferedBytes == 0
+                        || bufferedBytes + size <= config.getMaxBufferedBytes()) {
+                    return;
+                }
+                if (start == 0) {
+                    start = System.nanoTime();
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException(
+                            "Interrupted while waiting for buffer space", e);
+                }
+            }
+        } finally {
+            if (start != 0) {
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /** Must be called with lock held. */
+    private void awaitBufferedRecords() {
+        boolean interrupted = false;
+        while (bufferedRecords > 0) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ShardMap getShardMap() {
+        ShardMap map = shardMap;
+        if (map == null) {
+            synchronized (shardMapLock) {
+                map = shardMap;
+                if (map == null) {
+                    map = loadShardMap();
+                    shardMap = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Reloads the shard map in the background, unless a reload is already under way.
+     */
+    private void refreshShardMap() {
+        if (!shardMapRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    shardMap = loadShardMap();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to refresh the shards of stream " + streamName, e);
+                } finally {
+                    shardMapRefreshing.set(false);
+                }
+            }
+        });
+    }
+
+    private ShardMap loadShardMap() {
+        List<Shard> shards = new ArrayList<Shard>();
+        String exclusiveStartShardId = null;
+        while (true) {
+            StreamDescription description = client.describeStream(new DescribeStreamRequest()
+                    .withStreamName(streamName)
+                    .withExclusiveStartShardId(exclusiveStartShardId))
+                    .getStreamDescription();
+            List<Shard> page = description.getShards();
+            shards.addAll(page);
+            if (!Boolean.TRUE.equals(description.getHasMoreShards()) || page.isEmpty()) {
+                break;
+            }
+            exclusiveStartShardId = page.get(page.size() - 1).getShardId();
+        }
+        return new ShardMap(shards);
+    }
+
+    /**
+     * The records buffered for one shard. Guarded by lock.
+     */
+    private final class ShardBuffer {
+
+        private final String shardId;
+
+        /** The Kinesis record user records are being aggregated into, or null. */
+        private KinesisRecord open;
+
+        /** Kinesis records waiting to be sent. */
+        private final LinkedList<KinesisRecord> ready = new LinkedList<KinesisRecord>();
+        private long readyBytes;
+
+        private int inflight;
+
+        /** Whether every ready record should be sent, rather than only full calls. */
+        private boolean draining;
+
+        private boolean timerScheduled;
+
+        ShardBuffer(String shardId) {
+            this.shardId = shardId;
+        }
+
+        void add(PendingRecord record) {
+            if (open != null && !open.fits(record)) {
+                closeOpen();
+            }
+            if (open == null) {
+                open = new KinesisRecord();
+            }
+            open.add(record);
+            if (!config.isAggregationEnabled()
+                    || open.size() >= config.getMaxAggregatedRecordBytes()) {
+                closeOpen();
+            }
+
+            if (!timerScheduled) {
+                timerScheduled = true;
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            timerScheduled = false;
+                            drain();
+                        }
+                    }
+                }, config.getMaxBufferTimeMs(), TimeUnit.MILLISECONDS);
+            }
+            send();
+        }
+
+        /** Sends every buffered record, as fast as the in-flight limit allows. */
+        void drain() {
+            closeOpen();
+            draining = true;
+            send();
+        }
+
+        void closeOpen() {
+            if (open != null) {
+                open.close();
+                ready.add(open);
+                readyBytes += open.size();
+                open = null;
+            }
+        }
+
+        void send() {
+            while (inflight < config.getMaxInflightRequestsPerShard()
+                    && !ready.isEmpty()
+                    && (draining || isFull())) {
+
+                List<KinesisRecord> batch = new ArrayList<KinesisRecord>();
+                long bytes = 0;
+                while (!ready.isEmpty() && batch.size() < config.getMaxBatchRecords()) {
+                    KinesisRecord next = ready.peek();
+                    if (!batch.isEmpty() && bytes + next.size() > config.getMaxBatchBytes()) {
+                        break;
+                    }
+                    batch.add(ready.poll());
+                    bytes += next.size();
+                }
+                readyBytes -= bytes;
+                inflight++;
+                executor.execute(new PutTask(this, batch));
+            }
+            if (ready.isEmpty()) {
+                draining = false;
+            }
+        }
+
+        boolean isFull() {
+            return ready.size() >= config.getMaxBatchRecords()
+                    || readyBytes >= config.getMaxBatchBytes();
+        }
+
+        boolean isIdle() {
+            return open == null && ready.isEmpty() && inflight == 0;
+        }
+    }
+
+    /**
+     * Sends the Kinesis records of one PutRecords call, and retries those that fail. A retry is
+     * scheduled on the executor after its back off, rather than waited for on a thread.
+     */
+    private final class PutTask implements Runnable {
+
+        private final ShardBuffer buffer;
+        private final List<KinesisRecord> batch;
+
+        /** The records left to send, and the attempt sending them. Used by one run at a time. */
+        private List<KinesisRecord> remaining;
+        private int attempt;
+
+        PutTask(ShardBuffer buffer, List<KinesisRecord> batch) {
+            this.buffer = buffer;
+            this.batch = batch;
+            this.remaining = batch;
+        }
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                finished = put();
+            } catch (RuntimeException e) {
+                failAll(remaining, e);
+            } finally {
+                if (finished) {
+                    done();
+                }
+            }
+        }
+
+        /**
+         * @return false if the failed records have been scheduled to be sent again
+         */
+        private boolean put() {
+            PutRecordsResult result;
+            try {
+                putRecordsCalls.incrementAndGet();
+                result = client.putRecords(toRequest(remaining));
+            } catch (AmazonClientException e) {
+                // The client has already retried the call as far as its retry policy allows
+                failAll(remaining, e);
+                return true;
+            }
+
+            List<KinesisRecord> failed = new ArrayList<KinesisRecord>();
+            AmazonServiceException lastError = null;
+            List<PutRecordsResultEntry> entries = result.getRecords();
+            for (int i = 0; i < remaining.size(); i++) {
+                KinesisRecord record = remaining.get(i);
+                PutRecordsResultEntry entry = entries.get(i);
+                if (entry.getErrorCode() == null) {
+                    record.succeed(entry);
+                    if (!buffer.shardId.equals(entry.getShardId())) {
+                        refreshShardMap();
+                    }
+                    continue;
+                }
+
+                AmazonServiceException error = new AmazonServiceException(
+                        entry.getErrorMessage());
+                error.setErrorCode(entry.getErrorCode());
+                error.setServiceName("AmazonKinesis");
+                if (BatchRetries.isRetryableErrorCode(entry.getErrorCode())) {
+                    failed.add(record);
+                    lastError = error;
+                } else {
+                    record.fail(error);
+                }
+            }
+
+            if (failed.isEmpty()) {
+                return true;
+            }
+            if (attempt >= config.getMaxRetries()) {
+                failAll(failed, lastError);
+                return true;
+            }
+            retriedRecords.addAndGet(failed.size());
+            long delay = BatchRetries.backoffMs(attempt);
+            remaining = failed;
+            attempt++;
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            return false;
+        }
+
+        private void done() {
+            long records = 0;
+            long bytes = 0;
+            for (KinesisRecord record : batch) {
+                for (PendingRecord pendingRecord : record.userRecords) {
+                    records++;
+                    bytes += pendingRecord.size;
+                }
+            }
+            synchronized (lock) {
+                bufferedRecords -= records;
+                bufferedBytes -= bytes;
+                buffer.inflight--;
+                buffer.send();
+                if (buffer.isIdle() && !shardMap.contains(buffer.shardId)) {
+                    // The shard was closed, no more records will be routed to it
+                    shardBuffers.remove(buffer.shardId);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private PutRecordsRequest toRequest(List<KinesisRecord> records) {
+        List<PutRecordsRequestEntry> entries =
+                new ArrayList<PutRecordsRequestEntry>(records.size());
+        for (KinesisRecord record : records) {
+            entries.add(record.entry);
+        }
+        return new PutRecordsRequest()
+                .withStreamName(streamName)
+                .withRecords(entries);
+    }
+
+    private void failAll(Collection<KinesisRecord> records, Exception e) {
+        for (KinesisRecord record : records) {
+            record.fail(e);
+        }
+    }
+
+    /**
+     * A Kinesis record, holding one or more user records.
+     */
+    private final class KinesisRecord {
+
+        private final List<PendingRecord> userRecords = new ArrayList<PendingRecord>();
+        private final RecordAggregator aggregator = new RecordAggregator();
+
+        /** Set once the record is closed. */
+        private PutRecordsRequestEntry entry;
+        private int size;
+
+        boolean fits(PendingRecord record) {
+            return aggregator.sizeWith(record.partitionKey, record.explicitHashKey, record.data)
+                    <= config.getMaxAggregatedRecordBytes();
+        }
+
+        void add(PendingRecord record) {
+            userRecords.add(record);
+            aggregator.add(record.partitionKey, record.explicitHashKey, record.data);
+        }
+
+        int size() {
+            return entry == null ? aggregator.size() : size;
+        }
+
+        void close() {
+            PendingRecord first = userRecords.get(0);
+            if (userRecords.size() == 1) {
+                entry = new PutRecordsRequestEntry()
+                        .withPartitionKey(first.partitionKey)
+                        .withExplicitHashKey(first.explicitHashKey)
+                        .withData(ByteBuffer.wrap(first.data));
+                size = (int) first.size;
+            } else {
+                // Routed like the first user record, which was routed like all the others
+                entry = new PutRecordsRequestEntry()
+                        .withPartitionKey(first.partitionKey)
+                        .withExplicitHashKey(first.hashKey.toString())
+                        .withData(ByteBuffer.wrap(aggregator.toBytes()));
+                size = aggregator.size();
+            }
+        }
+
+        void succeed(PutRecordsResultEntry result) {
+            kinesisRecordsPut.incrementAndGet();
+            bytesPut.addAndGet(size);
+            userRecordsPut.addAndGet(userRecords.size());
+            for (PendingRecord pendingRecord : userRecords) {
+                pendingRecord.future.set(result);
+            }
+        }
+
+        void fail(Exception e) {
+            failedUserRecords.addAndGet(userRecords.size());
+            for (PendingRecord pendingRecord : userRecords) {
+                pendingRecord.future.setException(e);
+            }
+        }
+    }
+
+    private static final class PendingRecord {
+
+        private final String partitionKey;
+        private final String explicitHashKey;
+        private final byte[] data;
+        private final BigInteger hashKey;
+
+        /** Data and partition key, as counted against the record size limit. */
+        private final long size;
+
+        private final SettableFuture<PutRecordsResultEntry> future =
+                new SettableFuture<PutRecordsResultEntry>();
+
+        PendingRecord(String partitionKey, String explicitHashKey, ByteBuffer data) {
+            if (partitionKey == null || partitionKey.length() == 0
+                    || partitionKey.length() > MAX_PARTITION_KEY_LENGTH) {
+                throw new IllegalArgumentException("Partition key must be between 1 and "
+                        + MAX_PARTITION_KEY_LENGTH + " characters long");
+            }
+            if (data == null) {
+                throw new IllegalArgumentException("data must be specified");
+            }
+            this.partitionKey = partitionKey;
+            this.explicitHashKey = explicitHashKey;
+
+            // Copied, so that the caller may reuse its buffer
+            this.data = new byte[data.remaining()];
+            data.duplicate().get(this.data);
+
+            this.size = this.data.length + partitionKey.getBytes(StringUtils.UTF8).length;
+            if (size > BufferedKinesisProducerConfig.MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Record of " + size
+                        + " bytes exceeds the maximum of "
+                        + BufferedKinesisProducerConfig.MAX_RECORD_BYTES);
+            }
+
+            if (explicitHashKey == null) {
+                this.hashKey = new BigInteger(1,
+                        MD5.get().digest(partitionKey.getBytes(StringUtils.UTF8)));
+            } else {
+                try {
+                    this.hashKey = new BigInteger(explicitHashKey);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "Invalid explicit hash key " + explicitHashKey, e);
+                }
+                if (hashKey.signum() < 0 || hashKey.compareTo(MAX_HASH_KEY) > 0) {
+                    throw new IllegalArgumentException(
+                            "Explicit hash key out of range: " + explicitHashKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * The open shards of the stream, ordered by hash key range.
+     */
+    private static final class ShardMap {
+
+        private final BigInteger[] endingHashKeys;
+        private final String[] shardIds;
+        private final Set<String> openShardIds = new HashSet<String>();
+
+        ShardMap(List<Shard> shards) {
+            List<Shard> open = new ArrayList<Shard>();
+            for (Shard shard : shards) {
+                if (shard.getSequenceNumberRange() == null
+                        || shard.getSequenceNumberRange().getEndingSequenceNumber() == null) {
+                    open.add(shard);
+                }
+            }
+            if (open.isEmpty()) {
+                throw new AmazonClientException("Stream has no open shards");
+            }
+            Collections.sort(open, new Comparator<Shard>() {
+                @Override
+                public int compare(Shard a, Shard b) {
+                    return startingHashKey(a).compareTo(startingHashKey(b));
+                }
+            });
+
+            endingHashKeys = new BigInteger[open.size()];
+            shardIds = new String[open.size()];
+            for (int i = 0; i < open.size(); i++) {
+                Shard shard = open.get(i);
+                endingHashKeys[i] = new BigInteger(shard.getHashKeyRange().getEndingHashKey());
+                shardIds[i] = shard.getShardId();
+                openShardIds.add(shard.getShardId());
+            }
+        }
+
+        String shardFor(BigInteger hashKey) {
+            int index = Arrays.binarySearch(endingHashKeys, hashKey);
+            if (index < 0) {
+                // The insertion point: the first shard ending after the hash key
+                index = Math.min(-index - 1, shardIds.length - 1);
+            }
+            return shardIds[index];
+        }
+
+        boolean contains(String shardId) {
+            return openShardIds.contains(shardId);
+        }
+
+        private static BigInteger startingHashKey(Shard shard) {
+            return new BigInteger(shard.getHashKeyRange().getStartingHashKey());
+        }
+    }
+}
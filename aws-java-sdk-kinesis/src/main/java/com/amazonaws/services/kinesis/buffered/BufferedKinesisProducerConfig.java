@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * Configuration of a {@link BufferedKinesisProducer}.
+ */
+public class BufferedKinesisProducerConfig {
+
+    /** The maximum size (bytes) of a Kinesis record, data and partition key. */
+    public static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    /** The maximum number of records in a PutRecords call. */
+    public static final int SERVICE_MAX_BATCH_RECORDS = 500;
+
+    /** The maximum size (bytes) of the records of a PutRecords call. */
+    public static final long SERVICE_MAX_BATCH_BYTES = 5L * 1024 * 1024;
+
+    /**
+     * Should small user records be packed into larger Kinesis records? Aggregated records
+     * use the format of the Kinesis Producer Library, and must be read with a consumer that
+     * deaggregates them, such as the Kinesis Client Library.
+     */
+    private boolean aggregationEnabled;
+
+    /** true */
+    public static final boolean AGGREGATION_ENABLED_DEFAULT = true;
+
+    /**
+     * The maximum size (bytes) of an aggregated Kinesis record, partition key included.
+     * A user record larger than this is sent on its own.
+     */
+    private int maxAggregatedRecordBytes;
+
+    /** 50 KiB */
+    public static final int MAX_AGGREGATED_RECORD_BYTES_DEFAULT = 50 * 1024;
+
+    /**
+     * The maximum time (milliseconds) a user record is buffered before it is sent. The
+     * longer this time, the more records are aggregated and batched together, but the
+     * longer each record waits before it is sent.
+     */
+    private long maxBufferTimeMs;
+
+    /** 100 milliseconds */
+    public static final long MAX_BUFFER_TIME_MS_DEFAULT = 100;
+
+    /**
+     * The maximum number of Kinesis records sent in a single PutRecords call.
+     */
+    private int maxBatchRecords;
+
+    /** 500 records */
+    public static final int MAX_BATCH_RECORDS_DEFAULT = SERVICE_MAX_BATCH_RECORDS;
+
+    /**
+     * The maximum size (bytes) of the records sent in a single PutRecords call. All records
+     * of a call go to the same shard, which accepts up to 1 MiB per second.
+     */
+    private long maxBatchBytes;
+
+    /** 1 MiB */
+    public static final long MAX_BATCH_BYTES_DEFAULT = 1024 * 1024;
+
+    /**
+     * The maximum number of PutRecords calls in flight at the same time for a single shard,
+     * retries included. With a single call in flight, records of a shard are written in the
+     * order they were added, unless some of them are retried.
+     */
+    private int maxInflightRequestsPerShard;
+
+    /** 2 calls */
+    public static final int MAX_INFLIGHT_REQUESTS_PER_SHARD_DEFAULT = 2;
+
+    /**
+     * The maximum size (bytes) of the user records, partition keys included, that have been
+     * added and are not done yet. Adding a record blocks while this is exceeded.
+     */
+    private long maxBufferedBytes;
+
+    /** 64 MiB */
+    public static final long MAX_BUFFERED_BYTES_DEFAULT = 64L * 1024 * 1024;
+
+    /**
+     * The maximum number of times a record rejected by the service with a retryable error is
+     * sent again before it fails. Only the failed records of a PutRecords call are sent
+     * again. Errors failing a whole call are retried by the client, as its retry policy
+     * allows, and not again by the producer.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /**
+     * The number of threads sending PutRecords calls. Calls beyond this number wait for a
+     * thread. Retries are scheduled after their back off and don't hold a thread meanwhile.
+     */
+    private int threadPoolSize;
+
+    /** 10 threads */
+    public static final int THREAD_POOL_SIZE_DEFAULT = 10;
+
+    public BufferedKinesisProducerConfig() {
+        this.aggregationEnabled = AGGREGATION_ENABLED_DEFAULT;
+        this.maxAggregatedRecordBytes = MAX_AGGREGATED_RECORD_BYTES_DEFAULT;
+        this.maxBufferTimeMs = MAX_BUFFER_TIME_MS_DEFAULT;
+        this.maxBatchRecords = MAX_BATCH_RECORDS_DEFAULT;
+        this.maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        this.maxInflightRequestsPerShard = MAX_INFLIGHT_REQUESTS_PER_SHARD_DEFAULT;
+        this.maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+        this.maxRetries = MAX_RETRIES_DEFAULT;
+        this.threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+    }
+
+    /** copy constructor */
+    public BufferedKinesisProducerConfig(BufferedKinesisProducerConfig other) {
+        this.aggregationEnabled = other.aggregationEnabled;
+        this.maxAggregatedRecordBytes = other.maxAggregatedRecordBytes;
+        this.maxBufferTimeMs = other.maxBufferTimeMs;
+        this.maxBatchRecords = other.maxBatchRecords;
+        this.maxBatchBytes = other.maxBatchBytes;
+        this.maxInflightRequestsPerShard = other.maxInflightRequestsPerShard;
+        this.maxBufferedBytes = other.maxBufferedBytes;
+        this.maxRetries = other.maxRetries;
+        this.threadPoolSize = other.threadPoolSize;
+    }
+
+    public boolean isAggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    public void setAggregationEnabled(boolean aggregationEnabled) {
+        this.aggregationEnabled = aggregationEnabled;
+    }
+
+    public BufferedKinesisProducerConfig withAggregationEnabled(boolean aggregationEnabled) {
+        setAggregationEnabled(aggregationEnabled);
+        return this;
+    }
+
+    public int getMaxAggregatedRecordBytes() {
+        return maxAggregatedRecordBytes;
+    }
+
+    public void setMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        if (maxAggregatedRecordBytes < 1 || maxAggregatedRecordBytes > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max aggregated record bytes must be between 1 and " + MAX_RECORD_BYTES);
+        }
+        this.maxAggregatedRecordBytes = maxAggregatedRecordBytes;
+    }
+
+    public BufferedKinesisProducerConfig withMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        setMaxAggregatedRecordBytes(maxAggregatedRecordBytes);
+        return this;
+    }
+
+    public long getMaxBufferTimeMs() {
+        return maxBufferTimeMs;
+    }
+
+    public void setMaxBufferTimeMs(long maxBufferTimeMs) {
+        if (maxBufferTimeMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max buffer time must not be negative");
+        }
+        this.maxBufferTimeMs = maxBufferTimeMs;
+    }
+
+    public BufferedKinesisProducerConfig withMaxBufferTimeMs(long maxBufferTimeMs) {
+        setMaxBufferTimeMs(maxBufferTimeMs);
+        return this;
+    }
+
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public void setMaxBatchRecords(int maxBatchRecords) {
+        if (maxBatchRecords < 1 || maxBatchRecords > SERVICE_MAX_BATCH_RECORDS) {
+            throw new IllegalArgumentException(
+                    "Max batch records must be between 1 and " + SERVICE_MAX_BATCH_RECORDS);
+        }
+        this.maxBatchRecords = maxBatchRecords;
+    }
+
+    public BufferedKinesisProducerConfig withMaxBatchRecords(int maxBatchRecords) {
+        setMaxBatchRecords(maxBatchRecords);
+        return this;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes < MAX_RECORD_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max batch bytes must be between " + MAX_RECORD_BYTES + " and " + SERVICE_MAX_BATCH_BYTES);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public BufferedKinesisProducerConfig withMaxBatchBytes(long maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    public int getMaxInflightRequestsPerShard() {
+        return maxInflightRequestsPerShard;
+    }
+
+    public void setMaxInflightRequestsPerShard(int maxInflightRequestsPerShard) {
+        if (maxInflightRequestsPerShard < 1) {
+            throw new IllegalArgumentException(
+                    "Max inflight requests per shard must be positive");
+        }
+        this.maxInflightRequestsPerShard = maxInflightRequestsPerShard;
+    }
+
+    public BufferedKinesisProducerConfig withMaxInflightRequestsPerShard(int maxInflightRequestsPerShard) {
+        setMaxInflightRequestsPerShard(maxInflightRequestsPerShard);
+        return this;
+    }
+
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        if (maxBufferedBytes < MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max buffered bytes must be at least " + MAX_RECORD_BYTES);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public BufferedKinesisProducerConfig withMaxBufferedBytes(long maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException(
+                    "Max retries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public BufferedKinesisProducerConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "Thread pool size must be positive");
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public BufferedKinesisProducerConfig withThreadPoolSize(int threadPoolSize) {
+        setThreadPoolSize(threadPoolSize);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedKinesisProducerConfig [aggregationEnabled=" + aggregationEnabled
+                + ", maxAggregatedRecordBytes=" + maxAggregatedRecordBytes
+                + ", maxBufferTimeMs=" + maxBufferTimeMs
+                + ", maxBatchRecords=" + maxBatchRecords
+                + ", maxBatchBytes=" + maxBatchBytes
+                + ", maxInflightRequestsPerShard=" + maxInflightRequestsPerShard
+                + ", maxBufferedBytes=" + maxBufferedBytes
+                + ", maxRetries=" + maxRetries
+                + ", threadPoolSize=" + threadPoolSize + "]";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * Persists the position of a {@link BufferedKinesisConsumer} in each shard of
+ * a stream, so that a restarted consumer resumes where the previous one
+ * stopped.
+ * Implementations must be thread safe.
+ *
+ * @see FileCheckpointStore
+ */
+public interface CheckpointStore {
+
+    /**
+     * Checkpoint value recorded for a shard that has been processed to its
+     * end.
+     */
+    String SHARD_END = "SHARD_END";
+
+    /**
+     * Returns the checkpoint of the given shard: the sequence number of the
+     * last processed Kinesis record, {@link #SHARD_END}, or null if the shard
+     * has no checkpoint yet.
+     */
+    String getCheckpoint(String streamName, String shardId);
+
+    /**
+     * Records the checkpoint of the given shard.
+     *
+     * @param checkpoint the sequence number of the last processed Kinesis
+     *            record, or
+     *            {@link #SHARD_END}
+     */
+    void setCheckpoint(String streamName, String shardId, String checkpoint);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.io.Closeable;
+import java.io.File;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.internal.CheckpointFile;
+
+/**
+ * A {@link CheckpointStore} that keeps checkpoints in a properties file on
+ * the local file system.
+ * <p>
+ * The file is read once, when the store is created. Checkpoints are then
+ * updated in memory and written to the file in the background, at most once
+ * per flush interval, so a consumer checkpointing every batch doesn't
+ * rewrite the file for each. Checkpoints not written yet when the process
+ * stops are lost, and their shards are read again from the previous
+ * checkpoint: {@link #close()} the store once the consumer has stopped to
+ * write them. The file is replaced through a temporary file, and the
+ * previous file is kept until the new one is in place. The file should not
+ * be shared between processes.
+ */
+@ThreadSafe
+public class FileCheckpointStore implements CheckpointStore, Closeable {
+
+    /** 1 second */
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    private final CheckpointFile checkpoints;
+
+    /**
+     * Creates a store backed by the given file, loading any checkpoints it
+     * already contains. Checkpoints are written within
+     * {@link #DEFAULT_FLUSH_INTERVAL_MS}.
+     *
+     * @throws AmazonClientException if the file exists but can't be read
+     */
+    public FileCheckpointStore(File file) {
+        this(file, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Creates a store backed by the given file, loading any checkpoints it
+     * already contains.
+     *
+     * @param flushIntervalMs the most time a checkpoint is kept in memory
+     *            only, or 0 to write the file on every checkpoint
+     * @throws AmazonClientException if the file exists but can't be read
+     */
+    public FileCheckpointStore(File file, long flushIntervalMs) {
+        this.checkpoints = new CheckpointFile(file, flushIntervalMs);
+    }
+
+    @Override
+    public String getCheckpoint(String streamName, String shardId) {
+        return checkpoints.get(keyOf(streamName, shardId));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws AmazonClientException if the store writes the file on every
+     *             checkpoint and it can't be written
+     */
+    @Override
+    public void setCheckpoint(String streamName, String shardId, String checkpoint) {
+        checkpoints.put(keyOf(streamName, shardId), checkpoint);
+    }
+
+    /**
+     * Writes the checkpoints updated since the file was last written.
+     *
+     * @throws AmazonClientException if the file can't be written
+     */
+    public void flush() {
+        checkpoints.flush();
+    }
+
+    /**
+     * Writes the checkpoints updated since the file was last written. The
+     * store can still be used afterwards.
+     *
+     * @throws AmazonClientException if the file can't be written
+     */
+    @Override
+    public void close() {
+        checkpoints.close();
+    }
+
+    /** Returns the file backing this store. */
+    public File getFile() {
+        return checkpoints.getFile();
+    }
+
+    private static String keyOf(String streamName, String shardId) {
+        return streamName + "|" + shardId;
+    }
+}
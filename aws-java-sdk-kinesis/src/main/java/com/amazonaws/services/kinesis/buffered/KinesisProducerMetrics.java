@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * A snapshot of the activity of a {@link BufferedKinesisProducer}, as returned by
+ * {@link BufferedKinesisProducer#getMetrics()}. Counts are totals since the producer was created;
+ * throughput is the difference between two snapshots divided by the time between them.
+ */
+public class KinesisProducerMetrics {
+
+    private final long userRecordsPut;
+    private final long kinesisRecordsPut;
+    private final long bytesPut;
+    private final long putRecordsCalls;
+    private final long retriedRecords;
+    private final long failedUserRecords;
+    private final long bufferedUserRecords;
+    private final long bufferedBytes;
+    private final long blockedMs;
+
+    KinesisProducerMetrics(long userRecordsPut, long kinesisRecordsPut, long bytesPut,
+            long putRecordsCalls, long retriedRecords, long failedUserRecords,
+            long bufferedUserRecords, long bufferedBytes, long blockedMs) {
+        this.userRecordsPut = userRecordsPut;
+        this.kinesisRecordsPut = kinesisRecordsPut;
+        this.bytesPut = bytesPut;
+        this.putRecordsCalls = putRecordsCalls;
+        this.retriedRecords = retriedRecords;
+        this.failedUserRecords = failedUserRecords;
+        this.bufferedUserRecords = bufferedUserRecords;
+        this.bufferedBytes = bufferedBytes;
+        this.blockedMs = blockedMs;
+    }
+
+    /**
+     * @return the number of user records written successfully
+     */
+    public long getUserRecordsPut() {
+        return userRecordsPut;
+    }
+
+    /**
+     * @return the number of Kinesis records written successfully. Less than the number of user
+     *         records when records are aggregated.
+     */
+    public long getKinesisRecordsPut() {
+        return kinesisRecordsPut;
+    }
+
+    /**
+     * @return the size (bytes) of the Kinesis records written successfully, partition keys
+     *         included
+     */
+    public long getBytesPut() {
+        return bytesPut;
+    }
+
+    /**
+     * @return the number of PutRecords calls made, retries included
+     */
+    public long getPutRecordsCalls() {
+        return putRecordsCalls;
+    }
+
+    /**
+     * @return the number of times a Kinesis record was sent again after a failure
+     */
+    public long getRetriedRecords() {
+        return retriedRecords;
+    }
+
+    /**
+     * @return the number of user records that failed
+     */
+    public long getFailedUserRecords() {
+        return failedUserRecords;
+    }
+
+    /**
+     * @return the number of user records currently added and not done
+     */
+    public long getBufferedUserRecords() {
+        return bufferedUserRecords;
+    }
+
+    /**
+     * @return the size (bytes) of the user records currently added and not done
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return the total time (milliseconds) callers were blocked adding records because the
+     *         buffer was full
+     */
+    public long getBlockedMs() {
+        return blockedMs;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerMetrics [userRecordsPut=" + userRecordsPut
+                + ", kinesisRecordsPut=" + kinesisRecordsPut
+                + ", bytesPut=" + bytesPut
+                + ", putRecordsCalls=" + putRecordsCalls
+                + ", retriedRecords=" + retriedRecords
+                + ", failedUserRecords=" + failedUserRecords
+                + ", bufferedUserRecords=" + bufferedUserRecords
+                + ", bufferedBytes=" + bufferedBytes
+                + ", blockedMs=" + blockedMs + "]";
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.List;
+
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * Callback interface for the records read by a {@link BufferedKinesisConsumer}.
+ * <p>
+ * Calls for the same shard are never concurrent and are made in sequence
+ * number order; calls for different shards may be concurrent, so
+ * implementations must be thread safe. A child shard is not processed until
+ * all its parent shards have been processed to their end.
+ */
+public interface KinesisRecordProcessor {
+
+    /**
+     * Processes a batch of records read from the given shard. If this method
+     * throws, the batch is not checkpointed and is delivered again after a
+     * back off, so processing is at-least-once.
+     *
+     * @param shardId the id of the shard the records were read from
+     * @param records the records, never empty. Aggregated records are
+     *            delivered as their {@link UserRecord}s, unless
+     *            deaggregation is disabled.
+     */
+    void processRecords(String shardId, List<Record> records) throws Exception;
+
+    /**
+     * Called once all records of the given shard have been processed, before
+     * the shard is checkpointed as complete and its children are started.
+     *
+     * @param shardId the id of the closed shard
+     */
+    void shardEnded(String shardId) throws Exception;
+}
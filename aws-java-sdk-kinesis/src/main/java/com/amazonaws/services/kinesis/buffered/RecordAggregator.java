@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Packs user records into a single Kinesis record, and unpacks them, in the aggregation format of
+ * the Kinesis Producer Library, which the Kinesis Client Library deaggregates transparently. An aggregated
+ * record is made of:
+ * <ul>
+ * <li>the four magic bytes {@code F3 89 9A C2},</li>
+ * <li>an {@code AggregatedRecord} protocol buffers message holding a table of partition keys, a
+ * table of explicit hash keys, and the user records, each referring to its keys by index,</li>
+ * <li>the MD5 digest of the message.</li>
+ * </ul>
+ * Instances, which aggregate, are not thread-safe.
+ */
+final class RecordAggregator {
+
+    static final byte[] MAGIC = { (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+
+    static final int DIGEST_BYTES = 16;
+
+    // Protocol buffers keys: field number << 3 | wire type
+    static final int PARTITION_KEY_TABLE_KEY = 1 << 3 | 2;
+    static final int EXPLICIT_HASH_KEY_TABLE_KEY = 2 << 3 | 2;
+    static final int RECORD_KEY = 3 << 3 | 2;
+    static final int PARTITION_KEY_INDEX_KEY = 1 << 3;
+    static final int EXPLICIT_HASH_KEY_INDEX_KEY = 2 << 3;
+    static final int DATA_KEY = 3 << 3 | 2;
+
+    private final Map<String, Integer> partitionKeyIndexes = new HashMap<String, Integer>();
+    private final List<byte[]> partitionKeys = new ArrayList<byte[]>();
+    private final Map<String, Integer> explicitHashKeyIndexes = new HashMap<String, Integer>();
+    private final List<byte[]> explicitHashKeys = new ArrayList<byte[]>();
+
+    private final List<int[]> indexes = new ArrayList<int[]>();
+    private final List<byte[]> data = new ArrayList<byte[]>();
+
+    /** The size of the AggregatedRecord message. */
+    private int messageBytes;
+
+    /** The size of the partition key of the Kinesis record: that of its first user record. */
+    private int recordPartitionKeyBytes;
+
+    /**
+     * @return the number of user records added
+     */
+    int count() {
+        return data.size();
+    }
+
+    /**
+     * @return the size the Kinesis record would have, as counted against the record size limit:
+     *         its data and partition key
+     */
+    int size() {
+        return recordPartitionKeyBytes + MAGIC.length + messageBytes + DIGEST_BYTES;
+    }
+
+    /**
+     * @return the size the Kinesis record would have with the given user record added
+     */
+    int sizeWith(String partitionKey, String explicitHashKey, byte[] userData) {
+        int added = recordBytes(indexOf(partitionKeyIndexes, partitionKey, partitionKeys.size()),
+                explicitHashKey == null ? -1 : indexOf(explicitHashKeyIndexes, explicitHashKey,
+                        explicitHashKeys.size()), userData.length);
+        if (!partitionKeyIndexes.containsKey(partitionKey)) {
+            added += fieldBytes(utf8Length(partitionKey));
+        }
+        if (explicitHashKey != null && !explicitHashKeyIndexes.containsKey(explicitHashKey)) {
+            added += fieldBytes(explicitHashKey.length());
+        }
+        int keyBytes = count() == 0 ? utf8Length(partitionKey) : recordPartitionKeyBytes;
+        return keyBytes + MAGIC.length + messageBytes + added + DIGEST_BYTES;
+    }
+
+    void add(String partitionKey, String explicitHashKey, byte[] userData) {
+        if (count() == 0) {
+            recordPartitionKeyBytes = utf8Length(partitionKey);
+        }
+        int partitionKeyIndex = addKey(partitionKeyIndexes, partitionKeys, partitionKey);
+        int explicitHashKeyIndex = explicitHashKey == null
+                ? -1
+                : addKey(explicitHashKeyIndexes, explicitHashKeys, explicitHashKey);
+        indexes.add(new int[] { partitionKeyIndex, explicitHashKeyIndex });
+        data.add(userData);
+        messageBytes += recordBytes(partitionKeyIndex, explicitHashKeyIndex, userData.length);
+    }
+
+    /**
+     * @return the data of the aggregated Kinesis record
+     */
+    byte[] toBytes() {
+        byte[] bytes = new byte[MAGIC.length + messageBytes + DIGEST_BYTES];
+        System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+        int offset = MAGIC.length;
+        for (byte[] key : partitionKeys) {
+            offset = writeField(bytes, offset, PARTITION_KEY_TABLE_KEY, key);
+        }
+        for (byte[] key : explicitHashKeys) {
+            offset = writeField(bytes, offset, EXPLICIT_HASH_KEY_TABLE_KEY, key);
+        }
+        for (int i = 0; i < data.size(); i++) {
+            int[] index = indexes.get(i);
+            byte[] userData = data.get(i);
+            offset = writeVarint(bytes, offset, RECORD_KEY);
+            offset = writeVarint(bytes, offset, innerRecordBytes(index[0], index[1], userData.length));
+            offset = writeVarint(bytes, offset, PARTITION_KEY_INDEX_KEY);
+            offset = writeVarint(bytes, offset, index[0]);
+            if (index[1] >= 0) {
+                offset = writeVarint(bytes, offset, EXPLICIT_HASH_KEY_INDEX_KEY);
+                offset = writeVarint(bytes, offset, index[1]);
+            }
+            offset = writeField(bytes, offset, DATA_KEY, userData);
+        }
+
+        MessageDigest md5 = newMd5();
+        md5.update(bytes, MAGIC.length, messageBytes);
+        System.arraycopy(md5.digest(), 0, bytes, offset, DIGEST_BYTES);
+        return bytes;
+    }
+
+    /**
+     * Unpacks the user records of an aggregated Kinesis record.
+     *
+     * @return the user records, or the record itself if it is not a well-formed aggregated record
+     */
+    static List<Record> deaggregate(Record record) {
+        ByteBuffer buffer = record.getData().duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        if (!isAggregated(bytes)) {
+            return Collections.singletonList(record);
+        }
+
+        List<String> partitionKeys = new ArrayList<String>();
+        List<String> explicitHashKeys = new ArrayList<String>();
+        List<Record> userRecords = new ArrayList<Record>();
+        try {
+            Reader reader = new Reader(bytes, MAGIC.length, bytes.length - DIGEST_BYTES);
+            while (reader.hasMore()) {
+                int key = (int) reader.readVarint();
+                if (key == PARTITION_KEY_TABLE_KEY) {
+                    partitionKeys.add(new String(reader.readBytes(), StringUtils.UTF8));
+                } else if (key == EXPLICIT_HASH_KEY_TABLE_KEY) {
+                    explicitHashKeys.add(new String(reader.readBytes(), StringUtils.UTF8));
+                } else if (key == RECORD_KEY) {
+                    int length = (int) reader.readVarint();
+                    int start = reader.offset;
+                    Reader recordReader = new Reader(bytes, start, reader.skip(length));
+                    userRecords.add(readUserRecord(record, userRecords.size(), recordReader,
+                            partitionKeys, explicitHashKeys));
+                } else {
+                    reader.skipField(key);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Not an aggregated record after all, whatever it looked like
+            return Collections.singletonList(record);
+        }
+        return userRecords;
+    }
+
+    private static boolean isAggregated(byte[] bytes) {
+        if (bytes.length < MAGIC.length + DIGEST_BYTES) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        MessageDigest md5 = newMd5();
+        md5.update(bytes, MAGIC.length, bytes.length - MAGIC.length - DIGEST_BYTES);
+        return Arrays.equals(md5.digest(), Arrays.copyOfRange(bytes,
+                bytes.length - DIGEST_BYTES, bytes.length));
+    }
+
+    /**
+     * Reads a user record. Partition keys must precede the records referring to them, as they
+     * do in records written by the Kinesis Producer Library.
+     */
+    private static Record readUserRecord(
+            Record aggregated,
+            long subSequenceNumber,
+            Reader reader,
+            List<String> partitionKeys,
+            List<String> explicitHashKeys) {
+
+        int partitionKeyIndex = -1;
+        int explicitHashKeyIndex = -1;
+        byte[] data = null;
+        while (reader.hasMore()) {
+            int key = (int) reader.readVarint();
+            if (key == PARTITION_KEY_INDEX_KEY) {
+                partitionKeyIndex = (int) reader.readVarint();
+            } else if (key == EXPLICIT_HASH_KEY_INDEX_KEY) {
+                explicitHashKeyIndex = (int) reader.readVarint();
+            } else if (key == DATA_KEY) {
+                data = reader.readBytes();
+            } else {
+                reader.skipField(key);
+            }
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("User record without data");
+        }
+        return new UserRecord(aggregated, subSequenceNumber,
+                partitionKeys.get(partitionKeyIndex),
+                explicitHashKeyIndex < 0 ? null : explicitHashKeys.get(explicitHashKeyIndex),
+                ByteBuffer.wrap(data));
+    }
+
+    static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("MD5 is not available", e);
+        }
+    }
+
+    static int varintBytes(long value) {
+        int bytes = 1;
+        while ((value >>>= 7) != 0) {
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private int addKey(Map<String, Integer> indexes, List<byte[]> keys, String key) {
+        Integer index = indexes.get(key);
+        if (index == null) {
+            byte[] bytes = key.getBytes(StringUtils.UTF8);
+            index = keys.size();
+            indexes.put(key, index);
+            keys.add(bytes);
+            messageBytes += fieldBytes(bytes.length);
+        }
+        return index;
+    }
+
+    private static int indexOf(Map<String, Integer> indexes, String key, int next) {
+        Integer index = indexes.get(key);
+        return index == null ? next : index;
+    }
+
+    private static int innerRecordBytes(int partitionKeyIndex, int explicitHashKeyIndex, int dataLength) {
+        int bytes = 1 + varintBytes(partitionKeyIndex) + fieldBytes(dataLength);
+        if (explicitHashKeyIndex >= 0) {
+            bytes += 1 + varintBytes(explicitHashKeyIndex);
+        }
+        return bytes;
+    }
+
+    private static int recordBytes(int partitionKeyIndex, int explicitHashKeyIndex, int dataLength) {
+        return fieldBytes(innerRecordBytes(partitionKeyIndex, explicitHashKeyIndex, dataLength));
+    }
+
+    /** The size of a length-delimited field, key included. */
+    private static int fieldBytes(int length) {
+        return 1 + varintBytes(length) + length;
+    }
+
+    private static int utf8Length(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return s.getBytes(StringUtils.UTF8).length;
+            }
+        }
+        return s.length();
+    }
+
+    private static int writeField(byte[] bytes, int offset, int key, byte[] value) {
+        offset = writeVarint(bytes, offset, key);
+        offset = writeVarint(bytes, offset, value.length);
+        System.arraycopy(value, 0, bytes, offset, value.length);
+        return offset + value.length;
+    }
+
+    private static int writeVarint(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Reads protocol buffers fields from a range of bytes. Throws a RuntimeException on malformed
+     * input.
+     */
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int offset;
+        private final int end;
+
+        Reader(byte[] bytes, int offset, int end) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return offset < end;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (offset >= end) {
+                    throw new IllegalArgumentException("Truncated varint");
+                }
+                byte b = bytes[offset++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarint();
+            int start = offset;
+            return Arrays.copyOfRange(bytes, start, skip(length));
+        }
+
+        /**
+         * @return the offset after the skipped bytes
+         */
+        int skip(int length) {
+            if (length < 0 || length > end - offset) {
+                throw new IllegalArgumentException("Truncated field");
+            }
+            offset += length;
+            return offset;
+        }
+
+        void skipField(int key) {
+            switch (key & 7) {
+            case 0:
+                readVarint();
+                break;
+            case 1:
+                skip(8);
+                break;
+            case 2:
+                skip((int) readVarint());
+                break;
+            case 5:
+                skip(4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + (key & 7));
+            }
+        }
+    }
+}
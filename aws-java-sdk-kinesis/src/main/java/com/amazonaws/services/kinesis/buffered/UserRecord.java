@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.nio.ByteBuffer;
+
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * A user record unpacked from an aggregated Kinesis record by a {@link BufferedKinesisConsumer}.
+ * All user records of an aggregated record share its sequence number and arrival time, and are
+ * told apart by their sub-sequence number.
+ */
+public class UserRecord extends Record {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long subSequenceNumber;
+    private final String explicitHashKey;
+
+    UserRecord(
+            Record aggregated,
+            long subSequenceNumber,
+            String partitionKey,
+            String explicitHashKey,
+            ByteBuffer data) {
+
+        this.subSequenceNumber = subSequenceNumber;
+        this.explicitHashKey = explicitHashKey;
+        setSequenceNumber(aggregated.getSequenceNumber());
+        setApproximateArrivalTimestamp(aggregated.getApproximateArrivalTimestamp());
+        setPartitionKey(partitionKey);
+        setData(data);
+    }
+
+    /**
+     * @return the position of this user record within its aggregated record, starting at 0
+     */
+    public long getSubSequenceNumber() {
+        return subSequenceNumber;
+    }
+
+    /**
+     * @return the explicit hash key the producer gave this user record, or null
+     */
+    public String getExplicitHashKey() {
+        return explicitHashKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof UserRecord) || !super.equals(obj)) {
+            return false;
+        }
+        UserRecord other = (UserRecord) obj;
+        return subSequenceNumber == other.subSequenceNumber
+                && (explicitHashKey == null
+                        ? other.explicitHashKey == null
+                        : explicitHashKey.equals(other.explicitHashKey));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + (int) (subSequenceNumber ^ (subSequenceNumber >>> 32));
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.regions.Region;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseAsync;
+import com.amazonaws.services.kinesisfirehose.model.CreateDeliveryStreamRequest;
+import com.amazonaws.services.kinesisfirehose.model.CreateDeliveryStreamResult;
+import com.amazonaws.services.kinesisfirehose.model.DeleteDeliveryStreamRequest;
+import com.amazonaws.services.kinesisfirehose.model.DeleteDeliveryStreamResult;
+import com.amazonaws.services.kinesisfirehose.model.DescribeDeliveryStreamRequest;
+import com.amazonaws.services.kinesisfirehose.model.DescribeDeliveryStreamResult;
+import com.amazonaws.services.kinesisfirehose.model.ListDeliveryStreamsRequest;
+import com.amazonaws.services.kinesisfirehose.model.ListDeliveryStreamsResult;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordResult;
+import com.amazonaws.services.kinesisfirehose.model.UpdateDestinationRequest;
+import com.amazonaws.services.kinesisfirehose.model.UpdateDestinationResult;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * AmazonKinesisFirehoseBufferedAsyncClient provides client-side batching of outgoing putRecord
+ * calls.
+ * <p>
+ * Rather than sending each record in its own PutRecord call, this client buffers the records of
+ * each delivery stream and sends them in PutRecordBatch calls, as soon as a batch holds
+ * {@link FirehoseBufferConfig#getMaxBatchRecords()} records or
+ * {@link FirehoseBufferConfig#getMaxBatchBytes()} bytes, or
+ * {@link FirehoseBufferConfig#getMaxBatchOpenMs()} after the first buffered record. Only the
+ * records a call fails are sent again, with exponential back off. Each record gets its own future,
+ * and its own handler call, as if it had been sent on its own.
+ * <p>
+ * The records buffered or in flight for a delivery stream are bounded by
+ * {@link FirehoseBufferConfig#getMaxBufferedBytes()}. While a throttled delivery stream holds that
+ * much, callers wait for room up to {@link FirehoseBufferConfig#getMaxBlockMs()}, after which their
+ * record fails with an {@link AmazonClientException}.
+ * <p>
+ * All other calls are passed through to the wrapped client.
+ */
+@ThreadSafe
+public class AmazonKinesisFirehoseBufferedAsyncClient implements AmazonKinesisFirehoseAsync {
+
+    public static final String USER_AGENT = AmazonKinesisFirehoseBufferedAsyncClient.class
+            .getSimpleName() + "/" + VersionInfoUtils.getVersion();
+
+    private final ConcurrentMap<String, DeliveryStreamBuffer> buffers =
+            new ConcurrentHashMap<String, DeliveryStreamBuffer>();
+    private final AmazonKinesisFirehoseAsync realFirehose;
+    private final FirehoseBufferConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    public AmazonKinesisFirehoseBufferedAsyncClient(AmazonKinesisFirehoseAsync realFirehose) {
+        this(realFirehose, new FirehoseBufferConfig());
+    }
+
+    public AmazonKinesisFirehoseBufferedAsyncClient(
+            AmazonKinesisFirehoseAsync realFirehose,
+            FirehoseBufferConfig config) {
+
+        if (realFirehose == null) {
+            throw new IllegalArgumentException("realFirehose must be specified");
+        }
+        this.realFirehose = realFirehose;
+        this.config = new FirehoseBufferConfig(config);
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(
+                this.config.getThreadPoolSize(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "firehose-buffered-client-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Buffers the record, and waits until it has been written.
+     */
+    @Override
+    public PutRecordResult putRecord(PutRecordRequest putRecordRequest) {
+        Future<PutRecordResult> future = getBuffer(putRecordRequest)
+                .putRecord(putRecordRequest, null);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(
+                    "Thread interrupted while waiting for execution result", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AmazonClientException) {
+                throw (AmazonClientException) e.getCause();
+            }
+            throw new AmazonClientException(
+                    "Caught an exception while waiting for request to complete", e);
+        }
+    }
+
+    /**
+     * Buffers the record. If there is no room for it in time, the returned future fails.
+     *
+     * @return a future that completes once the record has been written; never null
+     */
+    @Override
+    public Future<PutRecordResult> putRecordAsync(PutRecordRequest putRecordRequest) {
+        return putRecordAsync(putRecordRequest, null);
+    }
+
+    /**
+     * Buffers the record. If there is no room for it in time, the returned future fails and the
+     * handler is notified of the error.
+     *
+     * @return a future that completes once the record has been written; never null
+     */
+    @Override
+    public Future<PutRecordResult> putRecordAsync(
+            PutRecordRequest putRecordRequest,
+            AsyncHandler<PutRecordRequest, PutRecordResult> asyncHandler) {
+
+        DeliveryStreamBuffer buffer = getBuffer(putRecordRequest);
+        try {
+            return buffer.putRecord(putRecordRequest, asyncHandler);
+        } catch (AmazonClientException e) {
+            DeliveryStreamBuffer.RecordFuture future =
+                    new DeliveryStreamBuffer.RecordFuture(putRecordRequest, asyncHandler);
+            future.setException(e);
+            return future;
+        }
+    }
+
+    /**
+     * Sends all buffered records, and waits until every record added so far is done.
+     */
+    public void flush() {
+        for (DeliveryStreamBuffer buffer : buffers.values()) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Flushes all buffered records, then shuts down this client's threads and the wrapped client.
+     */
+    @Override
+    public void shutdown() {
+        for (DeliveryStreamBuffer buffer : buffers.values()) {
+            buffer.shutdown();
+        }
+        executor.shutdown();
+        realFirehose.shutdown();
+    }
+
+    private DeliveryStreamBuffer getBuffer(PutRecordRequest request) {
+        String deliveryStreamName = request.getDeliveryStreamName();
+        if (deliveryStreamName == null) {
+            throw new IllegalArgumentException("deliveryStreamName must be specified");
+        }
+        DeliveryStreamBuffer buffer = buffers.get(deliveryStreamName);
+        if (buffer == null) {
+            buffer = new DeliveryStreamBuffer(realFirehose, deliveryStreamName, config,
+                    executor, USER_AGENT);
+            DeliveryStreamBuffer existing = buffers.putIfAbsent(deliveryStreamName, buffer);
+            if (existing != null) {
+                buffer = existing;
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        realFirehose.setEndpoint(endpoint);
+    }
+
+    @Override
+    public void setRegion(Region region) {
+        realFirehose.setRegion(region);
+    }
+
+    @Override
+    public ResponseMetadata getCachedResponseMetadata(AmazonWebServiceRequest request) {
+        return realFirehose.getCachedResponseMetadata(request);
+    }
+
+    @Override
+    public CreateDeliveryStreamResult createDeliveryStream(CreateDeliveryStreamRequest createDeliveryStreamRequest) {
+        createDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.createDeliveryStream(createDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<CreateDeliveryStreamResult> createDeliveryStreamAsync(CreateDeliveryStreamRequest createDeliveryStreamRequest) {
+        createDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.createDeliveryStreamAsync(createDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<CreateDeliveryStreamResult> createDeliveryStreamAsync(
+            CreateDeliveryStreamRequest createDeliveryStreamRequest,
+            AsyncHandler<CreateDeliveryStreamRequest, CreateDeliveryStreamResult> asyncHandler) {
+
+        createDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.createDeliveryStreamAsync(createDeliveryStreamRequest, asyncHandler);
+    }
+
+    @Override
+    public DeleteDeliveryStreamResult deleteDeliveryStream(DeleteDeliveryStreamRequest deleteDeliveryStreamRequest) {
+        deleteDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.deleteDeliveryStream(deleteDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<DeleteDeliveryStreamResult> deleteDeliveryStreamAsync(DeleteDeliveryStreamRequest deleteDeliveryStreamRequest) {
+        deleteDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.deleteDeliveryStreamAsync(deleteDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<DeleteDeliveryStreamResult> deleteDeliveryStreamAsync(
+            DeleteDeliveryStreamRequest deleteDeliveryStreamRequest,
+            AsyncHandler<DeleteDeliveryStreamRequest, DeleteDeliveryStreamResult> asyncHandler) {
+
+        deleteDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.deleteDeliveryStreamAsync(deleteDeliveryStreamRequest, asyncHandler);
+    }
+
+    @Override
+    public DescribeDeliveryStreamResult describeDeliveryStream(DescribeDeliveryStreamRequest describeDeliveryStreamRequest) {
+        describeDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.describeDeliveryStream(describeDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<DescribeDeliveryStreamResult> describeDeliveryStreamAsync(DescribeDeliveryStreamRequest describeDeliveryStreamRequest) {
+        describeDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.describeDeliveryStreamAsync(describeDeliveryStreamRequest);
+    }
+
+    @Override
+    public Future<DescribeDeliveryStreamResult> describeDeliveryStreamAsync(
+            DescribeDeliveryStreamRequest describeDeliveryStreamRequest,
+            AsyncHandler<DescribeDeliveryStreamRequest, DescribeDeliveryStreamResult> asyncHandler) {
+
+        describeDeliveryStreamRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.describeDeliveryStreamAsync(describeDeliveryStreamRequest, asyncHandler);
+    }
+
+    @Override
+    public ListDeliveryStreamsResult listDeliveryStreams(ListDeliveryStreamsRequest listDeliveryStreamsRequest) {
+        listDeliveryStreamsRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.listDeliveryStreams(listDeliveryStreamsRequest);
+    }
+
+    @Override
+    public Future<ListDeliveryStreamsResult> listDeliveryStreamsAsync(ListDeliveryStreamsRequest listDeliveryStreamsRequest) {
+        listDeliveryStreamsRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.listDeliveryStreamsAsync(listDeliveryStreamsRequest);
+    }
+
+    @Override
+    public Future<ListDeliveryStreamsResult> listDeliveryStreamsAsync(
+            ListDeliveryStreamsRequest listDeliveryStreamsRequest,
+            AsyncHandler<ListDeliveryStreamsRequest, ListDeliveryStreamsResult> asyncHandler) {
+
+        listDeliveryStreamsRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.listDeliveryStreamsAsync(listDeliveryStreamsRequest, asyncHandler);
+    }
+
+    @Override
+    public PutRecordBatchResult putRecordBatch(PutRecordBatchRequest putRecordBatchRequest) {
+        putRecordBatchRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.putRecordBatch(putRecordBatchRequest);
+    }
+
+    @Override
+    public Future<PutRecordBatchResult> putRecordBatchAsync(PutRecordBatchRequest putRecordBatchRequest) {
+        putRecordBatchRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.putRecordBatchAsync(putRecordBatchRequest);
+    }
+
+    @Override
+    public Future<PutRecordBatchResult> putRecordBatchAsync(
+            PutRecordBatchRequest putRecordBatchRequest,
+            AsyncHandler<PutRecordBatchRequest, PutRecordBatchResult> asyncHandler) {
+
+        putRecordBatchRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.putRecordBatchAsync(putRecordBatchRequest, asyncHandler);
+    }
+
+    @Override
+    public UpdateDestinationResult updateDestination(UpdateDestinationRequest updateDestinationRequest) {
+        updateDestinationRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.updateDestination(updateDestinationRequest);
+    }
+
+    @Override
+    public Future<UpdateDestinationResult> updateDestinationAsync(UpdateDestinationRequest updateDestinationRequest) {
+        updateDestinationRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.updateDestinationAsync(updateDestinationRequest);
+    }
+
+    @Override
+    public Future<UpdateDestinationResult> updateDestinationAsync(
+            UpdateDestinationRequest updateDestinationRequest,
+            AsyncHandler<UpdateDestinationRequest, UpdateDestinationResult> asyncHandler) {
+
+        updateDestinationRequest.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return realFirehose.updateDestinationAsync(updateDestinationRequest, asyncHandler);
+    }
+}
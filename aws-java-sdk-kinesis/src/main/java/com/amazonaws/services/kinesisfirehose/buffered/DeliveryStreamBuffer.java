@@ -0,0 +1,400 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.BatchRetries;
+import com.amazonaws.internal.SettableFuture;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+/**
+ * The records buffered for one delivery stream, sent with PutRecordBatch calls.
+ * <p>
+ * A batch is sent as soon as it holds {@link FirehoseBufferConfig#getMaxBatchRecords()} records or
+ * {@link FirehoseBufferConfig#getMaxBatchBytes()} bytes, or
+ * {@link FirehoseBufferConfig#getMaxBatchOpenMs()} after the first buffered record, with at most
+ * {@link FirehoseBufferConfig#getMaxInflightBatches()} calls in flight. Records a call rejects
+ * because the service was throttling or unavailable are sent again on their own, with exponential
+ * back off, while the call keeps its in-flight slot; the records that succeeded are not. Errors
+ * failing a call as a whole are left to the retry policy of the client.
+ */
+class DeliveryStreamBuffer {
+
+    private final AmazonKinesisFirehose client;
+    private final String deliveryStreamName;
+    private final FirehoseBufferConfig config;
+    private final ScheduledExecutorService executor;
+    private final String userAgent;
+
+    private final Object lock = new Object();
+
+    /** Records waiting to be sent. Guarded by lock. */
+    private final LinkedList<PendingRecord> ready = new LinkedList<PendingRecord>();
+
+    /** Size of the ready records. Guarded by lock. */
+    private long readyBytes;
+
+    /** Records added and not done, and their size. Guarded by lock. */
+    private long bufferedRecords;
+    private long bufferedBytes;
+
+    /** Guarded by lock. */
+    private int inflight;
+
+    /** Whether every ready record should be sent, rather than only full batches. Guarded by lock. */
+    private boolean draining;
+
+    /** Guarded by lock. */
+    private boolean timerScheduled;
+
+    /** Guarded by lock. */
+    private boolean shutdown;
+
+    DeliveryStreamBuffer(
+            AmazonKinesisFirehose client,
+            String deliveryStreamName,
+            FirehoseBufferConfig config,
+            ScheduledExecutorService executor,
+            String userAgent) {
+
+        this.client = client;
+        this.deliveryStreamName = deliveryStreamName;
+        this.config = config;
+        this.executor = executor;
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Queues a record, waiting up to {@link FirehoseBufferConfig#getMaxBlockMs()} while the buffer
+     * is full.
+     *
+     * @return a future that completes once the record has been written; never null
+     * @throws AmazonClientException
+     *             if there was no room for the record in time, or the buffer has been shut down
+     */
+    Future<PutRecordResult> putRecord(
+            PutRecordRequest request,
+            AsyncHandler<PutRecordRequest, PutRecordResult> handler) {
+
+        PendingRecord record = new PendingRecord(request, handler);
+        synchronized (lock) {
+            awaitBufferSpace(record.size);
+            bufferedRecords++;
+            bufferedBytes += record.size;
+            ready.add(record);
+            readyBytes += record.size;
+
+            if (!timerScheduled) {
+                timerScheduled = true;
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            timerScheduled = false;
+                            draining = true;
+                            send();
+                        }
+                    }
+                }, config.getMaxBatchOpenMs(), TimeUnit.MILLISECONDS);
+            }
+            send();
+        }
+        return record.future;
+    }
+
+    /**
+     * Sends all buffered records, and waits until every record added so far is done.
+     */
+    void flush() {
+        synchronized (lock) {
+            draining = true;
+            send();
+
+            boolean interrupted = false;
+            while (bufferedRecords > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Flushes all buffered records. Records added after this call fail.
+     */
+    void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+        flush();
+    }
+
+    /** Must be called with lock held. */
+    private void awaitBufferSpace(long size) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(config.getMaxBlockMs());
+        while (true) {
+            if (shutdown) {
+                throw new AmazonClientException(
+                        "The buffered Firehose client has been shut down");
+            }
+            if (bufferedBytes == 0
+                    || bufferedBytes + size <= config.getMaxBufferedBytes()) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new AmazonClientException("Timed out waiting for buffer space, "
+                        + bufferedBytes + " bytes are buffered for delivery stream "
+                        + deliveryStreamName);
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(
+                        "Interrupted while waiting for buffer space", e);
+            }
+        }
+    }
+
+    /** Must be called with lock held. */
+    private void send() {
+        while (inflight < config.getMaxInflightBatches()
+                && !ready.isEmpty()
+                && (draining || isFull())) {
+
+            List<PendingRecord> batch = new ArrayList<PendingRecord>();
+            long bytes = 0;
+            while (!ready.isEmpty() && batch.size() < config.getMaxBatchRecords()) {
+                PendingRecord next = ready.peek();
+                if (!batch.isEmpty() && bytes + next.size > config.getMaxBatchBytes()) {
+                    break;
+                }
+                batch.add(ready.poll());
+                bytes += next.size;
+            }
+            readyBytes -= bytes;
+            inflight++;
+            executor.execute(new BatchTask(batch));
+        }
+        if (ready.isEmpty()) {
+            draining = false;
+        }
+    }
+
+    /** Must be called with lock held. */
+    private boolean isFull() {
+        return ready.size() >= config.getMaxBatchRecords()
+                || readyBytes >= config.getMaxBatchBytes();
+    }
+
+    /**
+     * Sends the records of one PutRecordBatch call, and retries those that fail. A retry is
+     * scheduled on the executor after its back off, rather than waited for on a thread.
+     */
+    private final class BatchTask implements Runnable {
+
+        private final List<PendingRecord> batch;
+
+        /** The records left to send, and the attempt sending them. Used by one run at a time. */
+        private List<PendingRecord> remaining;
+        private int attempt;
+
+        BatchTask(List<PendingRecord> batch) {
+            this.batch = batch;
+            this.remaining = batch;
+        }
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                finished = put();
+            } catch (RuntimeException e) {
+                failAll(remaining, e);
+            } finally {
+                if (finished) {
+                    done();
+                }
+            }
+        }
+
+        /**
+         * @return false if the failed records have been scheduled to be sent again
+         */
+        private boolean put() {
+            PutRecordBatchResult result;
+            try {
+                result = client.putRecordBatch(toRequest(remaining));
+            } catch (AmazonClientException e) {
+                // The client has already retried the call as far as its retry policy allows
+                failAll(remaining, e);
+                return true;
+            }
+
+            List<PendingRecord> failed = new ArrayList<PendingRecord>();
+            AmazonServiceException lastError = null;
+            List<PutRecordBatchResponseEntry> entries = result.getRequestResponses();
+            for (int i = 0; i < remaining.size(); i++) {
+                PendingRecord record = remaining.get(i);
+                PutRecordBatchResponseEntry entry = entries.get(i);
+                if (entry.getErrorCode() == null) {
+                    record.future.set(new PutRecordResult()
+                            .withRecordId(entry.getRecordId()));
+                    continue;
+                }
+
+                AmazonServiceException error = new AmazonServiceException(entry.getErrorMessage());
+                error.setErrorCode(entry.getErrorCode());
+                error.setServiceName("Firehose");
+                if (BatchRetries.isRetryableErrorCode(entry.getErrorCode())) {
+                    failed.add(record);
+                    lastError = error;
+                } else {
+                    record.future.setException(error);
+                }
+            }
+
+            if (failed.isEmpty()) {
+                return true;
+            }
+            if (attempt >= config.getMaxRetries()) {
+                failAll(failed, lastError);
+                return true;
+            }
+            long delay = BatchRetries.backoffMs(attempt);
+            remaining = failed;
+            attempt++;
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            return false;
+        }
+
+        private void done() {
+            long bytes = 0;
+            for (PendingRecord record : batch) {
+                bytes += record.size;
+            }
+            synchronized (lock) {
+                bufferedRecords -= batch.size();
+                bufferedBytes -= bytes;
+                inflight--;
+                send();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private PutRecordBatchRequest toRequest(List<PendingRecord> records) {
+        List<Record> entries = new ArrayList<Record>(records.size());
+        for (PendingRecord record : records) {
+            entries.add(record.record);
+        }
+        PutRecordBatchRequest request = new PutRecordBatchRequest()
+                .withDeliveryStreamName(deliveryStreamName)
+                .withRecords(entries);
+        request.getRequestClientOptions().appendUserAgent(userAgent);
+        return request;
+    }
+
+    private static void failAll(List<PendingRecord> records, Exception e) {
+        for (PendingRecord record : records) {
+            record.future.setException(e);
+        }
+    }
+
+    private static final class PendingRecord {
+
+        private final Record record;
+        private final long size;
+        private final RecordFuture future;
+
+        PendingRecord(
+                PutRecordRequest request,
+                AsyncHandler<PutRecordRequest, PutRecordResult> handler) {
+
+            Record record = request.getRecord();
+            if (record == null || record.getData() == null) {
+                throw new IllegalArgumentException("record data must be specified");
+            }
+            ByteBuffer data = record.getData();
+            if (data.remaining() > FirehoseBufferConfig.MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Record of " + data.remaining()
+                        + " bytes exceeds the maximum of "
+                        + FirehoseBufferConfig.MAX_RECORD_BYTES);
+            }
+            // Copied, so that the caller may reuse its buffer
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            this.record = new Record().withData(ByteBuffer.wrap(bytes));
+            this.size = bytes.length;
+            this.future = new RecordFuture(request, handler);
+        }
+    }
+
+    /**
+     * The future of a single record, which notifies the handler of the record, if any, once the
+     * call that sends it completes it.
+     */
+    static final class RecordFuture extends SettableFuture<PutRecordResult> {
+
+        private final PutRecordRequest request;
+        private final AsyncHandler<PutRecordRequest, PutRecordResult> handler;
+
+        RecordFuture(
+                PutRecordRequest request,
+                AsyncHandler<PutRecordRequest, PutRecordResult> handler) {
+
+            this.request = request;
+            this.handler = handler;
+        }
+
+        @Override
+        protected void onSuccess(PutRecordResult value) {
+            if (handler != null) {
+                handler.onSuccess(request, value);
+            }
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            if (handler != null) {
+                handler.onError(e);
+            }
+        }
+    }
+}
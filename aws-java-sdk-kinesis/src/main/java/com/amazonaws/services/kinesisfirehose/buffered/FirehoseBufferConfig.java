@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+/**
+ * Configuration of an {@link AmazonKinesisFirehoseBufferedAsyncClient}.
+ */
+public class FirehoseBufferConfig {
+
+    /** The maximum number of records in a PutRecordBatch call. */
+    public static final int SERVICE_MAX_BATCH_RECORDS = 500;
+
+    /** The maximum size of a PutRecordBatch call. */
+    public static final long SERVICE_MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    /** The maximum size of the data of a single record. */
+    public static final int MAX_RECORD_BYTES = 1000 * 1024;
+
+    /**
+     * The maximum number of records sent in a single PutRecordBatch call.
+     */
+    private int maxBatchRecords;
+
+    /** 500 records */
+    public static final int MAX_BATCH_RECORDS_DEFAULT = SERVICE_MAX_BATCH_RECORDS;
+
+    /**
+     * The maximum size of the records sent in a single PutRecordBatch call.
+     */
+    private long maxBatchBytes;
+
+    /** 4 MiB */
+    public static final long MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) a batch is held open for more records.
+     * The longer this time, the fewer calls are made, but the longer each
+     * record waits before it is sent.
+     */
+    private long maxBatchOpenMs;
+
+    /** 200 milliseconds */
+    public static final long MAX_BATCH_OPEN_MS_DEFAULT = 200;
+
+    /**
+     * The maximum number of PutRecordBatch calls in flight at the same time,
+     * per delivery stream.
+     */
+    private int maxInflightBatches;
+
+    /** 5 batches */
+    public static final int MAX_INFLIGHT_BATCHES_DEFAULT = 5;
+
+    /**
+     * The maximum size of the records of a delivery stream that are buffered
+     * or in flight. Callers adding records beyond this wait for earlier
+     * records to be done, which bounds the memory used while the delivery
+     * stream is throttled.
+     */
+    private long maxBufferedBytes;
+
+    /** 32 MiB */
+    public static final long MAX_BUFFERED_BYTES_DEFAULT = 32L * 1024 * 1024;
+
+    /**
+     * The maximum time (milliseconds) a caller waits for buffer space before
+     * its record fails.
+     */
+    private long maxBlockMs;
+
+    /** 10 seconds */
+    public static final long MAX_BLOCK_MS_DEFAULT = 10000;
+
+    /**
+     * The maximum number of times records a PutRecordBatch call rejects
+     * because the service was throttling or unavailable are sent again before
+     * they fail. Errors failing a whole call are retried by the client, as its
+     * retry policy allows.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /**
+     * The number of threads sending batches, shared by all delivery streams.
+     */
+    private int threadPoolSize;
+
+    /** 10 threads */
+    public static final int THREAD_POOL_SIZE_DEFAULT = 10;
+
+    public FirehoseBufferConfig() {
+        this.maxBatchRecords = MAX_BATCH_RECORDS_DEFAULT;
+        this.maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        this.maxBatchOpenMs = MAX_BATCH_OPEN_MS_DEFAULT;
+        this.maxInflightBatches = MAX_INFLIGHT_BATCHES_DEFAULT;
+        this.maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+        this.maxBlockMs = MAX_BLOCK_MS_DEFAULT;
+        this.maxRetries = MAX_RETRIES_DEFAULT;
+        this.threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+    }
+
+    /** copy constructor */
+    public FirehoseBufferConfig(FirehoseBufferConfig other) {
+        this.maxBatchRecords = other.maxBatchRecords;
+        this.maxBatchBytes = other.maxBatchBytes;
+        this.maxBatchOpenMs = other.maxBatchOpenMs;
+        this.maxInflightBatches = other.maxInflightBatches;
+        this.maxBufferedBytes = other.maxBufferedBytes;
+        this.maxBlockMs = other.maxBlockMs;
+        this.maxRetries = other.maxRetries;
+        this.threadPoolSize = other.threadPoolSize;
+    }
+
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public void setMaxBatchRecords(int maxBatchRecords) {
+        if (maxBatchRecords < 1 || maxBatchRecords > SERVICE_MAX_BATCH_RECORDS) {
+            throw new IllegalArgumentException(
+                    "Max batch records must be between 1 and "
+                    + SERVICE_MAX_BATCH_RECORDS);
+        }
+        this.maxBatchRecords = maxBatchRecords;
+    }
+
+    public FirehoseBufferConfig withMaxBatchRecords(int maxBatchRecords) {
+        setMaxBatchRecords(maxBatchRecords);
+        return this;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes < MAX_RECORD_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max batch bytes must be between " + MAX_RECORD_BYTES
+                    + " and " + SERVICE_MAX_BATCH_BYTES);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public FirehoseBufferConfig withMaxBatchBytes(long maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    public long getMaxBatchOpenMs() {
+        return maxBatchOpenMs;
+    }
+
+    public void setMaxBatchOpenMs(long maxBatchOpenMs) {
+        if (maxBatchOpenMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max batch open time must not be negative");
+        }
+        this.maxBatchOpenMs = maxBatchOpenMs;
+    }
+
+    public FirehoseBufferConfig withMaxBatchOpenMs(long maxBatchOpenMs) {
+        setMaxBatchOpenMs(maxBatchOpenMs);
+        return this;
+    }
+
+    public int getMaxInflightBatches() {
+        return maxInflightBatches;
+    }
+
+    public void setMaxInflightBatches(int maxInflightBatches) {
+        if (maxInflightBatches < 1) {
+            throw new IllegalArgumentException(
+                    "Max inflight batches must be positive");
+        }
+        this.maxInflightBatches = maxInflightBatches;
+    }
+
+    public FirehoseBufferConfig withMaxInflightBatches(int maxInflightBatches) {
+        setMaxInflightBatches(maxInflightBatches);
+        return this;
+    }
+
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        if (maxBufferedBytes < MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max buffered bytes must be at least " + MAX_RECORD_BYTES);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public FirehoseBufferConfig withMaxBufferedBytes(long maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    public long getMaxBlockMs() {
+        return maxBlockMs;
+    }
+
+    public void setMaxBlockMs(long maxBlockMs) {
+        if (maxBlockMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max block time must not be negative");
+        }
+        this.maxBlockMs = maxBlockMs;
+    }
+
+    public FirehoseBufferConfig withMaxBlockMs(long maxBlockMs) {
+        setMaxBlockMs(maxBlockMs);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException(
+                    "Max retries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public FirehoseBufferConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "Thread pool size must be positive");
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public FirehoseBufferConfig withThreadPoolSize(int threadPoolSize) {
+        setThreadPoolSize(threadPoolSize);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "FirehoseBufferConfig [maxBatchRecords=" + maxBatchRecords
+                + ", maxBatchBytes=" + maxBatchBytes
+                + ", maxBatchOpenMs=" + maxBatchOpenMs
+                + ", maxInflightBatches=" + maxInflightBatches
+                + ", maxBufferedBytes=" + maxBufferedBytes
+                + ", maxBlockMs=" + maxBlockMs
+                + ", maxRetries=" + maxRetries
+                + ", threadPoolSize=" + threadPoolSize + "]";
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.AbstractAmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.GetShardIteratorResult;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+public class BufferedKinesisConsumerTest {
+
+    private static final String STREAM = "stream";
+
+    private BufferedKinesisConsumer consumer;
+
+    @After
+    public void tearDown() throws Exception {
+        if (consumer != null) {
+            consumer.shutdown();
+            consumer.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testChildrenAreReadAfterTheirParents() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.addShard("parent", null, null, 3, true);
+        kinesis.addShard("left", "parent", null, 2, true);
+        kinesis.addShard("right", "parent", null, 2, true);
+        kinesis.addShard("merged", "left", "right", 2, false);
+        RecordingProcessor processor = new RecordingProcessor();
+        InMemoryCheckpointStore checkpoints = new InMemoryCheckpointStore();
+
+        consumer = newConsumer(kinesis, processor, checkpoints, config());
+        consumer.start();
+        processor.awaitEvents(3 + 2 + 2 + 2 + 3);
+
+        List<String> events = processor.events();
+        int parentEnd = events.indexOf("end:parent");
+        Assert.assertEquals(3, parentEnd);
+        Assert.assertEquals(Arrays.asList("parent-0", "parent-1", "parent-2"), events.subList(0, 3));
+        int mergedStart = events.indexOf("merged-0");
+        for (String shardId : Arrays.asList("left", "right")) {
+            Assert.assertTrue(events.indexOf(shardId + "-0") > parentEnd);
+            Assert.assertTrue(events.indexOf(shardId + "-1") > events.indexOf(shardId + "-0"));
+            Assert.assertTrue(events.indexOf("end:" + shardId) < mergedStart);
+            Assert.assertEquals(events.indexOf("end:" + shardId), events.lastIndexOf("end:" + shardId));
+        }
+        Assert.assertTrue(events.indexOf("merged-1") > mergedStart);
+
+        // The children were read from their start, not from LATEST
+        Assert.assertEquals(ShardIteratorType.TRIM_HORIZON.toString(),
+                kinesis.iteratorRequests("merged").get(0).getShardIteratorType());
+        Assert.assertEquals(
+                new HashSet<String>(Arrays.asList("parent", "left", "right")),
+                new HashSet<String>(consumer.getCompletedShardIds()));
+        Assert.assertEquals(Collections.singleton("merged"), consumer.getActiveShardIds());
+        Assert.assertEquals(CheckpointStore.SHARD_END, checkpoints.getCheckpoint(STREAM, "left"));
+        Assert.assertEquals("merged-1", checkpoints.getCheckpoint(STREAM, "merged"));
+    }
+
+    @Test
+    public void testFetchingPausesUntilPrefetchedRecordsAreProcessed() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.addShard("shard", null, null, 20, false);
+        RecordingProcessor processor = new RecordingProcessor();
+        processor.blockFirstBatch();
+
+        consumer = newConsumer(kinesis, processor, new InMemoryCheckpointStore(),
+                config().withMaxRecordsPerCall(2).withMaxPrefetchedRecords(4));
+        consumer.start();
+
+        Assert.assertTrue(processor.firstBatchStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        // The batch being processed counts against the prefetched records
+        Assert.assertEquals(4, kinesis.fetchedRecords());
+
+        processor.releaseFirstBatch();
+        processor.awaitEvents(20);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("shard-" + i);
+        }
+        Assert.assertEquals(expected, processor.events());
+    }
+
+    /**
+     * The shard's last batch pauses fetching, and processing it resumes the
+     * fetch task before the fetch task has queued the end of the shard. The
+     * end of the shard must not be read twice. The executor runs every task
+     * on the calling thread, so the process task runs inside the fetch task.
+     */
+    @Test
+    public void testLastBatchThatPausesFetchingEndsTheShardOnce() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.addShard("shard", null, null, 2, true);
+        RecordingProcessor processor = new RecordingProcessor();
+
+        consumer = new BufferedKinesisConsumer(kinesis, STREAM, processor,
+                new InMemoryCheckpointStore(), config().withMaxPrefetchedRecords(2),
+                new CallerRunsScheduledExecutor());
+        consumer.discoverShards();
+
+        Assert.assertEquals(Arrays.asList("shard-0", "shard-1", "end:shard"), processor.events());
+        Assert.assertEquals(1, kinesis.iteratorRequests("shard").size());
+        Assert.assertEquals(1, kinesis.getRecordsCalls("shard"));
+        Assert.assertEquals(Collections.singleton("shard"), consumer.getCompletedShardIds());
+    }
+
+    @Test
+    public void testCaughtUpShardsArePolledLessOften() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.addShard("idle", null, null, 0, false);
+        kinesis.addShard("behind", null, null, 0, false);
+        kinesis.millisBehindLatest.put("behind", 5000L);
+
+        consumer = newConsumer(kinesis, new RecordingProcessor(), new InMemoryCheckpointStore(),
+                config().withMinPollIntervalMs(5).withMaxPollIntervalMs(100));
+        consumer.start();
+        Thread.sleep(1000);
+
+        int idleCalls = kinesis.getRecordsCalls("idle");
+        int behindCalls = kinesis.getRecordsCalls("behind");
+        Assert.assertTrue(idleCalls + " idle calls, " + behindCalls + " behind",
+                behindCalls > 3 * idleCalls);
+        Assert.assertEquals(Long.valueOf(5000), consumer.getMillisBehindLatest().get("behind"));
+        Assert.assertEquals(Long.valueOf(0), consumer.getMillisBehindLatest().get("idle"));
+    }
+
+    @Test
+    public void testRestartedConsumerResumesAfterItsCheckpoints() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.addShard("old", null, null, 3, true);
+        kinesis.addShard("shard", "old", null, 5, false);
+        InMemoryCheckpointStore checkpoints = new InMemoryCheckpointStore();
+        checkpoints.setCheckpoint(STREAM, "old", CheckpointStore.SHARD_END);
+        checkpoints.setCheckpoint(STREAM, "shard", "shard-2");
+        RecordingProcessor processor = new RecordingProcessor();
+
+        consumer = newConsumer(kinesis, processor, checkpoints, config());
+        consumer.start();
+        processor.awaitEvents(2);
+        Thread.sleep(100);
+
+        Assert.assertEquals(Arrays.asList("shard-3", "shard-4"), processor.events());
+        Assert.assertTrue(kinesis.iteratorRequests("old").isEmpty());
+        GetShardIteratorRequest request = kinesis.iteratorRequests("shard").get(0);
+        Assert.assertEquals(ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(),
+                request.getShardIteratorType());
+        Assert.assertEquals("shard-2", request.getStartingSequenceNumber());
+        Assert.assertEquals("shard-4", checkpoints.getCheckpoint(STREAM, "shard"));
+        Assert.assertTrue(consumer.getCompletedShardIds().contains("old"));
+    }
+
+    private static BufferedKinesisConsumerConfig config() {
+        return new BufferedKinesisConsumerConfig()
+                .withInitialPosition(ShardIteratorType.TRIM_HORIZON)
+                .withMinPollIntervalMs(1)
+                .withMaxPollIntervalMs(10)
+                .withDeaggregate(false);
+    }
+
+    private static BufferedKinesisConsumer newConsumer(FakeKinesis kinesis,
+            RecordingProcessor processor, CheckpointStore checkpoints,
+            BufferedKinesisConsumerConfig config) {
+
+        return new BufferedKinesisConsumer(kinesis, STREAM, processor, checkpoints, config);
+    }
+
+    /**
+     * A stream whose shards hold a fixed list of records. Iterators are the
+     * shard id and the position of the next record.
+     */
+    private static final class FakeKinesis extends AbstractAmazonKinesis {
+
+        private final Map<String, Shard> shards = new LinkedHashMap<String, Shard>();
+        private final Map<String, Integer> sizes = new HashMap<String, Integer>();
+        private final Map<String, Boolean> closed = new HashMap<String, Boolean>();
+        private final Map<String, List<GetShardIteratorRequest>> iteratorRequests =
+                new HashMap<String, List<GetShardIteratorRequest>>();
+        private final Map<String, Integer> getRecordsCalls = new HashMap<String, Integer>();
+        private int fetchedRecords;
+
+        final Map<String, Long> millisBehindLatest = new ConcurrentHashMap<String, Long>();
+
+        synchronized void addShard(String shardId, String parentId, String adjacentParentId,
+                int records, boolean isClosed) {
+            shards.put(shardId, new Shard().withShardId(shardId).withParentShardId(parentId)
+                    .withAdjacentParentShardId(adjacentParentId));
+            sizes.put(shardId, records);
+            closed.put(shardId, isClosed);
+            iteratorRequests.put(shardId, new ArrayList<GetShardIteratorRequest>());
+            getRecordsCalls.put(shardId, 0);
+        }
+
+        synchronized List<GetShardIteratorRequest> iteratorRequests(String shardId) {
+            return new ArrayList<GetShardIteratorRequest>(iteratorRequests.get(shardId));
+        }
+
+        synchronized int getRecordsCalls(String shardId) {
+            return getRecordsCalls.get(shardId);
+        }
+
+        synchronized int fetchedRecords() {
+            return fetchedRecords;
+        }
+
+        @Override
+        public synchronized DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                    .withStreamName(request.getStreamName())
+                    .withHasMoreShards(false)
+                    .withShards(new ArrayList<Shard>(shards.values())));
+        }
+
+        @Override
+        public synchronized GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            String shardId = request.getShardId();
+            iteratorRequests.get(shardId).add(request);
+
+            int position;
+            if (ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString().equals(request.getShardIteratorType())) {
+                String sequenceNumber = request.getStartingSequenceNumber();
+                position = Integer.parseInt(sequenceNumber.substring(shardId.length() + 1)) + 1;
+            } else if (ShardIteratorType.LATEST.toString().equals(request.getShardIteratorType())) {
+                position = sizes.get(shardId);
+            } else {
+                position = 0;
+            }
+            return new GetShardIteratorResult().withShardIterator(shardId + "/" + position);
+        }
+
+        @Override
+        public synchronized GetRecordsResult getRecords(GetRecordsRequest request) {
+            String iterator = request.getShardIterator();
+            String shardId = iterator.substring(0, iterator.indexOf('/'));
+            int position = Integer.parseInt(iterator.substring(shardId.length() + 1));
+            getRecordsCalls.put(shardId, getRecordsCalls.get(shardId) + 1);
+
+            int end = Math.min(sizes.get(shardId), position + request.getLimit());
+            List<Record> records = new ArrayList<Record>();
+            for (int i = position; i < end; i++) {
+                records.add(new Record()
+                        .withSequenceNumber(shardId + "-" + i)
+                        .withPartitionKey("key")
+                        .withData(ByteBuffer.wrap(new byte[] {(byte) i})));
+            }
+            fetchedRecords += records.size();
+
+            boolean ended = closed.get(shardId) && end == sizes.get(shardId);
+            Long behind = millisBehindLatest.get(shardId);
+            return new GetRecordsResult()
+                    .withRecords(records)
+                    .withNextShardIterator(ended ? null : shardId + "/" + end)
+                    .withMillisBehindLatest(behind == null ? 0L : behind);
+        }
+    }
+
+    /**
+     * Records the sequence numbers of the records it processes and the ends
+     * of shards, as "end:" followed by the shard id.
+     */
+    private static final class RecordingProcessor implements KinesisRecordProcessor {
+
+        private final List<String> events = new ArrayList<String>();
+
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        private volatile CountDownLatch firstBatchReleased = new CountDownLatch(0);
+
+        void blockFirstBatch() {
+            firstBatchReleased = new CountDownLatch(1);
+        }
+
+        void releaseFirstBatch() {
+            firstBatchReleased.countDown();
+        }
+
+        @Override
+        public void processRecords(String shardId, List<Record> records) throws Exception {
+            firstBatchStarted.countDown();
+            firstBatchReleased.await(10, TimeUnit.SECONDS);
+            synchronized (this) {
+                for (Record record : records) {
+                    events.add(record.getSequenceNumber());
+                }
+            }
+        }
+
+        @Override
+        public synchronized void shardEnded(String shardId) {
+            events.add("end:" + shardId);
+        }
+
+        synchronized List<String> events() {
+            return new ArrayList<String>(events);
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (events().size() < count) {
+                Assert.assertTrue("Saw only " + events(), System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static final class InMemoryCheckpointStore implements CheckpointStore {
+
+        private final Map<String, String> checkpoints = new ConcurrentHashMap<String, String>();
+
+        @Override
+        public String getCheckpoint(String streamName, String shardId) {
+            return checkpoints.get(streamName + "/" + shardId);
+        }
+
+        @Override
+        public void setCheckpoint(String streamName, String shardId, String checkpoint) {
+            checkpoints.put(streamName + "/" + shardId, checkpoint);
+        }
+    }
+
+    /**
+     * Runs every task on the calling thread, right away, whatever its delay.
+     */
+    private static final class CallerRunsScheduledExecutor extends ScheduledThreadPoolExecutor {
+
+        CallerRunsScheduledExecutor() {
+            super(1);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            command.run();
+            return null;
+        }
+    }
+}
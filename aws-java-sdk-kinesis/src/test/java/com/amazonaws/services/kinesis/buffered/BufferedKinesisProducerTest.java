@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.kinesis.AbstractAmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.HashKeyRange;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+public class BufferedKinesisProducerTest {
+
+    private static final BigInteger MIDDLE_HASH_KEY = BigInteger.ONE.shiftLeft(127);
+
+    @Test
+    public void testRetryDoesNotHoldTheThread() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.throttleFirstPut = true;
+        BufferedKinesisProducer producer = newProducer(kinesis);
+
+        Future<PutRecordsResultEntry> first = producer.addUserRecord("a", "0", data());
+        Future<PutRecordsResultEntry> second =
+                producer.addUserRecord("b", MIDDLE_HASH_KEY.toString(), data());
+
+        Assert.assertEquals("shard-0", first.get(10, TimeUnit.SECONDS).getShardId());
+        Assert.assertEquals("shard-1", second.get(10, TimeUnit.SECONDS).getShardId());
+        // The second shard was written while the first one was backing off, on the only thread
+        Assert.assertEquals(Arrays.asList("shard-0", "shard-1", "shard-0"), kinesis.putShards());
+        Assert.assertEquals(1, producer.getMetrics().getRetriedRecords());
+        producer.shutdown();
+    }
+
+    @Test
+    public void testFailedCallIsLeftToTheClient() throws Exception {
+        FakeKinesis kinesis = new FakeKinesis();
+        kinesis.callError = new AmazonServiceException("Slow down");
+        kinesis.callError.setErrorCode("ThrottlingException");
+        kinesis.callError.setStatusCode(400);
+        BufferedKinesisProducer producer = newProducer(kinesis);
+
+        Future<PutRecordsResultEntry> future = producer.addUserRecord("a", "0", data());
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the record to fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(kinesis.callError, e.getCause());
+        }
+        Assert.assertEquals(1, kinesis.putShards().size());
+        Assert.assertEquals(1, producer.getMetrics().getFailedUserRecords());
+        producer.shutdown();
+    }
+
+    private static BufferedKinesisProducer newProducer(FakeKinesis kinesis) {
+        return new BufferedKinesisProducer(kinesis, "stream", new BufferedKinesisProducerConfig()
+                .withAggregationEnabled(false)
+                .withMaxBatchRecords(1)
+                .withThreadPoolSize(1));
+    }
+
+    private static ByteBuffer data() {
+        return ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+    }
+
+    /**
+     * A stream of two shards splitting the hash key range in its middle.
+     */
+    private static final class FakeKinesis extends AbstractAmazonKinesis {
+
+        private final List<String> putShards = new ArrayList<String>();
+
+        /** Whether the first record put is rejected as throttled. */
+        volatile boolean throttleFirstPut;
+
+        /** If set, thrown by every PutRecords call. */
+        volatile AmazonServiceException callError;
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            BigInteger max = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+            BigInteger below = MIDDLE_HASH_KEY.subtract(BigInteger.ONE);
+            return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                    .withStreamName(request.getStreamName())
+                    .withHasMoreShards(false)
+                    .withShards(
+                            shard("shard-0", BigInteger.ZERO, below),
+                            shard("shard-1", MIDDLE_HASH_KEY, max)));
+        }
+
+        @Override
+        public PutRecordsResult putRecords(PutRecordsRequest request) {
+            List<PutRecordsResultEntry> entries = new ArrayList<PutRecordsResultEntry>();
+            for (PutRecordsRequestEntry entry : request.getRecords()) {
+                String shardId = new BigInteger(entry.getExplicitHashKey())
+                        .compareTo(MIDDLE_HASH_KEY) < 0 ? "shard-0" : "shard-1";
+                boolean throttled;
+                synchronized (this) {
+                    putShards.add(shardId);
+                    throttled = throttleFirstPut && putShards.size() == 1;
+                }
+                if (callError != null) {
+                    throw callError;
+                }
+                entries.add(throttled
+                        ? new PutRecordsResultEntry()
+                                .withErrorCode("ProvisionedThroughputExceededException")
+                                .withErrorMessage("Rate exceeded")
+                        : new PutRecordsResultEntry()
+                                .withShardId(shardId)
+                                .withSequenceNumber(String.valueOf(entries.size())));
+            }
+            return new PutRecordsResult().withRecords(entries);
+        }
+
+        synchronized List<String> putShards() {
+            return new ArrayList<String>(putShards);
+        }
+
+        private static Shard shard(String shardId, BigInteger start, BigInteger end) {
+            return new Shard()
+                    .withShardId(shardId)
+                    .withHashKeyRange(new HashKeyRange()
+                            .withStartingHashKey(start.toString())
+                            .withEndingHashKey(end.toString()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.util.StringUtils;
+
+public class RecordAggregatorTest {
+
+    @Test
+    public void testRoundTrip() {
+        RecordAggregator aggregator = new RecordAggregator();
+        aggregator.add("key-a", null, bytes("first"));
+        aggregator.add("key-b", "12345", bytes("second"));
+        aggregator.add("key-a", null, new byte[0]);
+        aggregator.add("k\u00e9y-\u20ac", "12345", bytes("fourth"));
+
+        byte[] aggregated = aggregator.toBytes();
+        Assert.assertEquals(aggregator.size(),
+                aggregated.length + "key-a".getBytes(StringUtils.UTF8).length);
+
+        List<Record> records = RecordAggregator.deaggregate(record(aggregated));
+        Assert.assertEquals(4, records.size());
+        assertUserRecord(records.get(0), 0, "key-a", null, "first");
+        assertUserRecord(records.get(1), 1, "key-b", "12345", "second");
+        assertUserRecord(records.get(2), 2, "key-a", null, "");
+        assertUserRecord(records.get(3), 3, "k\u00e9y-\u20ac", "12345", "fourth");
+    }
+
+    @Test
+    public void testSizeWithMatchesSize() {
+        RecordAggregator aggregator = new RecordAggregator();
+        String[] keys = { "a", "b", "a", "c" };
+        for (int i = 0; i < keys.length; i++) {
+            byte[] data = new byte[i * 100];
+            String explicitHashKey = i % 2 == 0 ? null : String.valueOf(i);
+            int expected = aggregator.sizeWith(keys[i], explicitHashKey, data);
+            aggregator.add(keys[i], explicitHashKey, data);
+            Assert.assertEquals(expected, aggregator.size());
+        }
+    }
+
+    @Test
+    public void testDigestIsTheTrailer() {
+        RecordAggregator aggregator = new RecordAggregator();
+        aggregator.add("key", null, bytes("one"));
+        aggregator.add("key", null, bytes("two"));
+        byte[] aggregated = aggregator.toBytes();
+
+        byte[] magic = Arrays.copyOfRange(aggregated, 0, RecordAggregator.MAGIC.length);
+        Assert.assertArrayEquals(RecordAggregator.MAGIC, magic);
+
+        int end = aggregated.length - RecordAggregator.DIGEST_BYTES;
+        byte[] message = Arrays.copyOfRange(aggregated, RecordAggregator.MAGIC.length, end);
+        byte[] digest = Arrays.copyOfRange(aggregated, end, aggregated.length);
+        Assert.assertArrayEquals(RecordAggregator.newMd5().digest(message), digest);
+    }
+
+    @Test
+    public void testCorruptDigestIsNotDeaggregated() {
+        RecordAggregator aggregator = new RecordAggregator();
+        aggregator.add("key", null, bytes("one"));
+        aggregator.add("key", null, bytes("two"));
+        byte[] aggregated = aggregator.toBytes();
+        aggregated[aggregated.length - 1] ^= 1;
+
+        Record record = record(aggregated);
+        List<Record> records = RecordAggregator.deaggregate(record);
+        Assert.assertEquals(1, records.size());
+        Assert.assertSame(record, records.get(0));
+    }
+
+    @Test
+    public void testPlainRecordIsNotDeaggregated() {
+        Record record = record(bytes("just some data"));
+        List<Record> records = RecordAggregator.deaggregate(record);
+        Assert.assertEquals(1, records.size());
+        Assert.assertSame(record, records.get(0));
+    }
+
+    private static void assertUserRecord(
+            Record record,
+            long subSequenceNumber,
+            String partitionKey,
+            String explicitHashKey,
+            String data) {
+
+        UserRecord userRecord = (UserRecord) record;
+        Assert.assertEquals(subSequenceNumber, userRecord.getSubSequenceNumber());
+        Assert.assertEquals("42", userRecord.getSequenceNumber());
+        Assert.assertEquals(partitionKey, userRecord.getPartitionKey());
+        Assert.assertEquals(explicitHashKey, userRecord.getExplicitHashKey());
+        Assert.assertEquals(data, StringUtils.UTF8.decode(userRecord.getData()).toString());
+    }
+
+    private static Record record(byte[] data) {
+        return new Record()
+                .withSequenceNumber("42")
+                .withPartitionKey("key-a")
+                .withData(ByteBuffer.wrap(data));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StringUtils.UTF8);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.kinesisfirehose.AbstractAmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+public class DeliveryStreamBufferTest {
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyThrottledRecordsAreRetried() throws Exception {
+        FakeFirehose firehose = new FakeFirehose();
+        firehose.errorCodes.add("ServiceUnavailableException");
+        firehose.errorCodes.add("InvalidArgumentException");
+        firehose.errorCodes.add(null);
+        DeliveryStreamBuffer buffer = newBuffer(firehose);
+
+        Future<PutRecordResult> throttled = buffer.putRecord(request("throttled"), null);
+        Future<PutRecordResult> invalid = buffer.putRecord(request("invalid"), null);
+        Future<PutRecordResult> accepted = buffer.putRecord(request("accepted"), null);
+        buffer.flush();
+
+        Assert.assertNotNull(throttled.get(10, TimeUnit.SECONDS).getRecordId());
+        Assert.assertNotNull(accepted.get(10, TimeUnit.SECONDS).getRecordId());
+        try {
+            invalid.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the invalid record to fail");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("InvalidArgumentException",
+                    ((AmazonServiceException) e.getCause()).getErrorCode());
+        }
+        Assert.assertEquals(2, firehose.calls);
+        Assert.assertEquals("throttled", firehose.lastBatch.get(0));
+        Assert.assertEquals(1, firehose.lastBatch.size());
+    }
+
+    @Test
+    public void testFailedCallIsLeftToTheClient() throws Exception {
+        FakeFirehose firehose = new FakeFirehose();
+        firehose.callError = new AmazonServiceException("Unavailable");
+        firehose.callError.setStatusCode(503);
+        DeliveryStreamBuffer buffer = newBuffer(firehose);
+
+        Future<PutRecordResult> future = buffer.putRecord(request("data"), null);
+        buffer.flush();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the record to fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(firehose.callError, e.getCause());
+        }
+        Assert.assertEquals(1, firehose.calls);
+    }
+
+    private DeliveryStreamBuffer newBuffer(FakeFirehose firehose) {
+        return new DeliveryStreamBuffer(firehose, "stream", new FirehoseBufferConfig()
+                .withMaxBatchOpenMs(60 * 1000), executor, "test");
+    }
+
+    private static PutRecordRequest request(String data) {
+        return new PutRecordRequest()
+                .withDeliveryStreamName("stream")
+                .withRecord(new Record().withData(ByteBuffer.wrap(data.getBytes())));
+    }
+
+    /**
+     * Rejects the records of the first call with the queued error codes, and accepts every record
+     * after that.
+     */
+    private static final class FakeFirehose extends AbstractAmazonKinesisFirehose {
+
+        final LinkedList<String> errorCodes = new LinkedList<String>();
+        volatile AmazonServiceException callError;
+        volatile int calls;
+        volatile List<String> lastBatch;
+
+        @Override
+        public synchronized PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request) {
+            calls++;
+            if (callError != null) {
+                throw callError;
+            }
+            List<String> batch = new ArrayList<String>();
+            List<PutRecordBatchResponseEntry> entries = new ArrayList<PutRecordBatchResponseEntry>();
+            for (Record record : request.getRecords()) {
+                batch.add(new String(record.getData().array()));
+                String errorCode = errorCodes.poll();
+                entries.add(errorCode == null
+                        ? new PutRecordBatchResponseEntry().withRecordId("id-" + calls)
+                        : new PutRecordBatchResponseEntry()
+                                .withErrorCode(errorCode)
+                                .withErrorMessage("Rejected"));
+            }
+            lastBatch = batch;
+            return new PutRecordBatchResult().withRequestResponses(entries);
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.internal.BatchRetries;
+import com.amazonaws.services.logs.AWSLogs;
+import com.amazonaws.services.logs.model.CreateLogGroupRequest;
+import com.amazonaws.services.logs.model.CreateLogStreamRequest;
+import com.amazonaws.services.logs.model.DataAlreadyAcceptedException;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.InvalidSequenceTokenException;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+import com.amazonaws.services.logs.model.RejectedLogEventsInfo;
+import com.amazonaws.services.logs.model.ResourceAlreadyExistsException;
+import com.amazonaws.services.logs.model.ResourceNotFoundException;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Buffers log events per log stream and sends them with PutLogEvents calls.
+ * <p>
+ * Publishing an event only adds it to a lock-free queue of its log stream. Per log stream:
+ * <ul>
+ * <li>Events are sent as soon as a call is full, or
+ * {@link LogPublisherConfig#getMaxBatchOpenMs()} after they were queued. Each call holds events
+ * sorted by timestamp, spanning no more than 24 hours, within the count and size limits of the
+ * service.</li>
+ * <li>Calls are made one at a time, since each needs the sequence token returned by the previous
+ * one, and at most {@link LogPublisherConfig#getMaxRequestsPerSecond()} times a second. The token
+ * is kept from call to call, so it is never looked up with DescribeLogStreams.</li>
+ * <li>A call failing with InvalidSequenceTokenException, for instance because another publisher
+ * wrote to the same log stream, is sent again with the expected token. A call failing with
+ * DataAlreadyAcceptedException is treated as done. Log groups and log streams that do not exist
+ * are created, unless disabled.</li>
+ * </ul>
+ * The events queued or in flight for a log stream are bounded by
+ * {@link LogPublisherConfig#getMaxQueuedEvents()}; beyond that, the
+ * {@link LogPublisherConfig#getOverflowPolicy() overflow policy} decides whether publishers wait
+ * or events are dropped.
+ */
+@ThreadSafe
+public class BufferedLogPublisher {
+
+    private static final Log log = LogFactory.getLog(BufferedLogPublisher.class);
+
+    /** The maximum size of a single event, overhead included. */
+    private static final int MAX_EVENT_BYTES = 256 * 1024;
+
+    /** The maximum time span of the events of a PutLogEvents call. */
+    private static final long MAX_BATCH_SPAN_MS = TimeUnit.HOURS.toMillis(24);
+
+    private static final Comparator<QueuedEvent> BY_TIMESTAMP = new Comparator<QueuedEvent>() {
+        @Override
+        public int compare(QueuedEvent a, QueuedEvent b) {
+            return a.timestamp < b.timestamp ? -1 : (a.timestamp == b.timestamp ? 0 : 1);
+        }
+    };
+
+    private final AWSLogs client;
+    private final LogPublisherConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final ConcurrentMap<List<String>, StreamPublisher> streams =
+            new ConcurrentHashMap<List<String>, StreamPublisher>();
+
+    /** Notified whenever events are done. */
+    private final Object doneLock = new Object();
+
+    private volatile boolean shutdown;
+
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong rejectedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    public BufferedLogPublisher(AWSLogs client) {
+        this(client, new LogPublisherConfig());
+    }
+
+    public BufferedLogPublisher(AWSLogs client, LogPublisherConfig config) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must be specified");
+        }
+        this.client = client;
+        this.config = new LogPublisherConfig(config);
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(
+                this.config.getThreadPoolSize(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "logs-buffered-publisher-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Queues an event for a log stream.
+     *
+     * @return false if the event was dropped because the log stream is full
+     */
+    public boolean publish(
+            String logGroupName,
+            String logStreamName,
+            long timestamp,
+            String message) {
+
+        return publish(logGroupName, logStreamName,
+                new InputLogEvent().withTimestamp(timestamp).withMessage(message));
+    }
+
+    /**
+     * Queues an event for a log stream.
+     *
+     * @return false if the event was dropped because the log stream is full
+     * @throws AmazonClientException
+     *             if the publisher has been shut down
+     */
+    public boolean publish(String logGroupName, String logStreamName, InputLogEvent event) {
+        if (logGroupName == null || logStreamName == null) {
+            throw new IllegalArgumentException("log group and log stream must be specified");
+        }
+        if (event == null || event.getTimestamp() == null || event.getMessage() == null) {
+            throw new IllegalArgumentException("event timestamp and message must be specified");
+        }
+        QueuedEvent queued = new QueuedEvent(event);
+        if (queued.size > Math.min(MAX_EVENT_BYTES, config.getMaxBatchBytes())) {
+            throw new IllegalArgumentException("Event of " + queued.size
+                    + " bytes exceeds the maximum of "
+                    + Math.min(MAX_EVENT_BYTES, config.getMaxBatchBytes()));
+        }
+        if (shutdown) {
+            throw new AmazonClientException("The buffered log publisher has been shut down");
+        }
+        return getStream(logGroupName, logStreamName).add(queued);
+    }
+
+    /**
+     * Sends all queued events, and waits until every event published so far is done.
+     */
+    public void flush() {
+        for (StreamPublisher stream : streams.values()) {
+            stream.drain();
+        }
+        boolean interrupted = false;
+        synchronized (doneLock) {
+            while (queuedEvents() > 0) {
+                try {
+                    doneLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes all queued events and releases the publisher's threads. Events published after
+     * this call are rejected.
+     */
+    public void shutdown() {
+        shutdown = true;
+        flush();
+        executor.shutdown();
+    }
+
+    /** @return the number of events accepted by CloudWatch Logs */
+    public long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    /** @return the number of events CloudWatch Logs rejected as too old, too new or expired */
+    public long getRejectedEvents() {
+        return rejectedEvents.get();
+    }
+
+    /** @return the number of events dropped because their log stream was full */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /** @return the number of events dropped because their call failed */
+    public long getFailedEvents() {
+        return failedEvents.get();
+    }
+
+    private long queuedEvents() {
+        long total = 0;
+        for (StreamPublisher stream : streams.values()) {
+            total += stream.queuedEvents.get();
+        }
+        return total;
+    }
+
+    private StreamPublisher getStream(String logGroupName, String logStreamName) {
+        List<String> key = Arrays.asList(logGroupName, logStreamName);
+        StreamPublisher stream = streams.get(key);
+        if (stream == null) {
+            stream = new StreamPublisher(logGroupName, logStreamName);
+            StreamPublisher existing = streams.putIfAbsent(key, stream);
+            if (existing != null) {
+                stream = existing;
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * The events of one log stream.
+     * <p>
+     * Publishers only touch the queue and the counters. Everything else is owned by whichever
+     * thread holds the running flag, so that calls to the log stream are made one at a time.
+     */
+    private final class StreamPublisher {
+
+        private final String logGroupName;
+        private final String logStreamName;
+
+        private final ConcurrentLinkedQueue<QueuedEvent> queue =
+                new ConcurrentLinkedQueue<QueuedEvent>();
+        private final Semaphore permits = new Semaphore(config.getMaxQueuedEvents());
+
+        /** Events queued, pending or in flight, and their size. */
+        private final AtomicInteger queuedEvents = new AtomicInteger();
+        private final AtomicLong queuedBytes = new AtomicLong();
+
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicBoolean drainRequested = new AtomicBoolean();
+        private final AtomicBoolean timerScheduled = new AtomicBoolean();
+
+        /** Whether a send task is queued, so that the publishers of a full log stream queue one. */
+        private final AtomicBoolean sendScheduled = new AtomicBoolean();
+
+        private final Runnable sendTask = new Runnable() {
+            @Override
+            public void run() {
+                sendScheduled.set(false);
+                send(false);
+            }
+        };
+
+        /** Events taken off the queue, not sent yet. Owned by the running thread. */
+        private final List<QueuedEvent> pending = new ArrayList<QueuedEvent>();
+
+        /** The call to make again after its back off, or null. Owned by the running thread. */
+        private List<QueuedEvent> retry;
+
+        /** Attempts made so far at the current call. Owned by the running thread. */
+        private int attempt;
+
+        /** Owned by the running thread. */
+        private String sequenceToken;
+        private long nextCallNanos;
+        private boolean created;
+
+        StreamPublisher(String logGroupName, String logStreamName) {
+            this.logGroupName = logGroupName;
+            this.logStreamName = logStreamName;
+            this.nextCallNanos = System.nanoTime();
+        }
+
+        boolean add(QueuedEvent event) {
+            if (!acquire()) {
+                droppedEvents.incrementAndGet();
+                return false;
+            }
+            queuedEvents.incrementAndGet();
+            queuedBytes.addAndGet(event.size);
+            queue.add(event);
+
+            if (isFull()) {
+                scheduleSend(0);
+            } else {
+                scheduleTimer();
+            }
+            return true;
+        }
+
+        /**
+         * Takes a slot for a new event, according to the overflow policy.
+         */
+        private boolean acquire() {
+            if (permits.tryAcquire()) {
+                return true;
+            }
+            switch (config.getOverflowPolicy()) {
+            case DROP_OLDEST:
+                QueuedEvent oldest = queue.poll();
+                if (oldest == null) {
+                    // Everything is on its way already
+                    return false;
+                }
+                // The slot of the oldest event is handed over to the new one
+                queuedEvents.decrementAndGet();
+                queuedBytes.addAndGet(-oldest.size);
+                droppedEvents.incrementAndGet();
+                return true;
+
+            case BLOCK:
+                try {
+                    return permits.tryAcquire(config.getMaxBlockMs(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+
+            default:
+                return false;
+            }
+        }
+
+        boolean isFull() {
+            return queuedEvents.get() >= config.getMaxBatchEvents()
+                    || queuedBytes.get() >= config.getMaxBatchBytes();
+        }
+
+        void drain() {
+            drainRequested.set(true);
+            scheduleSend(0);
+        }
+
+        /**
+         * Queues a send task, unless one is queued already.
+         */
+        private void scheduleSend(long delayNanos) {
+            if (sendScheduled.compareAndSet(false, true)) {
+                executor.schedule(sendTask, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void scheduleTimer() {
+            if (timerScheduled.compareAndSet(false, true)) {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        timerScheduled.set(false);
+                        send(true);
+                    }
+                }, config.getMaxBatchOpenMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Sends full calls, or every event if draining, as fast as the call rate allows. A call
+         * to retry is made first, once its back off is over.
+         */
+        void send(boolean drain) {
+            if (!running.compareAndSet(false, true)) {
+                if (drain) {
+                    // Picked up by the thread that is running
+                    drainRequested.set(true);
+                }
+                return;
+            }
+            boolean rescheduled = false;
+            try {
+                while (true) {
+                    drain |= drainRequested.getAndSet(false);
+                    for (QueuedEvent event; (event = queue.poll()) != null;) {
+                        pending.add(event);
+                    }
+                    if (retry == null && (pending.isEmpty() || !(drain || isFull()))) {
+                        break;
+                    }
+                    long waitNanos = nextCallNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        if (drain) {
+                            drainRequested.set(true);
+                        }
+                        scheduleSend(waitNanos);
+                        rescheduled = true;
+                        break;
+                    }
+                    nextCallNanos = System.nanoTime()
+                            + TimeUnit.SECONDS.toNanos(1) / config.getMaxRequestsPerSecond();
+
+                    List<QueuedEvent> batch = retry;
+                    if (batch == null) {
+                        batch = takeBatch();
+                        attempt = 0;
+                    }
+                    retry = null;
+                    boolean finished = true;
+                    try {
+                        finished = put(batch);
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to send " + batch.size() + " events to log stream "
+                                + logStreamName, e);
+                        failedEvents.addAndGet(batch.size());
+                    } finally {
+                        if (finished) {
+                            done(batch);
+                        }
+                    }
+                }
+            } finally {
+                running.set(false);
+            }
+
+            if (!rescheduled) {
+                // Events may have been queued, or a drain requested, after the last check
+                if (drainRequested.get() || isFull()) {
+                    scheduleSend(0);
+                } else if (queuedEvents.get() > 0) {
+                    scheduleTimer();
+                }
+            }
+        }
+
+        /**
+         * Removes the events of the next call from the pending events.
+         */
+        private List<QueuedEvent> takeBatch() {
+            Collections.sort(pending, BY_TIMESTAMP);
+            long firstTimestamp = pending.get(0).timestamp;
+            long bytes = 0;
+            int count = 0;
+            for (QueuedEvent event : pending) {
+                if (count >= config.getMaxBatchEvents()
+                        || bytes + event.size > config.getMaxBatchBytes()
+                        || event.timestamp - firstTimestamp > MAX_BATCH_SPAN_MS) {
+                    break;
+                }
+                bytes += event.size;
+                count++;
+            }
+            List<QueuedEvent> taken = pending.subList(0, count);
+            List<QueuedEvent> batch = new ArrayList<QueuedEvent>(taken);
+            taken.clear();
+            return batch;
+        }
+
+        /**
+         * Makes the call of a batch, as many times as needed.
+         *
+         * @return false if the call failed with a retryable error, in which case it is kept to
+         *         be made again once its back off is over
+         */
+        private boolean put(List<QueuedEvent> batch) {
+            List<InputLogEvent> events = new ArrayList<InputLogEvent>(batch.size());
+            for (QueuedEvent event : batch) {
+                events.add(event.event);
+            }
+
+            for (;; attempt++) {
+                PutLogEventsResult result;
+                try {
+                    result = client.putLogEvents(new PutLogEventsRequest()
+                            .withLogGroupName(logGroupName)
+                            .withLogStreamName(logStreamName)
+                            .withLogEvents(events)
+                            .withSequenceToken(sequenceToken));
+                } catch (InvalidSequenceTokenException e) {
+                    // Someone else wrote to the log stream; the events were not accepted
+                    sequenceToken = expectedToken(e.getExpectedSequenceToken());
+                    if (attempt >= config.getMaxRetries()) {
+                        throw e;
+                    }
+                    continue;
+                } catch (DataAlreadyAcceptedException e) {
+                    // A previous attempt of this call went through
+                    sequenceToken = expectedToken(e.getExpectedSequenceToken());
+                    publishedEvents.addAndGet(batch.size());
+                    return true;
+                } catch (ResourceNotFoundException e) {
+                    if (!config.isCreateMissingStreams() || created) {
+                        throw e;
+                    }
+                    createStream();
+                    created = true;
+                    sequenceToken = null;
+                    continue;
+                } catch (AmazonClientException e) {
+                    if (!BatchRetries.isRetryable(e) || attempt >= config.getMaxRetries()) {
+                        throw e;
+                    }
+                    log.debug("PutLogEvents failed, retrying", e);
+                    nextCallNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                            BatchRetries.backoffMs(attempt));
+                    retry = batch;
+                    attempt++;
+                    return false;
+                }
+
+                sequenceToken = result.getNextSequenceToken();
+                int rejected = countRejected(result.getRejectedLogEventsInfo(), batch.size());
+                if (rejected > 0) {
+                    log.warn(rejected + " events rejected by log stream " + logStreamName
+                            + ": " + result.getRejectedLogEventsInfo());
+                    rejectedEvents.addAndGet(rejected);
+                }
+                publishedEvents.addAndGet(batch.size() - rejected);
+                return true;
+            }
+        }
+
+        private void createStream() {
+            try {
+                client.createLogGroup(new CreateLogGroupRequest(logGroupName));
+            } catch (ResourceAlreadyExistsException e) {
+                // Only the log stream was missing
+            }
+            try {
+                client.createLogStream(new CreateLogStreamRequest(logGroupName, logStreamName));
+            } catch (ResourceAlreadyExistsException e) {
+                // Created concurrently
+            }
+        }
+
+        private void done(List<QueuedEvent> batch) {
+            long bytes = 0;
+            for (QueuedEvent event : batch) {
+                bytes += event.size;
+            }
+            queuedEvents.addAndGet(-batch.size());
+            queuedBytes.addAndGet(-bytes);
+            permits.release(batch.size());
+            synchronized (doneLock) {
+                doneLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The token expected by the service, which reports a missing token as "null".
+     */
+    private static String expectedToken(String token) {
+        return "null".equals(token) ? null : token;
+    }
+
+    private static int countRejected(RejectedLogEventsInfo info, int events) {
+        if (info == null) {
+            return 0;
+        }
+        int rejected = 0;
+        if (info.getTooNewLogEventStartIndex() != null) {
+            rejected += events - info.getTooNewLogEventStartIndex();
+        }
+        int oldEnd = -1;
+        if (info.getTooOldLogEventEndIndex() != null) {
+            oldEnd = info.getTooOldLogEventEndIndex();
+        }
+        if (info.getExpiredLogEventEndIndex() != null) {
+            oldEnd = Math.max(oldEnd, info.getExpiredLogEventEndIndex());
+        }
+        return Math.min(events, rejected + oldEnd + 1);
+    }
+
+    private static final class QueuedEvent {
+
+        private final InputLogEvent event;
+        private final long timestamp;
+
+        /** The size counted against the call size limit. */
+        private final int size;
+
+        QueuedEvent(InputLogEvent event) {
+            this.event = event;
+            this.timestamp = event.getTimestamp();
+            this.size = event.getMessage().getBytes(StringUtils.UTF8).length
+                    + LogPublisherConfig.EVENT_OVERHEAD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+/**
+ * Configuration of a {@link BufferedLogPublisher}.
+ */
+public class LogPublisherConfig {
+
+    /** The maximum number of events in a PutLogEvents call. */
+    public static final int SERVICE_MAX_BATCH_EVENTS = 10000;
+
+    /**
+     * The maximum size of a PutLogEvents call, counted as the sum of the UTF-8
+     * sizes of the messages plus {@link #EVENT_OVERHEAD_BYTES} per event.
+     */
+    public static final int SERVICE_MAX_BATCH_BYTES = 1048576;
+
+    /** The size counted for each event on top of its message. */
+    public static final int EVENT_OVERHEAD_BYTES = 26;
+
+    /** The maximum number of PutLogEvents calls per second to a log stream. */
+    public static final int SERVICE_MAX_REQUESTS_PER_SECOND = 5;
+
+    /**
+     * The maximum number of events sent in a single PutLogEvents call.
+     */
+    private int maxBatchEvents;
+
+    /** 10,000 events */
+    public static final int MAX_BATCH_EVENTS_DEFAULT = SERVICE_MAX_BATCH_EVENTS;
+
+    /**
+     * The maximum size of the events sent in a single PutLogEvents call.
+     */
+    private int maxBatchBytes;
+
+    /** 1 MiB */
+    public static final int MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) an event waits for more events before it
+     * is sent. The longer this time, the fewer calls are made, but the later
+     * events show up in CloudWatch Logs.
+     */
+    private long maxBatchOpenMs;
+
+    /** 1 second */
+    public static final long MAX_BATCH_OPEN_MS_DEFAULT = 1000;
+
+    /**
+     * The maximum number of PutLogEvents calls per second to a single log
+     * stream.
+     */
+    private int maxRequestsPerSecond;
+
+    /** 5 calls */
+    public static final int MAX_REQUESTS_PER_SECOND_DEFAULT = SERVICE_MAX_REQUESTS_PER_SECOND;
+
+    /**
+     * The maximum number of events of a log stream that are queued or in
+     * flight. Beyond this, the {@link #getOverflowPolicy() overflow policy}
+     * applies.
+     */
+    private int maxQueuedEvents;
+
+    /** 100,000 events */
+    public static final int MAX_QUEUED_EVENTS_DEFAULT = 100000;
+
+    /**
+     * What happens to events published while their log stream is full.
+     */
+    private OverflowPolicy overflowPolicy;
+
+    /** block */
+    public static final OverflowPolicy OVERFLOW_POLICY_DEFAULT = OverflowPolicy.BLOCK;
+
+    /**
+     * The maximum time (milliseconds) a caller waits for room under the
+     * {@link OverflowPolicy#BLOCK} policy before its event is dropped.
+     */
+    private long maxBlockMs;
+
+    /** 1 second */
+    public static final long MAX_BLOCK_MS_DEFAULT = 1000;
+
+    /**
+     * The maximum number of times a PutLogEvents call that failed with a
+     * retryable error is sent again before its events are dropped.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /**
+     * Whether log groups and log streams that do not exist are created.
+     */
+    private boolean createMissingStreams;
+
+    /** create */
+    public static final boolean CREATE_MISSING_STREAMS_DEFAULT = true;
+
+    /**
+     * The number of threads sending events, shared by all log streams. Calls to
+     * one log stream are made one at a time. A call to retry waits for its back
+     * off without holding a thread.
+     */
+    private int threadPoolSize;
+
+    /** 4 threads */
+    public static final int THREAD_POOL_SIZE_DEFAULT = 4;
+
+    public LogPublisherConfig() {
+        this.maxBatchEvents = MAX_BATCH_EVENTS_DEFAULT;
+        this.maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        this.maxBatchOpenMs = MAX_BATCH_OPEN_MS_DEFAULT;
+        this.maxRequestsPerSecond = MAX_REQUESTS_PER_SECOND_DEFAULT;
+        this.maxQueuedEvents = MAX_QUEUED_EVENTS_DEFAULT;
+        this.overflowPolicy = OVERFLOW_POLICY_DEFAULT;
+        this.maxBlockMs = MAX_BLOCK_MS_DEFAULT;
+        this.maxRetries = MAX_RETRIES_DEFAULT;
+        this.createMissingStreams = CREATE_MISSING_STREAMS_DEFAULT;
+        this.threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+    }
+
+    /** copy constructor */
+    public LogPublisherConfig(LogPublisherConfig other) {
+        this.maxBatchEvents = other.maxBatchEvents;
+        this.maxBatchBytes = other.maxBatchBytes;
+        this.maxBatchOpenMs = other.maxBatchOpenMs;
+        this.maxRequestsPerSecond = other.maxRequestsPerSecond;
+        this.maxQueuedEvents = other.maxQueuedEvents;
+        this.overflowPolicy = other.overflowPolicy;
+        this.maxBlockMs = other.maxBlockMs;
+        this.maxRetries = other.maxRetries;
+        this.createMissingStreams = other.createMissingStreams;
+        this.threadPoolSize = other.threadPoolSize;
+    }
+
+    public int getMaxBatchEvents() {
+        return maxBatchEvents;
+    }
+
+    public void setMaxBatchEvents(int maxBatchEvents) {
+        if (maxBatchEvents < 1 || maxBatchEvents > SERVICE_MAX_BATCH_EVENTS) {
+            throw new IllegalArgumentException(
+                    "Max batch events must be between 1 and "
+                    + SERVICE_MAX_BATCH_EVENTS);
+        }
+        this.maxBatchEvents = maxBatchEvents;
+    }
+
+    public LogPublisherConfig withMaxBatchEvents(int maxBatchEvents) {
+        setMaxBatchEvents(maxBatchEvents);
+        return this;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        if (maxBatchBytes < 1 || maxBatchBytes > SERVICE_MAX_BATCH_BYTES) {
+            throw new IllegalArgumentException(
+                    "Max batch bytes must be between 1 and "
+                    + SERVICE_MAX_BATCH_BYTES);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public LogPublisherConfig withMaxBatchBytes(int maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    public long getMaxBatchOpenMs() {
+        return maxBatchOpenMs;
+    }
+
+    public void setMaxBatchOpenMs(long maxBatchOpenMs) {
+        if (maxBatchOpenMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max batch open time must not be negative");
+        }
+        this.maxBatchOpenMs = maxBatchOpenMs;
+    }
+
+    public LogPublisherConfig withMaxBatchOpenMs(long maxBatchOpenMs) {
+        setMaxBatchOpenMs(maxBatchOpenMs);
+        return this;
+    }
+
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        if (maxRequestsPerSecond < 1) {
+            throw new IllegalArgumentException(
+                    "Max requests per second must be positive");
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public LogPublisherConfig withMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        setMaxRequestsPerSecond(maxRequestsPerSecond);
+        return this;
+    }
+
+    public int getMaxQueuedEvents() {
+        return maxQueuedEvents;
+    }
+
+    public void setMaxQueuedEvents(int maxQueuedEvents) {
+        if (maxQueuedEvents < 1) {
+            throw new IllegalArgumentException(
+                    "Max queued events must be positive");
+        }
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    public LogPublisherConfig withMaxQueuedEvents(int maxQueuedEvents) {
+        setMaxQueuedEvents(maxQueuedEvents);
+        return this;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException(
+                    "Overflow policy must be specified");
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public LogPublisherConfig withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        setOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    public long getMaxBlockMs() {
+        return maxBlockMs;
+    }
+
+    public void setMaxBlockMs(long maxBlockMs) {
+        if (maxBlockMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max block time must not be negative");
+        }
+        this.maxBlockMs = maxBlockMs;
+    }
+
+    public LogPublisherConfig withMaxBlockMs(long maxBlockMs) {
+        setMaxBlockMs(maxBlockMs);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException(
+                    "Max retries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public LogPublisherConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    public boolean isCreateMissingStreams() {
+        return createMissingStreams;
+    }
+
+    public void setCreateMissingStreams(boolean createMissingStreams) {
+        this.createMissingStreams = createMissingStreams;
+    }
+
+    public LogPublisherConfig withCreateMissingStreams(boolean createMissingStreams) {
+        setCreateMissingStreams(createMissingStreams);
+        return this;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "Thread pool size must be positive");
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public LogPublisherConfig withThreadPoolSize(int threadPoolSize) {
+        setThreadPoolSize(threadPoolSize);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "LogPublisherConfig [maxBatchEvents=" + maxBatchEvents
+                + ", maxBatchBytes=" + maxBatchBytes
+                + ", maxBatchOpenMs=" + maxBatchOpenMs
+                + ", maxRequestsPerSecond=" + maxRequestsPerSecond
+                + ", maxQueuedEvents=" + maxQueuedEvents
+                + ", overflowPolicy=" + overflowPolicy
+                + ", maxBlockMs=" + maxBlockMs
+                + ", maxRetries=" + maxRetries
+                + ", createMissingStreams=" + createMissingStreams
+                + ", threadPoolSize=" + threadPoolSize + "]";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+/**
+ * What a {@link BufferedLogPublisher} does with an event published while its log stream already
+ * holds {@link LogPublisherConfig#getMaxQueuedEvents()} events.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait up to {@link LogPublisherConfig#getMaxBlockMs()} for room, then drop the event.
+     */
+    BLOCK,
+
+    /** Drop the event being published. */
+    DROP_NEWEST,
+
+    /** Drop the oldest queued event of the log stream, to make room for the new one. */
+    DROP_OLDEST
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.logs.AbstractAWSLogs;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+
+public class BufferedLogPublisherTest {
+
+    @Test
+    public void testRetryDoesNotHoldTheThread() throws Exception {
+        FakeLogs logs = new FakeLogs();
+        logs.throttleFirstCall = true;
+        BufferedLogPublisher publisher = new BufferedLogPublisher(logs, new LogPublisherConfig()
+                .withMaxBatchOpenMs(1)
+                .withThreadPoolSize(1));
+
+        publisher.publish("group", "first", 1, "one");
+        Assert.assertTrue(logs.firstCall.await(10, TimeUnit.SECONDS));
+        publisher.publish("group", "second", 1, "two");
+        publisher.flush();
+
+        // The second log stream was written while the first one was backing off, on the only
+        // thread
+        Assert.assertEquals(Arrays.asList("first", "second", "first"), logs.streams());
+        Assert.assertEquals(2, publisher.getPublishedEvents());
+        Assert.assertEquals(0, publisher.getFailedEvents());
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testFullStreamIsSentInFullCalls() throws Exception {
+        FakeLogs logs = new FakeLogs();
+        BufferedLogPublisher publisher = new BufferedLogPublisher(logs, new LogPublisherConfig()
+                .withMaxBatchEvents(2)
+                .withMaxBatchOpenMs(60 * 1000)
+                .withMaxRequestsPerSecond(1000));
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(publisher.publish("group", "stream", i, "event-" + i));
+        }
+        publisher.flush();
+
+        Assert.assertEquals(10, publisher.getPublishedEvents());
+        Assert.assertEquals(5, logs.streams().size());
+        publisher.shutdown();
+    }
+
+    private static final class FakeLogs extends AbstractAWSLogs {
+
+        private final List<String> streams = new ArrayList<String>();
+        final CountDownLatch firstCall = new CountDownLatch(1);
+
+        /** Whether the first call fails as throttled. */
+        volatile boolean throttleFirstCall;
+
+        @Override
+        public PutLogEventsResult putLogEvents(PutLogEventsRequest request) {
+            boolean first;
+            synchronized (this) {
+                streams.add(request.getLogStreamName());
+                first = streams.size() == 1;
+            }
+            firstCall.countDown();
+            if (first && throttleFirstCall) {
+                AmazonServiceException e = new AmazonServiceException("Rate exceeded");
+                e.setErrorCode("ThrottlingException");
+                e.setStatusCode(400);
+                throw e;
+            }
+            return new PutLogEventsResult().withNextSequenceToken(
+                    request.getLogStreamName() + "-" + request.getLogEvents().size());
+        }
+
+        synchronized List<String> streams() {
+            return new ArrayList<String>(streams);
+        }
+    }
+}
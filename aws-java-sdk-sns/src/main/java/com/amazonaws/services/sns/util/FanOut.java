@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * The publishes of one fan-out started by a {@link FanOutPublisher}.
+ * <p>
+ * Outcomes are delivered as they complete, in no particular order, by iterating over the fan-out.
+ * The iterator blocks until the next outcome is available, and ends once every outcome has been
+ * delivered. Each outcome is delivered once, so a fan-out is meant to be iterated by a single
+ * consumer.
+ */
+public class FanOut implements Iterable<PublishOutcome> {
+
+    private final int size;
+    private final BlockingQueue<PublishOutcome> outcomes = new LinkedBlockingQueue<PublishOutcome>();
+    private final CountDownLatch done;
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    FanOut(int size) {
+        this.size = size;
+        this.done = new CountDownLatch(size);
+    }
+
+    void complete(PublishOutcome outcome) {
+        if (outcome.isSuccess()) {
+            succeeded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        outcomes.add(outcome);
+        done.countDown();
+    }
+
+    /**
+     * @return the number of publishes of this fan-out
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether every publish of this fan-out is complete
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Waits until every publish of this fan-out is complete.
+     *
+     * @return false if the time ran out first
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of publishes that succeeded so far
+     */
+    public int getSucceededCount() {
+        return succeeded.get();
+    }
+
+    /**
+     * @return the number of publishes that failed so far, after their last attempt
+     */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Takes the next completed outcome, waiting up to the given time for one.
+     *
+     * @return the outcome, or null if the time ran out or every outcome has been delivered
+     */
+    public PublishOutcome poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (delivered.get() >= size) {
+            return null;
+        }
+        PublishOutcome outcome = outcomes.poll(timeout, unit);
+        if (outcome != null) {
+            delivered.incrementAndGet();
+        }
+        return outcome;
+    }
+
+    /**
+     * @return an iterator over the outcomes, in the order they complete
+     */
+    @Override
+    public Iterator<PublishOutcome> iterator() {
+        return new Iterator<PublishOutcome>() {
+            @Override
+            public boolean hasNext() {
+                return delivered.get() < size;
+            }
+
+            @Override
+            public PublishOutcome next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    PublishOutcome outcome = outcomes.take();
+                    delivered.incrementAndGet();
+                    return outcome;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException(
+                            "Interrupted while waiting for a publish outcome", e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.internal.BatchRetries;
+import com.amazonaws.regions.Region;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+/**
+ * Publishes the same message to many topics or endpoints concurrently.
+ * <p>
+ * Each publish of a fan-out is a separate Publish call. At most
+ * {@link FanOutPublisherConfig#getMaxConcurrency()} calls are in flight at the same time, across
+ * all fan-outs of the publisher. A publish that fails with a retryable error is sent again after a
+ * back off, during which its slot goes to the other publishes, so a throttled or failing target
+ * does not hold up the rest of the fan-out. The outcomes are delivered through the returned
+ * {@link FanOut} as they complete.
+ * <p>
+ * Retries are left to the publisher, so the client it publishes with should not retry failed calls
+ * itself, like the client the publisher creates when given credentials rather than a client. A
+ * client that does retries each attempt of the publisher on top, holding the slot while it backs
+ * off.
+ * <p>
+ * Example of a mobile push to many endpoints:
+ * <pre>
+ * FanOutPublisher publisher = new FanOutPublisher(sns);
+ * FanOut fanOut = publisher.publishToTargets(endpointArns,
+ *         new PublishRequest().withMessage(message));
+ * for (PublishOutcome outcome : fanOut) {
+ *     if (!outcome.isSuccess()) {
+ *         log(outcome.getArn(), outcome.getException());
+ *     }
+ * }
+ * </pre>
+ */
+public class FanOutPublisher {
+
+    private static final Log log = LogFactory.getLog(FanOutPublisher.class);
+
+    private final AmazonSNS sns;
+    private final boolean ownsClient;
+    private final FanOutPublisherConfig config;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Random random = new Random();
+
+    /**
+     * @param sns
+     *            the client to publish with, which should be configured not to retry failed calls,
+     *            with {@link ClientConfiguration#withMaxErrorRetry(int) maxErrorRetry} 0
+     */
+    public FanOutPublisher(AmazonSNS sns) {
+        this(sns, new FanOutPublisherConfig());
+    }
+
+    /**
+     * @param sns
+     *            the client to publish with, which should be configured not to retry failed calls,
+     *            with {@link ClientConfiguration#withMaxErrorRetry(int) maxErrorRetry} 0
+     */
+    public FanOutPublisher(AmazonSNS sns, FanOutPublisherConfig config) {
+        this(sns, false, config);
+    }
+
+    /**
+     * Creates a publisher with a client of its own, configured as given except that it doesn't
+     * retry failed calls. The client is shut down with the publisher.
+     */
+    public FanOutPublisher(
+            AWSCredentialsProvider credentialsProvider,
+            ClientConfiguration clientConfiguration,
+            Region region,
+            FanOutPublisherConfig config) {
+
+        this(newClient(credentialsProvider, clientConfiguration, region), true, config);
+    }
+
+    private FanOutPublisher(AmazonSNS sns, boolean ownsClient, FanOutPublisherConfig config) {
+        if (sns == null) {
+            throw new IllegalArgumentException("sns must be specified");
+        }
+        this.sns = sns;
+        this.ownsClient = ownsClient;
+        this.config = new FanOutPublisherConfig(config);
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(
+                this.config.getMaxConcurrency(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "sns-fan-out-publisher-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }) {
+            @Override
+            protected void terminated() {
+                super.terminated();
+                if (FanOutPublisher.this.ownsClient) {
+                    FanOutPublisher.this.sns.shutdown();
+                }
+            }
+        };
+    }
+
+    /**
+     * Publishes a message to each of the topics.
+     *
+     * @param template
+     *            the request published to every topic; its topic and target ARNs are ignored
+     */
+    public FanOut publishToTopics(Collection<String> topicArns, PublishRequest template) {
+        List<PublishRequest> requests = new ArrayList<PublishRequest>(topicArns.size());
+        for (String topicArn : topicArns) {
+            requests.add(template.clone().withTopicArn(topicArn).withTargetArn(null));
+        }
+        return publish(requests);
+    }
+
+    /**
+     * Publishes a message to each of the targets, such as mobile endpoints.
+     *
+     * @param template
+     *            the request published to every target; its topic and target ARNs are ignored
+     */
+    public FanOut publishToTargets(Collection<String> targetArns, PublishRequest template) {
+        List<PublishRequest> requests = new ArrayList<PublishRequest>(targetArns.size());
+        for (String targetArn : targetArns) {
+            requests.add(template.clone().withTargetArn(targetArn).withTopicArn(null));
+        }
+        return publish(requests);
+    }
+
+    /**
+     * Publishes each of the requests.
+     *
+     * @throws AmazonClientException
+     *             if the publisher has been shut down
+     */
+    public FanOut publish(Collection<PublishRequest> requests) {
+        if (executor.isShutdown()) {
+            throw new AmazonClientException("The fan-out publisher has been shut down");
+        }
+        FanOut fanOut = new FanOut(requests.size());
+        for (PublishRequest request : requests) {
+            try {
+                executor.execute(new PublishTask(fanOut, request));
+            } catch (RejectedExecutionException e) {
+                // Shut down meanwhile: the fan-out still completes, with the publishes not started
+                // failed
+                fanOut.complete(new PublishOutcome(request, null, new AmazonClientException(
+                        "The fan-out publisher has been shut down", e), 0));
+            }
+        }
+        return fanOut;
+    }
+
+    /**
+     * Stops accepting fan-outs, and releases the publisher's threads once the publishes under way
+     * are complete. The client is shut down only if the publisher created it, and then once the
+     * publishes are complete.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static AmazonSNS newClient(
+            AWSCredentialsProvider credentialsProvider,
+            ClientConfiguration clientConfiguration,
+            Region region) {
+
+        AmazonSNSClient client = new AmazonSNSClient(credentialsProvider,
+                new ClientConfiguration(clientConfiguration).withMaxErrorRetry(0));
+        client.setRegion(region);
+        return client;
+    }
+
+    /**
+     * @return the back off before the given retry, between half and all of the exponential delay
+     */
+    private long backOffMs(int retry) {
+        long delay = BatchRetries.backoffMs(retry, BatchRetries.BASE_BACKOFF_MS,
+                config.getMaxBackoffMs());
+        if (delay < 2) {
+            return delay;
+        }
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Makes one attempt of a publish, and schedules the next one if it fails.
+     */
+    private final class PublishTask implements Runnable {
+
+        private final FanOut fanOut;
+        private final PublishRequest request;
+        private int attempts;
+
+        PublishTask(FanOut fanOut, PublishRequest request) {
+            this.fanOut = fanOut;
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            attempts++;
+            PublishResult result;
+            try {
+                result = sns.publish(request);
+            } catch (AmazonClientException e) {
+                if (BatchRetries.isRetryable(e) && attempts <= config.getMaxRetries()) {
+                    log.debug("Publish to " + arn() + " failed, retrying", e);
+                    try {
+                        executor.schedule(this, backOffMs(attempts - 1), TimeUnit.MILLISECONDS);
+                        return;
+                    } catch (RuntimeException re) {
+                        // The publisher is shut down
+                    }
+                }
+                fanOut.complete(new PublishOutcome(request, null, e, attempts));
+                return;
+            } catch (RuntimeException e) {
+                fanOut.complete(new PublishOutcome(request, null,
+                        new AmazonClientException("Publish to " + arn() + " failed", e),
+                        attempts));
+                return;
+            }
+            fanOut.complete(new PublishOutcome(request, result, null, attempts));
+        }
+
+        private String arn() {
+            return request.getTargetArn() != null ? request.getTargetArn() : request.getTopicArn();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+/**
+ * Configuration of a {@link FanOutPublisher}.
+ */
+public class FanOutPublisherConfig {
+
+    /**
+     * The maximum number of Publish calls in flight at the same time, shared by
+     * all fan-outs of a publisher. This is also the number of threads used by
+     * the publisher.
+     */
+    private int maxConcurrency;
+
+    /** 32 calls */
+    public static final int MAX_CONCURRENCY_DEFAULT = 32;
+
+    /**
+     * The maximum number of times a publish that failed with a retryable error
+     * is sent again. Retries wait without holding a slot, so they do not hold
+     * up the other targets. The client itself should not retry, or it retries
+     * every attempt on top.
+     */
+    private int maxRetries;
+
+    /** 3 retries */
+    public static final int MAX_RETRIES_DEFAULT = 3;
+
+    /**
+     * The maximum time (milliseconds) waited before a retry. Retries back off
+     * exponentially, with jitter, up to this time.
+     */
+    private long maxBackoffMs;
+
+    /** 5 seconds */
+    public static final long MAX_BACKOFF_MS_DEFAULT = 5000;
+
+    public FanOutPublisherConfig() {
+        this.maxConcurrency = MAX_CONCURRENCY_DEFAULT;
+        this.maxRetries = MAX_RETRIES_DEFAULT;
+        this.maxBackoffMs = MAX_BACKOFF_MS_DEFAULT;
+    }
+
+    /** copy constructor */
+    public FanOutPublisherConfig(FanOutPublisherConfig other) {
+        this.maxConcurrency = other.maxConcurrency;
+        this.maxRetries = other.maxRetries;
+        this.maxBackoffMs = other.maxBackoffMs;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException(
+                    "Max concurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public FanOutPublisherConfig withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException(
+                    "Max retries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public FanOutPublisherConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    public long getMaxBackoffMs() {
+        return maxBackoffMs;
+    }
+
+    public void setMaxBackoffMs(long maxBackoffMs) {
+        if (maxBackoffMs < 0) {
+            throw new IllegalArgumentException(
+                    "Max back off time must not be negative");
+        }
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public FanOutPublisherConfig withMaxBackoffMs(long maxBackoffMs) {
+        setMaxBackoffMs(maxBackoffMs);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "FanOutPublisherConfig [maxConcurrency=" + maxConcurrency
+                + ", maxRetries=" + maxRetries
+                + ", maxBackoffMs=" + maxBackoffMs + "]";
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec.EncodedPayload;
+
+/**
+ * Request handler encoding the messages published through an {@link com.amazonaws.services.sns.AmazonSNS}
+ * client with a {@link MessagePayloadCodec}: large messages are compressed, and messages still too
+ * large are offloaded to the codec's payload store. Register it with
+ * {@code AmazonSNSClient.addRequestHandler}.
+ * <p>
+ * The encoding is carried in the {@link MessagePayloadCodec#ENCODING_ATTRIBUTE} message attribute.
+ * Subscribed SQS queues need raw message delivery for the attribute to arrive as an SQS message
+ * attribute, so that a buffered SQS client with the same codec (or
+ * {@link MessagePayloadCodec#decode(com.amazonaws.services.sqs.model.Message)}) can decode the
+ * messages. Other subscribers receive the encoded message. Messages with a JSON message structure
+ * are left as they are, since each protocol has its own message.
+ */
+public class PayloadEncodingHandler extends RequestHandler2 {
+
+    private final MessagePayloadCodec codec;
+
+    public PayloadEncodingHandler(MessagePayloadCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("A payload codec is required");
+        }
+        this.codec = codec;
+    }
+
+    @Override
+    public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+        if (!(request instanceof PublishRequest)) {
+            return request;
+        }
+        PublishRequest publishRequest = (PublishRequest) request;
+        if (publishRequest.getMessageStructure() != null) {
+            return request;
+        }
+
+        EncodedPayload encoded = codec.encode(publishRequest.getMessage());
+        if (encoded == null) {
+            return request;
+        }
+        // Leave the caller's request untouched, as it may be published again
+        PublishRequest copy = publishRequest.clone();
+        copy.setMessageAttributes(publishRequest.getMessageAttributes());
+        copy.setMessage(encoded.getBody());
+        copy.addMessageAttributesEntry(MessagePayloadCodec.ENCODING_ATTRIBUTE,
+                new MessageAttributeValue()
+                        .withDataType("String")
+                        .withStringValue(encoded.getEncoding()));
+        return copy;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+/**
+ * The outcome of one publish of a {@link FanOut}: either its result, or the error it failed with
+ * after its last attempt.
+ */
+public class PublishOutcome {
+
+    private final PublishRequest request;
+    private final PublishResult result;
+    private final AmazonClientException exception;
+    private final int attempts;
+
+    PublishOutcome(
+            PublishRequest request,
+            PublishResult result,
+            AmazonClientException exception,
+            int attempts) {
+
+        this.request = request;
+        this.result = result;
+        this.exception = exception;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return the request that was published
+     */
+    public PublishRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the topic or target ARN the request was published to
+     */
+    public String getArn() {
+        return request.getTargetArn() != null ? request.getTargetArn() : request.getTopicArn();
+    }
+
+    /**
+     * @return whether the publish succeeded
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * @return the result of the publish, or null if it failed
+     */
+    public PublishResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the error of the last attempt, or null if the publish succeeded
+     */
+    public AmazonClientException getException() {
+        return exception;
+    }
+
+    /**
+     * @return the number of times the request was sent
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishOutcome [arn=" + getArn()
+                + ", success=" + isSuccess()
+                + ", attempts=" + attempts + "]";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sns.AbstractAmazonSNS;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+public class FanOutPublisherTest {
+
+    @Test
+    public void testFailedPublishIsRetriedAlone() throws Exception {
+        FakeSNS sns = new FakeSNS();
+        sns.failuresByArn.put("arn:throttled", new AtomicInteger(1));
+        FanOutPublisher publisher = new FanOutPublisher(sns);
+
+        FanOut fanOut = publisher.publishToTargets(Arrays.asList("arn:ok", "arn:throttled"),
+                new PublishRequest().withMessage("message"));
+
+        Assert.assertTrue(fanOut.awaitCompletion(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, fanOut.getSucceededCount());
+        for (PublishOutcome outcome : fanOut) {
+            Assert.assertEquals(outcome.getArn().equals("arn:throttled") ? 2 : 1,
+                    outcome.getAttempts());
+        }
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testPublishAfterShutdownFails() {
+        FanOutPublisher publisher = new FanOutPublisher(new FakeSNS());
+        publisher.shutdown();
+        try {
+            publisher.publishToTargets(Arrays.asList("arn:ok"),
+                    new PublishRequest().withMessage("message"));
+            Assert.fail("Expected an AmazonClientException");
+        } catch (AmazonClientException e) {
+            // Expected
+        }
+    }
+
+    private static final class FakeSNS extends AbstractAmazonSNS {
+
+        /** Throttled attempts left, by target ARN. */
+        final ConcurrentMap<String, AtomicInteger> failuresByArn =
+                new ConcurrentHashMap<String, AtomicInteger>();
+
+        @Override
+        public PublishResult publish(PublishRequest request) {
+            AtomicInteger failures = failuresByArn.get(request.getTargetArn());
+            if (failures != null && failures.getAndDecrement() > 0) {
+                AmazonServiceException e = new AmazonServiceException("Rate exceeded");
+                e.setErrorCode("Throttling");
+                e.setStatusCode(400);
+                throw e;
+            }
+            return new PublishResult().withMessageId("id-" + request.getTargetArn());
+        }
+    }
+}
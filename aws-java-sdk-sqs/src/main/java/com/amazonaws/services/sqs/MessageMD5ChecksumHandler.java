@@ -14,14 +14,6 @@
  */
 package com.amazonaws.services.sqs;
 
-import static com.amazonaws.util.StringUtils.UTF8;
-
-import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -42,7 +34,6 @@ import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.amazonaws.util.BinaryUtils;
-import com.amazonaws.util.Md5Utils;
 import com.amazonaws.util.TimingInfo;
 
 /**
@@ -52,12 +43,6 @@ import com.amazonaws.util.TimingInfo;
  */
 public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
 
-    private static final int INTEGER_SIZE_IN_BYTES = 4;
-    private static final byte STRING_TYPE_FIELD_INDEX = 1;
-    private static final byte BINARY_TYPE_FIELD_INDEX = 2;
-    private static final byte STRING_LIST_TYPE_FIELD_INDEX = 3;
-    private static final byte BINARY_LIST_TYPE_FIELD_INDEX = 4;
-
     /*
      * Constant strings for composing error message.
      */
@@ -104,21 +89,22 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
      */
     private static void sendMessageOperationMd5Check(SendMessageRequest sendMessageRequest,
                                                      SendMessageResult sendMessageResult) {
-        String messageBodySent = sendMessageRequest.getMessageBody();
+        MessageMD5Digester digester = MessageMD5Digester.get();
+
         String bodyMd5Returned = sendMessageResult.getMD5OfMessageBody();
-        String clientSideBodyMd5 = calculateMessageBodyMd5(messageBodySent);
-        if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
-            throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY, clientSideBodyMd5,
-                    bodyMd5Returned));
+        byte[] clientSideBodyMd5 = calculateMessageBodyMd5(digester, sendMessageRequest.getMessageBody());
+        if (!MessageMD5Digester.matches(clientSideBodyMd5, bodyMd5Returned)) {
+            throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY,
+                    BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
         }
 
         Map<String, MessageAttributeValue> messageAttrSent = sendMessageRequest.getMessageAttributes();
         if (messageAttrSent != null && !messageAttrSent.isEmpty()) {
-            String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttrSent);
+            byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(digester, messageAttrSent);
             String attrMd5Returned = sendMessageResult.getMD5OfMessageAttributes();
-            if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+            if (!MessageMD5Digester.matches(clientSideAttrMd5, attrMd5Returned)) {
                 throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_ATTRIBUTES,
-                        clientSideAttrMd5, attrMd5Returned));
+                        BinaryUtils.toHex(clientSideAttrMd5), attrMd5Returned));
             }
         }
     }
@@ -129,22 +115,22 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
      */
     private static void receiveMessageResultMd5Check(ReceiveMessageResult receiveMessageResult) {
         if (receiveMessageResult.getMessages() != null) {
+            MessageMD5Digester digester = MessageMD5Digester.get();
             for (Message messageReceived : receiveMessageResult.getMessages()) {
-                String messageBody = messageReceived.getBody();
                 String bodyMd5Returned = messageReceived.getMD5OfBody();
-                String clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
-                if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
+                byte[] clientSideBodyMd5 = calculateMessageBodyMd5(digester, messageReceived.getBody());
+                if (!MessageMD5Digester.matches(clientSideBodyMd5, bodyMd5Returned)) {
                     throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY,
-                            clientSideBodyMd5, bodyMd5Returned));
+                            BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
                 }
 
                 Map<String, MessageAttributeValue> messageAttr = messageReceived.getMessageAttributes();
                 if (messageAttr != null && !messageAttr.isEmpty()) {
                     String attrMd5Returned = messageReceived.getMD5OfMessageAttributes();
-                    String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
-                    if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+                    byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(digester, messageAttr);
+                    if (!MessageMD5Digester.matches(clientSideAttrMd5, attrMd5Returned)) {
                         throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_ATTRIBUTES,
-                                clientSideAttrMd5, attrMd5Returned));
+                                BinaryUtils.toHex(clientSideAttrMd5), attrMd5Returned));
                     }
                 }
             }
@@ -157,31 +143,29 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
      */
     private static void sendMessageBatchOperationMd5Check(SendMessageBatchRequest sendMessageBatchRequest,
                                                           SendMessageBatchResult sendMessageBatchResult) {
-        Map<String, SendMessageBatchRequestEntry> idToRequestEntryMap = new HashMap<String, SendMessageBatchRequestEntry>();
-        if (sendMessageBatchRequest.getEntries() != null) {
-            for (SendMessageBatchRequestEntry entry : sendMessageBatchRequest.getEntries()) {
-                idToRequestEntryMap.put(entry.getId(), entry);
-            }
-        }
+        List<SendMessageBatchRequestEntry> requestEntries = sendMessageBatchRequest.getEntries();
 
         if (sendMessageBatchResult.getSuccessful() != null) {
+            MessageMD5Digester digester = MessageMD5Digester.get();
+            int index = 0;
             for (SendMessageBatchResultEntry entry : sendMessageBatchResult.getSuccessful()) {
-                String messageBody = idToRequestEntryMap.get(entry.getId()).getMessageBody();
+                SendMessageBatchRequestEntry requestEntry = findRequestEntry(requestEntries, entry.getId(), index++);
+
                 String bodyMd5Returned = entry.getMD5OfMessageBody();
-                String clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
-                if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
+                byte[] clientSideBodyMd5 = calculateMessageBodyMd5(digester, requestEntry.getMessageBody());
+                if (!MessageMD5Digester.matches(clientSideBodyMd5, bodyMd5Returned)) {
                     throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE_WITH_ID, MESSAGE_BODY,
-                            entry.getId(), clientSideBodyMd5, bodyMd5Returned));
+                            entry.getId(), BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
                 }
 
-                Map<String, MessageAttributeValue> messageAttr = idToRequestEntryMap.get(entry.getId())
-                        .getMessageAttributes();
+                Map<String, MessageAttributeValue> messageAttr = requestEntry.getMessageAttributes();
                 if (messageAttr != null && !messageAttr.isEmpty()) {
                     String attrMd5Returned = entry.getMD5OfMessageAttributes();
-                    String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
-                    if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+                    byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(digester, messageAttr);
+                    if (!MessageMD5Digester.matches(clientSideAttrMd5, attrMd5Returned)) {
                         throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE_WITH_ID,
-                                MESSAGE_ATTRIBUTES, entry.getId(), clientSideAttrMd5, attrMd5Returned));
+                                MESSAGE_ATTRIBUTES, entry.getId(), BinaryUtils.toHex(clientSideAttrMd5),
+                                attrMd5Returned));
                     }
                 }
             }
@@ -189,99 +173,63 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
     }
 
     /**
-     * Returns the hex-encoded MD5 hash String of the given message body.
+     * Returns the request entry with the given id. Batches hold at most 10 entries, and results
+     * usually come back in request order, so the entry at the position of the result is tried
+     * first.
+     */
+    private static SendMessageBatchRequestEntry findRequestEntry(List<SendMessageBatchRequestEntry> entries,
+                                                                 String id, int index) {
+        if (entries != null) {
+            if (index < entries.size() && entries.get(index).getId().equals(id)) {
+                return entries.get(index);
+            }
+            for (SendMessageBatchRequestEntry entry : entries) {
+                if (entry.getId().equals(id)) {
+                    return entry;
+                }
+            }
+        }
+        throw new AmazonClientException("SQS returned a result for unknown batch entry " + id);
+    }
+
+    /**
+     * Returns the MD5 hash of the given message body. The array is reused by the digester.
      */
-    private static String calculateMessageBodyMd5(String messageBody) {
+    private static byte[] calculateMessageBodyMd5(MessageMD5Digester digester, String messageBody) {
         if (log.isDebugEnabled()) {
             log.debug("Message body: " + messageBody);
         }
         byte[] expectedMd5;
         try {
-            expectedMd5 = Md5Utils.computeMD5Hash(messageBody.getBytes(UTF8));
+            expectedMd5 = digester.digestBody(messageBody);
         } catch (Exception e) {
             throw new AmazonClientException("Unable to calculate the MD5 hash of the message body. " + e.getMessage(),
                     e);
         }
-        String expectedMd5Hex = BinaryUtils.toHex(expectedMd5);
         if (log.isDebugEnabled()) {
-            log.debug("Expected  MD5 of message body: " + expectedMd5Hex);
+            log.debug("Expected  MD5 of message body: " + BinaryUtils.toHex(expectedMd5));
         }
-        return expectedMd5Hex;
+        return expectedMd5;
     }
 
     /**
-     * Returns the hex-encoded MD5 hash String of the given message attributes.
+     * Returns the MD5 hash of the given message attributes. The array is reused by the digester.
      */
-    private static String calculateMessageAttributesMd5(final Map<String, MessageAttributeValue> messageAttributes) {
+    private static byte[] calculateMessageAttributesMd5(MessageMD5Digester digester,
+                                                        final Map<String, MessageAttributeValue> messageAttributes) {
         if (log.isDebugEnabled()) {
             log.debug("Message attribtues: " + messageAttributes);
         }
-        List<String> sortedAttributeNames = new ArrayList<String>(messageAttributes.keySet());
-        Collections.sort(sortedAttributeNames);
-
-        MessageDigest md5Digest = null;
+        byte[] expectedMd5;
         try {
-            md5Digest = MessageDigest.getInstance("MD5");
-
-            for (String attrName : sortedAttributeNames) {
-                MessageAttributeValue attrValue = messageAttributes.get(attrName);
-
-                // Encoded Name
-                updateLengthAndBytes(md5Digest, attrName);
-                // Encoded Type
-                updateLengthAndBytes(md5Digest, attrValue.getDataType());
-
-                // Encoded Value
-                if (attrValue.getStringValue() != null) {
-                    md5Digest.update(STRING_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getStringValue());
-                } else if (attrValue.getBinaryValue() != null) {
-                    md5Digest.update(BINARY_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getBinaryValue());
-                } else if (attrValue.getStringListValues().size() > 0) {
-                    md5Digest.update(STRING_LIST_TYPE_FIELD_INDEX);
-                    for (String strListMember : attrValue.getStringListValues()) {
-                        updateLengthAndBytes(md5Digest, strListMember);
-                    }
-                } else if (attrValue.getBinaryListValues().size() > 0) {
-                    md5Digest.update(BINARY_LIST_TYPE_FIELD_INDEX);
-                    for (ByteBuffer byteListMember : attrValue.getBinaryListValues()) {
-                        updateLengthAndBytes(md5Digest, byteListMember);
-                    }
-                }
-            }
+            expectedMd5 = digester.digestAttributes(messageAttributes);
         } catch (Exception e) {
             throw new AmazonClientException("Unable to calculate the MD5 hash of the message attributes. "
                     + e.getMessage(), e);
         }
-
-        String expectedMd5Hex = BinaryUtils.toHex(md5Digest.digest());
         if (log.isDebugEnabled()) {
-            log.debug("Expected  MD5 of message attributes: " + expectedMd5Hex);
+            log.debug("Expected  MD5 of message attributes: " + BinaryUtils.toHex(expectedMd5));
         }
-        return expectedMd5Hex;
-    }
-
-    /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input String and the actual utf8-encoded byte values.
-     */
-    private static void updateLengthAndBytes(MessageDigest digest, String str) throws UnsupportedEncodingException {
-        byte[] utf8Encoded = str.getBytes(UTF8);
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(utf8Encoded.length);
-        digest.update(lengthBytes.array());
-        digest.update(utf8Encoded);
-    }
-
-    /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input ByteBuffer and all the bytes it contains.
-     */
-    private static void updateLengthAndBytes(MessageDigest digest, ByteBuffer binaryValue) {
-        ByteBuffer readOnlyBuffer = binaryValue.asReadOnlyBuffer();
-        int size = readOnlyBuffer.remaining();
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(size);
-        digest.update(lengthBytes.array());
-        digest.update(readOnlyBuffer);
+        return expectedMd5;
     }
 }
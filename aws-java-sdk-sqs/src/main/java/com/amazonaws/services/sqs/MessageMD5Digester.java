@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+
+/**
+ * Computes the MD5 digests SQS returns for message bodies and message attributes without
+ * allocating for each message. Each thread reuses one {@code MessageDigest} and a small buffer,
+ * strings are encoded to UTF-8 through that buffer in chunks, attribute names are sorted in
+ * place, and digests are compared with the hex strings returned by SQS without decoding them.
+ * <p>
+ * Instances are confined to the thread that obtained them from {@link #get()}.
+ */
+final class MessageMD5Digester {
+
+    private static final byte STRING_TYPE_FIELD_INDEX = 1;
+    private static final byte BINARY_TYPE_FIELD_INDEX = 2;
+    private static final byte STRING_LIST_TYPE_FIELD_INDEX = 3;
+    private static final byte BINARY_LIST_TYPE_FIELD_INDEX = 4;
+
+    private static final int MD5_LENGTH = 16;
+
+    /**
+     * Size of the encoding buffer. Strings are encoded and digested in chunks of this size, so the
+     * memory kept by each thread doesn't depend on the size of the messages it has seen.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Most chars encoded into the buffer at a time: a char takes at most 3 bytes in UTF-8. */
+    private static final int CHUNK_CHARS = BUFFER_SIZE / 3;
+
+    private static final ThreadLocal<MessageMD5Digester> DIGESTERS = new ThreadLocal<MessageMD5Digester>() {
+        @Override
+        protected MessageMD5Digester initialValue() {
+            return new MessageMD5Digester();
+        }
+    };
+
+    private final MessageDigest md5;
+    private final byte[] digest = new byte[MD5_LENGTH];
+    private final byte[] lengthBytes = new byte[4];
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private String[] names = new String[16];
+
+    private MessageMD5Digester() {
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to get an MD5 message digest. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the digester of the calling thread
+     */
+    static MessageMD5Digester get() {
+        return DIGESTERS.get();
+    }
+
+    /**
+     * Returns the MD5 digest of the UTF-8 encoded message body. The returned array is reused by the
+     * next call to this digester.
+     */
+    byte[] digestBody(String body) {
+        md5.reset();
+        updateUtf8(body);
+        return finish();
+    }
+
+    /**
+     * Returns the MD5 digest of the message attributes, as calculated by SQS. The returned array is
+     * reused by the next call to this digester.
+     */
+    byte[] digestAttributes(Map<String, MessageAttributeValue> attributes) {
+        md5.reset();
+        int count = sortNames(attributes);
+        for (int i = 0; i < count; i++) {
+            String name = names[i];
+            names[i] = null;
+            MessageAttributeValue value = attributes.get(name);
+
+            // Encoded Name
+            updateLengthAndBytes(name);
+            // Encoded Type
+            updateLengthAndBytes(value.getDataType());
+
+            // Encoded Value
+            if (value.getStringValue() != null) {
+                md5.update(STRING_TYPE_FIELD_INDEX);
+                updateLengthAndBytes(value.getStringValue());
+            } else if (value.getBinaryValue() != null) {
+                md5.update(BINARY_TYPE_FIELD_INDEX);
+                updateLengthAndBytes(value.getBinaryValue());
+            } else if (value.getStringListValues().size() > 0) {
+                md5.update(STRING_LIST_TYPE_FIELD_INDEX);
+                for (String member : value.getStringListValues()) {
+                    updateLengthAndBytes(member);
+                }
+            } else if (value.getBinaryListValues().size() > 0) {
+                md5.update(BINARY_LIST_TYPE_FIELD_INDEX);
+                for (ByteBuffer member : value.getBinaryListValues()) {
+                    updateLengthAndBytes(member);
+                }
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Returns true if the given digest is equal to the hex-encoded digest, ignoring case.
+     */
+    static boolean matches(byte[] digest, String hex) {
+        if (hex == null || hex.length() != digest.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < digest.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0 || (byte) ((high << 4) | low) != digest[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] finish() {
+        try {
+            md5.digest(digest, 0, MD5_LENGTH);
+        } catch (DigestException e) {
+            throw new AmazonClientException("Unable to calculate the MD5 hash. " + e.getMessage(), e);
+        }
+        return digest;
+    }
+
+    /**
+     * Copies the attribute names into {@code names} in their natural order, and returns their
+     * count. Messages carry at most 10 attributes, so an insertion sort is enough.
+     */
+    private int sortNames(Map<String, MessageAttributeValue> attributes) {
+        if (names.length < attributes.size()) {
+            names = new String[attributes.size()];
+        }
+        int count = 0;
+        for (String name : attributes.keySet()) {
+            int i = count++;
+            while (i > 0 && names[i - 1].compareTo(name) > 0) {
+                names[i] = names[i - 1];
+                --i;
+            }
+            names[i] = name;
+        }
+        return count;
+    }
+
+    /**
+     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
+     * input String and the actual utf8-encoded byte values.
+     */
+    private void updateLengthAndBytes(String str) {
+        int length = str.length();
+        if (length <= CHUNK_CHARS) {
+            // attribute strings are short: encode them in one go
+            int size = encode(str, 0, length);
+            updateLength(size);
+            md5.update(buffer, 0, size);
+        } else {
+            updateLength(utf8Length(str));
+            updateUtf8(str);
+        }
+    }
+
+    /**
+     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
+     * input ByteBuffer and all the bytes it contains.
+     */
+    private void updateLengthAndBytes(ByteBuffer binaryValue) {
+        int size = binaryValue.remaining();
+        updateLength(size);
+        if (binaryValue.hasArray()) {
+            md5.update(binaryValue.array(), binaryValue.arrayOffset() + binaryValue.position(), size);
+        } else {
+            md5.update(binaryValue.asReadOnlyBuffer());
+        }
+    }
+
+    private void updateLength(int length) {
+        lengthBytes[0] = (byte) (length >>> 24);
+        lengthBytes[1] = (byte) (length >>> 16);
+        lengthBytes[2] = (byte) (length >>> 8);
+        lengthBytes[3] = (byte) length;
+        md5.update(lengthBytes, 0, 4);
+    }
+
+    /**
+     * Returns the length of the string in UTF-8, as encoded by {@link #updateUtf8(String)}.
+     */
+    static int utf8Length(String str) {
+        int length = str.length();
+        int i = 0;
+        // plain ASCII prefix, usually the whole string
+        while (i < length && str.charAt(i) < 0x80) {
+            i++;
+        }
+
+        int n = i;
+        for (; i < length; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                n += 1;
+            } else if (ch < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+                n += 1;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Encodes the string to UTF-8 and updates the digest with it, a buffer at a time.
+     */
+    private void updateUtf8(String str) {
+        int length = str.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + CHUNK_CHARS);
+            // keep surrogate pairs within a chunk
+            if (end < length && Character.isHighSurrogate(str.charAt(end - 1))) {
+                --end;
+            }
+            md5.update(buffer, 0, encode(str, start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * Encodes the chars from {@code start} to {@code end} of the string to UTF-8 into
+     * {@code buffer}, and returns the number of bytes written. At most {@link #CHUNK_CHARS} chars
+     * can be encoded at a time. Unpaired surrogates are encoded as '?', as
+     * {@code String.getBytes} does.
+     */
+    private int encode(String str, int start, int end) {
+        byte[] b = buffer;
+        int i = start;
+        int n = 0;
+        // plain ASCII prefix, usually the whole string
+        while (i < end && str.charAt(i) < 0x80) {
+            b[n++] = (byte) str.charAt(i++);
+        }
+
+        for (; i < end; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                b[n++] = (byte) ch;
+            } else if (ch < 0x800) {
+                b[n++] = (byte) (0xC0 | (ch >> 6));
+                b[n++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+                b[n++] = (byte) (0xF0 | (codePoint >> 18));
+                b[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                b[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                b[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+                b[n++] = (byte) '?';
+            } else {
+                b[n++] = (byte) (0xE0 | (ch >> 12));
+                b[n++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                b[n++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        return n;
+    }
+}
@@ -15,9 +15,10 @@
 
 package com.amazonaws.services.sqs.buffered;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 import com.amazonaws.AmazonClientException;
@@ -84,7 +85,10 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     public static final String USER_AGENT = AmazonSQSBufferedAsyncClient.class.getSimpleName() + "/"
             + VersionInfoUtils.getVersion();
 
-    private final CachingMap buffers = new CachingMap(16, (float) 0.75, true);
+    /** Maximum number of queue buffers kept by this client. */
+    static final int MAX_BUFFERS = 100;
+
+    private final ConcurrentMap<String, BufferEntry> buffers = new ConcurrentHashMap<String, BufferEntry>();
     private final AmazonSQSAsync realSQS;
     private final QueueBufferConfig bufferConfigExemplar;
 
@@ -161,9 +165,20 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         buffer.deleteMessageSync(deleteMessageRequest);
     }
 
+    /**
+     * Returns a snapshot of the activity of the buffer of the given queue: how full its outbound
+     * batches are, how long they wait, and how many received messages it holds.
+     *
+     * @return the metrics of the queue buffer, or null if this client has no buffer for the queue
+     */
+    public QueueBufferMetrics getQueueBufferMetrics(String queueUrl) {
+        BufferEntry entry = buffers.get(queueUrl);
+        return entry == null ? null : entry.buffer.getMetrics();
+    }
+
     public void shutdown() {
-        for (QueueBuffer buffer : buffers.values()) {
-            buffer.shutdown();
+        for (BufferEntry entry : buffers.values()) {
+            entry.buffer.shutdown();
         }
         realSQS.shutdown();
     }
@@ -352,28 +367,47 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
      *
      * @return a queue buffer associated with the provided queue URL. Never null
      */
-    private synchronized QueueBuffer getQBuffer(String qUrl) {
-        QueueBuffer toReturn = buffers.get(qUrl);
-        if (null == toReturn) {
+    private QueueBuffer getQBuffer(String qUrl) {
+        BufferEntry entry = buffers.get(qUrl);
+        if (null == entry) {
             QueueBufferConfig config = new QueueBufferConfig(bufferConfigExemplar);
-            toReturn = new QueueBuffer(config, qUrl, realSQS);
-            buffers.put(qUrl, toReturn);
+            BufferEntry newEntry = new BufferEntry(new QueueBuffer(config, qUrl, realSQS));
+            entry = buffers.putIfAbsent(qUrl, newEntry);
+            if (null == entry) {
+                entry = newEntry;
+                evictLeastRecentlyUsed();
+            }
         }
-        return toReturn;
+        entry.lastAccess = System.nanoTime();
+        return entry.buffer;
     }
 
-    class CachingMap extends LinkedHashMap<String, QueueBuffer> {
-        private static final long serialVersionUID = 1;
-        private static final int MAX_ENTRIES = 100;
-
-        public CachingMap(int initial, float loadFactor, boolean accessOrder) {
-            super(initial, loadFactor, accessOrder);
+    /**
+     * Removes least recently used queue buffers until at most {@code MAX_BUFFERS} remain. Only
+     * called when a new buffer is added, so the lookup path stays free of locks.
+     */
+    private void evictLeastRecentlyUsed() {
+        while (buffers.size() > MAX_BUFFERS) {
+            Map.Entry<String, BufferEntry> eldest = null;
+            for (Map.Entry<String, BufferEntry> candidate : buffers.entrySet()) {
+                if (eldest == null || candidate.getValue().lastAccess - eldest.getValue().lastAccess < 0) {
+                    eldest = candidate;
+                }
+            }
+            if (eldest != null && buffers.remove(eldest.getKey(), eldest.getValue())) {
+                eldest.getValue().buffer.evict();
+            }
         }
+    }
 
-        protected boolean removeEldestEntry(java.util.Map.Entry<String, QueueBuffer> eldest) {
-            return size() > MAX_ENTRIES;
-        }
+    /** A queue buffer along with the time it was last used. */
+    private static final class BufferEntry {
+        final QueueBuffer buffer;
+        volatile long lastAccess = System.nanoTime();
 
+        BufferEntry(QueueBuffer buffer) {
+            this.buffer = buffer;
+        }
     }
 
     public Future<Void> changeMessageVisibilityAsync(ChangeMessageVisibilityRequest changeMessageVisibilityRequest,
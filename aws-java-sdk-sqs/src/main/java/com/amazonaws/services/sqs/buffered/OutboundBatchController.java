@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.sqs.buffered.QueueBufferMetrics.OutboundBatchMetrics;
+
+/**
+ * Controls the batches of one type of outbound request: how long a batch is held open, and how
+ * many batches may be in flight. Both are fixed by the config unless it is adaptive, in which case
+ * they follow the observed request rate and service latency:
+ * <ul>
+ * <li>A batch is held open only if more requests are expected to arrive before
+ * {@code maxBatchOpenMs} elapses, and no longer than it takes to fill it.</li>
+ * <li>In-flight batches are capped at twice the number of batches arriving during one call to
+ * SQS, and at most {@code maxInflightOutboundBatches}.</li>
+ * </ul>
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+class OutboundBatchController {
+
+    /** Weight of each new batch in the averages */
+    private static final double WEIGHT = 0.1;
+
+    /** Number of batches in flight relative to what the measured latency strictly requires */
+    private static final double INFLIGHT_HEADROOM = 2.0;
+
+    private final QueueBufferConfig config;
+
+    private final AdjustableSemaphore permits;
+
+    private final TrafficEstimator traffic = new TrafficEstimator();
+
+    /** Upper bound of {@code inflightLimit} */
+    private final int maxInflight;
+
+    /** Synchronized by {@code this} */
+    private int inflightLimit;
+
+    private volatile long batchOpenNanos;
+
+    /** Averages, synchronized by {@code this} */
+    private long batchesSent;
+    private double averageBatchSize = -1;
+    private double averageWaitNanos = -1;
+
+    OutboundBatchController(QueueBufferConfig config) {
+        this.config = config;
+        int max = config.getMaxInflightOutboundBatches();
+
+        // must allow at least one outbound batch.
+        this.maxInflight = max > 0 ? max : 1;
+        this.inflightLimit = maxInflight;
+        this.permits = new AdjustableSemaphore(maxInflight);
+        this.batchOpenNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchOpenMs());
+    }
+
+    void acquirePermit() throws InterruptedException {
+        permits.acquire();
+    }
+
+    void releasePermit() {
+        permits.release();
+    }
+
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return the time a new batch is held open for additional requests
+     */
+    long getBatchOpenNanos() {
+        return batchOpenNanos;
+    }
+
+    /**
+     * Records a batch that was sent to SQS.
+     * 
+     * @param size
+     *            the number of requests in the batch
+     * @param waitNanos
+     *            the time between opening the batch and sending it
+     * @param latencyNanos
+     *            the duration of the call to SQS
+     */
+    synchronized void batchCompleted(int size, long waitNanos, long latencyNanos) {
+        ++batchesSent;
+        averageBatchSize = average(averageBatchSize, size);
+        averageWaitNanos = average(averageWaitNanos, waitNanos);
+        traffic.recordMessages(size);
+        traffic.recordLatency(latencyNanos);
+
+        if (!config.isAdaptive() || !traffic.hasEstimate()) {
+            return;
+        }
+
+        double rate = traffic.getRate();
+        long maxOpenNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchOpenMs());
+        double expectedWhileOpen = rate * maxOpenNanos / TimeUnit.SECONDS.toNanos(1);
+        if (expectedWhileOpen < 1) {
+            // holding the batch open would only add latency
+            batchOpenNanos = 0;
+        } else {
+            double fillNanos = (config.getMaxBatchSize() - 1) * (double) TimeUnit.SECONDS.toNanos(1) / rate;
+            batchOpenNanos = (long) Math.min(maxOpenNanos, fillNanos);
+        }
+
+        double batchesPerCall = traffic.getMessagesPerCall() / Math.max(1, averageBatchSize);
+        int limit = (int) Math.ceil(INFLIGHT_HEADROOM * batchesPerCall);
+        setInflightLimit(Math.min(maxInflight, Math.max(1, limit)));
+    }
+
+    private void setInflightLimit(int limit) {
+        if (limit > inflightLimit) {
+            permits.release(limit - inflightLimit);
+        } else if (limit < inflightLimit) {
+            permits.reducePermits(inflightLimit - limit);
+        }
+        inflightLimit = limit;
+    }
+
+    synchronized OutboundBatchMetrics getMetrics() {
+        return new OutboundBatchMetrics(batchesSent,
+                Math.max(0, averageBatchSize) / Math.max(1, config.getMaxBatchSize()),
+                Math.max(0, averageWaitNanos) / TimeUnit.MILLISECONDS.toNanos(1),
+                (double) batchOpenNanos / TimeUnit.MILLISECONDS.toNanos(1),
+                inflightLimit);
+    }
+
+    private static double average(double average, double sample) {
+        return average < 0 ? sample : average + WEIGHT * (sample - average);
+    }
+
+    /**
+     * Semaphore whose number of permits can be lowered while some of them are held.
+     */
+    @SuppressWarnings("serial")
+    private static final class AdjustableSemaphore extends Semaphore {
+
+        AdjustableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
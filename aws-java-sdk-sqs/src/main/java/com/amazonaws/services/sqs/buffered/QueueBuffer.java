@@ -15,6 +15,7 @@
 package com.amazonaws.services.sqs.buffered;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -51,20 +52,27 @@ class QueueBuffer {
 
     private final SendQueueBuffer sendBuffer;
     private final ReceiveQueueBuffer receiveBuffer;
+
+    /** Set once the client no longer uses this buffer; receives then bypass the buffer. */
+    private volatile boolean evicted = false;
     private final AmazonSQSAsync realSqs;
     QueueBufferConfig config;
 
     /**
-     * This executor that will be shared among all queue buffers. Since a single JVM can access
-     * hundreds of queues, it won't do to have hundreds of executors spinning up hundreds of threads
-     * for each queue. The DaemonThreadFactory creates daemon threads, which means they won't block
-     * the JVM from exiting if only they are still around.
+     * This executor that will be shared among all queue buffers whose config does not supply one.
+     * Since a single JVM can access hundreds of queues, it won't do to have hundreds of executors
+     * spinning up hundreds of threads for each queue. The DaemonThreadFactory creates daemon
+     * threads, which means they won't block the JVM from exiting if only they are still around.
      */
-    static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
+    static ExecutorService defaultExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    /** Executor running this buffer's batch tasks and future callbacks */
+    private final Executor executor;
 
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
         realSqs = sqs;
         config = paramConfig;
+        executor = paramConfig.getExecutor() != null ? paramConfig.getExecutor() : defaultExecutor;
         sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
         receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
     }
@@ -158,7 +166,7 @@ class QueueBuffer {
 
     public Future<ReceiveMessageResult> receiveMessage(ReceiveMessageRequest rq,
                                                        AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler) {
-        if (canBeRetrievedFromQueueBuffer(rq)) {
+        if (!evicted && canBeRetrievedFromQueueBuffer(rq)) {
             QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult> callback = null;
             if (handler != null) {
                 callback = new QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult>(handler, rq);
@@ -185,6 +193,22 @@ class QueueBuffer {
         return waitForFuture(future);
     }
 
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return a snapshot of the activity of this buffer
+     */
+    public QueueBufferMetrics getMetrics() {
+        return new QueueBufferMetrics(sendBuffer.getSendMessageController().getMetrics(),
+                sendBuffer.getDeleteMessageController().getMetrics(),
+                sendBuffer.getChangeMessageVisibilityController().getMetrics(),
+                receiveBuffer.getPrefetchedMessages(), receiveBuffer.getPrefetchedBatches(),
+                receiveBuffer.getInflightReceiveBatches(), receiveBuffer.getInflightReceiveBatchLimit(),
+                receiveBuffer.getDoneReceiveBatchLimit());
+    }
+
     /**
      * Shuts down the queue buffer. Once this method has been called, the queue buffer is not
      * operational and all subsequent calls to it may fail
@@ -195,6 +219,16 @@ class QueueBuffer {
         receiveBuffer.shutdown();
     }
 
+    /**
+     * Releases the queue buffer once it is no longer used by the client. Open outbound batches are
+     * sent and prefetching stops, without waiting for either to finish.
+     */
+    void evict() {
+        evicted = true;
+        sendBuffer.closeOpenBatches();
+        receiveBuffer.stop();
+    }
+
     /**
      * We prefetch and load results in the buffer by making basic requests. I.E. we don't request
      * queue or message attributes and we have a default visibility timeout. If the user's request
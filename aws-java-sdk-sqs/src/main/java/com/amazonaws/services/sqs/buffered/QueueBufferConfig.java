@@ -15,7 +15,10 @@
 
 package com.amazonaws.services.sqs.buffered;
 
+import java.util.concurrent.Executor;
+
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec;
 
 public class QueueBufferConfig {
 
@@ -109,6 +112,51 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * Should the buffer tune itself to the observed traffic? In adaptive mode, maxBatchOpenMs,
+     * maxInflightOutboundBatches, maxInflightReceiveBatches and maxDoneReceiveBatches are upper
+     * bounds: the buffer holds batches open only as long as more requests are expected to arrive,
+     * and keeps only as many batches in flight or pre-fetched as the observed request rate and
+     * service latency call for.
+     */
+    private boolean adaptive;
+
+    /** false */
+    public static final boolean ADAPTIVE_DEFAULT = false;
+
+    /**
+     * Executor running the batch tasks and callbacks of the queue buffers. If null, the buffers use
+     * an unbounded pool of daemon threads shared by all buffered clients in the JVM. A
+     * caller-supplied executor is not shut down by the buffered client, and must run at least one
+     * task for each outbound batch allowed in flight, and for each receive batch allowed in flight
+     * unless asyncReceive is set.
+     */
+    private Executor executor;
+
+    /**
+     * Should receive calls be issued with {@code receiveMessageAsync}? If so, no thread of the
+     * buffer's executor waits for a receive call to complete, and receive batches do not count
+     * against the executor. The wait is moved rather than removed: {@code AmazonSQSAsyncClient}
+     * still blocks a thread of its own executor for each outstanding call, so threads are only
+     * saved with an {@code AmazonSQSAsync} client whose calls hold no thread while outstanding.
+     * Outbound batches are still sent with blocking calls from the buffer's executor.
+     */
+    private boolean asyncReceive;
+
+    /** false */
+    public static final boolean ASYNC_RECEIVE_DEFAULT = false;
+
+    /**
+     * Codec compressing the bodies of sent messages and offloading large ones to a payload store.
+     * Received messages carrying its encoding attribute are decoded before they are returned. If
+     * null, bodies are sent and returned as they are. Bodies are encoded, and uploaded to the
+     * payload store, when their batch is sent; a failed upload fails only that message. A message
+     * that cannot be decoded fails the receive it was prefetched for. Receive requests the buffer
+     * passes straight to the service (such as those asking for message attributes) are not
+     * decoded: use {@link MessagePayloadCodec#decode(com.amazonaws.services.sqs.model.Message)}.
+     */
+    private MessagePayloadCodec payloadCodec;
+
     public QueueBufferConfig(long maxBatchOpenMs, int maxInflightOutboundBatches, int maxInflightReceiveBatches,
             int maxDoneReceiveBatches, boolean paramLongPoll, long maxBatchSizeBytes, int visibilityTimeout,
             int longPollTimeout, int maxBatch) {
@@ -122,6 +170,8 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.adaptive = ADAPTIVE_DEFAULT;
+        this.asyncReceive = ASYNC_RECEIVE_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -141,6 +191,10 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptive = other.adaptive;
+        executor = other.executor;
+        asyncReceive = other.asyncReceive;
+        payloadCodec = other.payloadCodec;
     }
 
     @Override
@@ -149,7 +203,9 @@ public class QueueBufferConfig {
                 + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
-                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
+                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds
+                + ", adaptive=" + adaptive + ", executor=" + executor + ", asyncReceive=" + asyncReceive
+                + ", payloadCodec=" + payloadCodec + "]";
     }
 
     /**
@@ -429,6 +485,151 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * Should the buffer tune itself to the observed traffic? In adaptive mode, maxBatchOpenMs,
+     * maxInflightOutboundBatches, maxInflightReceiveBatches and maxDoneReceiveBatches are upper
+     * bounds: the buffer holds batches open only as long as more requests are expected to arrive,
+     * and keeps only as many batches in flight or pre-fetched as the observed request rate and
+     * service latency call for.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Should the buffer tune itself to the observed traffic? In adaptive mode, maxBatchOpenMs,
+     * maxInflightOutboundBatches, maxInflightReceiveBatches and maxDoneReceiveBatches are upper
+     * bounds: the buffer holds batches open only as long as more requests are expected to arrive,
+     * and keeps only as many batches in flight or pre-fetched as the observed request rate and
+     * service latency call for.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Should the buffer tune itself to the observed traffic? In adaptive mode, maxBatchOpenMs,
+     * maxInflightOutboundBatches, maxInflightReceiveBatches and maxDoneReceiveBatches are upper
+     * bounds: the buffer holds batches open only as long as more requests are expected to arrive,
+     * and keeps only as many batches in flight or pre-fetched as the observed request rate and
+     * service latency call for.
+     */
+    public QueueBufferConfig withAdaptive(boolean adaptive) {
+        setAdaptive(adaptive);
+        return this;
+    }
+
+    /**
+     * Executor running the batch tasks and callbacks of the queue buffers. If null, the buffers use
+     * an unbounded pool of daemon threads shared by all buffered clients in the JVM. A
+     * caller-supplied executor is not shut down by the buffered client, and must run at least one
+     * task for each outbound batch allowed in flight, and for each receive batch allowed in flight
+     * unless asyncReceive is set.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Executor running the batch tasks and callbacks of the queue buffers. If null, the buffers use
+     * an unbounded pool of daemon threads shared by all buffered clients in the JVM. A
+     * caller-supplied executor is not shut down by the buffered client, and must run at least one
+     * task for each outbound batch allowed in flight, and for each receive batch allowed in flight
+     * unless asyncReceive is set.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Executor running the batch tasks and callbacks of the queue buffers. If null, the buffers use
+     * an unbounded pool of daemon threads shared by all buffered clients in the JVM. A
+     * caller-supplied executor is not shut down by the buffered client, and must run at least one
+     * task for each outbound batch allowed in flight, and for each receive batch allowed in flight
+     * unless asyncReceive is set.
+     */
+    public QueueBufferConfig withExecutor(Executor executor) {
+        setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Should receive calls be issued with {@code receiveMessageAsync}? If so, no thread of the
+     * buffer's executor waits for a receive call to complete, and receive batches do not count
+     * against the executor. The wait is moved rather than removed: {@code AmazonSQSAsyncClient}
+     * still blocks a thread of its own executor for each outstanding call, so threads are only
+     * saved with an {@code AmazonSQSAsync} client whose calls hold no thread while outstanding.
+     * Outbound batches are still sent with blocking calls from the buffer's executor.
+     */
+    public boolean isAsyncReceive() {
+        return asyncReceive;
+    }
+
+    /**
+     * Should receive calls be issued with {@code receiveMessageAsync}? If so, no thread of the
+     * buffer's executor waits for a receive call to complete, and receive batches do not count
+     * against the executor. The wait is moved rather than removed: {@code AmazonSQSAsyncClient}
+     * still blocks a thread of its own executor for each outstanding call, so threads are only
+     * saved with an {@code AmazonSQSAsync} client whose calls hold no thread while outstanding.
+     * Outbound batches are still sent with blocking calls from the buffer's executor.
+     */
+    public void setAsyncReceive(boolean asyncReceive) {
+        this.asyncReceive = asyncReceive;
+    }
+
+    /**
+     * Should receive calls be issued with {@code receiveMessageAsync}? If so, no thread of the
+     * buffer's executor waits for a receive call to complete, and receive batches do not count
+     * against the executor. The wait is moved rather than removed: {@code AmazonSQSAsyncClient}
+     * still blocks a thread of its own executor for each outstanding call, so threads are only
+     * saved with an {@code AmazonSQSAsync} client whose calls hold no thread while outstanding.
+     * Outbound batches are still sent with blocking calls from the buffer's executor.
+     */
+    public QueueBufferConfig withAsyncReceive(boolean asyncReceive) {
+        setAsyncReceive(asyncReceive);
+        return this;
+    }
+
+    /**
+     * Codec compressing the bodies of sent messages and offloading large ones to a payload store.
+     * Received messages carrying its encoding attribute are decoded before they are returned. If
+     * null, bodies are sent and returned as they are. Bodies are encoded, and uploaded to the
+     * payload store, when their batch is sent; a failed upload fails only that message. A message
+     * that cannot be decoded fails the receive it was prefetched for. Receive requests the buffer
+     * passes straight to the service (such as those asking for message attributes) are not
+     * decoded: use {@link MessagePayloadCodec#decode(com.amazonaws.services.sqs.model.Message)}.
+     */
+    public MessagePayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * Codec compressing the bodies of sent messages and offloading large ones to a payload store.
+     * Received messages carrying its encoding attribute are decoded before they are returned. If
+     * null, bodies are sent and returned as they are. Bodies are encoded, and uploaded to the
+     * payload store, when their batch is sent; a failed upload fails only that message. A message
+     * that cannot be decoded fails the receive it was prefetched for. Receive requests the buffer
+     * passes straight to the service (such as those asking for message attributes) are not
+     * decoded: use {@link MessagePayloadCodec#decode(com.amazonaws.services.sqs.model.Message)}.
+     */
+    public void setPayloadCodec(MessagePayloadCodec payloadCodec) {
+        this.payloadCodec = payloadCodec;
+    }
+
+    /**
+     * Codec compressing the bodies of sent messages and offloading large ones to a payload store.
+     * Received messages carrying its encoding attribute are decoded before they are returned. If
+     * null, bodies are sent and returned as they are. Bodies are encoded, and uploaded to the
+     * payload store, when their batch is sent; a failed upload fails only that message. A message
+     * that cannot be decoded fails the receive it was prefetched for. Receive requests the buffer
+     * passes straight to the service (such as those asking for message attributes) are not
+     * decoded: use {@link MessagePayloadCodec#decode(com.amazonaws.services.sqs.model.Message)}.
+     */
+    public QueueBufferConfig withPayloadCodec(MessagePayloadCodec payloadCodec) {
+        setPayloadCodec(payloadCodec);
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be invalid, an
      * informative exception is thrown.
@@ -18,6 +18,7 @@ package com.amazonaws.services.sqs.buffered;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -67,12 +68,12 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
         // it on a different thread. Who knows what this
         // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.getExecutor().execute(new FutureTask<Void>(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onSuccess(result);
                     return null;
                 }
-            });
+            }));
 
         }
     }
@@ -91,12 +92,12 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
         // it on a different thread. Who knows what this
         // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.getExecutor().execute(new FutureTask<Void>(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onError(e);
                     return null;
                 }
-            });
+            }));
 
         }
 
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * A snapshot of the activity of the buffer of a single queue, as returned by
+ * {@link AmazonSQSBufferedAsyncClient#getQueueBufferMetrics(String)}. Averages are exponentially
+ * weighted towards recent batches.
+ */
+public class QueueBufferMetrics {
+
+    /**
+     * Activity of the batches of one type of outbound request.
+     */
+    public static class OutboundBatchMetrics {
+
+        private final long batchesSent;
+        private final double averageFillRatio;
+        private final double averageWaitMs;
+        private final double batchOpenMs;
+        private final int inflightBatchLimit;
+
+        OutboundBatchMetrics(long batchesSent, double averageFillRatio, double averageWaitMs, double batchOpenMs,
+                int inflightBatchLimit) {
+            this.batchesSent = batchesSent;
+            this.averageFillRatio = averageFillRatio;
+            this.averageWaitMs = averageWaitMs;
+            this.batchOpenMs = batchOpenMs;
+            this.inflightBatchLimit = inflightBatchLimit;
+        }
+
+        /**
+         * @return the number of batch requests sent to SQS
+         */
+        public long getBatchesSent() {
+            return batchesSent;
+        }
+
+        /**
+         * @return the number of entries in a batch, relative to the maximum batch size
+         */
+        public double getAverageFillRatio() {
+            return averageFillRatio;
+        }
+
+        /**
+         * @return the time (milliseconds) between opening a batch and sending it
+         */
+        public double getAverageWaitMs() {
+            return averageWaitMs;
+        }
+
+        /**
+         * @return the time (milliseconds) a batch is currently held open for more requests. Only
+         *         varies in adaptive mode.
+         */
+        public double getBatchOpenMs() {
+            return batchOpenMs;
+        }
+
+        /**
+         * @return the number of batches currently allowed in flight. Only varies in adaptive mode.
+         */
+        public int getInflightBatchLimit() {
+            return inflightBatchLimit;
+        }
+
+        @Override
+        public String toString() {
+            return "OutboundBatchMetrics [batchesSent=" + batchesSent + ", averageFillRatio=" + averageFillRatio
+                    + ", averageWaitMs=" + averageWaitMs + ", batchOpenMs=" + batchOpenMs
+                    + ", inflightBatchLimit=" + inflightBatchLimit + "]";
+        }
+    }
+
+    private final OutboundBatchMetrics sendMessageMetrics;
+    private final OutboundBatchMetrics deleteMessageMetrics;
+    private final OutboundBatchMetrics changeMessageVisibilityMetrics;
+    private final int prefetchedMessages;
+    private final int prefetchedBatches;
+    private final int inflightReceiveBatches;
+    private final int inflightReceiveBatchLimit;
+    private final int doneReceiveBatchLimit;
+
+    QueueBufferMetrics(OutboundBatchMetrics sendMessageMetrics, OutboundBatchMetrics deleteMessageMetrics,
+            OutboundBatchMetrics changeMessageVisibilityMetrics, int prefetchedMessages, int prefetchedBatches,
+            int inflightReceiveBatches, int inflightReceiveBatchLimit, int doneReceiveBatchLimit) {
+        this.sendMessageMetrics = sendMessageMetrics;
+        this.deleteMessageMetrics = deleteMessageMetrics;
+        this.changeMessageVisibilityMetrics = changeMessageVisibilityMetrics;
+        this.prefetchedMessages = prefetchedMessages;
+        this.prefetchedBatches = prefetchedBatches;
+        this.inflightReceiveBatches = inflightReceiveBatches;
+        this.inflightReceiveBatchLimit = inflightReceiveBatchLimit;
+        this.doneReceiveBatchLimit = doneReceiveBatchLimit;
+    }
+
+    public OutboundBatchMetrics getSendMessageMetrics() {
+        return sendMessageMetrics;
+    }
+
+    public OutboundBatchMetrics getDeleteMessageMetrics() {
+        return deleteMessageMetrics;
+    }
+
+    public OutboundBatchMetrics getChangeMessageVisibilityMetrics() {
+        return changeMessageVisibilityMetrics;
+    }
+
+    /**
+     * @return the number of received messages waiting in the buffer
+     */
+    public int getPrefetchedMessages() {
+        return prefetchedMessages;
+    }
+
+    /**
+     * @return the number of completed receive batches waiting in the buffer
+     */
+    public int getPrefetchedBatches() {
+        return prefetchedBatches;
+    }
+
+    /**
+     * @return the number of receive calls in flight
+     */
+    public int getInflightReceiveBatches() {
+        return inflightReceiveBatches;
+    }
+
+    /**
+     * @return the number of receive calls currently allowed in flight. Only varies in adaptive
+     *         mode.
+     */
+    public int getInflightReceiveBatchLimit() {
+        return inflightReceiveBatchLimit;
+    }
+
+    /**
+     * @return the number of completed receive batches the buffer currently pre-fetches. Only varies
+     *         in adaptive mode.
+     */
+    public int getDoneReceiveBatchLimit() {
+        return doneReceiveBatchLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueBufferMetrics [sendMessageMetrics=" + sendMessageMetrics + ", deleteMessageMetrics="
+                + deleteMessageMetrics + ", changeMessageVisibilityMetrics=" + changeMessageVisibilityMetrics
+                + ", prefetchedMessages=" + prefetchedMessages + ", prefetchedBatches=" + prefetchedBatches
+                + ", inflightReceiveBatches=" + inflightReceiveBatches + ", inflightReceiveBatchLimit="
+                + inflightReceiveBatchLimit + ", doneReceiveBatchLimit=" + doneReceiveBatchLimit + "]";
+    }
+}
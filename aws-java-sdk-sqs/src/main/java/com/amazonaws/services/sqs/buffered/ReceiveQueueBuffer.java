@@ -26,25 +26,34 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
-import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
 import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec;
 
 /**
  * The ReceiveQueueBuffer class is responsible for dequeueing of messages from a single SQS queue.
  * It uses the provided executor to pre-fetch messages from the server and keeps them in a buffer
  * which it uses to satisfy incoming requests. The number of requests pre-fetched and kept in the
  * buffer, as well as the maximum number of threads used to retrieve the messages are configurable.
+ * With {@code asyncReceive}, the receive calls are issued with {@code receiveMessageAsync} instead,
+ * and no executor thread waits for them; any thread the call needs is the client's.
  * <p>
  * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object monitor to spawn a
  * new task or modify the number of inflight tasks - Threads must hold the monitor of the "futures"
  * list to modify the list - Threads must hold the monitor of the "finishedTasks" list to modify the
  * list - If you need to lock both futures and finishedTasks, lock futures first and finishedTasks
  * second
+ * <p>
+ * In adaptive mode, the number of receive batches kept in flight and pre-fetched follows the rate
+ * at which messages are handed out and the latency of the receive calls that return messages: the
+ * buffer pre-fetches about twice the number of messages consumed during one receive call, up to
+ * maxInflightReceiveBatches and maxDoneReceiveBatches.
  */
 public class ReceiveQueueBuffer {
 
@@ -70,7 +79,7 @@ public class ReceiveQueueBuffer {
 
     private final Executor executor;
 
-    private final AmazonSQS sqsClient;
+    private final AmazonSQSAsync sqsClient;
 
     private long bufferCounter = 0;
 
@@ -92,6 +101,24 @@ public class ReceiveQueueBuffer {
      */
     private final Object taskSpawnSyncPoint = new Object();
 
+    /** Number of receive batches pre-fetched relative to what the measured latency strictly requires */
+    private static final double PREFETCH_HEADROOM = 2.0;
+
+    /** Rate at which messages are handed out, and latency of the receive calls */
+    private final TrafficEstimator traffic = new TrafficEstimator();
+
+    /**
+     * Number of receive batches allowed in flight. Fixed to maxInflightReceiveBatches unless the
+     * config is adaptive. Modified under {@code taskSpawnSyncPoint}.
+     */
+    private volatile int inflightReceiveBatchLimit;
+
+    /**
+     * Number of completed receive batches to keep in the buffer. Fixed to maxDoneReceiveBatches
+     * unless the config is adaptive. Modified under {@code taskSpawnSyncPoint}.
+     */
+    private volatile int doneReceiveBatchLimit;
+
     /** shutdown buffer does not retrieve any more messages from sqs */
     volatile boolean shutDown = false;
 
@@ -101,12 +128,34 @@ public class ReceiveQueueBuffer {
     /** finished batches are stored in this list. */
     private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
 
-    ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url) {
+    ReceiveQueueBuffer(AmazonSQSAsync paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url) {
         config = paramConfig;
         executor = paramExecutor;
         sqsClient = paramSQS;
         qUrl = url;
 
+        // must allow at least one inflight receive task, or receive won't
+        // work at all.
+        inflightReceiveBatchLimit = config.isAdaptive() ? 1 : maxInflightReceiveBatches();
+        doneReceiveBatchLimit = config.isAdaptive() ? 1 : maxDoneReceiveBatches();
+    }
+
+    private int maxInflightReceiveBatches() {
+        int max = config.getMaxInflightReceiveBatches();
+        return max > 0 ? max : 1;
+    }
+
+    private int maxDoneReceiveBatches() {
+        int max = config.getMaxDoneReceiveBatches();
+        return max > 0 ? max : 1;
+    }
+
+    /**
+     * Prevents spawning of new retrieval batches without waiting for in-flight retrieval batches
+     * to finish
+     */
+    void stop() {
+        shutDown = true;
     }
 
     /**
@@ -114,7 +163,7 @@ public class ReceiveQueueBuffer {
      * finish
      */
     public void shutdown() {
-        shutDown = true;
+        stop();
         try {
             while (inflightReceiveMessageBatches > 0)
                 Thread.sleep(100);
@@ -216,6 +265,8 @@ public class ReceiveQueueBuffer {
                 break;
             }
         }
+        traffic.recordMessages(numRetrieved);
+
         // we may have just drained the batch.
         batchDone = batchDone || task.isEmpty() || (exception != null);
         if (batchDone) {
@@ -288,8 +339,7 @@ public class ReceiveQueueBuffer {
             return;
         }
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
-        desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        int desiredBatches = doneReceiveBatchLimit;
 
         synchronized (finishedTasks) {
             if (finishedTasks.size() >= desiredBatches)
@@ -304,6 +354,7 @@ public class ReceiveQueueBuffer {
             }
         }
 
+        ReceiveMessageBatchTask task = null;
         synchronized (taskSpawnSyncPoint) {
             if (visibilityTimeoutNanos == -1) {
                 GetQueueAttributesRequest request = new GetQueueAttributesRequest().withQueueUrl(qUrl)
@@ -314,22 +365,26 @@ public class ReceiveQueueBuffer {
                 visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds, TimeUnit.SECONDS);
             }
 
-            int max = config.getMaxInflightReceiveBatches();
-            // must allow at least one inflight receive task, or receive won't
-            // work at all.
-            max = max > 0 ? max : 1;
+            int max = inflightReceiveBatchLimit;
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
-                ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
+                task = new ReceiveMessageBatchTask(this);
                 ++inflightReceiveMessageBatches;
                 ++bufferCounter;
                 if (log.isTraceEnabled()) {
                     log.trace("Spawned receive batch #" + bufferCounter + " (" + inflightReceiveMessageBatches + " of "
                             + max + " inflight) for queue " + qUrl);
                 }
-                executor.execute(task);
+                if (!config.isAsyncReceive()) {
+                    executor.execute(task);
+                }
             }
         }
+
+        // issued outside of the lock, as the client may complete the call in this thread
+        if (task != null && config.isAsyncReceive()) {
+            task.runAsync();
+        }
     }
 
     /**
@@ -344,11 +399,66 @@ public class ReceiveQueueBuffer {
         }
         synchronized (taskSpawnSyncPoint) {
             --inflightReceiveMessageBatches;
+            adjustBatchLimits();
         }
         satisfyFuturesFromBuffer();
         spawnMoreReceiveTasks();
     }
 
+    /**
+     * In adaptive mode, sizes the number of inflight and pre-fetched receive batches after the
+     * current traffic estimates. Must be called under {@code taskSpawnSyncPoint}.
+     */
+    private void adjustBatchLimits() {
+        if (!config.isAdaptive() || !traffic.hasEstimate()) {
+            return;
+        }
+        int batchSize = Math.max(1, config.getMaxBatchSize());
+        int needed = (int) Math.ceil(PREFETCH_HEADROOM * traffic.getMessagesPerCall() / batchSize);
+        needed = Math.max(1, needed);
+        inflightReceiveBatchLimit = Math.min(needed, maxInflightReceiveBatches());
+        doneReceiveBatchLimit = Math.min(needed, maxDoneReceiveBatches());
+    }
+
+    /**
+     * @return the estimated latency of the receive calls that returned messages, in nanoseconds,
+     *         or a negative value until one has
+     */
+    double getReceiveLatencyNanos() {
+        return traffic.getLatencyNanos();
+    }
+
+    int getInflightReceiveBatches() {
+        return inflightReceiveMessageBatches;
+    }
+
+    int getInflightReceiveBatchLimit() {
+        return inflightReceiveBatchLimit;
+    }
+
+    int getDoneReceiveBatchLimit() {
+        return doneReceiveBatchLimit;
+    }
+
+    int getPrefetchedBatches() {
+        synchronized (finishedTasks) {
+            return finishedTasks.size();
+        }
+    }
+
+    /**
+     * @return the number of messages held by the completed receive batches
+     */
+    int getPrefetchedMessages() {
+        synchronized (finishedTasks) {
+            int count = 0;
+            for (ReceiveMessageBatchTask task : finishedTasks) {
+                count += task.size();
+            }
+            return count;
+        }
+    }
+
     /**
      * Clears and nacks any pre-fetched messages in this buffer.
      */
@@ -451,6 +561,10 @@ public class ReceiveQueueBuffer {
                 return messages.remove(messages.size() - 1);
         }
 
+        synchronized int size() {
+            return messages.size();
+        }
+
         boolean isExpired() {
             return System.nanoTime() > visibilityDeadlineNano;
         }
@@ -491,36 +605,147 @@ public class ReceiveQueueBuffer {
         }
 
         /**
-         * Attempts to retrieve messages from SQS and upon completion (successful or unsuccessful)
-         * reports the batch as complete and open
+         * Builds the receive request, and starts the visibility deadline of the messages it will
+         * return.
          */
-        public void run() {
+        private ReceiveMessageRequest prepareRequest() {
+            visibilityDeadlineNano = System.nanoTime() + visibilityTimeoutNanos;
+            ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl).withMaxNumberOfMessages(config
+                    .getMaxBatchSize());
+            ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
+
+            if (config.getVisibilityTimeoutSeconds() > 0) {
+                request.setVisibilityTimeout(config.getVisibilityTimeoutSeconds());
+                visibilityDeadlineNano = System.nanoTime()
+                        + TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
+            }
 
-            try {
-                visibilityDeadlineNano = System.nanoTime() + visibilityTimeoutNanos;
-                ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl).withMaxNumberOfMessages(config
-                        .getMaxBatchSize());
-                ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
+            if (config.isLongPoll()) {
+                request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
+            }
+
+            if (config.getPayloadCodec() != null) {
+                request.withMessageAttributeNames(MessagePayloadCodec.ENCODING_ATTRIBUTE);
+            }
+            return request;
+        }
 
-                if (config.getVisibilityTimeoutSeconds() > 0) {
-                    request.setVisibilityTimeout(config.getVisibilityTimeoutSeconds());
-                    visibilityDeadlineNano = System.nanoTime()
-                            + TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
+        /**
+         * Marks the batch as complete and open, and reports it to the parent buffer.
+         */
+        private void finish(List<Message> received, Exception e) {
+            if (config.getPayloadCodec() != null && !received.isEmpty()) {
+                List<Message> decoded = new ArrayList<Message>(received.size());
+                AmazonClientException failure = decode(received, decoded);
+                if (failure == null) {
+                    received = decoded;
+                } else {
+                    // Fail the batch so that the caller sees the failure. The messages that were
+                    // decoded are released right away; the others become visible again when
+                    // their visibility timeout expires, so that a redrive policy can eventually
+                    // move them to a dead-letter queue.
+                    if (!decoded.isEmpty()) {
+                        synchronized (this) {
+                            messages = decoded;
+                            open = true;
+                        }
+                        clear();
+                    }
+                    received = Collections.emptyList();
+                    e = failure;
                 }
+            }
+            synchronized (this) {
+                messages = received;
+                exception = e;
+                open = true;
+            }
+            parentBuffer.reportBatchFinished(this);
+        }
 
-                if (config.isLongPoll()) {
-                    request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
+        /**
+         * Decodes the bodies of received messages into {@code decoded}, skipping those that cannot
+         * be decoded.
+         * 
+         * @return the failure to decode the first message that could not be decoded, or null if
+         *         all were decoded
+         */
+        private AmazonClientException decode(List<Message> received, List<Message> decoded) {
+            MessagePayloadCodec codec = config.getPayloadCodec();
+            AmazonClientException failure = null;
+            for (Message message : received) {
+                try {
+                    decoded.add(codec.decode(message));
+                } catch (AmazonClientException e) {
+                    if (failure == null) {
+                        failure = new AmazonClientException("Unable to decode body of message "
+                                + message.getMessageId(), e);
+                    }
                 }
+            }
+            return failure;
+        }
 
-                messages = sqsClient.receiveMessage(request).getMessages();
-            } catch (AmazonClientException e) {
-                exception = e;
+        /**
+         * Attempts to retrieve messages from SQS and upon completion (successful or unsuccessful)
+         * reports the batch as complete and open
+         */
+        public void run() {
+            List<Message> received = Collections.emptyList();
+            Exception e = null;
+            try {
+                ReceiveMessageRequest request = prepareRequest();
+                long startNanos = System.nanoTime();
+                received = sqsClient.receiveMessage(request).getMessages();
+                recordLatency(startNanos, received);
+            } catch (AmazonClientException ace) {
+                e = ace;
             } finally {
                 // whatever happened, we are done and can be considered open
-                open = true;
-                parentBuffer.reportBatchFinished(this);
+                finish(received, e);
+            }
+        }
+
+        /**
+         * Samples the latency of a receive call. A call that returned no messages has waited out
+         * its long poll, so its duration tells how long the queue stayed empty rather than how
+         * long the service takes to answer, and is not sampled.
+         */
+        private void recordLatency(long startNanos, List<Message> received) {
+            if (received != null && !received.isEmpty()) {
+                traffic.recordLatency(System.nanoTime() - startNanos);
             }
+        }
 
+        /**
+         * Issues the receive call with {@code receiveMessageAsync}, so that no thread of the
+         * buffer's executor waits for it. Whether a thread waits at all is up to the client:
+         * {@code AmazonSQSAsyncClient} runs the call on a thread of its own executor. The batch is
+         * reported as complete and open from the client's callback.
+         */
+        void runAsync() {
+            final long startNanos = System.nanoTime();
+            try {
+                sqsClient.receiveMessageAsync(prepareRequest(),
+                        new AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult>() {
+                            @Override
+                            public void onSuccess(ReceiveMessageRequest request, ReceiveMessageResult result) {
+                                recordLatency(startNanos, result.getMessages());
+                                finish(result.getMessages(), null);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                finish(Collections.<Message> emptyList(), e);
+                            }
+                        });
+            } catch (AmazonClientException e) {
+                finish(Collections.<Message> emptyList(), e);
+            } catch (RuntimeException e) {
+                // e.g. the client's executor rejected the call
+                finish(Collections.<Message> emptyList(),
+                        new AmazonClientException("Failed to issue receive request", e));
+            }
         }
     }
 }
@@ -15,10 +15,16 @@
 package com.amazonaws.services.sqs.buffered;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,6 +49,7 @@ import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec;
 
 /**
  * This class is responsible for buffering outgoing SQS requests, i.e. requests to send a message,
@@ -54,15 +61,15 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
  * Internally, the batch objects maintain a list of futures corresponding to the requests added to
  * them. When a batch completes, it loads the results into the futures and marks the futures as
  * complete.
+ * <p>
+ * Adding a request takes no locks: a request reserves a slot in the open batch with a single
+ * compare-and-set, and a new batch is swapped in with another when the open one is closed. Only
+ * the caller that opens a new batch waits for an in-flight batch permit; other callers keep adding
+ * to the new batch in the meantime.
  */
 public class SendQueueBuffer {
     private static Log log = LogFactory.getLog(SendQueueBuffer.class);
 
-    // Interface to support event notifications with a parameter.
-    private interface Listener<T> {
-        void invoke(T o);
-    };
-
     /** Config settings for this buffer */
     private final QueueBufferConfig config;
 
@@ -80,78 +87,82 @@ public class SendQueueBuffer {
     private final Executor executor;
 
     /**
-     * Object used to serialize sendMessage calls.
-     */
-    private final Object sendMessageLock = new Object();
-
-    /**
-     * Object used to serialize deleteMessage calls.
+     * Current batching task for sendMessage, or null.
      */
-    private final Object deleteMessageLock = new Object();
+    private final AtomicReference<SendMessageBatchTask> openSendMessageBatchTask =
+            new AtomicReference<SendMessageBatchTask>();
 
     /**
-     * Object used to serialize changeMessageVisibility calls.
+     * Current batching task for deleteMessage, or null.
      */
-    private final Object changeMessageVisibilityLock = new Object();
+    private final AtomicReference<DeleteMessageBatchTask> openDeleteMessageBatchTask =
+            new AtomicReference<DeleteMessageBatchTask>();
 
     /**
-     * Current batching task for sendMessage. Using a size 1 array to allow "passing by reference".
-     * Synchronized by {@code sendMessageLock}.
+     * Current batching task for changeMessageVisibility, or null.
      */
-    private final SendMessageBatchTask[] openSendMessageBatchTask = new SendMessageBatchTask[1];
+    private final AtomicReference<ChangeMessageVisibilityBatchTask> openChangeMessageVisibilityBatchTask =
+            new AtomicReference<ChangeMessageVisibilityBatchTask>();
 
     /**
-     * Current batching task for deleteMessage. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code deleteMessageLock}.
+     * Controls the open time and the number of in flight SendMessage batches.
      */
-    private final DeleteMessageBatchTask[] openDeleteMessageBatchTask = new DeleteMessageBatchTask[1];
+    private final OutboundBatchController sendMessageController;
 
     /**
-     * Current batching task for changeMessageVisibility. Using a size 1 array to allow
-     * "passing by reference". Synchronized by {@code changeMessageVisibilityLock}.
+     * Controls the open time and the number of in flight DeleteMessage batches.
      */
-    private final ChangeMessageVisibilityBatchTask[] openChangeMessageVisibilityBatchTask = new ChangeMessageVisibilityBatchTask[1];
+    private final OutboundBatchController deleteMessageController;
 
     /**
-     * Permits controlling the number of in flight SendMessage batches.
+     * Controls the open time and the number of in flight ChangeMessageVisibility batches.
      */
-    private final Semaphore inflightSendMessageBatches;
+    private final OutboundBatchController changeMessageVisibilityController;
 
     /**
-     * Permits controlling the number of in flight DeleteMessage batches.
+     * Batch tasks that have been opened and have not completed yet, so that {@code flush} can wait
+     * for them.
      */
-    private final Semaphore inflightDeleteMessageBatches;
-
-    /**
-     * Permits controlling the number of in flight ChangeMessageVisibility batches.
-     */
-    private final Semaphore inflightChangeMessageVisibilityBatches;
+    private final Set<OutboundBatchTask<?, ?>> pendingBatchTasks = Collections
+            .newSetFromMap(new ConcurrentHashMap<OutboundBatchTask<?, ?>, Boolean>());
 
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig, String url) {
         this.sqsClient = sqsClient;
         this.executor = executor;
         this.config = paramConfig;
         qUrl = url;
-        int maxBatch = config.getMaxInflightOutboundBatches();
-
-        // must allow at least one outbound batch.
-        maxBatch = maxBatch > 0 ? maxBatch : 1;
-        this.inflightSendMessageBatches = new Semaphore(maxBatch);
-        this.inflightDeleteMessageBatches = new Semaphore(maxBatch);
-        this.inflightChangeMessageVisibilityBatches = new Semaphore(maxBatch);
+        this.sendMessageController = new OutboundBatchController(config);
+        this.deleteMessageController = new OutboundBatchController(config);
+        this.changeMessageVisibilityController = new OutboundBatchController(config);
     }
 
     public QueueBufferConfig getConfig() {
         return config;
     }
 
+    OutboundBatchController getSendMessageController() {
+        return sendMessageController;
+    }
+
+    OutboundBatchController getDeleteMessageController() {
+        return deleteMessageController;
+    }
+
+    OutboundBatchController getChangeMessageVisibilityController() {
+        return changeMessageVisibilityController;
+    }
+
     /**
+     * If the config has a payload codec, the message body is encoded by the batch task on the
+     * buffer's executor, so the calling thread neither compresses the body nor waits for its
+     * upload to the payload store.
+     * 
      * @return never null
      */
     public QueueBufferFuture<SendMessageRequest, SendMessageResult> sendMessage(SendMessageRequest request,
                                                                                 QueueBufferCallback<SendMessageRequest, SendMessageResult> callback) {
-        QueueBufferFuture<SendMessageRequest, SendMessageResult> result = submitOutboundRequest(sendMessageLock,
-                openSendMessageBatchTask, request, inflightSendMessageBatches, callback);
+        QueueBufferFuture<SendMessageRequest, SendMessageResult> result = submitOutboundRequest(
+                openSendMessageBatchTask, request, sendMessageController, callback);
         return result;
     }
 
@@ -160,8 +171,8 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<DeleteMessageRequest, Void> deleteMessage(DeleteMessageRequest request,
                                                                        QueueBufferCallback<DeleteMessageRequest, Void> callback) {
-        return submitOutboundRequest(deleteMessageLock, openDeleteMessageBatchTask, request,
-                inflightDeleteMessageBatches, callback);
+        return submitOutboundRequest(openDeleteMessageBatchTask, request,
+                deleteMessageController, callback);
     }
 
     /**
@@ -169,22 +180,23 @@ public class SendQueueBuffer {
      */
     public QueueBufferFuture<ChangeMessageVisibilityRequest, Void> changeMessageVisibility(ChangeMessageVisibilityRequest request,
                                                                                            QueueBufferCallback<ChangeMessageVisibilityRequest, Void> callback) {
-        return submitOutboundRequest(changeMessageVisibilityLock, openChangeMessageVisibilityBatchTask, request,
-                inflightChangeMessageVisibilityBatches, callback);
+        return submitOutboundRequest(openChangeMessageVisibilityBatchTask, request,
+                changeMessageVisibilityController, callback);
     }
 
     /**
      * @return new {@code OutboundBatchTask} of appropriate type, never null
      */
     @SuppressWarnings("unchecked")
-    private <R extends AmazonWebServiceRequest, Result> OutboundBatchTask<R, Result> newOutboundBatchTask(R request) {
+    private <R extends AmazonWebServiceRequest, Result> OutboundBatchTask<R, Result> newOutboundBatchTask(R request,
+                                                                                                        OutboundBatchController controller) {
 
         if (request instanceof SendMessageRequest)
-            return (OutboundBatchTask<R, Result>) new SendMessageBatchTask();
+            return (OutboundBatchTask<R, Result>) new SendMessageBatchTask(controller);
         else if (request instanceof DeleteMessageRequest)
-            return (OutboundBatchTask<R, Result>) new DeleteMessageBatchTask();
+            return (OutboundBatchTask<R, Result>) new DeleteMessageBatchTask(controller);
         else if (request instanceof ChangeMessageVisibilityRequest)
-            return (OutboundBatchTask<R, Result>) new ChangeMessageVisibilityBatchTask();
+            return (OutboundBatchTask<R, Result>) new ChangeMessageVisibilityBatchTask(controller);
         else
             // this should never happen
             throw new IllegalArgumentException("Unsupported request type " + request.getClass().getName());
@@ -198,107 +210,111 @@ public class SendQueueBuffer {
      * call are completed (i.e. processed by SQS).
      */
     public void flush() {
+        closeOpenBatches();
 
         try {
-            synchronized (sendMessageLock) {
-                inflightSendMessageBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightSendMessageBatches.release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (deleteMessageLock) {
-                inflightDeleteMessageBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightDeleteMessageBatches.release(config.getMaxInflightOutboundBatches());
-            }
-            synchronized (changeMessageVisibilityLock) {
-                inflightChangeMessageVisibilityBatches.acquire(config.getMaxInflightOutboundBatches());
-                inflightChangeMessageVisibilityBatches.release(config.getMaxInflightOutboundBatches());
+            for (OutboundBatchTask<?, ?> task : new ArrayList<OutboundBatchTask<?, ?>>(pendingBatchTasks)) {
+                task.awaitCompletion();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Closes the open batches, so that they are sent without waiting for their open time to
+     * elapse. Unlike {@link #flush()}, does not wait for them to complete.
+     */
+    void closeOpenBatches() {
+        closeOpenBatch(openSendMessageBatchTask);
+        closeOpenBatch(openDeleteMessageBatchTask);
+        closeOpenBatch(openChangeMessageVisibilityBatchTask);
+    }
+
+    private void closeOpenBatch(AtomicReference<? extends OutboundBatchTask<?, ?>> openOutboundBatchTask) {
+        OutboundBatchTask<?, ?> task = openOutboundBatchTask.get();
+        if (task != null) {
+            task.close();
+        }
+    }
+
     /**
      * Submits an outbound request for delivery to the queue associated with this buffer.
      * <p>
      * 
-     * @param operationLock
-     *            the lock synchronizing calls for the call type ( {@code sendMessage},
-     *            {@code deleteMessage}, {@code changeMessageVisibility} )
      * @param openOutboundBatchTask
      *            the open batch task for this call type
      * @param request
      *            the request to submit
-     * @param inflightOperationBatches
-     *            the permits controlling the batches for this type of request
+     * @param controller
+     *            the controller of the batches for this type of request
      * @return never null
      * @throws AmazonClientException
      *             (see the various outbound calls for details)
      */
     @SuppressWarnings("unchecked")
-    <OBT extends OutboundBatchTask<R, Result>, R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(Object operationLock,
-                                                                                                                                             OBT[] openOutboundBatchTask,
+    <OBT extends OutboundBatchTask<R, Result>, R extends AmazonWebServiceRequest, Result> QueueBufferFuture<R, Result> submitOutboundRequest(AtomicReference<OBT> openOutboundBatchTask,
                                                                                                                                              R request,
-                                                                                                                                             final Semaphore inflightOperationBatches,
+                                                                                                                                             OutboundBatchController controller,
                                                                                                                                              QueueBufferCallback<R, Result> callback) {
         /*
          * Callers add requests to a single batch task (openOutboundBatchTask) until it is full or
-         * maxBatchOpenMs elapses. The total number of batch task in flight is controlled by the
-         * inflightOperationBatch semaphore capped at maxInflightOutboundBatches.
+         * its open time elapses. The total number of batch task in flight is controlled by the
+         * controller's permits, capped at maxInflightOutboundBatches.
          */
+        OBT obt = null;
         QueueBufferFuture<R, Result> theFuture = null;
-        try {
-            synchronized (operationLock) {
-                if (openOutboundBatchTask[0] == null
-                        || ((theFuture = openOutboundBatchTask[0].addRequest(request, callback))) == null) {
-
-                    OBT obt = (OBT) newOutboundBatchTask(request);
-                    inflightOperationBatches.acquire();
-                    openOutboundBatchTask[0] = obt;
-
-                    // Register a listener for the event signaling that the
-                    // batch task has completed (successfully or not).
-                    openOutboundBatchTask[0].setOnCompleted(new Listener<OutboundBatchTask<R, Result>>() {
-                        @Override
-                        public void invoke(OutboundBatchTask<R, Result> task) {
-                            inflightOperationBatches.release();
-                        }
-                    });
-
-                    if (log.isTraceEnabled()) {
-                        log.trace("Queue " + qUrl + " created new batch for " + request.getClass().toString() + " "
-                                + inflightOperationBatches.availablePermits() + " free slots remain");
-                    }
+        while (true) {
+            OBT current = openOutboundBatchTask.get();
+            if (current != null) {
+                QueueBufferFuture<R, Result> added = current.addRequest(request, callback);
+                if (added != null) {
+                    return added;
+                }
+            }
 
-                    theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
-                    if (null == theFuture) {
-                        // this can happen only if the request itself is flawed,
-                        // so that it can't be added to any batch, even a brand
-                        // new one
-                        throw new AmazonClientException("Failed to schedule request " + request + " for execution");
-                    }
+            // The open batch is closed (or there is none): open a new one holding this request.
+            // The request is added before the batch is published, so that other callers can't
+            // fill it up first. If another caller publishes its batch first, try that one.
+            if (obt == null) {
+                obt = (OBT) newOutboundBatchTask(request, controller);
+                theFuture = obt.addRequest(request, callback);
+                if (null == theFuture) {
+                    // this can happen only if the request itself is flawed,
+                    // so that it can't be added to any batch, even a brand
+                    // new one
+                    throw new AmazonClientException("Failed to schedule request " + request + " for execution");
                 }
             }
+            // registered before it is published, so that flush() waits for anything added to it
+            pendingBatchTasks.add(obt);
+            if (!openOutboundBatchTask.compareAndSet(current, obt)) {
+                pendingBatchTasks.remove(obt);
+                continue;
+            }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            AmazonClientException toThrow = new AmazonClientException("Interrupted while waiting for lock.");
-            toThrow.initCause(e);
-            throw toThrow;
-        }
+            obt.start(theFuture);
 
-        return theFuture;
+            if (log.isTraceEnabled()) {
+                log.trace("Queue " + qUrl + " created new batch for " + request.getClass().toString() + " "
+                        + controller.availablePermits() + " free slots remain");
+            }
+            return theFuture;
+        }
     }
 
     /**
      * Task to send a batch of outbound requests to SQS.
      * <p>
      * The batch task is constructed open and accepts requests until full, or until
-     * {@code maxBatchOpenMs} elapses. At that point, the batch closes and the collected requests
-     * are assembled into a single batch request to SQS. Specialized for each type of outbound
-     * request.
+     * {@code maxBatchOpenMs} (or the shorter time chosen by the controller in adaptive mode)
+     * elapses. At that point, the batch closes and the collected requests are assembled into a
+     * single batch request to SQS. Specialized for each type of outbound request.
      * <p>
-     * Instances of this class (and subclasses) are thread-safe.
+     * Instances of this class (and subclasses) are thread-safe. Adding a request reserves a slot
+     * with a compare-and-set on {@code state}, which packs the number of reserved slots, their
+     * total size in bytes and a closed flag, and then fills the slot in. The task waits for all
+     * reserved slots to be filled in before sending the batch.
      * 
      * @param <R>
      *            the type of the SQS request to batch
@@ -307,20 +323,31 @@ public class SendQueueBuffer {
      */
     private abstract class OutboundBatchTask<R extends AmazonWebServiceRequest, Result> implements Runnable {
 
-        protected final List<R> requests;
-        protected final ArrayList<QueueBufferFuture<R, Result>> futures;
+        private static final long COUNT_MASK = 0xFFFFL;
+        private static final int BYTES_SHIFT = 16;
+        private static final long CLOSED = 1L << 62;
 
-        private boolean closed;
+        private final AtomicLong state = new AtomicLong();
+        private final AtomicReferenceArray<R> requests;
+        private final AtomicReferenceArray<QueueBufferFuture<R, Result>> futures;
 
-        private volatile Listener<OutboundBatchTask<R, Result>> onCompleted;
+        private final OutboundBatchController controller;
 
-        public OutboundBatchTask() {
-            this.requests = new ArrayList<R>(config.getMaxBatchSize());
-            this.futures = new ArrayList<QueueBufferFuture<R, Result>>(config.getMaxBatchSize());
-        }
+        /** When the batch was opened */
+        private final long openedNanos = System.nanoTime();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        /** Thread running this task, to be woken up when the batch closes. */
+        private volatile Thread runner;
 
-        public void setOnCompleted(Listener<OutboundBatchTask<R, Result>> value) {
-            onCompleted = value;
+        /** Whether an in-flight permit was acquired for this task. */
+        private volatile boolean permitAcquired;
+
+        public OutboundBatchTask(OutboundBatchController controller) {
+            int capacity = Math.max(1, (int) Math.min(config.getMaxBatchSize(), COUNT_MASK));
+            this.requests = new AtomicReferenceArray<R>(capacity);
+            this.futures = new AtomicReferenceArray<QueueBufferFuture<R, Result>>(capacity);
+            this.controller = controller;
         }
 
         /**
@@ -329,116 +356,194 @@ public class SendQueueBuffer {
          * @return the future that can be used to get the results of the execution, or null if the
          *         addition failed.
          */
-        public synchronized QueueBufferFuture<R, Result> addRequest(R request, QueueBufferCallback<R, Result> callback) {
+        public QueueBufferFuture<R, Result> addRequest(R request, QueueBufferCallback<R, Result> callback) {
+            long size = sizeOf(request);
 
-            if (closed) {
-                return null;
-            }
+            while (true) {
+                long current = state.get();
+                if ((current & CLOSED) != 0) {
+                    return null;
+                }
 
-            QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
+                int count = (int) (current & COUNT_MASK);
+                long bytes = current >>> BYTES_SHIFT;
 
-            // if the addition did not work, or this addition made us full,
-            // we can close the request.
-            if ((null == theFuture) || isFull()) {
-                closed = true;
-                notify();
-            }
+                // if the addition does not work, we can close the batch.
+                if (count >= requests.length() || !isOkToAdd(count, bytes, size)) {
+                    if (state.compareAndSet(current, current | CLOSED)) {
+                        wakeRunner();
+                        return null;
+                    }
+                    continue;
+                }
 
-            return theFuture;
+                long next = (count + 1) | ((bytes + size) << BYTES_SHIFT);
+                boolean full = isFull(count + 1, bytes + size);
+                if (full) {
+                    next |= CLOSED;
+                }
+
+                if (state.compareAndSet(current, next)) {
+                    QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
+                    futures.set(count, theFuture);
+                    // the request is set last: the task takes a non-null request to mean that
+                    // the slot is complete.
+                    requests.set(count, request);
+
+                    // if this addition made us full, wake the task up to send the batch.
+                    if (full) {
+                        wakeRunner();
+                    }
+                    return theFuture;
+                }
+            }
         }
 
         /**
-         * Adds the request to the batch if capacity allows it. Called by {@code addRequest} with a
-         * lock on {@code this} held.
-         * 
-         * @param request
-         * @return the future that will be signaled when the request is completed and can be used to
-         *         retrieve the result. Can be null if the addition could not be done
+         * Returns the size of the request counted against {@code maxBatchSizeBytes}.
          */
-        private QueueBufferFuture<R, Result> addIfAllowed(R request, QueueBufferCallback<R, Result> callback) {
-
-            if (isOkToAdd(request)) {
-
-                requests.add(request);
-
-                QueueBufferFuture<R, Result> theFuture = new QueueBufferFuture<R, Result>(callback);
-
-                futures.add(theFuture);
-                onRequestAdded(request);
-                return theFuture;
+        protected long sizeOf(R request) {
+            return 0;
+        }
 
-            } else {
-                return null;
-            }
+        /**
+         * Checks whether it's okay to add a request of the given size to a batch that currently
+         * holds {@code count} requests totalling {@code bytes} bytes.
+         */
+        protected boolean isOkToAdd(int count, long bytes, long size) {
+            return count < config.getMaxBatchSize();
         }
 
         /**
-         * Checks whether it's okay to add the request to this buffer. Called by
-         * {@code addIfAllowed} with a lock on {@code this} held.
-         * 
-         * @param request
-         *            the request to add
-         * @return true if the request is okay to add, false otherwise
+         * Checks whether a batch holding {@code count} requests totalling {@code bytes} bytes is
+         * filled to capacity.
          */
-        protected boolean isOkToAdd(R request) {
-            return requests.size() < config.getMaxBatchSize();
+        protected boolean isFull(int count, long bytes) {
+            return count >= config.getMaxBatchSize();
         }
 
         /**
-         * A hook to be run when a request is successfully added to this buffer. Called by
-         * {@code addIfAllowed} with a lock on {@code this} held.
+         * Processes the batch once closed. Is passed a local copy of both the {@code requests} and
+         * {@code futures} lists.
+         */
+        protected abstract void process(List<R> requests, List<QueueBufferFuture<R, Result>> futures);
+
+        /**
+         * Waits for an in-flight permit and hands the task to the executor. Requests can be added
+         * to the task while it waits.
+         * <p>
+         * If the caller is interrupted while waiting, other callers may already have added
+         * requests to the published task. Only the caller's own request is failed, and waiting
+         * for the permit is left to the executor.
          * 
-         * @param request
-         *            the request that was added
+         * @param callerFuture
+         *            the future of the request the caller added when opening the task
          */
-        protected void onRequestAdded(R request) {
-            // to be overridden by subclasses
+        void start(QueueBufferFuture<R, Result> callerFuture) {
+            try {
+                controller.acquirePermit();
+                permitAcquired = true;
+                executor.execute(this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                AmazonClientException toThrow = new AmazonClientException("Interrupted while waiting for lock.");
+                toThrow.initCause(e);
+                callerFuture.setFailure(toThrow);
+                startOnExecutor();
+                throw toThrow;
+            } catch (RuntimeException e) {
+                abort(e);
+                throw e;
+            }
         }
 
         /**
-         * Checks whether the buffer is now full. Called by {@code addIfAllowed} with a lock on
-         * {@code this} held.
-         * 
-         * @return whether the buffer is filled to capacity
+         * Hands the task to the executor, which waits for the in-flight permit before running it.
          */
-        protected boolean isFull() {
-            return requests.size() >= config.getMaxBatchSize();
+        private void startOnExecutor() {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            controller.acquirePermit();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            AmazonClientException toThrow = new AmazonClientException(
+                                    "Interrupted while waiting for lock.");
+                            toThrow.initCause(e);
+                            abort(toThrow);
+                            return;
+                        }
+                        permitAcquired = true;
+                        OutboundBatchTask.this.run();
+                    }
+                });
+            } catch (RuntimeException e) {
+                abort(e);
+            }
         }
 
         /**
-         * Processes the batch once closed. Is <em>NOT</em> called with a lock on {@code this}.
-         * However, it's passed a local copy of both the {@code requests} and {@code futures} lists
-         * made while holding the lock.
+         * Closes the batch, so that it is sent without waiting for its open time to
+         * elapse.
+         * 
+         * @return the number of requests in the batch
          */
-        protected abstract void process(List<R> requests, List<QueueBufferFuture<R, Result>> futures);
+        int close() {
+            while (true) {
+                long current = state.get();
+                if ((current & CLOSED) != 0 || state.compareAndSet(current, current | CLOSED)) {
+                    wakeRunner();
+                    return (int) (current & COUNT_MASK);
+                }
+            }
+        }
+
+        void awaitCompletion() throws InterruptedException {
+            completed.await();
+        }
+
+        private boolean isClosed() {
+            return (state.get() & CLOSED) != 0;
+        }
+
+        private void wakeRunner() {
+            Thread thread = runner;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
 
         @Override
         public final void run() {
+            List<QueueBufferFuture<R, Result>> futures = null;
             try {
+                runner = Thread.currentThread();
 
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS)
-                        + config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                List<R> requests;
-                List<QueueBufferFuture<R, Result>> futures;
+                long deadlineNanos = System.nanoTime() + controller.getBatchOpenNanos();
 
-                synchronized (this) {
-                    while (!closed && (t < deadlineMs)) {
-                        t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                        // zero means "wait forever", can't have that.
-                        long toWait = Math.max(1, deadlineMs - t);
-                        wait(toWait);
+                while (!isClosed()) {
+                    long toWait = deadlineNanos - System.nanoTime();
+                    if (toWait <= 0) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, toWait);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
                     }
-
-                    closed = true;
-
-                    requests = new ArrayList<R>(this.requests);
-                    futures = new ArrayList<QueueBufferFuture<R, Result>>(this.futures);
                 }
 
+                int count = close();
+                List<R> requests = new ArrayList<R>(count);
+                futures = new ArrayList<QueueBufferFuture<R, Result>>(count);
+                collect(count, requests, futures);
+
+                long sentNanos = System.nanoTime();
                 process(requests, futures);
+                if (count > 0) {
+                    controller.batchCompleted(count, sentNanos - openedNanos, System.nanoTime() - sentNanos);
+                }
 
             } catch (InterruptedException e) {
                 failAll(e);
@@ -451,16 +556,51 @@ public class SendQueueBuffer {
                 failAll(new AmazonClientException("Error encountered", e));
                 throw e;
             } finally {
-                // make a copy of the listener since it (theoretically) can be
-                // modified from the outside.
-                Listener<OutboundBatchTask<R, Result>> listener = onCompleted;
-                if (listener != null) {
-                    listener.invoke(this);
+                runner = null;
+                complete();
+            }
+        }
+
+        /**
+         * Copies the first {@code count} requests and futures, waiting for callers that have
+         * reserved a slot but not filled it in yet. Requests whose future is already done, which
+         * were withdrawn by an interrupted caller, are skipped.
+         */
+        private void collect(int count, List<R> requests, List<QueueBufferFuture<R, Result>> futures) {
+            for (int i = 0; i < count; i++) {
+                R request;
+                while ((request = this.requests.get(i)) == null) {
+                    Thread.yield();
                 }
+                QueueBufferFuture<R, Result> future = this.futures.get(i);
+                if (!future.isDone()) {
+                    requests.add(request);
+                    futures.add(future);
+                }
+            }
+        }
+
+        private void abort(Exception e) {
+            try {
+                failAll(e);
+            } finally {
+                complete();
             }
         }
 
+        private void complete() {
+            if (permitAcquired) {
+                controller.releasePermit();
+            }
+            pendingBatchTasks.remove(this);
+            completed.countDown();
+        }
+
         private void failAll(Exception e) {
+            int count = close();
+            List<R> requests = new ArrayList<R>(count);
+            List<QueueBufferFuture<R, Result>> futures = new ArrayList<QueueBufferFuture<R, Result>>(count);
+            collect(count, requests, futures);
             for (QueueBufferFuture<R, Result> f : futures) {
                 f.setFailure(e);
             }
@@ -469,22 +609,33 @@ public class SendQueueBuffer {
 
     private class SendMessageBatchTask extends OutboundBatchTask<SendMessageRequest, SendMessageResult> {
 
-        int batchSizeBytes = 0;
+        SendMessageBatchTask(OutboundBatchController controller) {
+            super(controller);
+        }
 
+        /**
+         * Bodies are encoded when the batch is sent, so the size of an encoded body is bounded
+         * from above instead: encoding never makes a body larger, and a body that is offloaded is
+         * replaced by a short reference.
+         */
         @Override
-        protected boolean isOkToAdd(SendMessageRequest request) {
-            return (requests.size() < config.getMaxBatchSize())
-                    && ((request.getMessageBody().getBytes().length + batchSizeBytes) < config.getMaxBatchSizeBytes());
+        protected long sizeOf(SendMessageRequest request) {
+            long size = request.getMessageBody().getBytes().length;
+            MessagePayloadCodec codec = config.getPayloadCodec();
+            if (codec != null && codec.getPayloadStore() != null) {
+                size = Math.min(size, codec.getOffloadThresholdBytes());
+            }
+            return size;
         }
 
         @Override
-        protected void onRequestAdded(SendMessageRequest request) {
-            batchSizeBytes += request.getMessageBody().getBytes().length;
+        protected boolean isOkToAdd(int count, long bytes, long size) {
+            return (count < config.getMaxBatchSize()) && ((size + bytes) < config.getMaxBatchSizeBytes());
         }
 
         @Override
-        protected boolean isFull() {
-            return (requests.size() >= config.getMaxBatchSize()) || (batchSizeBytes >= config.getMaxBatchSizeBytes());
+        protected boolean isFull(int count, long bytes) {
+            return (count >= config.getMaxBatchSize()) || (bytes >= config.getMaxBatchSizeBytes());
         }
 
         @Override
@@ -498,13 +649,26 @@ public class SendQueueBuffer {
             SendMessageBatchRequest batchRequest = new SendMessageBatchRequest().withQueueUrl(qUrl);
             ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
+            MessagePayloadCodec codec = config.getPayloadCodec();
             List<SendMessageBatchRequestEntry> entries = new ArrayList<SendMessageBatchRequestEntry>(requests.size());
             for (int i = 0, n = requests.size(); i < n; i++) {
+                if (codec != null) {
+                    try {
+                        requests.set(i, codec.encode(requests.get(i)));
+                    } catch (AmazonClientException e) {
+                        // e.g. the upload to the payload store failed: only this message fails
+                        futures.get(i).setFailure(e);
+                        continue;
+                    }
+                }
                 entries.add(new SendMessageBatchRequestEntry().withId(Integer.toString(i))
                         .withMessageBody(requests.get(i).getMessageBody())
                         .withDelaySeconds(requests.get(i).getDelaySeconds())
                         .withMessageAttributes(requests.get(i).getMessageAttributes()));
             }
+            if (entries.isEmpty()) {
+                return;
+            }
             batchRequest.setEntries(entries);
 
             SendMessageBatchResult batchResult = sqsClient.sendMessageBatch(batchRequest);
@@ -535,6 +699,10 @@ public class SendQueueBuffer {
 
     private class DeleteMessageBatchTask extends OutboundBatchTask<DeleteMessageRequest, Void> {
 
+        DeleteMessageBatchTask(OutboundBatchController controller) {
+            super(controller);
+        }
+
         @Override
         protected void process(List<DeleteMessageRequest> requests,
                                List<QueueBufferFuture<DeleteMessageRequest, Void>> futures) {
@@ -580,6 +748,10 @@ public class SendQueueBuffer {
 
     private class ChangeMessageVisibilityBatchTask extends OutboundBatchTask<ChangeMessageVisibilityRequest, Void> {
 
+        ChangeMessageVisibilityBatchTask(OutboundBatchController controller) {
+            super(controller);
+        }
+
         @Override
         protected void process(List<ChangeMessageVisibilityRequest> requests,
                                List<QueueBufferFuture<ChangeMessageVisibilityRequest, Void>> futures) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps exponentially weighted estimates of the rate at which messages flow through a buffer and
+ * of the latency of the SQS calls carrying them. Rate samples are weighted by the time they cover,
+ * so the estimate follows a change in traffic within a few seconds, and a long idle period counts
+ * for more than a short one.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+class TrafficEstimator {
+
+    /** Time constant of the rate estimate */
+    private static final double RATE_TIME_CONSTANT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Shortest period a rate sample covers, so that bursts of completions don't skew it */
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** Weight of each new latency sample */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private long sampleStartNanos = System.nanoTime();
+    private long sampleMessages;
+
+    /** messages per second, negative until the first sample */
+    private double rate = -1;
+
+    /** nanoseconds, negative until the first sample */
+    private double latencyNanos = -1;
+
+    synchronized void recordMessages(int count) {
+        sampleMessages += count;
+        long now = System.nanoTime();
+        long elapsed = now - sampleStartNanos;
+        if (elapsed < MIN_SAMPLE_NANOS) {
+            return;
+        }
+
+        double sample = sampleMessages * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        if (rate < 0) {
+            rate = sample;
+        } else {
+            double weight = 1 - Math.exp(-elapsed / RATE_TIME_CONSTANT_NANOS);
+            rate += weight * (sample - rate);
+        }
+        sampleMessages = 0;
+        sampleStartNanos = now;
+    }
+
+    synchronized void recordLatency(long nanos) {
+        if (latencyNanos < 0) {
+            latencyNanos = nanos;
+        } else {
+            latencyNanos += LATENCY_WEIGHT * (nanos - latencyNanos);
+        }
+    }
+
+    /**
+     * @return true once both the rate and the latency have been sampled
+     */
+    synchronized boolean hasEstimate() {
+        return rate >= 0 && latencyNanos >= 0;
+    }
+
+    /**
+     * @return the call latency in nanoseconds, or a negative value until the first sample
+     */
+    synchronized double getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return messages per second
+     */
+    synchronized double getRate() {
+        return Math.max(0, rate);
+    }
+
+    /**
+     * @return the number of messages arriving during one SQS call, according to the current
+     *         estimates
+     */
+    synchronized double getMessagesPerCall() {
+        return Math.max(0, rate) * Math.max(0, latencyNanos) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Compresses message bodies and offloads large ones to a {@link PayloadStore}. An encoded message
+ * carries the {@link #ENCODING_ATTRIBUTE} message attribute, whose value tells the receiver how to
+ * restore the original body:
+ * <ul>
+ * <li>{@value #ENCODING_GZIP}: the body is the base64 encoding of the gzipped UTF-8 body. Bodies are
+ * only compressed when that makes them smaller.</li>
+ * <li>{@value #ENCODING_STORE}: the body is a reference to the UTF-8 body in the payload store.</li>
+ * </ul>
+ * Messages without the attribute are left as they are, so encoded and plain messages can share a
+ * queue. Receivers must request the attribute (or all message attributes) to be able to decode.
+ * <p>
+ * A codec is thread-safe once configured.
+ */
+public class MessagePayloadCodec {
+
+    /** The message attribute naming the encoding of an encoded message body. */
+    public static final String ENCODING_ATTRIBUTE = "SdkPayloadEncoding";
+
+    /** The encoding of compressed bodies. */
+    public static final String ENCODING_GZIP = "gzip";
+
+    /** The encoding of bodies offloaded to the payload store. */
+    public static final String ENCODING_STORE = "store";
+
+    /**
+     * Bodies smaller than this many bytes (in UTF-8) are not compressed. Compressing small bodies
+     * rarely pays for the base64 overhead of the result.
+     */
+    private int compressionThresholdBytes;
+
+    /** 1 KiB */
+    public static final int COMPRESSION_THRESHOLD_BYTES_DEFAULT = 1024;
+
+    /**
+     * Bodies still larger than this many bytes after compression are offloaded to the payload
+     * store, if one is set. The SQS limit of 256 KiB applies to the body and message attributes
+     * together, so the default leaves room for attributes.
+     */
+    private int offloadThresholdBytes;
+
+    /** 240 KiB */
+    public static final int OFFLOAD_THRESHOLD_BYTES_DEFAULT = 240 * 1024;
+
+    /**
+     * Where large bodies are offloaded to. If null, bodies are never offloaded, and bodies too large
+     * for the service are rejected by it.
+     */
+    private PayloadStore payloadStore;
+
+    public MessagePayloadCodec() {
+        this.compressionThresholdBytes = COMPRESSION_THRESHOLD_BYTES_DEFAULT;
+        this.offloadThresholdBytes = OFFLOAD_THRESHOLD_BYTES_DEFAULT;
+    }
+
+    /**
+     * Bodies smaller than this many bytes (in UTF-8) are not compressed. Compressing small bodies
+     * rarely pays for the base64 overhead of the result.
+     */
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    /**
+     * Bodies smaller than this many bytes (in UTF-8) are not compressed. Compressing small bodies
+     * rarely pays for the base64 overhead of the result. Use {@link Integer#MAX_VALUE} to disable
+     * compression.
+     */
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        if (compressionThresholdBytes < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative");
+        }
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    /**
+     * Bodies smaller than this many bytes (in UTF-8) are not compressed. Compressing small bodies
+     * rarely pays for the base64 overhead of the result. Use {@link Integer#MAX_VALUE} to disable
+     * compression.
+     */
+    public MessagePayloadCodec withCompressionThresholdBytes(int compressionThresholdBytes) {
+        setCompressionThresholdBytes(compressionThresholdBytes);
+        return this;
+    }
+
+    /**
+     * Bodies still larger than this many bytes after compression are offloaded to the payload
+     * store, if one is set. The SQS limit of 256 KiB applies to the body and message attributes
+     * together, so the default leaves room for attributes.
+     */
+    public int getOffloadThresholdBytes() {
+        return offloadThresholdBytes;
+    }
+
+    /**
+     * Bodies still larger than this many bytes after compression are offloaded to the payload
+     * store, if one is set. The SQS limit of 256 KiB applies to the body and message attributes
+     * together, so the default leaves room for attributes.
+     */
+    public void setOffloadThresholdBytes(int offloadThresholdBytes) {
+        if (offloadThresholdBytes < 0) {
+            throw new IllegalArgumentException("Offload threshold must not be negative");
+        }
+        this.offloadThresholdBytes = offloadThresholdBytes;
+    }
+
+    /**
+     * Bodies still larger than this many bytes after compression are offloaded to the payload
+     * store, if one is set. The SQS limit of 256 KiB applies to the body and message attributes
+     * together, so the default leaves room for attributes.
+     */
+    public MessagePayloadCodec withOffloadThresholdBytes(int offloadThresholdBytes) {
+        setOffloadThresholdBytes(offloadThresholdBytes);
+        return this;
+    }
+
+    /**
+     * Where large bodies are offloaded to. If null, bodies are never offloaded, and bodies too large
+     * for the service are rejected by it.
+     */
+    public PayloadStore getPayloadStore() {
+        return payloadStore;
+    }
+
+    /**
+     * Where large bodies are offloaded to. If null, bodies are never offloaded, and bodies too large
+     * for the service are rejected by it.
+     */
+    public void setPayloadStore(PayloadStore payloadStore) {
+        this.payloadStore = payloadStore;
+    }
+
+    /**
+     * Where large bodies are offloaded to. If null, bodies are never offloaded, and bodies too large
+     * for the service are rejected by it.
+     */
+    public MessagePayloadCodec withPayloadStore(PayloadStore payloadStore) {
+        setPayloadStore(payloadStore);
+        return this;
+    }
+
+    /**
+     * Encodes a message body.
+     * 
+     * @return the encoded body, or null if the body is best sent as it is
+     */
+    public EncodedPayload encode(String body) {
+        // A char takes at most three bytes in UTF-8, so short bodies need no encoding to decide
+        if (body == null || (long) body.length() * 3 < Math.min(compressionThresholdBytes,
+                payloadStore == null ? Integer.MAX_VALUE : offloadThresholdBytes)) {
+            return null;
+        }
+
+        byte[] bytes = body.getBytes(StringUtils.UTF8);
+        EncodedPayload encoded = null;
+        int size = bytes.length;
+        if (size >= compressionThresholdBytes) {
+            String compressed = Base64.encodeAsString(gzip(bytes));
+            if (compressed.length() < size) {
+                encoded = new EncodedPayload(compressed, ENCODING_GZIP);
+                size = compressed.length();
+            }
+        }
+        if (payloadStore != null && size > offloadThresholdBytes) {
+            encoded = new EncodedPayload(payloadStore.store(bytes), ENCODING_STORE);
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes a message body.
+     * 
+     * @param encoding
+     *            the value of the {@link #ENCODING_ATTRIBUTE} attribute of the message, or null if
+     *            it had none
+     */
+    public String decode(String body, String encoding) {
+        if (encoding == null) {
+            return body;
+        } else if (ENCODING_GZIP.equals(encoding)) {
+            return new String(gunzip(Base64.decode(body)), StringUtils.UTF8);
+        } else if (ENCODING_STORE.equals(encoding)) {
+            if (payloadStore == null) {
+                throw new AmazonClientException(
+                        "Message payload is offloaded but no payload store is configured");
+            }
+            return new String(payloadStore.retrieve(body), StringUtils.UTF8);
+        }
+        throw new AmazonClientException("Unknown message payload encoding " + encoding);
+    }
+
+    /**
+     * Encodes the body of a send request.
+     * 
+     * @return a copy of the request with its body encoded and the {@link #ENCODING_ATTRIBUTE}
+     *         attribute set, or the request itself if its body is best sent as it is
+     */
+    public SendMessageRequest encode(SendMessageRequest request) {
+        EncodedPayload encoded = encode(request.getMessageBody());
+        if (encoded == null) {
+            return request;
+        }
+        SendMessageRequest copy = request.clone();
+        // setMessageAttributes wraps the map without copying it: copy it to leave the request alone
+        copy.setMessageAttributes(
+                new HashMap<String, MessageAttributeValue>(request.getMessageAttributes()));
+        copy.setMessageBody(encoded.getBody());
+        copy.addMessageAttributesEntry(ENCODING_ATTRIBUTE, new MessageAttributeValue()
+                .withDataType("String")
+                .withStringValue(encoded.getEncoding()));
+        return copy;
+    }
+
+    /**
+     * Decodes the body of a received message. Offloaded bodies are retrieved from the payload
+     * store on the calling thread, so the returned message is a plain model object.
+     * 
+     * @return a copy of the message with its original body and without the
+     *         {@link #ENCODING_ATTRIBUTE} attribute, or the message itself if it was not encoded
+     * @throws AmazonClientException
+     *             if the body cannot be decoded, e.g. because the payload store can't be reached
+     */
+    public Message decode(Message message) {
+        MessageAttributeValue attribute = message.getMessageAttributes().get(ENCODING_ATTRIBUTE);
+        if (attribute == null) {
+            return message;
+        }
+
+        Message copy = message.clone();
+        copy.setBody(decode(message.getBody(), attribute.getStringValue()));
+        copy.setMessageAttributes(
+                new HashMap<String, MessageAttributeValue>(message.getMessageAttributes()));
+        copy.getMessageAttributes().remove(ENCODING_ATTRIBUTE);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePayloadCodec [compressionThresholdBytes=" + compressionThresholdBytes
+                + ", offloadThresholdBytes=" + offloadThresholdBytes + ", payloadStore="
+                + payloadStore + "]";
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(bytes);
+            gzip.close();
+        } catch (IOException e) {
+            // Not thrown by in-memory streams
+            throw new AmazonClientException("Unable to compress message body", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) {
+        try {
+            GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return IOUtils.toByteArray(gzip);
+            } finally {
+                gzip.close();
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to decompress message body", e);
+        }
+    }
+
+    /**
+     * An encoded message body and the value of its {@link MessagePayloadCodec#ENCODING_ATTRIBUTE}
+     * attribute.
+     */
+    public static class EncodedPayload {
+
+        private final String body;
+        private final String encoding;
+
+        EncodedPayload(String body, String encoding) {
+            this.body = body;
+            this.encoding = encoding;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+    }
+}
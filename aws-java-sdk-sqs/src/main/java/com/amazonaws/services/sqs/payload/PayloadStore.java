@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.payload;
+
+/**
+ * Storage for message payloads too large to be sent through SQS or SNS. The message carries the
+ * reference returned by {@link #store(byte[])} in place of its payload.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface PayloadStore {
+
+    /**
+     * Stores a payload.
+     * 
+     * @return the reference to pass to {@link #retrieve(String)}, at most a few hundred characters
+     *         long
+     */
+    String store(byte[] payload);
+
+    /**
+     * Retrieves a stored payload.
+     * 
+     * @param reference
+     *            a reference returned by {@link #store(byte[])}
+     */
+    byte[] retrieve(String reference);
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Stores message payloads as objects of an Amazon S3 bucket. References are of the form
+ * {@code s3://bucket/key}.
+ * <p>
+ * Stored payloads are not deleted when their message is: use a lifecycle rule on the bucket (or
+ * key prefix) that expires objects after the retention period of the queue.
+ * <p>
+ * This class requires the {@code aws-java-sdk-s3} module, which the SQS module only depends on
+ * optionally.
+ */
+public class S3PayloadStore implements PayloadStore {
+
+    private static final String SCHEME = "s3://";
+
+    private static final Log log = LogFactory.getLog(S3PayloadStore.class);
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final String keyPrefix;
+
+    /**
+     * @param s3
+     *            the client used to store and retrieve payloads, e.g. an {@code AmazonS3Client}
+     * @param bucketName
+     *            the bucket holding the payloads
+     */
+    public S3PayloadStore(AmazonS3 s3, String bucketName) {
+        this(s3, bucketName, "");
+    }
+
+    /**
+     * @param s3
+     *            the client used to store and retrieve payloads, e.g. an {@code AmazonS3Client}
+     * @param bucketName
+     *            the bucket holding the payloads
+     * @param keyPrefix
+     *            the prefix of the keys of the stored payloads
+     */
+    public S3PayloadStore(AmazonS3 s3, String bucketName, String keyPrefix) {
+        if (s3 == null || bucketName == null) {
+            throw new IllegalArgumentException("An S3 client and a bucket name are required");
+        }
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.keyPrefix = keyPrefix == null ? "" : keyPrefix;
+    }
+
+    @Override
+    public String store(byte[] payload) {
+        String key = keyPrefix + UUID.randomUUID().toString();
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(payload.length);
+        s3.putObject(bucketName, key, new ByteArrayInputStream(payload), metadata);
+        return SCHEME + bucketName + "/" + key;
+    }
+
+    @Override
+    public byte[] retrieve(String reference) {
+        int slash = reference.indexOf('/', SCHEME.length());
+        if (!reference.startsWith(SCHEME) || slash < 0) {
+            throw new AmazonClientException("Not an S3 payload reference: " + reference);
+        }
+        String bucket = reference.substring(SCHEME.length(), slash);
+        String key = reference.substring(slash + 1);
+
+        S3Object object = s3.getObject(bucket, key);
+        try {
+            return IOUtils.toByteArray(object.getObjectContent());
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to read message payload " + reference, e);
+        } finally {
+            IOUtils.closeQuietly(object, log);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3PayloadStore [bucketName=" + bucketName + ", keyPrefix=" + keyPrefix + "]";
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Measures the time and the memory allocated by {@link MessageMD5ChecksumHandler} to verify a
+ * 10-message {@code ReceiveMessageResult} with 4 attributes per message. Allocation is only
+ * reported on JVMs that can measure it per thread.
+ * <p>
+ * Usage: {@code java -cp <test classpath> com.amazonaws.services.sqs.MessageMD5ChecksumBenchmark
+ * [iterations]}
+ */
+public class MessageMD5ChecksumBenchmark {
+
+    private static final int DEFAULT_ITERATIONS = 200000;
+
+    private static final int[] BODY_SIZES = { 100, 1024, 64 * 1024 };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        for (int bodySize : BODY_SIZES) {
+            run(bodySize, Math.max(1, iterations * 1024 / Math.max(1024, bodySize)));
+        }
+    }
+
+    private static void run(int bodySize, int iterations) throws Exception {
+        MessageMD5ChecksumHandler handler = new MessageMD5ChecksumHandler();
+        Request<ReceiveMessageRequest> request = new DefaultRequest<ReceiveMessageRequest>(
+                new ReceiveMessageRequest("queue"), "AmazonSQS");
+        ReceiveMessageResult result = newResult(bodySize);
+
+        // warm up
+        for (int i = 0; i < iterations; i++) {
+            handler.afterResponse(request, result, null);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            handler.afterResponse(request, result, null);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println(bodySize + " byte bodies: " + (elapsed / iterations / 1000.0) + " us/op"
+                + (allocatedBefore < 0 ? "" : ", " + (allocated / iterations) + " bytes/op"));
+    }
+
+    private static ReceiveMessageResult newResult(int bodySize) throws Exception {
+        StringBuilder body = new StringBuilder(bodySize);
+        while (body.length() < bodySize) {
+            body.append("Lorem ipsum dolor sit amet, caf\u00e9 \u4e2d ");
+        }
+        body.setLength(bodySize);
+
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 10; i++) {
+            Message message = new Message().withMessageId("id-" + i).withBody(body.toString());
+            for (int a = 0; a < 4; a++) {
+                message.addMessageAttributesEntry("attribute" + a, new MessageAttributeValue()
+                        .withDataType("String").withStringValue("value " + a + " of message " + i));
+            }
+            message.setMD5OfBody(BinaryUtils.toHex(MessageDigest.getInstance("MD5").digest(
+                    message.getBody().getBytes("UTF-8"))));
+            message.setMD5OfMessageAttributes(BinaryUtils.toHex(MessageMD5Digester.get()
+                    .digestAttributes(message.getMessageAttributes())));
+            messages.add(message);
+        }
+        return new ReceiveMessageResult().withMessages(messages);
+    }
+
+    /**
+     * Returns the bytes allocated by the calling thread so far, or -1 if the JVM can't tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread()
+                    .getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Checks the digests of {@link MessageMD5Digester} against {@code String.getBytes("UTF-8")} and
+ * {@code MessageDigest}.
+ */
+public class MessageMD5DigesterTest {
+
+    /** Size of the digester's encoding buffer */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Chars the digester encodes into its buffer at a time */
+    private static final int CHUNK_CHARS = BUFFER_SIZE / 3;
+
+    @Test
+    public void asciiAndMultiByteCharacters() throws Exception {
+        assertBodyDigest("");
+        assertBodyDigest("hello world");
+        assertBodyDigest("caf\u00e9");
+        assertBodyDigest("\u0800\u0fff\uffff");
+        assertBodyDigest("\u007f\u0080\u07ff\u0800");
+        assertBodyDigest("a\u00e9\u4e2d\ud83d\ude00z");
+    }
+
+    @Test
+    public void surrogatePairs() throws Exception {
+        assertBodyDigest("\ud83d\ude00");
+        assertBodyDigest("\ud800\udc00\udbff\udfff");
+        assertBodyDigest("x\ud83d\ude00y\ud83d\ude01");
+    }
+
+    @Test
+    public void unpairedSurrogates() throws Exception {
+        assertBodyDigest("\ud83d");
+        assertBodyDigest("\ude00");
+        assertBodyDigest("a\ud83db");
+        assertBodyDigest("a\ude00\ud83d");
+        assertBodyDigest("\ud83d\ud83d\ude00");
+        assertBodyDigest("\ude00\ud83d\ude00\ude00");
+    }
+
+    @Test
+    public void multiByteCharactersAcrossBufferBoundaries() throws Exception {
+        String[] fillers = { "\u00e9", "\u4e2d", "\ud83d\ude00", "\ud83d" };
+        for (int boundary : new int[] { CHUNK_CHARS, 2 * CHUNK_CHARS, BUFFER_SIZE }) {
+            for (int offset = boundary - 8; offset <= boundary + 8; offset++) {
+                for (String filler : fillers) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < offset; i++) {
+                        sb.append('a');
+                    }
+                    for (int i = 0; i < 8; i++) {
+                        sb.append(filler);
+                    }
+                    assertBodyDigest(sb.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largeAndRandomStrings() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            assertBodyDigest(randomString(random, random.nextInt(3 * BUFFER_SIZE)));
+        }
+        // as large as an SQS message can be
+        assertBodyDigest(randomString(random, 256 * 1024));
+    }
+
+    @Test
+    public void utf8LengthMatchesGetBytes() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            String str = randomString(random, random.nextInt(2 * CHUNK_CHARS));
+            assertEquals(str.getBytes("UTF-8").length, MessageMD5Digester.utf8Length(str));
+        }
+    }
+
+    @Test
+    public void attributeDigest_MatchesReference() throws Exception {
+        Map<String, MessageAttributeValue> attributes = new HashMap<String, MessageAttributeValue>();
+        attributes.put("zeta", new MessageAttributeValue().withDataType("String")
+                .withStringValue("caf\u00e9 \ud83d\ude00 \ud83d"));
+        attributes.put("alpha", new MessageAttributeValue().withDataType("Binary")
+                .withBinaryValue(ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+        attributes.put("mid", new MessageAttributeValue().withDataType("Number").withStringValue("42"));
+        attributes.put("long", new MessageAttributeValue().withDataType("String")
+                .withStringValue(randomString(new Random(3), 3 * CHUNK_CHARS)));
+        attributes.put("\u00e9", new MessageAttributeValue().withDataType("String.custom")
+                .withStringValue(""));
+
+        byte[] digest = MessageMD5Digester.get().digestAttributes(attributes);
+
+        assertArrayEquals(referenceAttributeDigest(attributes), digest);
+    }
+
+    @Test
+    public void matches_ComparesHexIgnoringCase() throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest("hello".getBytes("UTF-8"));
+        String hex = BinaryUtils.toHex(digest);
+
+        assertTrue(MessageMD5Digester.matches(digest, hex.toLowerCase()));
+        assertTrue(MessageMD5Digester.matches(digest, hex.toUpperCase()));
+        assertFalse(MessageMD5Digester.matches(digest, null));
+        assertFalse(MessageMD5Digester.matches(digest, hex.substring(1)));
+        assertFalse(MessageMD5Digester.matches(digest, "0" + hex.substring(1).replace('0', '1')));
+    }
+
+    private static void assertBodyDigest(String body) throws Exception {
+        byte[] expected = MessageDigest.getInstance("MD5").digest(body.getBytes("UTF-8"));
+        assertArrayEquals("body of length " + body.length(), expected,
+                MessageMD5Digester.get().digestBody(body));
+    }
+
+    /**
+     * Strings mixing characters of every UTF-8 length with surrogate pairs and unpaired
+     * surrogates.
+     */
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            switch (random.nextInt(6)) {
+            case 0:
+                sb.append((char) random.nextInt(0x80));
+                break;
+            case 1:
+                sb.append((char) (0x80 + random.nextInt(0x800 - 0x80)));
+                break;
+            case 2:
+                sb.append((char) (0x800 + random.nextInt(Character.MIN_SURROGATE - 0x800)));
+                break;
+            case 3:
+                sb.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                break;
+            case 4:
+                sb.append((char) (Character.MIN_SURROGATE + random.nextInt(0x800)));
+                break;
+            default:
+                sb.append("plain ascii text ");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The attribute digest as documented for SQS: for each attribute in name order, the name, the
+     * data type and a value type marker followed by the value, each string or binary value
+     * prefixed with its 4-byte length.
+     */
+    private static byte[] referenceAttributeDigest(Map<String, MessageAttributeValue> attributes)
+            throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<String> names = new ArrayList<String>(attributes.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            MessageAttributeValue value = attributes.get(name);
+            writeLengthAndBytes(out, name.getBytes("UTF-8"));
+            writeLengthAndBytes(out, value.getDataType().getBytes("UTF-8"));
+            if (value.getStringValue() != null) {
+                out.writeByte(1);
+                writeLengthAndBytes(out, value.getStringValue().getBytes("UTF-8"));
+            } else {
+                out.writeByte(2);
+                writeLengthAndBytes(out, BinaryUtils.copyAllBytesFrom(value.getBinaryValue()));
+            }
+        }
+        out.flush();
+        return MessageDigest.getInstance("MD5").digest(bytes.toByteArray());
+    }
+
+    private static void writeLengthAndBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+/**
+ * Tests the client's registry of queue buffers against a fake SQS client.
+ */
+public class AmazonSQSBufferedAsyncClientTest {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/123456789012/test";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private AmazonSQSBufferedAsyncClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void evictedBuffer_SendsItsOpenBatch() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        client = new AmazonSQSBufferedAsyncClient(sqs, new QueueBufferConfig().withMaxBatchOpenMs(60000)
+                .withExecutor(executor));
+
+        Future<SendMessageResult> evicted = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL + 0, "body"));
+        for (int i = 1; i <= AmazonSQSBufferedAsyncClient.MAX_BUFFERS; i++) {
+            // sleeps so that the first queue is clearly the least recently used
+            Thread.sleep(1);
+            assertNull(client.getQueueBufferMetrics(QUEUE_URL + i));
+            client.sendMessageAsync(new SendMessageRequest(QUEUE_URL + i, "body"));
+        }
+
+        assertNull(client.getQueueBufferMetrics(QUEUE_URL + 0));
+        assertNotNull(client.getQueueBufferMetrics(QUEUE_URL + 1));
+        assertEquals("id-0", evicted.get(5, TimeUnit.SECONDS).getMessageId());
+        assertEquals(QUEUE_URL + 0, sqs.queueUrls.get(0));
+    }
+
+    @Test
+    public void concurrentCallersForANewQueue_ShareOneBuffer() throws Exception {
+        final int callers = 10;
+        FakeSQS sqs = new FakeSQS();
+        client = new AmazonSQSBufferedAsyncClient(sqs, new QueueBufferConfig().withMaxBatchOpenMs(60000)
+                .withMaxBatchSize(callers).withExecutor(executor));
+
+        final List<Future<SendMessageResult>> futures = Collections
+                .synchronizedList(new ArrayList<Future<SendMessageResult>>());
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < callers; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        futures.add(client.sendMessageAsync(new SendMessageRequest(QUEUE_URL, "body")));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+
+        // the batch is sent as soon as it is full, which it only is if all callers share it
+        while (futures.size() < callers) {
+            Thread.sleep(1);
+        }
+        for (Future<SendMessageResult> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS).getMessageId());
+        }
+        assertEquals(1, sqs.queueUrls.size());
+    }
+
+    private static class FakeSQS extends AbstractAmazonSQSAsync {
+
+        final List<String> queueUrls = Collections.synchronizedList(new ArrayList<String>());
+        private int messageIds;
+
+        @Override
+        public synchronized SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+            queueUrls.add(request.getQueueUrl());
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId())
+                        .withMessageId("id-" + messageIds++));
+            }
+            return result;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+
+/**
+ * Tests the receive buffer with {@code asyncReceive} enabled, against a fake SQS client whose
+ * receive calls hold no thread while they are outstanding.
+ */
+public class AsyncReceiveTest {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/123456789012/test";
+
+    private AmazonSQSBufferedAsyncClient client;
+
+    private FakeSQS sqs;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            sqs.stop();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void receiveCallsDoNotRunOnTheBufferExecutor() throws Exception {
+        sqs = new FakeSQS();
+        CountingExecutor executor = new CountingExecutor();
+        client = new AmazonSQSBufferedAsyncClient(sqs, new QueueBufferConfig()
+                .withExecutor(executor).withAsyncReceive(true).withMaxInflightReceiveBatches(8)
+                .withMaxDoneReceiveBatches(8));
+
+        List<Future<ReceiveMessageResult>> futures = new ArrayList<Future<ReceiveMessageResult>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(client.receiveMessageAsync(new ReceiveMessageRequest(QUEUE_URL)
+                    .withMaxNumberOfMessages(1)));
+        }
+
+        // all receive batches are outstanding at once, and none of them took an executor thread
+        assertEquals(8, sqs.pendingCount());
+        assertEquals(0, sqs.syncReceives.get());
+        assertEquals(0, executor.tasks.get());
+
+        sqs.completeAll();
+        for (Future<ReceiveMessageResult> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS).getMessages().size());
+        }
+        assertEquals(0, sqs.syncReceives.get());
+    }
+
+    private static class CountingExecutor implements Executor {
+
+        final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            new Thread(command).start();
+        }
+    }
+
+    private static class FakeSQS extends AbstractAmazonSQSAsync {
+
+        final AtomicInteger syncReceives = new AtomicInteger();
+        private final List<PendingReceive> pending = new ArrayList<PendingReceive>();
+        private boolean answerRightAway;
+        private int messageIds;
+
+        @Override
+        public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+            syncReceives.incrementAndGet();
+            return new ReceiveMessageResult();
+        }
+
+        @Override
+        public Future<ReceiveMessageResult> receiveMessageAsync(ReceiveMessageRequest request,
+                AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> asyncHandler) {
+            synchronized (this) {
+                if (!answerRightAway) {
+                    // parked without a thread, as with a non-blocking transport
+                    pending.add(new PendingReceive(request, asyncHandler));
+                    return null;
+                }
+            }
+            asyncHandler.onSuccess(request, new ReceiveMessageResult());
+            return null;
+        }
+
+        synchronized int pendingCount() {
+            return pending.size();
+        }
+
+        /**
+         * Answers the outstanding receive calls with one message each.
+         */
+        void completeAll() {
+            List<PendingReceive> toComplete;
+            synchronized (this) {
+                toComplete = new ArrayList<PendingReceive>(pending);
+                pending.clear();
+            }
+            for (PendingReceive receive : toComplete) {
+                String id;
+                synchronized (this) {
+                    id = "id-" + messageIds++;
+                }
+                Message message = new Message().withMessageId(id).withReceiptHandle(id)
+                        .withBody("body");
+                receive.handler.onSuccess(receive.request,
+                        new ReceiveMessageResult().withMessages(message));
+            }
+        }
+
+        /**
+         * Answers the outstanding and later receive calls with no messages, so that the buffer
+         * can shut down.
+         */
+        void stop() {
+            List<PendingReceive> toComplete;
+            synchronized (this) {
+                toComplete = new ArrayList<PendingReceive>(pending);
+                pending.clear();
+                answerRightAway = true;
+            }
+            for (PendingReceive receive : toComplete) {
+                receive.handler.onSuccess(receive.request, new ReceiveMessageResult());
+            }
+        }
+
+        @Override
+        public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+            return new GetQueueAttributesResult().addAttributesEntry("VisibilityTimeout", "30");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private static class PendingReceive {
+
+        final ReceiveMessageRequest request;
+        final AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler;
+
+        PendingReceive(ReceiveMessageRequest request,
+                AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.services.sqs.payload.MessagePayloadCodec;
+import com.amazonaws.services.sqs.payload.PayloadStore;
+import com.amazonaws.util.Base64;
+
+/**
+ * Tests the payload codec as used by the buffered client, against a fake SQS client.
+ */
+public class PayloadCodecBufferTest {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/123456789012/test";
+
+    private AmazonSQSBufferedAsyncClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void sendMessage_DoesNotWaitForPayloadUpload() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch uploaded = new CountDownLatch(1);
+        FakeSQS sqs = new FakeSQS();
+        client = newClient(sqs, new PayloadStore() {
+            @Override
+            public String store(byte[] payload) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                uploaded.countDown();
+                return "reference";
+            }
+
+            @Override
+            public byte[] retrieve(String reference) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        Future<SendMessageResult> future = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL,
+                randomText(4000)));
+
+        assertEquals(1, uploaded.getCount());
+        assertFalse(future.isDone());
+
+        release.countDown();
+        assertEquals("id-0", future.get(5, TimeUnit.SECONDS).getMessageId());
+
+        SendMessageBatchRequestEntry entry = sqs.sent.get(0);
+        assertEquals("reference", entry.getMessageBody());
+        assertEquals(MessagePayloadCodec.ENCODING_STORE,
+                entry.getMessageAttributes().get(MessagePayloadCodec.ENCODING_ATTRIBUTE).getStringValue());
+    }
+
+    @Test
+    public void failedUpload_FailsOnlyThatMessage() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        client = newClient(sqs, new PayloadStore() {
+            @Override
+            public String store(byte[] payload) {
+                throw new AmazonClientException("Upload failed");
+            }
+
+            @Override
+            public byte[] retrieve(String reference) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        Future<SendMessageResult> large = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL,
+                randomText(4000)));
+        Future<SendMessageResult> small = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL, "small"));
+
+        assertEquals("id-0", small.get(5, TimeUnit.SECONDS).getMessageId());
+        try {
+            large.get(5, TimeUnit.SECONDS);
+            fail("Expected the upload failure");
+        } catch (ExecutionException e) {
+            assertEquals("Upload failed", e.getCause().getMessage());
+        }
+        assertEquals(1, sqs.sent.size());
+        assertEquals("small", sqs.sent.get(0).getMessageBody());
+    }
+
+    @Test
+    public void undecodableMessage_FailsReceive() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        sqs.toReceive.add(new Message().withMessageId("plain").withReceiptHandle("plain-handle")
+                .withBody("plain body"));
+        sqs.toReceive.add(new Message().withMessageId("offloaded").withReceiptHandle("offloaded-handle")
+                .withBody("missing")
+                .addMessageAttributesEntry(MessagePayloadCodec.ENCODING_ATTRIBUTE, new MessageAttributeValue()
+                        .withDataType("String").withStringValue(MessagePayloadCodec.ENCODING_STORE)));
+        client = newClient(sqs, new PayloadStore() {
+            @Override
+            public String store(byte[] payload) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public byte[] retrieve(String reference) {
+                throw new AmazonClientException("No payload " + reference);
+            }
+        });
+
+        try {
+            client.receiveMessage(new ReceiveMessageRequest(QUEUE_URL));
+            fail("Expected the decoding failure");
+        } catch (AmazonClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("offloaded"));
+            assertEquals("No payload missing", e.getCause().getMessage());
+        }
+
+        // the message that was decoded is released, the other one is left to time out
+        assertEquals(Collections.singletonList("plain-handle"), sqs.released);
+    }
+
+    private static AmazonSQSBufferedAsyncClient newClient(FakeSQS sqs, PayloadStore store) {
+        MessagePayloadCodec codec = new MessagePayloadCodec()
+                .withPayloadStore(store)
+                .withOffloadThresholdBytes(1000);
+        return new AmazonSQSBufferedAsyncClient(sqs, new QueueBufferConfig()
+                .withMaxBatchOpenMs(50)
+                .withLongPoll(false)
+                .withMaxInflightReceiveBatches(1)
+                .withMaxDoneReceiveBatches(1)
+                .withPayloadCodec(codec));
+    }
+
+    /** Text that doesn't compress well, so that it is offloaded */
+    private static String randomText(int length) {
+        byte[] bytes = new byte[length * 3 / 4];
+        new Random(42).nextBytes(bytes);
+        return Base64.encodeAsString(bytes);
+    }
+
+    private static class FakeSQS extends AbstractAmazonSQSAsync {
+
+        final List<SendMessageBatchRequestEntry> sent = Collections
+                .synchronizedList(new ArrayList<SendMessageBatchRequestEntry>());
+        final List<Message> toReceive = Collections.synchronizedList(new ArrayList<Message>());
+        final List<String> released = Collections.synchronizedList(new ArrayList<String>());
+        private int messageIds;
+
+        @Override
+        public synchronized SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                sent.add(entry);
+                result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId())
+                        .withMessageId("id-" + messageIds++));
+            }
+            return result;
+        }
+
+        @Override
+        public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+            synchronized (toReceive) {
+                List<Message> messages = new ArrayList<Message>(toReceive);
+                toReceive.clear();
+                return new ReceiveMessageResult().withMessages(messages);
+            }
+        }
+
+        @Override
+        public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+            return new GetQueueAttributesResult().addAttributesEntry("VisibilityTimeout", "30");
+        }
+
+        @Override
+        public ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(
+                ChangeMessageVisibilityBatchRequest request) {
+            for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+                released.add(entry.getReceiptHandle());
+            }
+            return new ChangeMessageVisibilityBatchResult();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+
+/**
+ * Tests the receive buffer against a fake SQS client.
+ */
+public class ReceiveQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/123456789012/test";
+
+    private static final long EMPTY_POLL_MS = 200;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ReceiveQueueBuffer buffer;
+
+    @After
+    public void tearDown() {
+        if (buffer != null) {
+            buffer.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void emptyLongPollsAreNotSampledAsLatency() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        buffer = new ReceiveQueueBuffer(sqs, executor, new QueueBufferConfig().withAdaptive(true)
+                .withLongPoll(true), QUEUE_URL);
+
+        // the queue is empty: every receive call waits out its long poll
+        List<Message> received = receive();
+        assertTrue(received.isEmpty());
+        assertTrue(buffer.getReceiveLatencyNanos() < 0);
+
+        sqs.toReceive.add(new Message().withMessageId("id").withReceiptHandle("handle")
+                .withBody("body"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.isEmpty() && System.nanoTime() < deadline) {
+            received = receive();
+        }
+        assertTrue(!received.isEmpty());
+
+        // only the call that returned the message was sampled
+        double latencyMs = buffer.getReceiveLatencyNanos() / TimeUnit.MILLISECONDS.toNanos(1);
+        assertTrue("latency " + latencyMs, latencyMs >= 0 && latencyMs < EMPTY_POLL_MS / 2);
+    }
+
+    private List<Message> receive() throws Exception {
+        return buffer.receiveMessageAsync(new ReceiveMessageRequest(QUEUE_URL), null)
+                .get(5, TimeUnit.SECONDS).getMessages();
+    }
+
+    private static class FakeSQS extends AbstractAmazonSQSAsync {
+
+        final List<Message> toReceive = Collections.synchronizedList(new ArrayList<Message>());
+
+        @Override
+        public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+            synchronized (toReceive) {
+                if (!toReceive.isEmpty()) {
+                    List<Message> messages = new ArrayList<Message>(toReceive);
+                    toReceive.clear();
+                    return new ReceiveMessageResult().withMessages(messages);
+                }
+            }
+            // stands in for a long poll that ends with no message
+            try {
+                Thread.sleep(EMPTY_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ReceiveMessageResult();
+        }
+
+        @Override
+        public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+            return new GetQueueAttributesResult().addAttributesEntry("VisibilityTimeout", "30");
+        }
+    }
+}
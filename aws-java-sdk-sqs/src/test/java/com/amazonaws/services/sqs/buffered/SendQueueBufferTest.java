@@ -0,0 +1,293 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+/**
+ * Tests the send buffer with concurrent producers, against a fake SQS client.
+ */
+public class SendQueueBufferTest {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/123456789012/test";
+
+    private static final int PRODUCERS = 8;
+
+    private static final int MESSAGES_PER_PRODUCER = 200;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentProducers_BatchesNeverExceedMaxBatchSize() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        SendQueueBuffer buffer = new SendQueueBuffer(sqs, executor, new QueueBufferConfig().withMaxBatchSize(10)
+                .withMaxBatchOpenMs(50).withMaxInflightOutboundBatches(4), QUEUE_URL);
+
+        List<Future<SendMessageResult>> futures = sendConcurrently(buffer, "");
+        assertAllSentOnce(sqs, futures);
+
+        boolean sawFullBatch = false;
+        for (List<SendMessageBatchRequestEntry> batch : sqs.batches) {
+            assertTrue(batch.size() <= 10);
+            sawFullBatch |= batch.size() == 10;
+        }
+        assertTrue(sawFullBatch);
+    }
+
+    @Test
+    public void concurrentProducers_BatchesNeverExceedMaxBatchSizeBytes() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        SendQueueBuffer buffer = new SendQueueBuffer(sqs, executor, new QueueBufferConfig().withMaxBatchSize(10)
+                .withMaxBatchSizeBytes(4500).withMaxBatchOpenMs(50).withMaxInflightOutboundBatches(4), QUEUE_URL);
+
+        List<Future<SendMessageResult>> futures = sendConcurrently(buffer, repeat('x', 1000));
+        assertAllSentOnce(sqs, futures);
+
+        for (List<SendMessageBatchRequestEntry> batch : sqs.batches) {
+            long bytes = 0;
+            for (SendMessageBatchRequestEntry entry : batch) {
+                bytes += entry.getMessageBody().getBytes().length;
+            }
+            assertTrue("batch of " + bytes + " bytes", bytes <= 4500);
+        }
+    }
+
+    /**
+     * Batches of a single message make every producer open and publish a new batch, so producers
+     * keep losing the race to publish theirs.
+     */
+    @Test
+    public void concurrentlyPublishedBatches_DeliverEveryMessageOnce() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        SendQueueBuffer buffer = new SendQueueBuffer(sqs, executor, new QueueBufferConfig().withMaxBatchSize(1)
+                .withMaxBatchOpenMs(50).withMaxInflightOutboundBatches(PRODUCERS), QUEUE_URL);
+
+        List<Future<SendMessageResult>> futures = sendConcurrently(buffer, "");
+        assertAllSentOnce(sqs, futures);
+        assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, sqs.batches.size());
+    }
+
+    @Test
+    public void flush_WaitsForPendingBatches() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        sqs.block();
+        final SendQueueBuffer buffer = new SendQueueBuffer(sqs, executor, new QueueBufferConfig()
+                .withMaxBatchOpenMs(60000), QUEUE_URL);
+
+        Future<SendMessageResult> future = buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "body"), null);
+        final CountDownLatch flushed = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buffer.flush();
+                flushed.countDown();
+            }
+        });
+
+        // flush() closes the open batch, which is then stuck in the fake
+        assertTrue(sqs.entered.await(5, TimeUnit.SECONDS));
+        assertFalse(flushed.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(future.isDone());
+
+        sqs.release();
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+        assertEquals("id-0", future.get().getMessageId());
+    }
+
+    @Test
+    public void interruptedWhileWaitingForPermit_FailsOnlyTheCallersMessage() throws Exception {
+        FakeSQS sqs = new FakeSQS();
+        sqs.block();
+        final SendQueueBuffer buffer = new SendQueueBuffer(sqs, executor, new QueueBufferConfig()
+                .withMaxBatchOpenMs(10).withMaxInflightOutboundBatches(1), QUEUE_URL);
+
+        // the first batch holds the only permit until the fake is released
+        Future<SendMessageResult> first = buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "first"), null);
+        assertTrue(sqs.entered.await(5, TimeUnit.SECONDS));
+
+        // the opener of the second batch waits for the permit...
+        final List<Exception> openerFailures = Collections.synchronizedList(new ArrayList<Exception>());
+        Thread opener = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "interrupted"), null);
+                } catch (AmazonClientException e) {
+                    openerFailures.add(e);
+                }
+            }
+        };
+        opener.start();
+        while (opener.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        // ...while another producer adds its message to the second batch
+        Future<SendMessageResult> other = buffer.sendMessage(new SendMessageRequest(QUEUE_URL, "other"), null);
+        opener.interrupt();
+        opener.join(5000);
+        assertEquals(1, openerFailures.size());
+        assertFalse(other.isDone());
+
+        sqs.release();
+        assertEquals("id-0", first.get(5, TimeUnit.SECONDS).getMessageId());
+        assertEquals("id-1", other.get(5, TimeUnit.SECONDS).getMessageId());
+        assertEquals(2, sqs.batches.size());
+        assertEquals("other", sqs.batches.get(1).get(0).getMessageBody());
+        assertEquals(1, sqs.batches.get(1).size());
+    }
+
+    /**
+     * Sends {@code MESSAGES_PER_PRODUCER} messages from each of {@code PRODUCERS} threads, all
+     * released at once. Each message body is its sequence number, appended to {@code padding}.
+     */
+    private List<Future<SendMessageResult>> sendConcurrently(final SendQueueBuffer buffer, final String padding)
+            throws InterruptedException {
+        final List<Future<SendMessageResult>> futures = Collections
+                .synchronizedList(new ArrayList<Future<SendMessageResult>>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                            String body = padding + (producer * MESSAGES_PER_PRODUCER + i);
+                            futures.add(buffer.sendMessage(new SendMessageRequest(QUEUE_URL, body), null));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        buffer.flush();
+        return futures;
+    }
+
+    private static void assertAllSentOnce(FakeSQS sqs, List<Future<SendMessageResult>> futures)
+            throws InterruptedException {
+        assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, futures.size());
+        Set<String> messageIds = new HashSet<String>();
+        for (Future<SendMessageResult> future : futures) {
+            assertTrue(future.isDone());
+            try {
+                messageIds.add(future.get().getMessageId());
+            } catch (ExecutionException e) {
+                fail("Unexpected failure " + e.getCause());
+            }
+        }
+        assertEquals(futures.size(), messageIds.size());
+
+        Set<String> bodies = new HashSet<String>();
+        int sent = 0;
+        for (List<SendMessageBatchRequestEntry> batch : sqs.batches) {
+            for (SendMessageBatchRequestEntry entry : batch) {
+                bodies.add(entry.getMessageBody());
+                sent++;
+            }
+        }
+        assertEquals(futures.size(), sent);
+        assertEquals(futures.size(), bodies.size());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static class FakeSQS extends AbstractAmazonSQSAsync {
+
+        final List<List<SendMessageBatchRequestEntry>> batches = Collections
+                .synchronizedList(new ArrayList<List<SendMessageBatchRequestEntry>>());
+        final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+        private int messageIds;
+
+        void block() {
+            released = new CountDownLatch(1);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+            entered.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            synchronized (this) {
+                batches.add(new ArrayList<SendMessageBatchRequestEntry>(request.getEntries()));
+                for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                    result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId())
+                            .withMessageId("id-" + messageIds++));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.payload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.StringUtils;
+
+public class MessagePayloadCodecTest {
+
+    @Test
+    public void smallBody_IsSentAsIs() {
+        MessagePayloadCodec codec = new MessagePayloadCodec().withPayloadStore(new InMemoryPayloadStore());
+        SendMessageRequest request = new SendMessageRequest("queue", "hello");
+
+        assertSame(request, codec.encode(request));
+
+        Message message = toMessage(request);
+        assertSame(message, codec.decode(message));
+    }
+
+    @Test
+    public void compressibleBody_RoundTripsThroughGzip() {
+        MessagePayloadCodec codec = new MessagePayloadCodec();
+        String body = repeat("caf\u00e9 \ud83d\ude00 ", 1000);
+        SendMessageRequest request = new SendMessageRequest("queue", body)
+                .addMessageAttributesEntry("Other", stringValue("kept"));
+
+        SendMessageRequest encoded = codec.encode(request);
+
+        assertEquals(MessagePayloadCodec.ENCODING_GZIP, encodingOf(encoded));
+        assertTrue(encoded.getMessageBody().length() < body.length());
+        assertEquals(body, request.getMessageBody());
+        assertFalse(request.getMessageAttributes().containsKey(MessagePayloadCodec.ENCODING_ATTRIBUTE));
+
+        Message received = toMessage(encoded);
+        Message decoded = codec.decode(received);
+        assertEquals(body, decoded.getBody());
+        assertTrue(received.getMessageAttributes().containsKey(MessagePayloadCodec.ENCODING_ATTRIBUTE));
+        assertEquals("kept", decoded.getMessageAttributes().get("Other").getStringValue());
+        assertFalse(decoded.getMessageAttributes().containsKey(MessagePayloadCodec.ENCODING_ATTRIBUTE));
+    }
+
+    @Test
+    public void incompressibleBody_IsSentAsIs() {
+        MessagePayloadCodec codec = new MessagePayloadCodec();
+        SendMessageRequest request = new SendMessageRequest("queue", randomText(4000));
+
+        assertSame(request, codec.encode(request));
+    }
+
+    @Test
+    public void largeBody_IsOffloadedAndRoundTrips() {
+        InMemoryPayloadStore store = new InMemoryPayloadStore();
+        MessagePayloadCodec codec = new MessagePayloadCodec()
+                .withPayloadStore(store)
+                .withOffloadThresholdBytes(1000);
+        String body = randomText(4000);
+
+        SendMessageRequest encoded = codec.encode(new SendMessageRequest("queue", body));
+
+        assertEquals(MessagePayloadCodec.ENCODING_STORE, encodingOf(encoded));
+        assertEquals(1, store.payloads.size());
+        assertTrue(Arrays.equals(body.getBytes(StringUtils.UTF8),
+                store.payloads.get(encoded.getMessageBody())));
+
+        Message decoded = codec.decode(toMessage(encoded));
+        assertEquals(body, decoded.getBody());
+        assertFalse(decoded.getMessageAttributes().containsKey(MessagePayloadCodec.ENCODING_ATTRIBUTE));
+    }
+
+    @Test
+    public void compressedBodyUnderOffloadThreshold_IsNotOffloaded() {
+        InMemoryPayloadStore store = new InMemoryPayloadStore();
+        MessagePayloadCodec codec = new MessagePayloadCodec()
+                .withPayloadStore(store)
+                .withOffloadThresholdBytes(1000);
+        String body = repeat("a", 4000);
+
+        SendMessageRequest encoded = codec.encode(new SendMessageRequest("queue", body));
+
+        assertEquals(MessagePayloadCodec.ENCODING_GZIP, encodingOf(encoded));
+        assertTrue(store.payloads.isEmpty());
+        assertEquals(body, codec.decode(toMessage(encoded)).getBody());
+    }
+
+    @Test
+    public void offloadedBody_WithoutPayloadStore_FailsToDecode() {
+        Message message = new Message().withBody("reference")
+                .addMessageAttributesEntry(MessagePayloadCodec.ENCODING_ATTRIBUTE,
+                        stringValue(MessagePayloadCodec.ENCODING_STORE));
+        try {
+            new MessagePayloadCodec().decode(message);
+            fail("Expected an AmazonClientException");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void failedRetrieval_FailsToDecode() {
+        MessagePayloadCodec codec = new MessagePayloadCodec().withPayloadStore(new InMemoryPayloadStore());
+        Message message = new Message().withBody("missing")
+                .addMessageAttributesEntry(MessagePayloadCodec.ENCODING_ATTRIBUTE,
+                        stringValue(MessagePayloadCodec.ENCODING_STORE));
+        try {
+            codec.decode(message);
+            fail("Expected an AmazonClientException");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void unknownEncoding_FailsToDecode() {
+        Message message = new Message().withBody("body")
+                .addMessageAttributesEntry(MessagePayloadCodec.ENCODING_ATTRIBUTE, stringValue("zstd"));
+        try {
+            new MessagePayloadCodec().decode(message);
+            fail("Expected an AmazonClientException");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void noBody_IsSentAsIs() {
+        assertNull(new MessagePayloadCodec().encode((String) null));
+    }
+
+    private static Message toMessage(SendMessageRequest request) {
+        return new Message().withMessageId("id").withBody(request.getMessageBody())
+                .withMessageAttributes(request.getMessageAttributes());
+    }
+
+    private static String encodingOf(SendMessageRequest request) {
+        return request.getMessageAttributes().get(MessagePayloadCodec.ENCODING_ATTRIBUTE).getStringValue();
+    }
+
+    private static MessageAttributeValue stringValue(String value) {
+        return new MessageAttributeValue().withDataType("String").withStringValue(value);
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /** Text that doesn't compress well: base64 of random bytes */
+    private static String randomText(int length) {
+        byte[] bytes = new byte[length * 3 / 4];
+        new Random(42).nextBytes(bytes);
+        return Base64.encodeAsString(bytes);
+    }
+
+    private static class InMemoryPayloadStore implements PayloadStore {
+
+        private final Map<String, byte[]> payloads = new ConcurrentHashMap<String, byte[]>();
+
+        @Override
+        public String store(byte[] payload) {
+            String reference = "payload-" + payloads.size();
+            payloads.put(reference, payload.clone());
+            return reference;
+        }
+
+        @Override
+        public byte[] retrieve(String reference) {
+            byte[] payload = payloads.get(reference);
+            if (payload == null) {
+                throw new AmazonClientException("No payload " + reference);
+            }
+            return payload;
+        }
+    }
+}
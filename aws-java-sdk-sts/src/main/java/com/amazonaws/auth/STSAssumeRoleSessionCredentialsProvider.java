@@ -25,15 +25,20 @@ import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
 import com.amazonaws.services.securitytoken.model.Credentials;
 import com.amazonaws.util.ValidationUtils;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to assume a Role and create temporary, short-lived sessions to use
  * for authentication.
+ * <p>
+ * Sessions are renewed in the background a few minutes before they expire, so
+ * callers keep using the current session meanwhile.
  */
 @ThreadSafe
-public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCredentialsProvider {
+public class STSAssumeRoleSessionCredentialsProvider
+        extends AbstractRefreshingCredentialsProvider<AWSSessionCredentials>
+        implements AWSSessionCredentialsProvider {
 
     /** Default duration for started sessions. */
     public static final int DEFAULT_DURATION_SECONDS = 900;
@@ -41,12 +46,12 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
     /** Time before expiry within which credentials will be renewed. */
     private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
+    /** Time before expiry within which credentials are renewed in the background. */
+    private static final long ASYNC_REFRESH_EXPIRATION_IN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     /** The client for starting STS sessions. */
     private final AWSSecurityTokenService securityTokenService;
 
-    /** The current session credentials and expiration time. */
-    private final AtomicReference<Credentials> sessionCredentials = new AtomicReference<Credentials>();
-
     /** The arn of the role to be assumed. */
     private final String roleArn;
 
@@ -176,6 +181,8 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
      */
 
     private STSAssumeRoleSessionCredentialsProvider(Builder builder) {
+        super(ASYNC_REFRESH_EXPIRATION_IN_MILLIS, EXPIRY_TIME_MILLIS, 0);
+
         if (builder.sts != null) {
             ValidationUtils.assertAllAreNull(
                     "If a custom STS client is set you must not set any other client related fields (ClientConfiguration, AWSCredentials, Endpoint, etc",
@@ -263,22 +270,11 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
      */
     public void setSTSClientEndpoint(String endpoint) {
         securityTokenService.setEndpoint(endpoint);
-        sessionCredentials.set(null);
-    }
-
-
-    @Override
-    public AWSSessionCredentials getCredentials() {
-        if (needsNewSession()) {
-            startSession();
-        }
-        Credentials tempCredentials = sessionCredentials.get();
-        return new BasicSessionCredentials(tempCredentials.getAccessKeyId(),
-            tempCredentials.getSecretAccessKey(), tempCredentials.getSessionToken());
+        clearCredentials();
     }
 
     @Override
-    public void refresh() {
+    protected void loadCredentials() {
         startSession();
     }
 
@@ -298,23 +294,9 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
         AssumeRoleResult assumeRoleResult = securityTokenService.assumeRole(assumeRoleRequest);
         Credentials stsCredentials = assumeRoleResult.getCredentials();
 
-        sessionCredentials.set(stsCredentials);
-    }
-
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within {@link #EXPIRY_TIME_MILLIS} seconds of expiring.
-     *
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        Credentials tempCredentials = sessionCredentials.get();
-        if (tempCredentials == null) {
-            return true;
-        }
-        long timeRemaining = tempCredentials.getExpiration().getTime() - System.currentTimeMillis();
-        return timeRemaining < EXPIRY_TIME_MILLIS;
+        setCredentials(new BasicSessionCredentials(stsCredentials.getAccessKeyId(),
+                stsCredentials.getSecretAccessKey(), stsCredentials.getSessionToken()),
+                stsCredentials.getExpiration());
     }
 
 
@@ -15,8 +15,6 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
-
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
@@ -27,8 +25,13 @@ import com.amazonaws.services.securitytoken.model.Credentials;
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to create temporary, short-lived sessions to use for authentication.
+ * <p>
+ * Sessions are renewed in the background once they are within the refresh
+ * threshold of expiring, so callers keep using the current session meanwhile.
  */
-public class WebIdentityFederationSessionCredentialsProvider implements AWSSessionCredentialsProvider {
+public class WebIdentityFederationSessionCredentialsProvider
+        extends AbstractRefreshingCredentialsProvider<AWSSessionCredentials>
+        implements AWSSessionCredentialsProvider {
 
     /** Default duration for started sessions */
     public static final int DEFAULT_DURATION_SECONDS = 3600;
@@ -36,21 +39,18 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSSessi
     /** Default threshold for refreshing session credentials */
     public static final int DEFAULT_THRESHOLD_SECONDS = 500;
 
+    /** Time before expiry within which credentials will be renewed synchronously. */
+    private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
+
     /** The client for starting STS sessions */
     private final AWSSecurityTokenService securityTokenService;
 
-    /** The current session credentials */
-    private AWSSessionCredentials sessionCredentials;
-
-    /** The expiration time for the current session credentials */
-    private Date sessionCredentialsExpiration;
-
     private final String wifToken;
     private final String wifProvider;
     private final String roleArn;
-    private int sessionDuration;
-    private int refreshThreshold;
-    private String subjectFromWIF;
+    private volatile int sessionDuration;
+    private volatile int refreshThreshold;
+    private volatile String subjectFromWIF;
 
     /**
      * Constructs a new WebIdentityFederationSessionCredentialsProvider, which will use the
@@ -107,6 +107,7 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSSessi
      *            Preconfigured STS client to make requests with
      */
     public WebIdentityFederationSessionCredentialsProvider(String wifToken, String wifProvider, String roleArn, AWSSecurityTokenService stsClient) {
+        super(DEFAULT_THRESHOLD_SECONDS * 1000L, EXPIRY_TIME_MILLIS, 0);
         this.securityTokenService = stsClient; 
         this.wifProvider = wifProvider;
         this.wifToken = wifToken;
@@ -116,15 +117,18 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSSessi
     }
 
     @Override
-    public AWSSessionCredentials getCredentials() {
-        if (needsNewSession()) startSession();
+    protected void loadCredentials() {
+        startSession();
+    }
 
-        return sessionCredentials;
+    @Override
+    protected long getPrefetchMillis() {
+        return refreshThreshold * 1000L;
     }
 
     @Override
-    public void refresh() {
-        startSession();
+    protected long getStaleMillis() {
+        return Math.min(EXPIRY_TIME_MILLIS, getPrefetchMillis());
     }
 
    /**
@@ -252,25 +256,11 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSSessi
 
         subjectFromWIF = sessionTokenResult.getSubjectFromWebIdentityToken();
 
-        sessionCredentials = new BasicSessionCredentials(
+        setCredentials(new BasicSessionCredentials(
                 stsCredentials.getAccessKeyId(),
                 stsCredentials.getSecretAccessKey(),
-                stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
-    }
-
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within the configured refresh threshold.
-     *
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) return true;
-
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (this.refreshThreshold * 1000);
+                stsCredentials.getSessionToken()),
+                stsCredentials.getExpiration());
     }
 
 }